@@ -881,6 +881,76 @@ public class RoiActions
         }
     };
 
+    public static IcyAbstractAction splitAction = new IcyAbstractAction("Split", new IcyIcon(ResourceUtil.ICON_CUT),
+            "Split into components", "Create a new ROI for each connected component of selected ROI(s)", true,
+            "Computing components...")
+    {
+        /**
+         * 
+         */
+        private static final long serialVersionUID = 2795208765146305532L;
+
+        @Override
+        public boolean doAction(ActionEvent e)
+        {
+            final Sequence sequence = Icy.getMainInterface().getActiveSequence();
+            final RoisPanel roisPanel = Icy.getMainInterface().getRoisPanel();
+
+            if ((sequence != null) && (roisPanel != null))
+            {
+                sequence.beginUpdate();
+                try
+                {
+                    final List<ROI> newROIs = new ArrayList<ROI>();
+
+                    for (ROI roi : roisPanel.getSelectedRois())
+                    {
+                        final List<ROI> components = ROIUtil.getComponents(roi);
+
+                        // nothing to split
+                        if (components.size() < 2)
+                            continue;
+
+                        for (int i = 0; i < components.size(); i++)
+                        {
+                            final ROI component = components.get(i);
+
+                            component.setName(roi.getName() + " #" + (i + 1));
+                            component.setColor(roi.getColor());
+                            newROIs.add(component);
+                        }
+                    }
+
+                    if (!newROIs.isEmpty())
+                    {
+                        // add all components at once (single event and undo edit)
+                        sequence.addROIs(newROIs, true);
+                        sequence.setSelectedROIs(newROIs);
+                    }
+                }
+                catch (UnsupportedOperationException ex)
+                {
+                    MessageDialog.showDialog("Operation not supported", ex.getLocalizedMessage(),
+                            MessageDialog.ERROR_MESSAGE);
+                }
+                finally
+                {
+                    sequence.endUpdate();
+                }
+
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public boolean isEnabled()
+        {
+            return super.isEnabled() && (Icy.getMainInterface().getActiveSequence() != null);
+        }
+    };
+
     public static IcyAbstractAction xlsExportAction = new IcyAbstractAction("Export", new IcyIcon(
             ResourceUtil.ICON_XLS_EXPORT), "ROI Excel export", "Export ROI table in a XLS file", true,
             "Exporting ROI informations...")
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ *
+ * This file is part of Icy.
+ *
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minimal micro benchmark runner (warmup and measurement iterations, average time per operation).<br>
+ * Results can be saved in CSV format so they can be compared between versions.
+ */
+public class BenchmarkRunner
+{
+    /**
+     * Benchmarked operation.
+     */
+    public static interface BenchmarkTask
+    {
+        /**
+         * Execute the operation once and return its result (consumed by the runner so the JIT
+         * cannot remove the computation).
+         */
+        public Object run() throws Exception;
+    }
+
+    /**
+     * Benchmark result.
+     */
+    public static class BenchmarkResult
+    {
+        final String name;
+        final String parameters;
+        final int iterations;
+        final long operations;
+        /**
+         * average time per operation (in micro second)
+         */
+        final double mean;
+        final double stdDev;
+        final double min;
+
+        BenchmarkResult(String name, String parameters, int iterations, long operations, double mean,
+                double stdDev, double min)
+        {
+            super();
+
+            this.name = name;
+            this.parameters = parameters;
+            this.iterations = iterations;
+            this.operations = operations;
+            this.mean = mean;
+            this.stdDev = stdDev;
+            this.min = min;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public String getParameters()
+        {
+            return parameters;
+        }
+
+        /**
+         * Returns average time per operation (in micro second)
+         */
+        public double getMean()
+        {
+            return mean;
+        }
+
+        /**
+         * Returns standard deviation of time per operation between iterations (in micro second)
+         */
+        public double getStdDev()
+        {
+            return stdDev;
+        }
+
+        /**
+         * Returns time per operation of the fastest iteration (in micro second)
+         */
+        public double getMin()
+        {
+            return min;
+        }
+
+        String toCSV()
+        {
+            return name + "," + parameters + "," + iterations + "," + operations + ","
+                    + String.format(Locale.US, "%.3f,%.3f,%.3f", Double.valueOf(mean), Double.valueOf(stdDev),
+                            Double.valueOf(min));
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format(Locale.US, "%-40s %-30s %12.3f us/op  (+/- %.3f)", name, parameters,
+                    Double.valueOf(mean), Double.valueOf(stdDev));
+        }
+    }
+
+    public static final String CSV_HEADER = "benchmark,parameters,iterations,operations,mean_us,stddev_us,min_us";
+
+    private final int warmupIterations;
+    private final int measureIterations;
+    private final long iterationTime;
+    private final List<BenchmarkResult> results;
+
+    /**
+     * sink for task results
+     */
+    private volatile int sink;
+
+    /**
+     * Create a new benchmark runner.
+     *
+     * @param warmupIterations
+     *        number of (not measured) warmup iterations
+     * @param measureIterations
+     *        number of measured iterations
+     * @param iterationTime
+     *        minimum duration of an iteration (in ms)
+     */
+    public BenchmarkRunner(int warmupIterations, int measureIterations, long iterationTime)
+    {
+        super();
+
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = Math.max(1, measureIterations);
+        this.iterationTime = iterationTime;
+        results = new ArrayList<BenchmarkResult>();
+        sink = 0;
+    }
+
+    /**
+     * Create a new benchmark runner (5 warmup and 5 measured iterations of 500 ms).
+     */
+    public BenchmarkRunner()
+    {
+        this(5, 5, 500);
+    }
+
+    /**
+     * Run the specified benchmark and store its result.
+     *
+     * @param name
+     *        benchmark name
+     * @param parameters
+     *        benchmark parameters (as <code>name=value</code> separated by <code>;</code>)
+     * @param task
+     *        operation to benchmark
+     * @return benchmark result or <code>null</code> if the task failed
+     */
+    public BenchmarkResult run(String name, String parameters, BenchmarkTask task)
+    {
+        final double[] times = new double[measureIterations];
+        long totalOps = 0;
+
+        try
+        {
+            for (int i = 0; i < warmupIterations; i++)
+                iteration(task, null);
+
+            for (int i = 0; i < measureIterations; i++)
+            {
+                final long[] ops = new long[1];
+
+                times[i] = iteration(task, ops);
+                totalOps += ops[0];
+            }
+        }
+        catch (Exception e)
+        {
+            System.err.println("Benchmark " + name + " [" + parameters + "] failed:");
+            e.printStackTrace();
+            return null;
+        }
+
+        double mean = 0d;
+        double min = Double.MAX_VALUE;
+
+        for (double t : times)
+        {
+            mean += t;
+            if (t < min)
+                min = t;
+        }
+        mean /= times.length;
+
+        double var = 0d;
+        for (double t : times)
+            var += (t - mean) * (t - mean);
+
+        final BenchmarkResult result = new BenchmarkResult(name, parameters, times.length, totalOps, mean,
+                Math.sqrt(var / times.length), min);
+
+        results.add(result);
+        System.out.println(result);
+
+        return result;
+    }
+
+    /**
+     * Execute the task during at least <code>iterationTime</code> ms and return average time per
+     * operation in micro second.
+     */
+    private double iteration(BenchmarkTask task, long[] ops) throws Exception
+    {
+        final long end = System.nanoTime() + (iterationTime * 1000000L);
+        final long start = System.nanoTime();
+        long count = 0;
+        long time;
+
+        do
+        {
+            consume(task.run());
+            count++;
+            time = System.nanoTime();
+        }
+        while (time < end);
+
+        if (ops != null)
+            ops[0] = count;
+
+        return ((time - start) / 1000d) / count;
+    }
+
+    private void consume(Object value)
+    {
+        if (value != null)
+            sink ^= value.hashCode();
+    }
+
+    /**
+     * Returns all results.
+     */
+    public List<BenchmarkResult> getResults()
+    {
+        return new ArrayList<BenchmarkResult>(results);
+    }
+
+    /**
+     * Save all results in the specified file (CSV format).
+     */
+    public void saveCSV(File file) throws IOException
+    {
+        final PrintWriter writer = new PrintWriter(new FileWriter(file));
+
+        try
+        {
+            writer.println(CSV_HEADER);
+            for (BenchmarkResult result : results)
+                writer.println(result.toCSV());
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,605 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ *
+ * This file is part of Icy.
+ *
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.benchmark;
+
+import icy.benchmark.BenchmarkRunner.BenchmarkTask;
+import icy.image.IcyBufferedImage;
+import icy.image.IcyBufferedImageUtil;
+import icy.image.lut.LUT;
+import icy.math.ArrayMath;
+import icy.math.ParallelArrayMath;
+import icy.math.Scaler;
+import icy.roi.BooleanMask2D;
+import icy.roi.ROI;
+import icy.sequence.Sequence;
+import icy.sequence.SequenceDataIterator;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import plugins.kernel.roi.roi2d.ROI2DEllipse;
+import plugins.kernel.roi.roi2d.ROI2DPolygon;
+import plugins.kernel.roi.roi2d.ROI2DRectangle;
+
+/**
+ * Benchmarks of the imaging hot paths (rendering, scaling, type conversion, reductions, masks and
+ * data iteration).<br>
+ * Each benchmark is run for all data types and image sizes, results are printed and optionally saved in
+ * CSV format so they can be compared between versions.<br>
+ * <br>
+ * Usage: <code>java icy.benchmark.ImagingBenchmark [output.csv] [filter]</code><br>
+ * where <code>filter</code> only runs benchmarks whose name contains the given text.
+ */
+public class ImagingBenchmark
+{
+    /**
+     * data type parameter
+     */
+    public static final DataType[] DATA_TYPES = {DataType.UBYTE, DataType.USHORT, DataType.INT, DataType.FLOAT,
+            DataType.DOUBLE};
+    /**
+     * image size parameter
+     */
+    public static final int[] SIZES = {256, 1024, 2048};
+    /**
+     * number of channel for rendering benchmarks
+     */
+    public static final int[] CHANNELS = {1, 3};
+    /**
+     * number of ROI for sequence ROI benchmarks
+     */
+    public static final int[] ROI_COUNTS = {1000, 10000, 30000};
+
+    final BenchmarkRunner runner;
+    final String filter;
+    final Random random;
+
+    public ImagingBenchmark(BenchmarkRunner runner, String filter)
+    {
+        super();
+
+        this.runner = runner;
+        this.filter = filter;
+        random = new Random(1234);
+    }
+
+    /**
+     * Create an image filled with random values.
+     */
+    IcyBufferedImage createImage(int size, int sizeC, DataType dataType)
+    {
+        final IcyBufferedImage result = new IcyBufferedImage(size, size, sizeC, dataType);
+        final double max = dataType.isFloat() ? 1000d : Math.min(dataType.getMaxValue(), 65535d);
+        final double[] values = new double[size * size];
+
+        for (int c = 0; c < sizeC; c++)
+        {
+            for (int i = 0; i < values.length; i++)
+                values[i] = random.nextDouble() * max;
+
+            Array1DUtil.doubleArrayToArray(values, result.getDataXY(c));
+        }
+
+        result.dataChanged();
+
+        return result;
+    }
+
+    /**
+     * Create a mask containing a filled disk.
+     */
+    static BooleanMask2D createDiskMask(int x, int y, int radius)
+    {
+        final Rectangle bounds = new Rectangle(x - radius, y - radius, radius * 2, radius * 2);
+        final boolean[] mask = new boolean[bounds.width * bounds.height];
+        int off = 0;
+
+        for (int j = 0; j < bounds.height; j++)
+        {
+            for (int i = 0; i < bounds.width; i++)
+            {
+                final int dx = i - radius;
+                final int dy = j - radius;
+
+                mask[off++] = ((dx * dx) + (dy * dy)) <= (radius * radius);
+            }
+        }
+
+        return new BooleanMask2D(bounds, mask);
+    }
+
+    boolean accept(String name)
+    {
+        return (filter == null) || name.contains(filter);
+    }
+
+    void run(String name, String parameters, BenchmarkTask task)
+    {
+        if (accept(name))
+            runner.run(name, parameters, task);
+    }
+
+    void runARGBImageBuilder()
+    {
+        if (!accept("ARGBImageBuilder"))
+            return;
+
+        for (final DataType dataType : DATA_TYPES)
+        {
+            for (final int size : SIZES)
+            {
+                for (int sizeC : CHANNELS)
+                {
+                    final IcyBufferedImage image = createImage(size, sizeC, dataType);
+                    final LUT lut = image.createCompatibleLUT();
+                    final BufferedImage out = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                    final Rectangle region = new Rectangle(size / 4, size / 4, size / 2, size / 2);
+                    final String params = "type=" + dataType + ";size=" + size + ";sizeC=" + sizeC;
+
+                    run("ARGBImageBuilder.buildARGBImage", params, new BenchmarkTask()
+                    {
+                        @Override
+                        public Object run()
+                        {
+                            return IcyBufferedImageUtil.getARGBImage(image, lut, out);
+                        }
+                    });
+                    run("ARGBImageBuilder.buildARGBImage(region)", params + ";subsampling=2", new BenchmarkTask()
+                    {
+                        @Override
+                        public Object run()
+                        {
+                            return IcyBufferedImageUtil.getARGBImage(image, region, 2, lut, null);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    void runScaler()
+    {
+        if (!accept("Scaler"))
+            return;
+
+        for (final DataType dataType : DATA_TYPES)
+        {
+            for (final int size : SIZES)
+            {
+                final IcyBufferedImage image = createImage(size, 1, dataType);
+                final Object data = image.getDataXY(0);
+                final boolean signed = dataType.isSigned();
+                final double[] bounds = image.getChannelBounds(0);
+                final Scaler scaler = new Scaler(bounds[0], bounds[1], 0, 255, !dataType.isFloat());
+                final int len = size * size;
+                final int[] intDest = new int[len];
+                final double[] doubleDest = new double[len];
+                final String params = "type=" + dataType + ";size=" + size;
+
+                run("Scaler.scale(int[])", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        scaler.scale(data, 0, intDest, 0, len, signed);
+                        return intDest;
+                    }
+                });
+                run("Scaler.scale(int[],step)", params + ";step=2", new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        scaler.scale(data, 0, 2, intDest, 0, len / 2, signed);
+                        return intDest;
+                    }
+                });
+                run("Scaler.scale(double[])", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        switch (dataType)
+                        {
+                            case UBYTE:
+                                scaler.scale((byte[]) data, 0, doubleDest, 0, len, signed);
+                                break;
+                            case USHORT:
+                                scaler.scale((short[]) data, 0, doubleDest, 0, len, signed);
+                                break;
+                            case INT:
+                                scaler.scale((int[]) data, 0, doubleDest, 0, len, signed);
+                                break;
+                            case FLOAT:
+                                scaler.scale((float[]) data, 0, doubleDest, 0, len);
+                                break;
+                            default:
+                                scaler.scale((double[]) data, 0, doubleDest, 0, len);
+                                break;
+                        }
+
+                        return doubleDest;
+                    }
+                });
+            }
+        }
+    }
+
+    void runArray1DUtil()
+    {
+        if (!accept("Array1DUtil"))
+            return;
+
+        for (final DataType dataType : DATA_TYPES)
+        {
+            for (final int size : SIZES)
+            {
+                final IcyBufferedImage image = createImage(size, 1, dataType);
+                final Object data = image.getDataXY(0);
+                final boolean signed = dataType.isSigned();
+                final double[] doubleArray = new double[size * size];
+                final float[] floatArray = new float[size * size];
+                final Object typedArray = Array1DUtil.createArray(dataType, size * size);
+                final String params = "type=" + dataType + ";size=" + size;
+
+                Array1DUtil.arrayToDoubleArray(data, doubleArray, signed);
+
+                run("Array1DUtil.arrayToDoubleArray", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        return Array1DUtil.arrayToDoubleArray(data, doubleArray, signed);
+                    }
+                });
+                run("Array1DUtil.doubleArrayToArray", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        return Array1DUtil.doubleArrayToArray(doubleArray, typedArray);
+                    }
+                });
+                run("Array1DUtil.arrayToArray(float)", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        return Array1DUtil.arrayToArray(data, floatArray, signed);
+                    }
+                });
+            }
+        }
+    }
+
+    void runArrayMath()
+    {
+        if (!accept("ArrayMath"))
+            return;
+
+        for (final DataType dataType : DATA_TYPES)
+        {
+            for (final int size : SIZES)
+            {
+                final IcyBufferedImage image = createImage(size, 1, dataType);
+                final Object data = image.getDataXY(0);
+                final boolean signed = dataType.isSigned();
+                final String params = "type=" + dataType + ";size=" + size;
+
+                run("ArrayMath.min", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        return Double.valueOf(ArrayMath.min(data, signed));
+                    }
+                });
+                run("ArrayMath.max", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        return Double.valueOf(ArrayMath.max(data, signed));
+                    }
+                });
+                run("ArrayMath.sum", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        return Double.valueOf(ArrayMath.sum(data, signed));
+                    }
+                });
+            }
+        }
+    }
+
+    void runParallelArrayMath()
+    {
+        if (!accept("ParallelArrayMath"))
+            return;
+
+        for (final DataType dataType : DATA_TYPES)
+        {
+            for (final int size : SIZES)
+            {
+                final IcyBufferedImage image = createImage(size, 1, dataType);
+                final Object data = image.getDataXY(0);
+                final Object out = Array1DUtil.createArray(dataType, size * size);
+                final boolean signed = dataType.isSigned();
+                final String params = "type=" + dataType + ";size=" + size;
+
+                run("ParallelArrayMath.sum", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        return Double.valueOf(ParallelArrayMath.sum(data, signed));
+                    }
+                });
+                run("ArrayMath.add", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        return ArrayMath.add(data, data, out);
+                    }
+                });
+                run("ParallelArrayMath.add", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        return ParallelArrayMath.add(data, data, out);
+                    }
+                });
+            }
+        }
+    }
+
+    void runBooleanMask2D()
+    {
+        if (!accept("BooleanMask2D"))
+            return;
+
+        for (final int size : SIZES)
+        {
+            final int radius = size / 4;
+            final BooleanMask2D mask1 = createDiskMask(size / 2 - (radius / 2), size / 2, radius);
+            final BooleanMask2D mask2 = createDiskMask(size / 2 + (radius / 2), size / 2, radius);
+            final String params = "size=" + size;
+
+            run("BooleanMask2D.getUnion", params, new BenchmarkTask()
+            {
+                @Override
+                public Object run()
+                {
+                    return BooleanMask2D.getUnion(mask1, mask2);
+                }
+            });
+            run("BooleanMask2D.getIntersection", params, new BenchmarkTask()
+            {
+                @Override
+                public Object run()
+                {
+                    return BooleanMask2D.getIntersection(mask1, mask2);
+                }
+            });
+            run("BooleanMask2D.getContourPoints", params, new BenchmarkTask()
+            {
+                @Override
+                public Object run()
+                {
+                    return mask1.getContourPoints();
+                }
+            });
+        }
+    }
+
+    void runSequenceDataIterator()
+    {
+        if (!accept("SequenceDataIterator"))
+            return;
+
+        for (final DataType dataType : DATA_TYPES)
+        {
+            for (final int size : SIZES)
+            {
+                final Sequence sequence = new Sequence(createImage(size, 1, dataType));
+                final ROI2DEllipse roi = new ROI2DEllipse(size / 4, size / 4, (size * 3) / 4, (size * 3) / 4);
+                final String params = "type=" + dataType + ";size=" + size;
+
+                run("SequenceDataIterator", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        final SequenceDataIterator it = new SequenceDataIterator(sequence);
+                        double sum = 0d;
+
+                        while (!it.done())
+                        {
+                            sum += it.get();
+                            it.next();
+                        }
+
+                        return Double.valueOf(sum);
+                    }
+                });
+                run("SequenceDataIterator(roi)", params, new BenchmarkTask()
+                {
+                    @Override
+                    public Object run()
+                    {
+                        final SequenceDataIterator it = new SequenceDataIterator(sequence, roi);
+                        double sum = 0d;
+
+                        while (!it.done())
+                        {
+                            sum += it.get();
+                            it.next();
+                        }
+
+                        return Double.valueOf(sum);
+                    }
+                });
+            }
+        }
+    }
+
+    void runROI2DShape()
+    {
+        if (!accept("ROI2DShape"))
+            return;
+
+        for (final int size : SIZES)
+        {
+            final ROI2DEllipse ellipse = new ROI2DEllipse(size / 8, size / 8, (size * 7) / 8, (size * 7) / 8);
+            final List<Point2D> points = new ArrayList<Point2D>();
+
+            // star shaped polygon
+            for (int i = 0; i < 64; i++)
+            {
+                final double angle = (Math.PI * 2 * i) / 64;
+                final double radius = ((i & 1) == 0) ? size * 0.45 : size * 0.2;
+
+                points.add(new Point2D.Double((size / 2) + (Math.cos(angle) * radius), (size / 2)
+                        + (Math.sin(angle) * radius)));
+            }
+
+            final ROI2DPolygon polygon = new ROI2DPolygon(points);
+            final String params = "size=" + size;
+
+            run("ROI2DShape.getBooleanMask(ellipse)", params, new BenchmarkTask()
+            {
+                @Override
+                public Object run()
+                {
+                    return ellipse.getBooleanMask(0, 0, size, size, true);
+                }
+            });
+            run("ROI2DShape.getBooleanMask(polygon)", params, new BenchmarkTask()
+            {
+                @Override
+                public Object run()
+                {
+                    return polygon.getBooleanMask(0, 0, size, size, true);
+                }
+            });
+        }
+    }
+
+    /**
+     * Create the specified number of small rectangular ROIs spread over a <code>size x size</code> area.
+     */
+    static List<ROI> createRectangleROIs(int num, int size)
+    {
+        final List<ROI> result = new ArrayList<ROI>(num);
+        final int step = Math.max(1, size / 16);
+
+        for (int i = 0; i < num; i++)
+        {
+            final int x = (i * step) % size;
+            final int y = ((i * step) / size) * step % size;
+
+            result.add(new ROI2DRectangle(x, y, x + step, y + step));
+        }
+
+        return result;
+    }
+
+    void runSequenceROI()
+    {
+        if (!accept("Sequence.addROI"))
+            return;
+
+        for (final int num : ROI_COUNTS)
+        {
+            final List<ROI> rois = createRectangleROIs(num, 256);
+            final String params = "rois=" + num;
+
+            run("Sequence.addROI(loop)", params, new BenchmarkTask()
+            {
+                @Override
+                public Object run()
+                {
+                    final Sequence sequence = new Sequence(createImage(64, 1, DataType.UBYTE));
+
+                    for (ROI roi : rois)
+                        sequence.addROI(roi, false);
+
+                    sequence.removeAllROI(false);
+
+                    return sequence;
+                }
+            });
+            run("Sequence.addROIs", params, new BenchmarkTask()
+            {
+                @Override
+                public Object run()
+                {
+                    final Sequence sequence = new Sequence(createImage(64, 1, DataType.UBYTE));
+
+                    sequence.addROIs(rois, false);
+                    sequence.removeAllROI(false);
+
+                    return sequence;
+                }
+            });
+        }
+    }
+
+    /**
+     * Run all benchmarks
+     */
+    public void runAll()
+    {
+        runARGBImageBuilder();
+        runScaler();
+        runArray1DUtil();
+        runArrayMath();
+        runParallelArrayMath();
+        runBooleanMask2D();
+        runSequenceDataIterator();
+        runROI2DShape();
+        runSequenceROI();
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        final String output = (args.length > 0) ? args[0] : null;
+        final String filter = (args.length > 1) ? args[1] : null;
+        final BenchmarkRunner runner = new BenchmarkRunner();
+
+        new ImagingBenchmark(runner, filter).runAll();
+
+        if (output != null)
+            runner.saveCSV(new File(output));
+
+        // stop processors threads
+        System.exit(0);
+    }
+}
@@ -27,6 +27,10 @@ import icy.gui.util.GuiUtil;
 import icy.gui.viewer.Viewer;
 import icy.image.IcyBufferedImage;
 import icy.image.IcyBufferedImageUtil;
+import icy.image.ImageProvider;
+import icy.image.ImageTileCache;
+import icy.image.ImageTileCache.Tile;
+import icy.image.ImageTileCache.TileListener;
 import icy.image.ImageUtil;
 import icy.main.Icy;
 import icy.math.Interpolator;
@@ -44,8 +48,11 @@ import icy.resource.ResourceUtil;
 import icy.resource.icon.IcyIcon;
 import icy.roi.ROI;
 import icy.sequence.DimensionId;
+import icy.sequence.ImageProviderPlaneCache;
+import icy.sequence.PlaneCache;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent.SequenceEventType;
+import icy.sequence.VolumetricImage;
 import icy.system.thread.SingleProcessor;
 import icy.system.thread.ThreadUtil;
 import icy.type.rectangle.Rectangle5D;
@@ -83,6 +90,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -140,7 +148,21 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             final BufferedImage img = canvasView.imageCache.getImage();
 
             if (img != null)
-                g.drawImage(img, null, 0, 0);
+            {
+                final Rectangle region = canvasView.imageCache.getImageRegion();
+
+                // partial image ? --> draw it at its position and scale
+                if (region != null)
+                {
+                    final int subsampling = canvasView.imageCache.getImageSubsampling();
+                    final AffineTransform trans = AffineTransform.getTranslateInstance(region.x, region.y);
+
+                    trans.scale(subsampling, subsampling);
+                    g.drawImage(img, trans, null);
+                }
+                else
+                    g.drawImage(img, null, 0, 0);
+            }
             else
             {
                 final Graphics2D g2 = (Graphics2D) g.create();
@@ -529,11 +551,17 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             if (trans != null)
             {
                 final Graphics2D g2 = (Graphics2D) g.create();
-                final BufferedImage img = canvasView.imageCache.getImage();
+                final BufferedImage img = canvasView.imageCache.getOverviewImage();
 
                 // draw image
                 if (img != null)
-                    g2.drawImage(img, trans, null);
+                {
+                    final AffineTransform imgTrans = new AffineTransform(trans);
+                    final int subsampling = canvasView.imageCache.getOverviewSubsampling();
+
+                    imgTrans.scale(subsampling, subsampling);
+                    g2.drawImage(img, imgTrans, null);
+                }
 
                 // then apply canvas inverse transformation
                 trans.scale(1 / getScaleX(), 1 / getScaleY());
@@ -596,12 +624,27 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
          */
         private static final long serialVersionUID = 4041355608444378172L;
 
-        public class ImageCache implements Runnable
+        public class ImageCache implements Runnable, TileListener
         {
             /**
              * image cache
              */
             private BufferedImage image;
+            /**
+             * region (image coordinates) and subsampling factor of image cache (viewport rendering only)
+             */
+            private Rectangle imageRegion;
+            private int imageSubsampling;
+            /**
+             * position of image cache (tiled rendering only)
+             */
+            private int imageT;
+            private int imageZ;
+            /**
+             * low resolution image of the whole plane (viewport rendering only)
+             */
+            private BufferedImage overview;
+            private int overviewSubsampling;
 
             /**
              * processor
@@ -611,7 +654,16 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
              * internals
              */
             private boolean needRebuild;
+            private boolean needOverviewRebuild;
             private boolean notEnoughMemory;
+            /**
+             * image region (image coordinates) to rebuild when only a part of the image changed
+             */
+            private Rectangle dirtyRegion;
+            /**
+             * tiles loaded since last build (drawn in the image cache without rebuilding it)
+             */
+            private final List<Tile> loadedTiles;
 
             public ImageCache()
             {
@@ -622,21 +674,190 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
                 processor.setKeepAliveTime(3, TimeUnit.SECONDS);
 
                 image = null;
+                imageRegion = null;
+                imageSubsampling = 1;
+                imageT = -1;
+                imageZ = -1;
+                overview = null;
+                overviewSubsampling = 1;
                 needRebuild = true;
+                needOverviewRebuild = true;
                 notEnoughMemory = false;
+                dirtyRegion = null;
+                loadedTiles = new ArrayList<Tile>();
 
                 // build cache
                 processor.submit(this);
             }
 
-            public void invalidCache()
+            public synchronized void invalidCache()
+            {
+                needRebuild = true;
+                needOverviewRebuild = true;
+                // whole image need to be rebuilt
+                dirtyRegion = null;
+            }
+
+            /**
+             * Invalid the specified region (image coordinates) of the image cache, only this part is rebuilt.
+             */
+            public synchronized void invalidRegion(Rectangle region)
             {
+                // whole image rebuild already requested
+                if (needRebuild && (dirtyRegion == null))
+                    return;
+
+                if (dirtyRegion == null)
+                    dirtyRegion = new Rectangle(region);
+                else
+                    dirtyRegion.add(region);
+
                 needRebuild = true;
             }
 
-            public boolean isValid()
+            /**
+             * Returns and clear the dirty region, <code>null</code> means the whole image need to be rebuilt.
+             */
+            private synchronized Rectangle getAndClearDirtyRegion()
             {
-                return !needRebuild;
+                final Rectangle result = dirtyRegion;
+
+                dirtyRegion = null;
+
+                return result;
+            }
+
+            /**
+             * Rebuild the dirty part of the specified image cache.
+             * 
+             * @param cache
+             *        image cache to update
+             * @param cacheRegion
+             *        region (image coordinates) covered by the image cache (<code>null</code> = whole image)
+             * @param subsampling
+             *        subsampling factor of the image cache
+             * @param dirty
+             *        region to rebuild (image coordinates)
+             */
+            private void updateRegion(BufferedImage cache, Rectangle cacheRegion, int subsampling, Rectangle dirty,
+                    int t, int z, int c)
+            {
+                final Rectangle cacheBounds;
+
+                if (cacheRegion == null)
+                    cacheBounds = new Rectangle(getImageSizeX(), getImageSizeY());
+                else
+                    cacheBounds = cacheRegion;
+
+                final Rectangle r = dirty.intersection(cacheBounds);
+
+                if (r.isEmpty())
+                    return;
+
+                // align region on the subsampling grid of the image cache
+                final int x = (r.x - cacheBounds.x) / subsampling;
+                final int y = (r.y - cacheBounds.y) / subsampling;
+                final int x2 = Math.min((((r.x + r.width) - cacheBounds.x) + (subsampling - 1)) / subsampling,
+                        cache.getWidth());
+                final int y2 = Math.min((((r.y + r.height) - cacheBounds.y) + (subsampling - 1)) / subsampling,
+                        cache.getHeight());
+
+                if ((x2 <= x) || (y2 <= y))
+                    return;
+
+                final Rectangle region = new Rectangle(cacheBounds.x + (x * subsampling), cacheBounds.y
+                        + (y * subsampling), (x2 - x) * subsampling, (y2 - y) * subsampling)
+                        .intersection(cacheBounds);
+                final BufferedImage part = Canvas2D.this.getARGBImage(t, z, c, region, subsampling, null);
+
+                if (part != null)
+                {
+                    final Graphics2D g = cache.createGraphics();
+
+                    g.setComposite(AlphaComposite.Src);
+                    g.drawImage(part, x, y, null);
+                    g.dispose();
+                }
+            }
+
+            @Override
+            public void tileLoaded(Tile tile)
+            {
+                // just draw the new tile in the image cache
+                synchronized (this)
+                {
+                    loadedTiles.add(tile);
+                }
+
+                refresh();
+            }
+
+            /**
+             * Draw the specified tiles (available in the tile cache) in the image cache (tiled rendering only).
+             */
+            private void drawTiles(List<Tile> tiles, int c)
+            {
+                final ImageTileCache tileCache = ImageTileCache.getInstance();
+                final int s = imageSubsampling;
+                final int resolution = 31 - Integer.numberOfLeadingZeros(s);
+                final Rectangle region = imageRegion.intersection(new Rectangle(getImageSizeX(), getImageSizeY()));
+                final int rx = region.x / s;
+                final int ry = region.y / s;
+                final Graphics2D g = image.createGraphics();
+                BufferedImage tileImage = null;
+
+                try
+                {
+                    g.setComposite(AlphaComposite.Src);
+
+                    for (Tile tile : tiles)
+                    {
+                        // tile from a previous view
+                        if ((tile.getT() != imageT) || (tile.getZ() != imageZ) || (tile.getResolution() != resolution))
+                            continue;
+
+                        final IcyBufferedImage img = tileCache.get(tile);
+
+                        // already discarded
+                        if (img == null)
+                            continue;
+
+                        final Rectangle tileRegion = tile.getRegion();
+
+                        tileImage = IcyBufferedImageUtil.getARGBImage((c == -1) ? img : img.getImage(c), getLut(),
+                                tileImage);
+                        g.drawImage(tileImage, tileRegion.x - rx, tileRegion.y - ry, null);
+                    }
+                }
+                finally
+                {
+                    g.dispose();
+                }
+            }
+
+            public synchronized boolean isValid()
+            {
+                return !needRebuild && loadedTiles.isEmpty() && isRegionValid();
+            }
+
+            /**
+             * Returns <code>false</code> if the image cache does not cover the visible part of the image or
+             * if its resolution does not match the current zoom factor anymore (viewport rendering only).
+             */
+            public boolean isRegionValid()
+            {
+                // full image rendering
+                if (!CanvasPreferences.getViewportRendering())
+                    return (imageRegion == null);
+
+                final Rectangle visibleRegion = getVisibleImageRegion(1, false);
+
+                // nothing visible --> nothing to render
+                if (visibleRegion.isEmpty())
+                    return true;
+
+                return (imageRegion != null) && (imageSubsampling == getRenderSubsampling())
+                        && imageRegion.contains(visibleRegion);
             }
 
             public boolean isProcessing()
@@ -647,7 +868,7 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             public void refresh()
             {
                 // rebuild cache
-                if (needRebuild)
+                if (!isValid())
                     processor.submit(this);
 
                 // just repaint in the meantime
@@ -659,6 +880,45 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
                 return image;
             }
 
+            /**
+             * Returns the region (image coordinates) covered by the image cache.<br>
+             * Returns <code>null</code> if the image cache covers the whole image at full resolution.
+             */
+            public Rectangle getImageRegion()
+            {
+                return imageRegion;
+            }
+
+            /**
+             * Returns the subsampling factor of the image cache (1 = full resolution)
+             */
+            public int getImageSubsampling()
+            {
+                return imageSubsampling;
+            }
+
+            /**
+             * Returns an image covering the whole plane (can be a low resolution image), used by minimap.
+             */
+            public BufferedImage getOverviewImage()
+            {
+                if (imageRegion == null)
+                    return image;
+
+                return overview;
+            }
+
+            /**
+             * Returns the subsampling factor of the image returned by {@link #getOverviewImage()}
+             */
+            public int getOverviewSubsampling()
+            {
+                if (imageRegion == null)
+                    return 1;
+
+                return overviewSubsampling;
+            }
+
             public boolean getNotEnoughMemory()
             {
                 return notEnoughMemory;
@@ -667,13 +927,119 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             @Override
             public void run()
             {
-                // important to set it to false at beginning
-                needRebuild = false;
+                // cache already up to date (rebuild can be requested several times while processing)
+                if (isValid())
+                    return;
+
+                final boolean rebuild;
+                final boolean rebuildOverview;
+                final Rectangle dirty;
+                final List<Tile> tiles;
+
+                synchronized (this)
+                {
+                    rebuild = needRebuild;
+                    rebuildOverview = needOverviewRebuild;
+                    // only a part of image changed ?
+                    dirty = getAndClearDirtyRegion();
+                    tiles = new ArrayList<Tile>(loadedTiles);
+
+                    // important to set it to false at beginning
+                    needRebuild = false;
+                    needOverviewRebuild = false;
+                    loadedTiles.clear();
+                }
+
+                final int t = getPositionT();
+                final int z = getPositionZ();
+                final int c = getPositionC();
 
                 try
                 {
-                    // build image
-                    image = Canvas2D.this.getARGBImage(getPositionT(), getPositionZ(), getPositionC(), image);
+                    if (CanvasPreferences.getViewportRendering())
+                    {
+                        final int subsampling = getRenderSubsampling();
+                        final Rectangle region = getVisibleImageRegion(subsampling, true);
+                        // huge plane not loaded in memory --> compose it from tiles of the resolution pyramid
+                        final boolean tiled = isTiledRendering(t, z);
+
+                        // only new tiles for the current view --> draw them in the image cache
+                        if (!rebuild && tiled && (image != null) && (imageRegion != null) && (imageT == t)
+                                && (imageZ == z) && isRegionValid())
+                        {
+                            drawTiles(tiles, c);
+                            getViewComponent().repaint();
+                            return;
+                        }
+
+                        // build low resolution overview of the whole image (also used as tiles placeholder)
+                        if (rebuildOverview || (overview == null))
+                        {
+                            final int subsamplingOverview = getOverviewRenderSubsampling();
+
+                            if (tiled)
+                                overview = getTiledARGBImage(t, z, c, null, subsamplingOverview, null, 0, null,
+                                        overview);
+                            else
+                                overview = Canvas2D.this.getARGBImage(t, z, c, null, subsamplingOverview, overview);
+                            overviewSubsampling = subsamplingOverview;
+                        }
+                        // only update changed part
+                        else if ((dirty != null) && !tiled)
+                            updateRegion(overview, null, overviewSubsampling, dirty, t, z, c);
+
+                        // only a part of the image changed and image cache still covers the visible region
+                        // --> just update the changed part
+                        if ((dirty != null) && !tiled && !region.isEmpty() && (image != null)
+                                && (imageRegion != null) && (subsampling == imageSubsampling)
+                                && imageRegion.contains(region))
+                            updateRegion(image, imageRegion, imageSubsampling, dirty, t, z, c);
+                        // something visible ?
+                        else if (!region.isEmpty())
+                        {
+                            final BufferedImage out;
+
+                            // reuse image only if same region (avoid displaying it at wrong position)
+                            if (region.equals(imageRegion) && (subsampling == imageSubsampling))
+                                out = image;
+                            else
+                                out = null;
+
+                            // build visible part of image
+                            final BufferedImage img;
+
+                            if (tiled)
+                            {
+                                // view changed --> we only want tiles of the current view
+                                if ((out == null) || (imageT != t) || (imageZ != z))
+                                    ImageTileCache.getInstance().cancel(this);
+
+                                img = getTiledARGBImage(t, z, c, region, subsampling, overview, overviewSubsampling,
+                                        this, out);
+                            }
+                            else
+                                img = Canvas2D.this.getARGBImage(t, z, c, region, subsampling, out);
+
+                            imageRegion = region;
+                            imageSubsampling = subsampling;
+                            imageT = t;
+                            imageZ = z;
+                            image = img;
+                        }
+                    }
+                    // only a part of the image changed --> just update the changed part
+                    else if ((dirty != null) && (image != null) && (imageRegion == null))
+                        updateRegion(image, null, 1, dirty, t, z, c);
+                    else
+                    {
+                        // build image
+                        image = Canvas2D.this.getARGBImage(t, z, c, (imageRegion == null) ? image : null);
+                        imageRegion = null;
+                        imageSubsampling = 1;
+                        // not anymore needed
+                        overview = null;
+                    }
+
                     notEnoughMemory = false;
                 }
                 catch (OutOfMemoryError e)
@@ -691,6 +1057,79 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
          */
         final ImageCache imageCache;
 
+        /**
+         * Returns the subsampling factor to use to render image for the current zoom factor.<br>
+         * We use a power of 2 factor so the cache is not rebuilt for each small zoom change.
+         */
+        int getRenderSubsampling()
+        {
+            final double scale = Math.max(getScaleX(), getScaleY());
+            int result = 1;
+
+            if (scale <= 0d)
+                return result;
+
+            while ((result * 2) <= (1d / scale))
+                result *= 2;
+
+            return result;
+        }
+
+        /**
+         * Returns the subsampling factor to use to render the whole image overview (minimap).
+         */
+        int getOverviewRenderSubsampling()
+        {
+            final int size = Math.max(getImageSizeX(), getImageSizeY());
+            int result = 1;
+
+            while ((size / result) > 512)
+                result *= 2;
+
+            return result;
+        }
+
+        /**
+         * Returns the visible region of the image (image coordinates) clipped to image bounds.
+         * 
+         * @param subsampling
+         *        region origin is aligned on this factor so the sampling grid stays the same while panning
+         * @param extended
+         *        if true the region is extended by half of its size so we don't need to rebuild cache for
+         *        each small translation
+         */
+        Rectangle getVisibleImageRegion(int subsampling, boolean extended)
+        {
+            final Rectangle2D visibleRect = getImageVisibleRect();
+            double x = visibleRect.getX();
+            double y = visibleRect.getY();
+            double w = visibleRect.getWidth();
+            double h = visibleRect.getHeight();
+
+            if (extended)
+            {
+                x -= w / 4d;
+                y -= h / 4d;
+                w += w / 2d;
+                h += h / 2d;
+            }
+
+            int x0 = (int) Math.floor(x);
+            int y0 = (int) Math.floor(y);
+            final int x1 = (int) Math.ceil(x + w);
+            final int y1 = (int) Math.ceil(y + h);
+
+            // align on subsampling grid
+            if (subsampling > 1)
+            {
+                x0 = (int) Math.floor((double) x0 / subsampling) * subsampling;
+                y0 = (int) Math.floor((double) y0 / subsampling) * subsampling;
+            }
+
+            return new Rectangle(x0, y0, x1 - x0, y1 - y0)
+                    .intersection(new Rectangle(0, 0, getImageSizeX(), getImageSizeY()));
+        }
+
         /**
          * internals
          */
@@ -832,6 +1271,8 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             rotationInfoTimer.removeActionListener(this);
             zoomInfoAlphaMover.shutDown();
             rotationInfoAlphaMover.shutDown();
+            // we don't need pending tiles anymore
+            ImageTileCache.getInstance().cancel(imageCache);
         }
 
         /**
@@ -1655,6 +2096,14 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
             imageCache.invalidCache();
         }
 
+        /**
+         * Only the specified region (image coordinates) of the image changed.
+         */
+        public void imageChanged(Rectangle region)
+        {
+            imageCache.invalidRegion(region);
+        }
+
         public void layersChanged()
         {
 
@@ -2709,6 +3158,202 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
         return null;
     }
 
+    /**
+     * Returns the ARGB image of the specified region taking only one pixel every <code>subsampling</code>
+     * pixels in X and Y directions.<br>
+     * See {@link IcyBufferedImageUtil#getARGBImage(IcyBufferedImage, Rectangle, int, icy.image.lut.LUT, BufferedImage)}
+     * 
+     * @param region
+     *        image region to render (whole image if <code>null</code>)
+     * @param subsampling
+     *        subsampling factor (1 = full resolution)
+     */
+    public BufferedImage getARGBImage(int t, int z, int c, Rectangle region, int subsampling, BufferedImage out)
+    {
+        final IcyBufferedImage img = Canvas2D.this.getImage(t, z, c);
+
+        if (img != null)
+            return IcyBufferedImageUtil.getARGBImage(img, region, subsampling, getLut(), out);
+
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> if the image at the specified position should be rendered from tiles of the
+     * image provider resolution pyramid (see {@link #getTiledARGBImage}).<br>
+     * This is the case for large planes of virtual stack (see {@link ImageProviderPlaneCache}) which are not
+     * loaded in memory.
+     */
+    public boolean isTiledRendering(int t, int z)
+    {
+        // tiled rendering is only done for the visible region
+        if (!CanvasPreferences.getViewportRendering())
+            return false;
+
+        final Sequence seq = getSequence();
+
+        if (seq == null)
+            return false;
+
+        final PlaneCache cache = seq.getPlaneCache();
+
+        if (!(cache instanceof ImageProviderPlaneCache))
+            return false;
+
+        final VolumetricImage volImg = seq.getVolumetricImage(t);
+
+        // plane loaded in memory (or modified) --> use it
+        if ((volImg == null) || !volImg.isStored(z))
+            return false;
+
+        return ((ImageProviderPlaneCache) cache).isLargePlane(seq.getSizeX(), seq.getSizeY(), seq.getSizeC(),
+                seq.getDataType_());
+    }
+
+    /**
+     * Returns the ARGB image of the specified region composed from tiles of the image provider resolution
+     * pyramid (the sequence should use an {@link ImageProviderPlaneCache}).<br>
+     * Only tiles of the resolution level matching <code>subsampling</code> and intersecting the region are
+     * used. Missing tiles are requested to the shared {@link ImageTileCache} and <code>listener</code> is
+     * notified when they are available, the <code>fallback</code> image is drawn in the meantime.
+     * 
+     * @param region
+     *        image region to render (whole image if <code>null</code>)
+     * @param subsampling
+     *        subsampling factor (power of 2, 1 = full resolution)
+     * @param fallback
+     *        low resolution ARGB image of the whole plane drawn where tiles are missing (can be
+     *        <code>null</code>)
+     * @param fallbackSubsampling
+     *        subsampling factor of the <code>fallback</code> image
+     * @param listener
+     *        listener notified when a missing tile is available, if <code>null</code> missing tiles are read
+     *        immediately. Pending requests of the listener are kept, use {@link ImageTileCache#cancel(TileListener)}
+     *        when they are not anymore wanted.
+     */
+    public BufferedImage getTiledARGBImage(int t, int z, int c, Rectangle region, int subsampling,
+            BufferedImage fallback, int fallbackSubsampling, TileListener listener, BufferedImage out)
+    {
+        final Sequence seq = getSequence();
+
+        if ((seq == null) || !(seq.getPlaneCache() instanceof ImageProviderPlaneCache))
+            return null;
+
+        final ImageProviderPlaneCache cache = (ImageProviderPlaneCache) seq.getPlaneCache();
+        final ImageTileCache tileCache = ImageTileCache.getInstance();
+        final ImageProvider provider = cache.getProvider();
+        final int serie = cache.getSerie();
+        final int sizeX = seq.getSizeX();
+        final int sizeY = seq.getSizeY();
+        final Rectangle imageBounds = new Rectangle(0, 0, sizeX, sizeY);
+        final Rectangle adjRegion = (region == null) ? imageBounds : region.intersection(imageBounds);
+
+        if (adjRegion.isEmpty())
+            return null;
+
+        final int s = Math.max(1, subsampling);
+        // resolution level matching subsampling (level n = original resolution / 2^n)
+        final int resolution = 31 - Integer.numberOfLeadingZeros(s);
+        // size of resolution level
+        final int levelSizeX = Math.max(1, sizeX / s);
+        final int levelSizeY = Math.max(1, sizeY / s);
+        // region in resolution level coordinates
+        final int rx = adjRegion.x / s;
+        final int ry = adjRegion.y / s;
+        final int outW = (adjRegion.width + (s - 1)) / s;
+        final int outH = (adjRegion.height + (s - 1)) / s;
+        final Rectangle levelRegion = new Rectangle(rx, ry, outW, outH).intersection(new Rectangle(0, 0, levelSizeX,
+                levelSizeY));
+        int tileW;
+        int tileH;
+
+        try
+        {
+            synchronized (provider)
+            {
+                tileW = provider.getTileWidth(serie);
+                tileH = provider.getTileHeight(serie);
+            }
+        }
+        catch (Exception e)
+        {
+            tileW = 0;
+            tileH = 0;
+        }
+
+        // use reasonable tile size (default provider implementation returns whole image lines)
+        tileW = Math.min(Math.max(tileW, 256), 1024);
+        tileH = Math.min(Math.max(tileH, 256), 1024);
+
+        final BufferedImage result;
+
+        if ((out != null) && (out.getWidth() == outW) && (out.getHeight() == outH))
+            result = out;
+        else
+            result = new BufferedImage(outW, outH, BufferedImage.TYPE_INT_ARGB);
+
+        final Graphics2D g = result.createGraphics();
+
+        try
+        {
+            // clear
+            g.setComposite(AlphaComposite.Src);
+            g.setColor(new Color(0, 0, 0, 0));
+            g.fillRect(0, 0, outW, outH);
+
+            // draw low resolution image where tiles are missing
+            if ((fallback != null) && (fallbackSubsampling > 0))
+            {
+                final double fs = fallbackSubsampling;
+
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(fallback, 0, 0, outW, outH, (int) (adjRegion.x / fs), (int) (adjRegion.y / fs),
+                        (int) Math.ceil((adjRegion.x + adjRegion.width) / fs),
+                        (int) Math.ceil((adjRegion.y + adjRegion.height) / fs), null);
+            }
+
+            if (levelRegion.isEmpty())
+                return result;
+
+            final int tx0 = levelRegion.x / tileW;
+            final int ty0 = levelRegion.y / tileH;
+            final int tx1 = (levelRegion.x + levelRegion.width - 1) / tileW;
+            final int ty1 = (levelRegion.y + levelRegion.height - 1) / tileH;
+            final Rectangle levelBounds = new Rectangle(0, 0, levelSizeX, levelSizeY);
+            BufferedImage tileImage = null;
+
+            for (int ty = ty0; ty <= ty1; ty++)
+            {
+                for (int tx = tx0; tx <= tx1; tx++)
+                {
+                    final Rectangle tileRegion = new Rectangle(tx * tileW, ty * tileH, tileW, tileH)
+                            .intersection(levelBounds);
+                    final Tile tile = new Tile(provider, serie, resolution, z, t, tileRegion);
+                    final IcyBufferedImage img;
+
+                    if (listener != null)
+                        img = tileCache.getTile(tile, listener);
+                    else
+                        img = tileCache.loadTile(tile);
+
+                    // not yet available
+                    if (img == null)
+                        continue;
+
+                    tileImage = IcyBufferedImageUtil.getARGBImage((c == -1) ? img : img.getImage(c), getLut(),
+                            tileImage);
+                    g.drawImage(tileImage, tileRegion.x - rx, tileRegion.y - ry, null);
+                }
+            }
+        }
+        finally
+        {
+            g.dispose();
+        }
+
+        return result;
+    }
+
     @Override
     public BufferedImage getRenderedImage(int t, int z, int c, boolean cv)
     {
@@ -3088,6 +3733,22 @@ public class Canvas2D extends IcyCanvas2D implements ToolRibbonTaskListener
         }
     }
 
+    @Override
+    protected void sequenceDataChanged(IcyBufferedImage image, SequenceEventType type, Rectangle region)
+    {
+        // only a part of the displayed image changed ? --> only this part is rebuilt
+        if ((region != null) && (image != null) && (canvasView != null)
+                && (image == getImage(getPositionT(), getPositionZ(), -1)))
+        {
+            super.sequenceDataChanged(image, type);
+
+            canvasView.imageChanged(region);
+            canvasView.refresh();
+        }
+        else
+            sequenceDataChanged(image, type);
+    }
+
     @Override
     protected void sequenceDataChanged(IcyBufferedImage image, SequenceEventType type)
     {
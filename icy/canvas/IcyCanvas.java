@@ -51,9 +51,11 @@ import icy.plugin.PluginLoader;
 import icy.plugin.interface_.PluginCanvas;
 import icy.roi.ROI;
 import icy.sequence.DimensionId;
+import icy.sequence.PlaneCache;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent;
 import icy.sequence.SequenceEvent.SequenceEventType;
+import icy.sequence.SequenceGroupEventListener;
 import icy.sequence.SequenceListener;
 import icy.system.IcyExceptionHandler;
 import icy.system.thread.ThreadUtil;
@@ -66,6 +68,7 @@ import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
@@ -104,8 +107,8 @@ import plugins.kernel.canvas.VtkCanvasPlugin;
  * <br>
  *         (Canvas2D and Canvas3D derives from IcyCanvas)<br>
  */
-public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerListener, SequenceListener, LUTListener,
-        ChangeListener, LayerListener
+public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerListener, SequenceListener,
+        SequenceGroupEventListener, LUTListener, ChangeListener, LayerListener
 {
     protected class IcyCanvasImageOverlay extends Overlay
     {
@@ -4357,6 +4360,8 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
                             tNav.setValue(curT);
                         break;
                 }
+                // load neighbour planes in background if needed
+                prefetchPlanes();
                 // refresh mouse panel informations
                 mouseInfPanel.updateInfos(this);
                 break;
@@ -4371,6 +4376,25 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         fireCanvasChangedEvent(event);
     }
 
+    /**
+     * Load in background the Z and T neighbours planes of current position if the sequence uses a
+     * {@link PlaneCache} (virtual stack).
+     */
+    protected void prefetchPlanes()
+    {
+        final Sequence seq = getSequence();
+
+        if (seq == null)
+            return;
+
+        final PlaneCache cache = seq.getPlaneCache();
+        final int z = getPositionZ();
+        final int t = getPositionT();
+
+        if ((cache != null) && (z != -1) && (t != -1))
+            cache.prefetch(seq, t, z);
+    }
+
     /**
      * layer property has changed (packed event)
      */
@@ -4480,6 +4504,21 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
         ThreadUtil.runSingle(guiUpdater);
     }
 
+    /**
+     * sequence data has changed
+     * 
+     * @param image
+     *        image which has changed (null if global data changed)
+     * @param type
+     *        event type
+     * @param region
+     *        changed region of the image (<code>null</code> if the whole image changed)
+     */
+    protected void sequenceDataChanged(IcyBufferedImage image, SequenceEventType type, Rectangle region)
+    {
+        sequenceDataChanged(image, type);
+    }
+
     /**
      * @deprecated Use {@link #sequenceOverlayChanged(Overlay, SequenceEventType)} instead.
      */
@@ -4578,28 +4617,41 @@ public abstract class IcyCanvas extends JPanel implements KeyListener, ViewerLis
                 break;
 
             case SEQUENCE_DATA:
-                sequenceDataChanged((IcyBufferedImage) event.getSource(), event.getType());
+                sequenceDataChanged((IcyBufferedImage) event.getSource(), event.getType(), event.getRegion());
                 break;
 
             case SEQUENCE_OVERLAY:
-                final Overlay overlay = (Overlay) event.getSource();
+                // group event --> layer events are packed
+                beginUpdate();
+                try
+                {
+                    for (SequenceEvent e : event.getSingleEvents())
+                    {
+                        final Overlay overlay = (Overlay) e.getSource();
 
-                sequenceOverlayChanged(overlay, event.getType());
+                        sequenceOverlayChanged(overlay, e.getType());
 
-                // backward compatibility
-                @SuppressWarnings("deprecation")
-                final Painter painter;
+                        // backward compatibility
+                        @SuppressWarnings("deprecation")
+                        final Painter painter;
 
-                if (overlay instanceof OverlayWrapper)
-                    painter = ((OverlayWrapper) overlay).getPainter();
-                else
-                    painter = overlay;
+                        if (overlay instanceof OverlayWrapper)
+                            painter = ((OverlayWrapper) overlay).getPainter();
+                        else
+                            painter = overlay;
 
-                sequencePainterChanged(painter, event.getType());
+                        sequencePainterChanged(painter, e.getType());
+                    }
+                }
+                finally
+                {
+                    endUpdate();
+                }
                 break;
 
             case SEQUENCE_ROI:
-                sequenceROIChanged((ROI) event.getSource(), event.getType());
+                for (SequenceEvent e : event.getSingleEvents())
+                    sequenceROIChanged((ROI) e.getSource(), e.getType());
                 break;
         }
     }
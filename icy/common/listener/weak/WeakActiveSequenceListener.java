@@ -7,11 +7,15 @@ import icy.gui.main.ActiveSequenceListener;
 import icy.main.Icy;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent;
+import icy.sequence.SequenceGroupEventListener;
 
 /**
+ * Group events are forwarded as is only if the wrapped listener is a {@link SequenceGroupEventListener}.
+ * 
  * @author Stephane
  */
-public class WeakActiveSequenceListener extends WeakListener<ActiveSequenceListener> implements ActiveSequenceListener
+public class WeakActiveSequenceListener extends WeakListener<ActiveSequenceListener> implements ActiveSequenceListener,
+        SequenceGroupEventListener
 {
     public WeakActiveSequenceListener(ActiveSequenceListener listener)
     {
@@ -49,6 +53,14 @@ public class WeakActiveSequenceListener extends WeakListener<ActiveSequenceListe
         final ActiveSequenceListener listener = getListener(null);
 
         if (listener != null)
-            listener.activeSequenceChanged(event);
+        {
+            if (!event.isGroupEvent() || (listener instanceof SequenceGroupEventListener))
+                listener.activeSequenceChanged(event);
+            else
+            {
+                for (SequenceEvent e : event.getSingleEvents())
+                    listener.activeSequenceChanged(e);
+            }
+        }
     }
 }
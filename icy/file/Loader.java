@@ -34,11 +34,13 @@ import icy.plugin.PluginLauncher;
 import icy.plugin.PluginLoader;
 import icy.preferences.GeneralPreferences;
 import icy.sequence.DimensionId;
+import icy.sequence.ImageProviderPlaneCache;
 import icy.sequence.MetaDataUtil;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceIdImporter;
 import icy.sequence.SequenceImporter;
 import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
 import icy.system.thread.ThreadUtil;
 import icy.type.collection.CollectionUtil;
 import icy.util.OMEUtil;
@@ -2462,48 +2464,96 @@ public class Loader
                 if (selectedSeries.length == 0)
                     return null;
 
-                for (int s : selectedSeries)
+                // virtual stack: planes are read on demand from a dedicated importer (one per serie) which
+                // stays opened
+                final boolean virtualStack = GeneralPreferences.getVirtualStack();
+                final List<SequenceFileImporter> providers = new ArrayList<SequenceFileImporter>();
+                boolean done = false;
+
+                try
                 {
-                    final Sequence seq = createNewSequence(path, meta, s, serieCount > 1);
-                    final int sizeZ = MetaDataUtil.getSizeZ(meta, s);
-                    final int sizeT = MetaDataUtil.getSizeT(meta, s);
-                    // set local length for loader frame
-                    final int numImage = sizeZ * sizeT * selectedSeries.length;
-                    final double progressStep = 100d / numImage;
-                    double progress = 0d;
+                    for (int s : selectedSeries)
+                    {
+                        final Sequence seq = createNewSequence(path, meta, s, serieCount > 1);
+                        final int sizeZ = MetaDataUtil.getSizeZ(meta, s);
+                        final int sizeT = MetaDataUtil.getSizeT(meta, s);
+                        // set local length for loader frame
+                        final int numImage = sizeZ * sizeT * selectedSeries.length;
+                        final double progressStep = 100d / numImage;
+                        double progress = 0d;
 
-                    if (loadingFrame != null)
-                        progress = loadingFrame.getPosition();
+                        if (loadingFrame != null)
+                            progress = loadingFrame.getPosition();
 
-                    seq.beginUpdate();
-                    try
-                    {
-                        for (int t = 0; t < sizeT; t++)
+                        // cancel requested ? --> return null to inform about cancel
+                        if ((loadingFrame != null) && loadingFrame.isCancelRequested())
+                            return null;
+
+                        final SequenceFileImporter provider;
+
+                        if (virtualStack)
+                            provider = openVirtualStackImporter(importer, path);
+                        else
+                            provider = null;
+
+                        seq.beginUpdate();
+                        try
                         {
-                            for (int z = 0; z < sizeZ; z++)
+                            // virtual stack --> only the first plane is read here
+                            if (provider != null)
                             {
-                                // cancel requested ? --> return null to inform about cancel
-                                if ((loadingFrame != null) && loadingFrame.isCancelRequested())
-                                    return null;
+                                // provider is closed on failure
+                                new ImageProviderPlaneCache(provider, s, SystemUtil.getJavaMaxMemory() / 4)
+                                        .initialize(seq);
+                                providers.add(provider);
 
-                                // load image and add it to the sequence
-                                seq.setImage(t, z, importer.getImage(s, z, t));
-
-                                progress += progressStep;
+                                progress += progressStep * sizeZ * sizeT;
 
                                 // notify progress to loader frame
                                 if (loadingFrame != null)
                                     loadingFrame.setPosition(progress);
                             }
+                            else
+                            {
+                                for (int t = 0; t < sizeT; t++)
+                                {
+                                    for (int z = 0; z < sizeZ; z++)
+                                    {
+                                        // cancel requested ? --> return null to inform about cancel
+                                        if ((loadingFrame != null) && loadingFrame.isCancelRequested())
+                                            return null;
+
+                                        // load image and add it to the sequence
+                                        seq.setImage(t, z, importer.getImage(s, z, t));
+
+                                        progress += progressStep;
+
+                                        // notify progress to loader frame
+                                        if (loadingFrame != null)
+                                            loadingFrame.setPosition(progress);
+                                    }
+                                }
+                            }
+                        }
+                        finally
+                        {
+                            seq.endUpdate();
                         }
+
+                        // add sequence to result
+                        result.add(seq);
                     }
-                    finally
+
+                    done = true;
+                }
+                finally
+                {
+                    // cancelled or failed --> close virtual stack importers (sequences are dropped)
+                    if (!done)
                     {
-                        seq.endUpdate();
+                        for (SequenceFileImporter provider : providers)
+                            provider.close();
                     }
-
-                    // add sequence to result
-                    result.add(seq);
                 }
 
                 // no need to test with others importer
@@ -2529,6 +2579,29 @@ public class Loader
         return result;
     }
 
+    /**
+     * Returns a new instance of the specified importer opened on the given file, used to read planes on
+     * demand (virtual stack).<br>
+     * Returns <code>null</code> if the importer cannot be created or opened.
+     */
+    static SequenceFileImporter openVirtualStackImporter(SequenceFileImporter importer, String path)
+    {
+        try
+        {
+            final SequenceFileImporter result = importer.getClass().newInstance();
+
+            if (result.open(path, 0))
+                return result;
+        }
+        catch (Throwable t)
+        {
+            System.err.println("Cannot open '" + path + "' as virtual stack, loading all images...");
+            IcyExceptionHandler.showErrorMessage(t, false, true);
+        }
+
+        return null;
+    }
+
     static Sequence createNewSequence(String path, OMEXMLMetadataImpl meta, int serie, boolean multiSerie)
     {
         // create a new sequence
@@ -35,7 +35,9 @@ import icy.plugin.PluginLoader.PluginLoaderListener;
 import icy.plugin.interface_.PluginROIDescriptor;
 import icy.preferences.XMLPreferences;
 import icy.roi.ROI;
+import icy.roi.ROIBatchMeasure;
 import icy.roi.ROIDescriptor;
+import icy.roi.ROIDescriptorCache;
 import icy.roi.ROIEvent;
 import icy.roi.ROIEvent.ROIEventType;
 import icy.roi.ROIListener;
@@ -43,9 +45,12 @@ import icy.roi.ROIUtil;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent;
 import icy.sequence.SequenceEvent.SequenceEventSourceType;
+import icy.sequence.SequenceGroupEventListener;
 import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
 import icy.system.thread.InstanceProcessor;
 import icy.system.thread.ThreadUtil;
+import icy.type.point.Point5D;
 import icy.util.ClassUtil;
 import icy.util.StringUtil;
 
@@ -54,6 +59,9 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Image;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
@@ -62,6 +70,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -80,9 +89,17 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
+import javax.swing.RowSorter;
+import javax.swing.RowSorter.SortKey;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SortOrder;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
+import javax.swing.event.RowSorterEvent;
+import javax.swing.event.RowSorterListener;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableColumn;
@@ -97,6 +114,8 @@ import org.jdesktop.swingx.table.TableColumnExt;
 import org.pushingpixels.substance.api.renderers.SubstanceDefaultTableCellRenderer;
 import org.pushingpixels.substance.api.skin.SkinChangeListener;
 
+import plugins.kernel.roi.descriptor.intensity.ROIIntensityDescriptorsPlugin;
+import plugins.kernel.roi.descriptor.intensity.ROIIntensityDescriptorsPlugin.IntensityDescriptorInfos;
 import plugins.kernel.roi.descriptor.intensity.ROIMaxIntensityDescriptor;
 import plugins.kernel.roi.descriptor.intensity.ROIMeanIntensityDescriptor;
 import plugins.kernel.roi.descriptor.intensity.ROIMinIntensityDescriptor;
@@ -105,6 +124,7 @@ import plugins.kernel.roi.descriptor.measure.ROIAreaDescriptor;
 import plugins.kernel.roi.descriptor.measure.ROIContourDescriptor;
 import plugins.kernel.roi.descriptor.measure.ROIInteriorDescriptor;
 import plugins.kernel.roi.descriptor.measure.ROIMassCenterCDescriptor;
+import plugins.kernel.roi.descriptor.measure.ROIMassCenterDescriptorsPlugin;
 import plugins.kernel.roi.descriptor.measure.ROIMassCenterTDescriptor;
 import plugins.kernel.roi.descriptor.measure.ROIMassCenterXDescriptor;
 import plugins.kernel.roi.descriptor.measure.ROIMassCenterYDescriptor;
@@ -131,7 +151,7 @@ import plugins.kernel.roi.descriptor.property.ROISizeZDescriptor;
  * Abstract ROI panel component
  */
 public abstract class AbstractRoisPanel extends ExternalizablePanel implements ActiveSequenceListener,
-        TextChangeListener, ListSelectionListener, PluginLoaderListener
+        SequenceGroupEventListener, TextChangeListener, ListSelectionListener, PluginLoaderListener
 {
     /**
      * 
@@ -217,6 +237,8 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
     protected IcyTextField nameFilter;
     protected JLabel roiNumberLabel;
     protected JLabel selectedRoiNumberLabel;
+    protected JLabel computationLabel;
+    protected JScrollPane roiScrollPane;
 
     // PluginDescriptors / ROIDescriptor map
     protected Map<ROIDescriptor, PluginROIDescriptor> descriptorMap;
@@ -252,8 +274,14 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
     protected final DescriptorComputer primaryDescriptorComputer;
     protected final DescriptorComputer basicDescriptorComputer;
     protected final DescriptorComputer advancedDescriptorComputer;
+    protected final Timer computationStatusTimer;
+
+    // computation priorities (updated from EDT)
+    protected volatile Set<ROIResults> visibleRoiResults;
+    protected volatile ColumnInfo sortedColumn;
 
     protected long lastTableDataRefresh;
+    protected long lastComputedCount;
 
     /**
      * Create a new ROI table panel.<br>
@@ -357,13 +385,30 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
         processor.setThreadName("ROI panel GUI refresher");
         processor.setKeepAliveTime(30, TimeUnit.SECONDS);
 
-        primaryDescriptorComputer = new DescriptorComputer(DescriptorType.PRIMARY);
-        basicDescriptorComputer = new DescriptorComputer(DescriptorType.BASIC);
-        advancedDescriptorComputer = new DescriptorComputer(DescriptorType.EXTERNAL);
+        visibleRoiResults = new HashSet<ROIResults>();
+        sortedColumn = null;
+        lastComputedCount = 0L;
+
+        // basic and external descriptors can be heavy to compute so we use several threads for them
+        final int numThread = Math.max(1, Math.min(SystemUtil.getNumberOfCPUs() - 1, 4));
+
+        primaryDescriptorComputer = new DescriptorComputer(DescriptorType.PRIMARY, 1);
+        basicDescriptorComputer = new DescriptorComputer(DescriptorType.BASIC, numThread);
+        advancedDescriptorComputer = new DescriptorComputer(DescriptorType.EXTERNAL, numThread);
         primaryDescriptorComputer.start();
         basicDescriptorComputer.start();
         advancedDescriptorComputer.start();
 
+        // refresh computation status every second (only while panel is displayed)
+        computationStatusTimer = new Timer(1000, new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                refreshComputationStatus();
+            }
+        });
+
         // update descriptors list (this rebuild the column model of the tree table)
         refreshDescriptorList();
         // set shortcuts
@@ -384,6 +429,8 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
 
         selectedRoiNumberLabel = new JLabel("0");
         roiNumberLabel = new JLabel("0");
+        computationLabel = new JLabel();
+        computationLabel.setToolTipText("Pending descriptor computations and computation speed");
 
         // build roiTable model
         roiTableModel = new ROITableModel();
@@ -412,12 +459,33 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
         roiSelectionModel.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
         roiTable.setRowSorter(new ROITableSortController<ROITableModel>());
+        // sorted column descriptors should be computed first
+        roiTable.getRowSorter().addRowSorterListener(new RowSorterListener()
+        {
+            @Override
+            public void sorterChanged(RowSorterEvent e)
+            {
+                if (e.getType() == RowSorterEvent.Type.SORT_ORDER_CHANGED)
+                    updateComputationPriorities();
+            }
+        });
+
+        roiScrollPane = new JScrollPane(roiTable, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
+                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        // visible rows descriptors should be computed first
+        roiScrollPane.getViewport().addChangeListener(new ChangeListener()
+        {
+            @Override
+            public void stateChanged(ChangeEvent e)
+            {
+                updateComputationPriorities();
+            }
+        });
 
         final JPanel middlePanel = new JPanel(new BorderLayout(0, 0));
 
         middlePanel.add(roiTable.getTableHeader(), BorderLayout.NORTH);
-        middlePanel.add(new JScrollPane(roiTable, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
-                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER), BorderLayout.CENTER);
+        middlePanel.add(roiScrollPane, BorderLayout.CENTER);
 
         final IcyButton settingButton = new IcyButton(RoiActions.settingAction);
         settingButton.setHideActionText(true);
@@ -425,7 +493,8 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
 
         setLayout(new BorderLayout());
         add(GuiUtil.createLineBoxPanel(nameFilter, Box.createHorizontalStrut(8), selectedRoiNumberLabel, new JLabel(
-                " / "), roiNumberLabel, Box.createHorizontalStrut(4), settingButton), BorderLayout.NORTH);
+                " / "), roiNumberLabel, Box.createHorizontalStrut(8), computationLabel, Box.createHorizontalStrut(4),
+                settingButton), BorderLayout.NORTH);
         add(middlePanel, BorderLayout.CENTER);
 
         validate();
@@ -549,6 +618,8 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
     {
         final Map<ColumnInfo, DescriptorResult> results = roiResults.descriptorResults;
         final ROIDescriptor descriptor = columnInfo.descriptor;
+        // results version at computation start
+        final ResultsVersion version = roiResults.getVersion(seq);
         final DescriptorResult result;
 
         synchronized (results)
@@ -568,6 +639,14 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
                 plugin = descriptorMap.get(descriptor);
             }
 
+            // already computed and cached on ROI ?
+            if (setCachedROIResult(roiResults, seq, columnInfo, version))
+            {
+                // refresh table data
+                refreshTableData();
+                return;
+            }
+
             if (plugin != null)
             {
                 final Map<ROIDescriptor, Object> newResults;
@@ -589,26 +668,7 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
                     else
                         newResults = plugin.compute(roiResults.roi, seq);
 
-                    for (Entry<ROIDescriptor, Object> entryNewResult : newResults.entrySet())
-                    {
-                        // get the column for this result
-                        final ColumnInfo resultColumnInfo = getColumnInfo(entryNewResult.getKey(), columnInfo.channel);
-                        final DescriptorResult oResult;
-
-                        synchronized (results)
-                        {
-                            // get corresponding result
-                            oResult = results.get(resultColumnInfo);
-                        }
-
-                        if (oResult != null)
-                        {
-                            // set the result value
-                            oResult.setValue(entryNewResult.getValue());
-                            // result is up to date
-                            oResult.setOutdated(false);
-                        }
-                    }
+                    setROIResults(roiResults, seq, newResults, columnInfo.channel, version);
                 }
                 catch (Throwable t)
                 {
@@ -633,7 +693,8 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
                                 oResult = results.get(resultColumnInfo);
                             }
 
-                            if (oResult != null)
+                            // ROI changed in the meantime --> keep it outdated
+                            if ((oResult != null) && (roiResults.version == version.version))
                             {
                                 oResult.setValue(null);
                                 oResult.setOutdated(false);
@@ -648,6 +709,198 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
         }
     }
 
+    /**
+     * Set the specified descriptors values in the ROI results (results are then up to date) and store them in the
+     * ROI descriptor cache.<br>
+     * Values are discarded if the results have been invalidated since the computation started (results version
+     * changed).
+     */
+    protected void setROIResults(ROIResults roiResults, Sequence seq, Map<ROIDescriptor, Object> newResults,
+            int channel, ResultsVersion version)
+    {
+        final Map<ColumnInfo, DescriptorResult> results = roiResults.descriptorResults;
+        final ROIDescriptorCache cache = roiResults.roi.getDescriptorCache();
+
+        for (Entry<ROIDescriptor, Object> entryNewResult : newResults.entrySet())
+        {
+            // ROI changed in the meantime --> obsolete result
+            if (roiResults.version != version.version)
+                return;
+
+            // cache it (versions at computation start are used so obsolete values are never valid)
+            cache.put(entryNewResult.getKey(), seq, channel, entryNewResult.getValue(), version.roiVersion,
+                    version.sequenceVersion);
+
+            // get the column for this result
+            final ColumnInfo resultColumnInfo = getColumnInfo(entryNewResult.getKey(), channel);
+            final DescriptorResult oResult;
+
+            synchronized (results)
+            {
+                // get corresponding result
+                oResult = results.get(resultColumnInfo);
+            }
+
+            if (oResult != null)
+            {
+                // set the result value
+                oResult.setValue(entryNewResult.getValue());
+                // result is up to date
+                oResult.setOutdated(false);
+            }
+        }
+    }
+
+    /**
+     * Set the result of the specified column from the ROI descriptor cache if available.<br>
+     * Returns <code>true</code> if the cached value has been used.
+     */
+    protected boolean setCachedROIResult(ROIResults roiResults, Sequence seq, ColumnInfo columnInfo,
+            ResultsVersion version)
+    {
+        final Object value = roiResults.roi.getDescriptorCache().get(columnInfo.descriptor, seq, columnInfo.channel);
+
+        if (value == null)
+            return false;
+
+        setROIResults(roiResults, seq, Collections.singletonMap(columnInfo.descriptor, value), columnInfo.channel,
+                version);
+
+        return true;
+    }
+
+    /**
+     * Compute the outdated intensity descriptors of the specified ROIs in a single pass over the sequence data (see
+     * {@link ROIBatchMeasure}) and the outdated mass center descriptors in a single pass over the ROI masks (no pixel
+     * is read), this is much faster than computing them ROI by ROI.<br>
+     * Descriptors which cannot be computed this way are left outdated.
+     */
+    protected void computeBatchROIResults(ROIResults[] roiResultsList, Sequence seq, DescriptorType type)
+    {
+        // channel --> ROI results needing intensity descriptors
+        final Map<Integer, Set<ROIResults>> intensityResults = new HashMap<Integer, Set<ROIResults>>();
+        // ROI results needing mass center descriptors --> channel of column
+        final Map<ROIResults, Integer> massCenterResults = new LinkedHashMap<ROIResults, Integer>();
+        // results version at computation start
+        final Map<ROIResults, ResultsVersion> versions = new HashMap<ROIResults, ResultsVersion>();
+
+        for (ROIResults roiResults : roiResultsList)
+        {
+            final ResultsVersion version = roiResults.getVersion(seq);
+
+            versions.put(roiResults, version);
+
+            final Map<ColumnInfo, DescriptorResult> results = roiResults.descriptorResults;
+            final ColumnInfo[] columnInfos;
+
+            synchronized (results)
+            {
+                columnInfos = results.keySet().toArray(new ColumnInfo[results.size()]);
+            }
+
+            for (ColumnInfo columnInfo : columnInfos)
+            {
+                final DescriptorResult result;
+
+                synchronized (results)
+                {
+                    result = results.get(columnInfo);
+                }
+
+                if ((columnInfo.getDescriptorType() != type) || (result == null) || !result.isOutdated())
+                    continue;
+                // already computed and cached on ROI
+                if (setCachedROIResult(roiResults, seq, columnInfo, version))
+                    continue;
+
+                final PluginROIDescriptor plugin;
+
+                synchronized (descriptorMap)
+                {
+                    plugin = descriptorMap.get(columnInfo.descriptor);
+                }
+
+                final Integer channel = Integer.valueOf(columnInfo.channel);
+
+                if (plugin instanceof ROIIntensityDescriptorsPlugin)
+                {
+                    Set<ROIResults> channelResults = intensityResults.get(channel);
+
+                    if (channelResults == null)
+                    {
+                        channelResults = new LinkedHashSet<ROIResults>();
+                        intensityResults.put(channel, channelResults);
+                    }
+
+                    channelResults.add(roiResults);
+                }
+                else if (plugin instanceof ROIMassCenterDescriptorsPlugin)
+                    massCenterResults.put(roiResults, channel);
+            }
+        }
+
+        // nothing to compute
+        if (intensityResults.isEmpty() && massCenterResults.isEmpty())
+            return;
+
+        try
+        {
+            for (Entry<Integer, Set<ROIResults>> entry : intensityResults.entrySet())
+            {
+                final int channel = entry.getKey().intValue();
+                final Map<ROI, ROIResults> rois = new LinkedHashMap<ROI, ROIResults>();
+
+                for (ROIResults roiResults : entry.getValue())
+                {
+                    final ROI roi = roiResults.getRoiForChannel(channel);
+
+                    if (roi != null)
+                        rois.put(roi, roiResults);
+                }
+
+                for (Entry<ROI, IntensityDescriptorInfos> infos : ROIIntensityDescriptorsPlugin
+                        .computeIntensityDescriptors(rois.keySet(), seq, false).entrySet())
+                {
+                    final ROIResults roiResults = rois.get(infos.getKey());
+
+                    setROIResults(roiResults, seq,
+                            ROIIntensityDescriptorsPlugin.getDescriptorValues(infos.getValue()), channel,
+                            versions.get(roiResults));
+                }
+            }
+
+            if (!massCenterResults.isEmpty())
+            {
+                final Map<ROI, ROIResults> rois = new LinkedHashMap<ROI, ROIResults>();
+
+                for (ROIResults roiResults : massCenterResults.keySet())
+                    rois.put(roiResults.roi, roiResults);
+
+                for (Entry<ROI, Point5D> massCenter : ROIMassCenterDescriptorsPlugin.computeMassCenters(
+                        rois.keySet(), seq).entrySet())
+                {
+                    final ROIResults roiResults = rois.get(massCenter.getKey());
+
+                    setROIResults(roiResults, seq,
+                            ROIMassCenterDescriptorsPlugin.getDescriptorValues(massCenter.getValue()),
+                            massCenterResults.get(roiResults).intValue(), versions.get(roiResults));
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // preserve interrupted state
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e)
+        {
+            // ignore, remaining descriptors are computed ROI by ROI
+        }
+
+        // refresh table data
+        refreshTableData();
+    }
+
     /**
      * Return index of specified ROI in the filtered ROI list
      */
@@ -1085,12 +1338,100 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
                     if (anchorInd != -1)
                         ((DefaultListSelectionModel) roiSelectionModel).setAnchorSelectionIndex(anchorInd);
                 }
+
+                updateComputationPriorities();
             }
         });
 
         refreshRoiNumbers();
     }
 
+    /**
+     * Update the visible rows and sorted column used to prioritize descriptor computation (should be called from
+     * EDT).
+     */
+    protected void updateComputationPriorities()
+    {
+        final Set<ROIResults> visibles = new LinkedHashSet<ROIResults>();
+        final Rectangle visibleRect = roiTable.getVisibleRect();
+
+        if (!visibleRect.isEmpty())
+        {
+            int first = roiTable.rowAtPoint(visibleRect.getLocation());
+            int last = roiTable.rowAtPoint(new Point(visibleRect.x, (visibleRect.y + visibleRect.height) - 1));
+
+            if (first == -1)
+                first = 0;
+            if (last == -1)
+                last = roiTable.getRowCount() - 1;
+
+            for (int row = first; row <= last; row++)
+            {
+                try
+                {
+                    final ROIResults roiResults = getRoiResults(roiTable.convertRowIndexToModel(row));
+
+                    if (roiResults != null)
+                        visibles.add(roiResults);
+                }
+                catch (IndexOutOfBoundsException e)
+                {
+                    // table changed while we are iterating, ignore
+                }
+            }
+        }
+
+        ColumnInfo sorted = null;
+        final RowSorter<? extends TableModel> sorter = roiTable.getRowSorter();
+
+        if (sorter != null)
+        {
+            final List<? extends SortKey> sortKeys = sorter.getSortKeys();
+
+            if (!sortKeys.isEmpty() && (sortKeys.get(0).getSortOrder() != SortOrder.UNSORTED))
+                sorted = getColumnInfo(sortKeys.get(0).getColumn());
+        }
+
+        visibleRoiResults = visibles;
+        sortedColumn = sorted;
+    }
+
+    @Override
+    public void addNotify()
+    {
+        super.addNotify();
+
+        computationStatusTimer.start();
+    }
+
+    @Override
+    public void removeNotify()
+    {
+        computationStatusTimer.stop();
+
+        super.removeNotify();
+    }
+
+    /**
+     * Refresh the pending descriptor computation status (should be called from EDT).
+     */
+    protected void refreshComputationStatus()
+    {
+        final int pending = primaryDescriptorComputer.getPendingCount() + basicDescriptorComputer.getPendingCount()
+                + advancedDescriptorComputer.getPendingCount();
+        final long computed = primaryDescriptorComputer.getComputedCount()
+                + basicDescriptorComputer.getComputedCount() + advancedDescriptorComputer.getComputedCount();
+        // timer runs every second
+        final long speed = computed - lastComputedCount;
+
+        lastComputedCount = computed;
+
+        if ((pending == 0) && (speed == 0))
+            computationLabel.setText("");
+        else
+            computationLabel.setText(pending + " pending (" + speed + " ROI/s)");
+    }
+
     public void refreshTableSelection()
     {
         processor.submit(true, tableSelectionRefresher);
@@ -1625,17 +1966,41 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
         }
     }
 
+    /**
+     * Versions of ROI results, ROI content and sequence data at computation start.
+     */
+    protected static class ResultsVersion
+    {
+        public final int version;
+        public final long roiVersion;
+        public final long sequenceVersion;
+
+        public ResultsVersion(int version, long roiVersion, long sequenceVersion)
+        {
+            super();
+
+            this.version = version;
+            this.roiVersion = roiVersion;
+            this.sequenceVersion = sequenceVersion;
+        }
+    }
+
     protected class ROIResults implements ROIListener
     {
         public final Map<ColumnInfo, DescriptorResult> descriptorResults;
         public final ROI roi;
         private final Map<Integer, WeakReference<ROI>> channelRois;
+        /**
+         * incremented each time results are invalidated (used to discard results computed from old data)
+         */
+        protected volatile int version;
 
         protected ROIResults(ROI roi)
         {
             super();
 
             this.roi = roi;
+            version = 0;
             descriptorResults = new HashMap<ColumnInfo, DescriptorResult>();
             channelRois = new HashMap<Integer, WeakReference<ROI>>();
 
@@ -1643,6 +2008,14 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
             roi.addListener(this);
         }
 
+        /**
+         * Returns current versions of results, ROI content and sequence data (should be called before computation)
+         */
+        public ResultsVersion getVersion(Sequence seq)
+        {
+            return new ResultsVersion(version, roi.getContentVersion(), (seq != null) ? seq.getDataVersion() : 0L);
+        }
+
         // boolean areResultsUpToDate()
         // {
         // for (DescriptorResult result : descriptorResults.values())
@@ -1652,6 +2025,21 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
         // return true;
         // }
 
+        /**
+         * Returns <code>true</code> if the result of the specified column is outdated (or not yet computed)
+         */
+        public boolean isOutdated(ColumnInfo column)
+        {
+            final DescriptorResult result;
+
+            synchronized (descriptorResults)
+            {
+                result = descriptorResults.get(column);
+            }
+
+            return (result == null) || result.isOutdated();
+        }
+
         private void clearChannelRois()
         {
             synchronized (channelRois)
@@ -1845,6 +2233,9 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
                 case PROPERTY_CHANGED:
                     final Object[] entries;
 
+                    // results being computed are now obsolete
+                    version++;
+
                     synchronized (descriptorResults)
                     {
                         entries = descriptorResults.entrySet().toArray();
@@ -1894,6 +2285,9 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
         {
             final Object[] entries;
 
+            // results being computed are now obsolete
+            version++;
+
             synchronized (descriptorResults)
             {
                 entries = descriptorResults.entrySet().toArray();
@@ -1918,34 +2312,111 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
         }
     }
 
-    protected class DescriptorComputer extends Thread
+    /**
+     * Computes descriptors of a given type with a bounded pool of worker threads.<br>
+     * Pending ROI results are processed by priority: visible rows first, then rows with an outdated value in the
+     * sorted column and finally in request order. Workers take pending results by batch so intensity and mass
+     * center descriptors can be computed in a single pass (see {@link AbstractRoisPanel#computeBatchROIResults}).
+     */
+    protected class DescriptorComputer
     {
+        /**
+         * maximum number of ROI results taken at once by a worker
+         */
+        protected static final int BATCH_SIZE = 256;
+
         protected final LinkedHashSet<ROIResults> resultsToCompute;
+        /**
+         * pending results with an outdated value in the sorted column
+         */
+        protected final LinkedHashSet<ROIResults> priorityResultsToCompute;
+        /**
+         * results being computed
+         */
+        protected final Set<ROIResults> resultsInProgress;
         protected final DescriptorType type;
+        protected final Thread[] workers;
+        protected long computedCount;
 
-        public DescriptorComputer(DescriptorType type)
+        public DescriptorComputer(DescriptorType type, int numThread)
         {
-            super("ROI " + type.toString() + " descriptor calculator");
+            super();
 
             resultsToCompute = new LinkedHashSet<AbstractRoisPanel.ROIResults>(256);
+            priorityResultsToCompute = new LinkedHashSet<AbstractRoisPanel.ROIResults>(256);
+            resultsInProgress = new HashSet<AbstractRoisPanel.ROIResults>();
             this.type = type;
+            computedCount = 0L;
+
+            workers = new Thread[Math.max(1, numThread)];
+            for (int i = 0; i < workers.length; i++)
+            {
+                workers[i] = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        DescriptorComputer.this.run();
+                    }
+                }, "ROI " + type.toString() + " descriptor calculator #" + i);
 
-            setPriority(Thread.MIN_PRIORITY);
+                workers[i].setPriority(Thread.MIN_PRIORITY);
+            }
+        }
+
+        public void start()
+        {
+            for (Thread worker : workers)
+                worker.start();
         }
 
         public boolean hasPendingComputation(ROIResults results)
         {
             synchronized (resultsToCompute)
             {
-                return resultsToCompute.contains(results);
+                return resultsToCompute.contains(results) || priorityResultsToCompute.contains(results);
+            }
+        }
+
+        /**
+         * Returns the number of ROI results waiting for computation
+         */
+        public int getPendingCount()
+        {
+            synchronized (resultsToCompute)
+            {
+                return resultsToCompute.size() + priorityResultsToCompute.size();
+            }
+        }
+
+        /**
+         * Returns the total number of ROI results computed
+         */
+        public long getComputedCount()
+        {
+            synchronized (resultsToCompute)
+            {
+                return computedCount;
             }
         }
 
         public void requestDescriptorComputation(ROIResults results)
         {
+            final ColumnInfo column = sortedColumn;
+            // sorted column value is needed to sort rows
+            final boolean priority = (column != null) && (column.getDescriptorType() == type)
+                    && results.isOutdated(column);
+
             synchronized (resultsToCompute)
             {
-                resultsToCompute.add(results);
+                if (priority)
+                {
+                    resultsToCompute.remove(results);
+                    priorityResultsToCompute.add(results);
+                }
+                else if (!priorityResultsToCompute.contains(results))
+                    resultsToCompute.add(results);
+
                 resultsToCompute.notifyAll();
             }
         }
@@ -1955,6 +2426,7 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
             synchronized (resultsToCompute)
             {
                 resultsToCompute.remove(roiResults);
+                priorityResultsToCompute.remove(roiResults);
                 resultsToCompute.notifyAll();
             }
         }
@@ -1963,18 +2435,23 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
         {
             synchronized (resultsToCompute)
             {
-                final Iterator<ROIResults> it = resultsToCompute.iterator();
+                removeResults(resultsToCompute, roi);
+                removeResults(priorityResultsToCompute, roi);
+                resultsToCompute.notifyAll();
+            }
+        }
 
-                while (it.hasNext())
-                {
-                    final ROIResults roiResults = it.next();
+        private void removeResults(Set<ROIResults> results, ROI roi)
+        {
+            final Iterator<ROIResults> it = results.iterator();
 
-                    // remove all results for this ROI
-                    if (roiResults.roi == roi)
-                        it.remove();
-                }
+            while (it.hasNext())
+            {
+                final ROIResults roiResults = it.next();
 
-                resultsToCompute.notifyAll();
+                // remove all results for this ROI
+                if (roiResults.roi == roi)
+                    it.remove();
             }
         }
 
@@ -1983,43 +2460,106 @@ public abstract class AbstractRoisPanel extends ExternalizablePanel implements A
             synchronized (resultsToCompute)
             {
                 resultsToCompute.clear();
+                priorityResultsToCompute.clear();
                 resultsToCompute.notifyAll();
             }
         }
 
-        @Override
-        public void run()
+        /**
+         * Wait for pending results and take the ones with highest priority (should be called with lock)
+         */
+        protected List<ROIResults> takeResults() throws InterruptedException
         {
-            while (!Thread.interrupted())
+            List<ROIResults> result = new ArrayList<ROIResults>();
+
+            while (result.isEmpty())
+            {
+                while (resultsToCompute.isEmpty() && priorityResultsToCompute.isEmpty())
+                    resultsToCompute.wait();
+
+                // visible rows first
+                for (ROIResults roiResults : visibleRoiResults)
+                {
+                    if (result.size() >= BATCH_SIZE)
+                        break;
+
+                    if (!resultsInProgress.contains(roiResults)
+                            && (priorityResultsToCompute.remove(roiResults) || resultsToCompute.remove(roiResults)))
+                        result.add(roiResults);
+                }
+
+                take(priorityResultsToCompute, result);
+                take(resultsToCompute, result);
+
+                // all pending results are being computed --> wait for them
+                if (result.isEmpty())
+                    resultsToCompute.wait(100);
+            }
+
+            resultsInProgress.addAll(result);
+
+            return result;
+        }
+
+        private void take(Set<ROIResults> results, List<ROIResults> dest)
+        {
+            final Iterator<ROIResults> it = results.iterator();
+
+            while (it.hasNext() && (dest.size() < BATCH_SIZE))
             {
-                final ROIResults[] roiResultsList;
+                final ROIResults roiResults = it.next();
+
+                // don't compute the same results in parallel
+                if (!resultsInProgress.contains(roiResults))
+                {
+                    dest.add(roiResults);
+                    it.remove();
+                }
+            }
+        }
+
+        protected void run()
+        {
+            while (!Thread.currentThread().isInterrupted())
+            {
+                final List<ROIResults> roiResultsList;
 
                 synchronized (resultsToCompute)
                 {
                     try
                     {
-                        while (resultsToCompute.isEmpty())
-                            resultsToCompute.wait();
+                        roiResultsList = takeResults();
                     }
                     catch (InterruptedException e)
                     {
-                        // ignore and just interrupt now
-                        Thread.currentThread().interrupt();
+                        // just interrupt now
+                        return;
                     }
-
-                    // get results to compute
-                    roiResultsList = resultsToCompute.toArray(new ROIResults[resultsToCompute.size()]);
-                    // and remove them
-                    resultsToCompute.clear();
                 }
 
-                final Sequence seq = getSequence();
+                try
+                {
+                    final Sequence seq = getSequence();
+
+                    if (seq != null)
+                    {
+                        // compute intensity and mass center descriptors of all ROIs at once
+                        if (roiResultsList.size() > 1)
+                            computeBatchROIResults(roiResultsList.toArray(new ROIResults[roiResultsList.size()]),
+                                    seq, type);
 
-                if (seq != null)
+                        for (ROIResults roiResults : roiResultsList)
+                            computeROIResults(roiResults, seq);
+                    }
+                }
+                finally
                 {
-                    // start with primaries descriptors
-                    for (ROIResults roiResults : roiResultsList)
-                        computeROIResults(roiResults, seq);
+                    synchronized (resultsToCompute)
+                    {
+                        resultsInProgress.removeAll(roiResultsList);
+                        computedCount += roiResultsList.size();
+                        resultsToCompute.notifyAll();
+                    }
                 }
             }
         }
@@ -112,6 +112,7 @@ public class RoiControlPanel extends JPanel implements ColorChangeListener, Text
     IcyButton andButton;
     IcyButton xorButton;
     IcyButton subButton;
+    IcyButton splitButton;
     IcyButton deleteButton;
     IcyButton loadButton;
     IcyButton saveButton;
@@ -274,6 +275,9 @@ public class RoiControlPanel extends JPanel implements ColorChangeListener, Text
         subButton.setToolTipText("Create 2 ROIs representing the result of (A - B) and (B - A)");
         subButton.setHideActionText(true);
         toolBar_1.add(subButton);
+        splitButton = new IcyButton(RoiActions.splitAction);
+        splitButton.setHideActionText(true);
+        toolBar_1.add(splitButton);
 
         horizontalGlue = Box.createHorizontalGlue();
         toolBar_1.add(horizontalGlue);
@@ -858,6 +862,7 @@ public class RoiControlPanel extends JPanel implements ColorChangeListener, Text
                 andButton.setEnabled(multiSelect);
                 xorButton.setEnabled(multiSelect);
                 subButton.setEnabled(twoSelected);
+                splitButton.setEnabled(hasSelected);
 
                 xlsExportButton.setEnabled(getVisibleRois().size() > 0);
 
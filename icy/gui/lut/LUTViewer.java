@@ -34,6 +34,7 @@ import icy.preferences.ApplicationPreferences;
 import icy.preferences.XMLPreferences;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent;
+import icy.sequence.SequenceGroupEventListener;
 import icy.sequence.SequenceListener;
 import icy.system.thread.ThreadUtil;
 import icy.type.DataType;
@@ -54,7 +55,8 @@ import javax.swing.SwingConstants;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
-public class LUTViewer extends IcyLutViewer implements IcyColorMapListener, SequenceListener
+public class LUTViewer extends IcyLutViewer implements IcyColorMapListener, SequenceListener,
+        SequenceGroupEventListener
 {
     private static final long serialVersionUID = 8385018166371243663L;
 
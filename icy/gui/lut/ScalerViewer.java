@@ -34,10 +34,9 @@ import icy.math.Scaler;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent;
 import icy.sequence.SequenceEvent.SequenceEventSourceType;
+import icy.sequence.SequenceGroupEventListener;
 import icy.sequence.SequenceListener;
 import icy.system.thread.ThreadUtil;
-import icy.type.DataType;
-import icy.type.collection.array.Array1DUtil;
 import icy.util.ColorUtil;
 import icy.util.EventUtil;
 import icy.util.GraphicsUtil;
@@ -60,7 +59,6 @@ import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.geom.Point2D;
-import java.lang.reflect.Array;
 import java.util.EventListener;
 
 import javax.swing.JMenuItem;
@@ -71,7 +69,8 @@ import javax.swing.event.EventListenerList;
 /**
  * @author stephane
  */
-public class ScalerViewer extends JPanel implements SequenceListener, LUTChannelListener, ViewerListener
+public class ScalerViewer extends JPanel implements SequenceListener, SequenceGroupEventListener, LUTChannelListener,
+        ViewerListener
 {
     protected static enum actionType
     {
@@ -499,6 +498,10 @@ public class ScalerViewer extends JPanel implements SequenceListener, LUTChannel
     private static final long serialVersionUID = -1236985071716650592L;
 
     private static final int ISOVER_DEFAULT_MARGIN = 3;
+    /**
+     * maximum number of values used to compute the histogram (larger sequences are sampled)
+     */
+    private static final long MAX_HISTO_SAMPLES = 1L << 22;
 
     /**
      * associated viewer & lutChannel
@@ -626,55 +629,18 @@ public class ScalerViewer extends JPanel implements SequenceListener, LUTChannel
         {
             if (seq != null)
             {
-                final int maxZ;
-                final int maxT;
-                int t = viewer.getPositionT();
-                int z = viewer.getPositionZ();
-
-                if (t != -1)
-                    maxT = t;
-                else
-                {
-                    t = 0;
-                    maxT = seq.getSizeT() - 1;
-                }
-
-                if (z != -1)
-                    maxZ = z;
-                else
-                {
-                    z = 0;
-                    maxZ = seq.getSizeZ() - 1;
-                }
-
+                // -1 means all T or Z positions
+                final int t = viewer.getPositionT();
+                final int z = viewer.getPositionZ();
                 final int c = lutChannel.getChannel();
 
-                for (; t <= maxT; t++)
-                {
-                    for (; z <= maxZ; z++)
-                    {
-                        final Object data = seq.getDataXY(t, z, c);
-
-                        // need to test for empty sequence
-                        if (data != null)
-                        {
-                            final DataType dataType = seq.getDataType_();
-                            final int len = Array.getLength(data);
+                // need to be recalculated so don't waste time here...
+                if (ThreadUtil.hasWaitingBgSingleTask(histoUpdater))
+                    return;
 
-                            for (int i = 0; i < len; i++)
-                            {
-                                if ((i & 0xFFF) == 0)
-                                {
-                                    // need to be recalculated so don't waste time here...
-                                    if (ThreadUtil.hasWaitingBgSingleTask(histoUpdater))
-                                        return;
-                                }
-
-                                histo.addValue(Array1DUtil.getValue(data, i, dataType));
-                            }
-                        }
-                    }
-                }
+                // planes histograms are cached and computed in parallel by the sequence statistics,
+                // large sequences are sampled so the histogram is displayed in bounded time
+                histo.add(seq.getStatistics().getSampledHistogram(t, z, c, histo, MAX_HISTO_SAMPLES));
             }
         }
         catch (Exception e)
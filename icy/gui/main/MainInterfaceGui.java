@@ -47,6 +47,7 @@ import icy.search.SearchEngine;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceAdapter;
 import icy.sequence.SequenceEvent;
+import icy.sequence.SequenceGroupEventListener;
 import icy.sequence.SequenceListener;
 import icy.swimmingPool.SwimmingPool;
 import icy.system.thread.ThreadUtil;
@@ -99,6 +100,11 @@ public class MainInterfaceGui implements MainInterface
         }
     }
 
+    private static abstract class GroupSequenceAdapter extends SequenceAdapter implements SequenceGroupEventListener
+    {
+        // sequence adapter accepting group events
+    }
+
     // private final UpdateEventHandler updater;
 
     private final EventListenerList listeners;
@@ -158,8 +164,8 @@ public class MainInterfaceGui implements MainInterface
             }
         };
 
-        // global sequence listener
-        sequenceListener = new SequenceAdapter()
+        // global sequence listener (group events are dispatched to active sequence listeners)
+        sequenceListener = new GroupSequenceAdapter()
         {
             @Override
             public void sequenceChanged(SequenceEvent event)
@@ -1300,11 +1306,23 @@ public class MainInterfaceGui implements MainInterface
     private void fireActiveSequenceChangedEvent(SequenceEvent event)
     {
         for (ActiveSequenceListener listener : listeners.getListeners(ActiveSequenceListener.class))
-            listener.activeSequenceChanged(event);
+        {
+            // split group event for listeners which don't support them
+            if (!event.isGroupEvent() || (listener instanceof SequenceGroupEventListener))
+                listener.activeSequenceChanged(event);
+            else
+            {
+                for (SequenceEvent e : event.getSingleEvents())
+                    listener.activeSequenceChanged(e);
+            }
+        }
 
         // backward compatibility
         for (FocusedSequenceListener listener : listeners.getListeners(FocusedSequenceListener.class))
-            listener.focusedSequenceChanged(event);
+        {
+            for (SequenceEvent e : event.getSingleEvents())
+                listener.focusedSequenceChanged(e);
+        }
     }
 
     @Override
@@ -1517,11 +1535,13 @@ public class MainInterfaceGui implements MainInterface
                     switch (event.getType())
                     {
                         case ADDED:
-                            checkRoiAdded((ROI) event.getSource(), false);
+                            for (Object roi : event.getSources())
+                                checkRoiAdded((ROI) roi, false);
                             break;
 
                         case REMOVED:
-                            checkRoiRemoved((ROI) event.getSource(), false);
+                            for (Object roi : event.getSources())
+                                checkRoiRemoved((ROI) roi, false);
                             break;
                     }
                     break;
@@ -1530,11 +1550,13 @@ public class MainInterfaceGui implements MainInterface
                     switch (event.getType())
                     {
                         case ADDED:
-                            checkOverlayAdded((Overlay) event.getSource(), false);
+                            for (Object overlay : event.getSources())
+                                checkOverlayAdded((Overlay) overlay, false);
                             break;
 
                         case REMOVED:
-                            checkOverlayRemoved((Overlay) event.getSource(), false);
+                            for (Object overlay : event.getSources())
+                                checkOverlayRemoved((Overlay) overlay, false);
                             break;
                     }
                     break;
@@ -44,6 +44,7 @@ public class CanvasPreferencePanel extends PreferencePanel
      * gui
      */
     private final JCheckBox filteringCheckBox;
+    private final JCheckBox viewportRenderingCheckBox;
     private final JCheckBox invertWheelAxisCheckBox;
     private final JSpinner wheelAxisSensitivity;
 
@@ -56,6 +57,8 @@ public class CanvasPreferencePanel extends PreferencePanel
 
         filteringCheckBox = new JCheckBox("Enable image filtering");
         filteringCheckBox.setToolTipText("Enable image filtering to improve rendering quality");
+        viewportRenderingCheckBox = new JCheckBox("Render visible area only");
+        viewportRenderingCheckBox.setToolTipText("Only render the visible part of the image (faster on large image)");
         invertWheelAxisCheckBox = new JCheckBox("Invert mouse wheel axis");
         invertWheelAxisCheckBox.setToolTipText("Invert the mouse wheel axis for canvas operation");
         wheelAxisSensitivity = new JSpinner(new SpinnerNumberModel(5d, 1d, 10d, 0.5d));
@@ -67,6 +70,8 @@ public class CanvasPreferencePanel extends PreferencePanel
 
         mainPanel.add(GuiUtil.createLineBoxPanel(filteringCheckBox, Box.createHorizontalGlue()));
         mainPanel.add(Box.createVerticalStrut(6));
+        mainPanel.add(GuiUtil.createLineBoxPanel(viewportRenderingCheckBox, Box.createHorizontalGlue()));
+        mainPanel.add(Box.createVerticalStrut(6));
         mainPanel.add(GuiUtil.createLineBoxPanel(invertWheelAxisCheckBox, Box.createHorizontalGlue()));
         mainPanel.add(Box.createVerticalStrut(6));
         mainPanel.add(GuiUtil.createLineBoxPanel(new JLabel(" Mouse wheel sensivity "), wheelAxisSensitivity,
@@ -83,6 +88,7 @@ public class CanvasPreferencePanel extends PreferencePanel
         wheelAxisSensitivity.setValue(Double.valueOf(CanvasPreferences.getMouseWheelSensitivity()));
         invertWheelAxisCheckBox.setSelected(CanvasPreferences.getInvertMouseWheelAxis());
         filteringCheckBox.setSelected(CanvasPreferences.getFiltering());
+        viewportRenderingCheckBox.setSelected(CanvasPreferences.getViewportRendering());
     }
 
     @Override
@@ -91,6 +97,7 @@ public class CanvasPreferencePanel extends PreferencePanel
         CanvasPreferences.setMouseWheelSensitivity(((Double) wheelAxisSensitivity.getValue()).doubleValue());
         CanvasPreferences.setInvertMouseWheelAxis(invertWheelAxisCheckBox.isSelected());
         CanvasPreferences.setFiltering(filteringCheckBox.isSelected());
+        CanvasPreferences.setViewportRendering(viewportRenderingCheckBox.isSelected());
     }
 
 }
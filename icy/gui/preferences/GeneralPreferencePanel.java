@@ -55,6 +55,7 @@ public class GeneralPreferencePanel extends PreferencePanel
     final JCheckBox exitConfirm;
     private final JCheckBox sequencePersistence;
     private final JCheckBox saveNewSequence;
+    private final JCheckBox virtualStack;
     final JCheckBox autoUpdateCheckBox;
     private final JCheckBox alwaysOnTopCheckBox;
     private final JCheckBox usageStatistics;
@@ -75,6 +76,8 @@ public class GeneralPreferencePanel extends PreferencePanel
         sequencePersistence
                 .setToolTipText("Enable the XML persistence for sequence (file is automatically loaded/saved when sequence is opened/closed)");
         saveNewSequence = new JCheckBox("Ask to save new sequence when closing them");
+        virtualStack = new JCheckBox("Open image as virtual stack");
+        virtualStack.setToolTipText("Images are read from file only when needed (faster opening, lower memory usage)");
         autoUpdateCheckBox = new JCheckBox("Enable application update");
         autoUpdateCheckBox.setToolTipText("Enable automatic update for application as soon a new version is available");
         alwaysOnTopCheckBox = new JCheckBox("Application window always on top");
@@ -136,6 +139,8 @@ public class GeneralPreferencePanel extends PreferencePanel
         topPanel.add(Box.createVerticalStrut(6));
         topPanel.add(GuiUtil.createLineBoxPanel(saveNewSequence, Box.createHorizontalGlue()));
         topPanel.add(Box.createVerticalStrut(6));
+        topPanel.add(GuiUtil.createLineBoxPanel(virtualStack, Box.createHorizontalGlue()));
+        topPanel.add(Box.createVerticalStrut(6));
         topPanel.add(GuiUtil.createLineBoxPanel(usageStatistics, Box.createHorizontalGlue()));
         topPanel.add(Box.createVerticalStrut(18));
         topPanel.add(GuiUtil.createLineBoxPanel(new JLabel(" GUI font size  "), uiFontSizeSpinner,
@@ -175,6 +180,7 @@ public class GeneralPreferencePanel extends PreferencePanel
         exitConfirm.setSelected(GeneralPreferences.getExitConfirm());
         sequencePersistence.setSelected(GeneralPreferences.getSequencePersistence());
         saveNewSequence.setSelected(GeneralPreferences.getSaveNewSequence());
+        virtualStack.setSelected(GeneralPreferences.getVirtualStack());
         autoUpdateCheckBox.setSelected(GeneralPreferences.getAutomaticUpdate());
         alwaysOnTopCheckBox.setSelected(GeneralPreferences.getAlwaysOnTop());
         usageStatistics.setSelected(GeneralPreferences.getUsageStatisticsReport());
@@ -199,6 +205,7 @@ public class GeneralPreferencePanel extends PreferencePanel
         GeneralPreferences.setExitConfirm(exitConfirm.isSelected());
         GeneralPreferences.setSequencePersistence(sequencePersistence.isSelected());
         GeneralPreferences.setSaveNewSequence(saveNewSequence.isSelected());
+        GeneralPreferences.setVirtualStack(virtualStack.isSelected());
         GeneralPreferences.setAutomaticUpdate(autoUpdateCheckBox.isSelected());
         GeneralPreferences.setUsageStatisticsReport(usageStatistics.isSelected());
 
@@ -53,6 +53,7 @@ import icy.preferences.GeneralPreferences;
 import icy.sequence.DimensionId;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent;
+import icy.sequence.SequenceGroupEventListener;
 import icy.sequence.SequenceListener;
 import icy.system.IcyExceptionHandler;
 import icy.system.IcyHandledException;
@@ -99,7 +100,8 @@ import javax.swing.event.EventListenerList;
  * 
  * @author Fabrice de Chaumont & Stephane
  */
-public class Viewer extends IcyFrame implements KeyListener, SequenceListener, IcyCanvasListener, PluginLoaderListener
+public class Viewer extends IcyFrame implements KeyListener, SequenceListener, SequenceGroupEventListener,
+        IcyCanvasListener, PluginLoaderListener
 {
     private class ViewerMainPanel extends JPanel
     {
@@ -18,15 +18,22 @@
  */
 package icy.image;
 
+import icy.image.colormap.IcyColorMap;
+import icy.image.colorspace.IcyColorSpace;
+import icy.image.colorspace.IcyColorSpace.ARGBKernel;
+import icy.image.colorspace.IcyColorSpace.ARGBKernel.ARGBKernelType;
 import icy.image.lut.LUT;
 import icy.math.Scaler;
 import icy.system.SystemUtil;
 import icy.system.thread.Processor;
 import icy.system.thread.ThreadUtil;
+import icy.type.DataType;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -38,6 +45,177 @@ class ARGBImageBuilder
 {
     private static final int BLOC_SIZE = 512 * 512;
 
+    /**
+     * Fused scale and colorize tables for 8 and 16 bits data.<br>
+     * Raw data values directly index a precomputed table giving the ARGB value (<code>SINGLE</code> kernel)
+     * or the packed RGB value (<code>ADDITIVE</code> kernel) so we don't need the intermediate scaled buffers.
+     */
+    static class FusedTables
+    {
+        final ARGBKernelType type;
+        final int[] components;
+        final int[][] tables;
+        final boolean byteData;
+
+        /**
+         * Returns fused tables for the specified image and LUT state or <code>null</code> if the image
+         * should be built with the generic (scale then colorize) path.
+         * 
+         * @param numPixel
+         *        number of pixel to build (tables are not worth for small images)
+         */
+        static FusedTables create(IcyBufferedImage image, LUT lut, int numPixel)
+        {
+            if (lut.getNumChannel() != image.getSizeC())
+                return null;
+
+            final DataType dataType = image.getDataType_();
+            final boolean byteData;
+
+            switch (dataType.getJavaType())
+            {
+                case BYTE:
+                    byteData = true;
+                    break;
+
+                case SHORT:
+                    byteData = false;
+                    break;
+
+                default:
+                    return null;
+            }
+
+            final ARGBKernel kernel = lut.getColorSpace().getARGBKernel();
+            final ARGBKernelType type = kernel.getType();
+
+            if (type == ARGBKernelType.GENERIC)
+                return null;
+
+            final int[] components = kernel.getComponents();
+            final int size = byteData ? 256 : 65536;
+
+            // building tables would cost more than the generic path
+            if ((size * components.length) > numPixel)
+                return null;
+
+            final boolean signed = dataType.isSigned();
+            final Scaler[] scalers = lut.getScalers();
+            final int[][] tables = new int[components.length][size];
+
+            for (int ind = 0; ind < components.length; ind++)
+            {
+                final Scaler scaler = scalers[components[ind]];
+                final int[] kernelTable = kernel.getTable(ind);
+                final int[] table = tables[ind];
+
+                for (int i = 0; i < size; i++)
+                {
+                    final double value;
+
+                    // table is indexed with the unsigned value
+                    if (signed)
+                        value = byteData ? (byte) i : (short) i;
+                    else
+                        value = i;
+
+                    int scaled = (int) scaler.scale(value);
+
+                    if (scaled < 0)
+                        scaled = 0;
+                    else if (scaled > IcyColorMap.MAX_INDEX)
+                        scaled = IcyColorMap.MAX_INDEX;
+
+                    table[i] = kernelTable[scaled];
+                }
+            }
+
+            return new FusedTables(type, components, tables, byteData);
+        }
+
+        FusedTables(ARGBKernelType type, int[] components, int[][] tables, boolean byteData)
+        {
+            super();
+
+            this.type = type;
+            this.components = components;
+            this.tables = tables;
+            this.byteData = byteData;
+        }
+
+        /**
+         * Build ARGB values of <code>len</code> pixels taking one sample every <code>srcStep</code> elements
+         * in source image data.
+         */
+        void fill(IcyBufferedImage image, int srcOffset, int srcStep, int[] dest, int destOffset, int len)
+        {
+            final int numComp = components.length;
+
+            if (type == ARGBKernelType.TRANSPARENT)
+            {
+                Arrays.fill(dest, destOffset, destOffset + len, 0);
+                return;
+            }
+
+            if (byteData)
+            {
+                final byte[][] data = new byte[numComp][];
+
+                for (int ind = 0; ind < numComp; ind++)
+                    data[ind] = image.getDataXYAsByte(components[ind]);
+
+                if (type == ARGBKernelType.SINGLE)
+                {
+                    final byte[] src = data[0];
+                    final int[] table = tables[0];
+
+                    for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                        dest[destOffset + i] = table[src[s] & 0xFF];
+                }
+                else
+                {
+                    for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                    {
+                        int rgb = 0;
+
+                        for (int ind = 0; ind < numComp; ind++)
+                            rgb += tables[ind][data[ind][s] & 0xFF];
+
+                        dest[destOffset + i] = ARGBKernel.unpackAdditive(rgb);
+                    }
+                }
+            }
+            else
+            {
+                final short[][] data = new short[numComp][];
+
+                for (int ind = 0; ind < numComp; ind++)
+                    data[ind] = image.getDataXYAsShort(components[ind]);
+
+                if (type == ARGBKernelType.SINGLE)
+                {
+                    final short[] src = data[0];
+                    final int[] table = tables[0];
+
+                    for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                        dest[destOffset + i] = table[src[s] & 0xFFFF];
+                }
+                else
+                {
+                    for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                    {
+                        int rgb = 0;
+
+                        for (int ind = 0; ind < numComp; ind++)
+                            rgb += tables[ind][data[ind][s] & 0xFFFF];
+
+                        dest[destOffset + i] = ARGBKernel.unpackAdditive(rgb);
+                    }
+                }
+            }
+        }
+    }
+
     class BlockBuilder implements Runnable
     {
         /**
@@ -49,8 +227,9 @@ class ARGBImageBuilder
         private int offset;
         private int length;
         private int numChannel;
+        private FusedTables fused;
 
-        BlockBuilder(IcyBufferedImage image, LUT lut, int[] dest, int offset, int length)
+        BlockBuilder(IcyBufferedImage image, LUT lut, FusedTables fused, int[] dest, int offset, int length)
         {
             super();
 
@@ -63,6 +242,7 @@ class ARGBImageBuilder
             this.dest = dest;
             this.offset = offset;
             this.length = length;
+            this.fused = fused;
 
             numChannel = image.getSizeC();
 
@@ -73,6 +253,21 @@ class ARGBImageBuilder
         @Override
         public void run()
         {
+            // fused path : directly build ARGB values from image data
+            if (fused != null)
+            {
+                try
+                {
+                    fused.fill(image, offset, 1, dest, offset, length);
+                }
+                catch (Exception e)
+                {
+                    // we just ignore any exceptions here as we can be in asynch process
+                }
+
+                return;
+            }
+
             int[][] componentValues = null;
 
             try
@@ -85,13 +280,133 @@ class ARGBImageBuilder
                     // update output image buffer
                     final Scaler[] scalers = lut.getScalers();
                     final boolean signed = image.getIcyColorModel().getDataType_().isSigned();
+                    final IcyColorSpace colorSpace = lut.getColorSpace();
+                    // kernel depends from LUT state (only enabled channels need to be scaled)
+                    final ARGBKernel kernel = colorSpace.getARGBKernel();
 
                     // scale component values
-                    for (int comp = 0; comp < numChannel; comp++)
+                    for (int comp : kernel.getComponents())
                         scalers[comp].scale(image.getDataXY(comp), offset, componentValues[comp], 0, length, signed);
 
                     // build ARGB destination buffer
-                    lut.getColorSpace().fillARGBBuffer(componentValues, dest, offset, length);
+                    colorSpace.fillARGBBuffer(kernel, componentValues, dest, offset, length);
+                }
+            }
+            catch (Exception e)
+            {
+                // we just ignore any exceptions here as we can be in asynch process
+            }
+            finally
+            {
+                releaseBuffer(componentValues);
+            }
+        }
+    }
+
+    class RegionBlockBuilder implements Runnable
+    {
+        /**
+         * cached variables
+         */
+        private IcyBufferedImage image;
+        private LUT lut;
+        private int dest[];
+        private Rectangle region;
+        private int subsampling;
+        private int destWidth;
+        private int destY;
+        private int numLine;
+        private int numChannel;
+        private FusedTables fused;
+
+        RegionBlockBuilder(IcyBufferedImage image, LUT lut, FusedTables fused, int[] dest, Rectangle region,
+                int subsampling, int destWidth, int destY, int numLine)
+        {
+            super();
+
+            this.image = image;
+            // use internal lut if specified lut is null
+            if (lut == null)
+                this.lut = image.createCompatibleLUT(false);
+            else
+                this.lut = lut;
+            this.dest = dest;
+            this.region = region;
+            this.subsampling = subsampling;
+            this.destWidth = destWidth;
+            this.destY = destY;
+            this.numLine = numLine;
+            this.fused = fused;
+
+            numChannel = image.getSizeC();
+
+            if (this.lut.getNumChannel() != numChannel)
+                throw new IllegalArgumentException("ARGBImageBuilder.prepare(...): LUT.numChannel != IMAGE.numChannel");
+        }
+
+        @Override
+        public void run()
+        {
+            // fused path : directly build ARGB values from image data
+            if (fused != null)
+            {
+                try
+                {
+                    final int sizeX = image.getSizeX();
+
+                    for (int y = destY; y < (destY + numLine); y++)
+                        fused.fill(image, ((region.y + (y * subsampling)) * sizeX) + region.x, subsampling, dest,
+                                y * destWidth, destWidth);
+                }
+                catch (Exception e)
+                {
+                    // we just ignore any exceptions here as we can be in asynch process
+                }
+
+                return;
+            }
+
+            int[][] componentValues = null;
+
+            try
+            {
+                // get working buffer
+                componentValues = requestBuffer(numChannel);
+
+                if (componentValues != null)
+                {
+                    final Scaler[] scalers = lut.getScalers();
+                    final boolean signed = image.getIcyColorModel().getDataType_().isSigned();
+                    final IcyColorSpace colorSpace = lut.getColorSpace();
+                    // kernel depends from LUT state (only enabled channels need to be scaled)
+                    final ARGBKernel kernel = colorSpace.getARGBKernel();
+                    final int[] components = kernel.getComponents();
+                    final Object[] data = new Object[numChannel];
+                    final int sizeX = image.getSizeX();
+
+                    for (int comp : components)
+                        data[comp] = image.getDataXY(comp);
+
+                    for (int y = destY; y < (destY + numLine); y++)
+                    {
+                        final int srcLineOffset = ((region.y + (y * subsampling)) * sizeX) + region.x;
+                        final int destLineOffset = y * destWidth;
+
+                        // process line by segment of working buffer size
+                        for (int x = 0; x < destWidth; x += BLOC_SIZE)
+                        {
+                            final int length = Math.min(BLOC_SIZE, destWidth - x);
+                            final int srcOffset = srcLineOffset + (x * subsampling);
+
+                            // scale (sub sampled) component values
+                            for (int comp : components)
+                                scalers[comp].scale(data[comp], srcOffset, subsampling, componentValues[comp], 0,
+                                        length, signed);
+
+                            // build ARGB destination buffer
+                            colorSpace.fillARGBBuffer(kernel, componentValues, dest, destLineOffset + x, length);
+                        }
+                    }
                 }
             }
             catch (Exception e)
@@ -136,6 +451,14 @@ class ARGBImageBuilder
         return new BufferedImage(in.getWidth(), in.getHeight(), BufferedImage.TYPE_INT_ARGB);
     }
 
+    private BufferedImage getImage(int width, int height, BufferedImage out)
+    {
+        if ((out != null) && (out.getWidth() == width) && (out.getHeight() == height))
+            return out;
+
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
     int[][] requestBuffer(int numChannel)
     {
         if (numChannel <= 0)
@@ -173,6 +496,10 @@ class ARGBImageBuilder
         // destination buffer
         final int[] dest = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
         final List<Future<?>> futures = new ArrayList<Future<?>>();
+        // use internal lut if specified lut is null
+        final LUT l = (lut == null) ? image.createCompatibleLUT(false) : lut;
+        // fused scale and colorize tables (null if not supported)
+        final FusedTables fused = FusedTables.create(image, l, imageSize);
 
         int offset = 0;
         try
@@ -180,13 +507,13 @@ class ARGBImageBuilder
             for (int i = 0; i < step; i++)
             {
                 // build bloc
-                futures.add(addBloc(image, lut, dest, offset, BLOC_SIZE));
+                futures.add(addBloc(image, l, fused, dest, offset, BLOC_SIZE));
                 offset += BLOC_SIZE;
             }
 
             // last bloc
             if (offset < imageSize)
-                futures.add(addBloc(image, lut, dest, offset, imageSize - offset));
+                futures.add(addBloc(image, l, fused, dest, offset, imageSize - offset));
 
             // wait until image is built
             waitCompletion(futures);
@@ -205,9 +532,82 @@ class ARGBImageBuilder
         return result;
     }
 
-    private Future<?> addBloc(IcyBufferedImage image, LUT lut, int dest[], int offset, int length)
+    /**
+     * Build an ARGB image from the specified region of the source image.<br>
+     * Only one pixel every <code>subsampling</code> pixels (in X and Y) of the region is used so the
+     * resulting image size is <code>ceil(region.width / subsampling) x ceil(region.height / subsampling)</code>
+     * 
+     * @param image
+     *        source image
+     * @param region
+     *        region of the source image we want to convert (should be contained in image bounds)
+     * @param subsampling
+     *        subsampling factor (1 = full resolution)
+     * @param lut
+     *        {@link LUT} used for color calculation
+     * @param out
+     *        destination image (reused if size is correct)
+     */
+    public BufferedImage buildARGBImage(IcyBufferedImage image, Rectangle region, int subsampling, LUT lut,
+            BufferedImage out)
+    {
+        final int step = Math.max(1, subsampling);
+        final int destWidth = (region.width + (step - 1)) / step;
+        final int destHeight = (region.height + (step - 1)) / step;
+
+        // empty region
+        if ((destWidth <= 0) || (destHeight <= 0))
+            return null;
+
+        final BufferedImage result = getImage(destWidth, destHeight, out);
+        // destination buffer
+        final int[] dest = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        // number of line per bloc
+        final int blocLines = Math.max(1, BLOC_SIZE / destWidth);
+        // use internal lut if specified lut is null
+        final LUT l = (lut == null) ? image.createCompatibleLUT(false) : lut;
+        // fused scale and colorize tables (null if not supported)
+        final FusedTables fused = FusedTables.create(image, l, destWidth * destHeight);
+
+        try
+        {
+            for (int y = 0; y < destHeight; y += blocLines)
+                futures.add(addRegionBloc(image, l, fused, dest, region, step, destWidth, y,
+                        Math.min(blocLines, destHeight - y)));
+
+            // wait until image is built
+            waitCompletion(futures);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // image has changed in the meantime, just ignore
+        }
+
+        // release working buffer memory
+        synchronized (buffers)
+        {
+            buffers.clear();
+        }
+
+        return result;
+    }
+
+    private Future<?> addBloc(IcyBufferedImage image, LUT lut, FusedTables fused, int dest[], int offset,
+            int length)
+    {
+        return submit(new BlockBuilder(image, lut, fused, dest, offset, length));
+    }
+
+    private Future<?> addRegionBloc(IcyBufferedImage image, LUT lut, FusedTables fused, int dest[],
+            Rectangle region, int subsampling, int destWidth, int destY, int numLine)
+    {
+        return submit(new RegionBlockBuilder(image, lut, fused, dest, region, subsampling, destWidth, destY,
+                numLine));
+    }
+
+    private Future<?> submit(Runnable builder)
     {
-        final BlockBuilder builder = new BlockBuilder(image, lut, dest, offset, length);
         Future<?> result = processor.submit(builder);
 
         // not accepted ? retry until it is accepted...
@@ -427,6 +427,10 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
      * automatic update of channel bounds
      */
     private boolean autoUpdateChannelBounds;
+    /**
+     * last calculated channel bounds (used for incremental bounds update)
+     */
+    private double[][] calculatedBounds;
 
     /**
      * internal updater
@@ -982,6 +986,35 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         return new double[] {min, max};
     }
 
+    /**
+     * Returns calculated bounds (min and max values) of the specified channel in the specified region.
+     */
+    protected double[] getCalculatedChannelBounds(int channel, Rectangle region)
+    {
+        final boolean signed = getDataType_().isSigned();
+        final Object data = getDataXY(channel);
+        final int sizeX = getSizeX();
+        final double[] line = new double[region.width];
+
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+
+        for (int y = region.y; y < (region.y + region.height); y++)
+        {
+            Array1DUtil.arrayToDoubleArray(data, region.x + (y * sizeX), line, 0, region.width, signed);
+
+            for (double value : line)
+            {
+                if (value < min)
+                    min = value;
+                if (value > max)
+                    max = value;
+            }
+        }
+
+        return new double[] {min, max};
+    }
+
     /**
      * Adjust specified bounds depending internal data type
      */
@@ -1450,17 +1483,74 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
      * Update channels bounds (min and max values).
      */
     public void updateChannelsBounds()
+    {
+        updateChannelsBounds(null, -1);
+    }
+
+    /**
+     * Update channels bounds (min and max values) after data changed in the specified region and channel.<br>
+     * When only a region changed, bounds are only expanded to contain the new values of the region (shrinking
+     * them would require to scan the whole image again), use {@link #updateChannelsBounds()} to get exact
+     * bounds.
+     * 
+     * @param region
+     *        changed region (<code>null</code> = whole image)
+     * @param channel
+     *        changed channel (-1 = all channels)
+     */
+    protected void updateChannelsBounds(Rectangle region, int channel)
     {
         final IcyColorModel cm = getIcyColorModel();
 
         if (cm != null)
         {
             final int sizeC = getSizeC();
+            final Rectangle adjRegion;
+
+            if (region != null)
+            {
+                adjRegion = region.intersection(getBounds());
+
+                // nothing changed
+                if (adjRegion.isEmpty())
+                    return;
+            }
+            else
+                adjRegion = null;
+
+            double[][] calcBounds = calculatedBounds;
+
+            if ((calcBounds == null) || (calcBounds.length != sizeC))
+            {
+                calcBounds = new double[sizeC][];
+                calculatedBounds = calcBounds;
+            }
 
             for (int c = 0; c < sizeC; c++)
             {
-                // get data type bounds
-                final double[] bounds = getCalculatedChannelBounds(c);
+                // channel not changed
+                if ((channel != -1) && (channel != c))
+                    continue;
+
+                final double[] bounds;
+                final double[] currentBounds = calcBounds[c];
+
+                if ((adjRegion != null) && (currentBounds != null))
+                {
+                    final double[] regionBounds = getCalculatedChannelBounds(c, adjRegion);
+
+                    // new values are inside current bounds --> nothing to do
+                    if ((regionBounds[0] >= currentBounds[0]) && (regionBounds[1] <= currentBounds[1]))
+                        continue;
+
+                    bounds = new double[] {Math.min(regionBounds[0], currentBounds[0]),
+                            Math.max(regionBounds[1], currentBounds[1])};
+                }
+                else
+                    // get data type bounds
+                    bounds = getCalculatedChannelBounds(c);
+
+                calcBounds[c] = bounds;
 
                 cm.setComponentAbsBounds(c, adjustBoundsForDataType(bounds));
                 cm.setComponentUserBounds(c, bounds);
@@ -1843,7 +1933,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         ArrayUtil.arrayToArray(values, getDataXY(c), getDataType_().isSigned());
 
         // notify data changed
-        dataChanged();
+        dataChanged(null, c);
     }
 
     /**
@@ -2534,7 +2624,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         System.arraycopy(values, 0, getDataXYAsByte(c), 0, getSizeX() * getSizeY());
 
         // notify data changed
-        dataChanged();
+        dataChanged(null, c);
     }
 
     /**
@@ -2545,7 +2635,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         System.arraycopy(values, 0, getDataXYAsShort(c), 0, getSizeX() * getSizeY());
 
         // notify data changed
-        dataChanged();
+        dataChanged(null, c);
     }
 
     /**
@@ -2556,7 +2646,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         System.arraycopy(values, 0, getDataXYAsInt(c), 0, getSizeX() * getSizeY());
 
         // notify data changed
-        dataChanged();
+        dataChanged(null, c);
     }
 
     /**
@@ -2567,7 +2657,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         System.arraycopy(values, 0, getDataXYAsFloat(c), 0, getSizeX() * getSizeY());
 
         // notify data changed
-        dataChanged();
+        dataChanged(null, c);
     }
 
     /**
@@ -2578,7 +2668,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         System.arraycopy(values, 0, getDataXYAsDouble(c), 0, getSizeX() * getSizeY());
 
         // notify data changed
-        dataChanged();
+        dataChanged(null, c);
     }
 
     /**
@@ -2595,7 +2685,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             data[comp][offset] = values[comp];
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1), -1);
     }
 
     /**
@@ -2617,7 +2707,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             data[comp][offset] = values[comp];
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1), -1);
     }
 
     /**
@@ -2634,7 +2724,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             data[comp][offset] = values[comp];
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1), -1);
     }
 
     /**
@@ -2651,7 +2741,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             data[comp][offset] = values[comp];
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1), -1);
     }
 
     /**
@@ -2668,7 +2758,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             data[comp][offset] = values[comp];
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1), -1);
     }
 
     /**
@@ -2689,7 +2779,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         Array1DUtil.setValue(getDataXY(c), getOffset(x, y), getDataType_(), value);
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1), c);
     }
 
     /**
@@ -2710,7 +2800,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         (((DataBufferByte) getRaster().getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1), c);
     }
 
     /**
@@ -2740,7 +2830,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             (((DataBufferShort) db).getData(c))[x + (y * getWidth())] = value;
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1), c);
     }
 
     /**
@@ -2761,7 +2851,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         (((DataBufferInt) getRaster().getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1), c);
     }
 
     /**
@@ -2782,7 +2872,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         (((DataBufferFloat) getRaster().getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1), c);
     }
 
     /**
@@ -2803,7 +2893,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         (((DataBufferDouble) getRaster().getDataBuffer()).getData(c))[x + (y * getWidth())] = value;
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(x, y, 1, 1), c);
     }
 
     /**
@@ -2874,7 +2964,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         }
 
         // notify data changed
-        dataChanged();
+        dataChanged(new Rectangle(adjDstRect.x, adjDstRect.y, w, h), dstChannel);
     }
 
     /**
@@ -3310,7 +3400,7 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
         ByteArrayConvert.byteArrayTo(data, offset, getDataXY(c), 0, -1, little);
 
         // notify data changed
-        dataChanged();
+        dataChanged(null, c);
     }
 
     /**
@@ -3449,7 +3539,21 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
      */
     public void dataChanged()
     {
-        updater.changed(new IcyBufferedImageEvent(this, IcyBufferedImageEventType.DATA_CHANGED));
+        dataChanged(null, -1);
+    }
+
+    /**
+     * Notify image data has changed in the specified region and channel.<br>
+     * Listeners can then only update the changed part (see {@link IcyBufferedImageEvent#getRegion()}).
+     * 
+     * @param region
+     *        changed region (<code>null</code> = whole image)
+     * @param channel
+     *        changed channel (-1 = all channels)
+     */
+    public void dataChanged(Rectangle region, int channel)
+    {
+        updater.changed(new IcyBufferedImageEvent(this, IcyBufferedImageEventType.DATA_CHANGED, channel, region));
     }
 
     /**
@@ -3522,7 +3626,10 @@ public class IcyBufferedImage extends BufferedImage implements IcyColorModelList
             case DATA_CHANGED:
                 // update image components bounds
                 if (autoUpdateChannelBounds)
-                    updateChannelsBounds();
+                    updateChannelsBounds(event.getRegion(), event.getParam());
+                else
+                    // calculated bounds are no more valid
+                    calculatedBounds = null;
                 break;
 
             // do here global process on image bounds change
@@ -20,6 +20,8 @@ package icy.image;
 
 import icy.common.CollapsibleEvent;
 
+import java.awt.Rectangle;
+
 /**
  * @author Stephane
  */
@@ -33,6 +35,10 @@ public class IcyBufferedImageEvent implements CollapsibleEvent
     private final IcyBufferedImage image;
     private final IcyBufferedImageEventType type;
     private int param;
+    /**
+     * changed region for DATA_CHANGED event (null = whole image)
+     */
+    private Rectangle region;
 
     /**
      * @param image
@@ -49,12 +55,29 @@ public class IcyBufferedImageEvent implements CollapsibleEvent
      * @param param
      */
     public IcyBufferedImageEvent(IcyBufferedImage image, IcyBufferedImageEventType type, int param)
+    {
+        this(image, type, param, null);
+    }
+
+    /**
+     * @param image
+     * @param type
+     * @param param
+     *        channel index (-1 = all channels)
+     * @param region
+     *        changed region for DATA_CHANGED event (<code>null</code> = whole image)
+     */
+    public IcyBufferedImageEvent(IcyBufferedImage image, IcyBufferedImageEventType type, int param, Rectangle region)
     {
         super();
 
         this.image = image;
         this.type = type;
         this.param = param;
+        if (region != null)
+            this.region = new Rectangle(region);
+        else
+            this.region = null;
     }
 
     /**
@@ -81,6 +104,18 @@ public class IcyBufferedImageEvent implements CollapsibleEvent
         return param;
     }
 
+    /**
+     * Returns the changed region for DATA_CHANGED event.<br>
+     * Returns <code>null</code> if the whole image changed.
+     */
+    public Rectangle getRegion()
+    {
+        if (region == null)
+            return null;
+
+        return new Rectangle(region);
+    }
+
     @Override
     public boolean collapse(CollapsibleEvent event)
     {
@@ -91,6 +126,11 @@ public class IcyBufferedImageEvent implements CollapsibleEvent
             // set all component
             if (e.getParam() != param)
                 param = -1;
+            // merge changed regions
+            if ((region != null) && (e.region != null))
+                region.add(e.region);
+            else
+                region = null;
 
             return true;
         }
@@ -169,6 +169,48 @@ public class IcyBufferedImageUtil
         return argbImageBuilder.buildARGBImage(source, lut, dest);
     }
 
+    /**
+     * Draw the specified region of the source {@link IcyBufferedImage} into the destination ARGB
+     * {@link BufferedImage} taking only one pixel every <code>subsampling</code> pixels in X and Y.<br>
+     * If <code>dest</code> is null or does not have the wanted size then a new ARGB {@link BufferedImage} is
+     * returned.<br>
+     * The resulting image size is <code>ceil(region.width / subsampling) x ceil(region.height / subsampling)</code>
+     * so this is much faster than {@link #getARGBImage(IcyBufferedImage, LUT, BufferedImage)} when we only need
+     * a small part or a low resolution version of a large image.
+     *
+     * @param source
+     *        source image
+     * @param region
+     *        region of the source image to convert (clipped to image bounds), full image if <code>null</code>
+     * @param subsampling
+     *        subsampling factor (1 means full resolution)
+     * @param lut
+     *        {@link LUT} is used for color calculation (internal lut is used if null).
+     * @param dest
+     *        destination image
+     */
+    public static BufferedImage getARGBImage(IcyBufferedImage source, Rectangle region, int subsampling, LUT lut,
+            BufferedImage dest)
+    {
+        if (source == null)
+            return null;
+
+        final Rectangle bounds = source.getBounds();
+        final Rectangle adjRegion;
+
+        if (region == null)
+            adjRegion = bounds;
+        else
+            adjRegion = region.intersection(bounds);
+
+        // use image lut when no specific lut
+        if (lut == null)
+            return argbImageBuilder.buildARGBImage(source, adjRegion, subsampling, source.createCompatibleLUT(false),
+                    dest);
+
+        return argbImageBuilder.buildARGBImage(source, adjRegion, subsampling, lut, dest);
+    }
+
     /**
      * Draw the source {@link IcyBufferedImage} into the destination ARGB {@link BufferedImage}<br>
      * If <code>dest</code> is null then a new ARGB {@link BufferedImage} is returned.<br>
@@ -20,7 +20,8 @@ package icy.image;
 
 import icy.roi.BooleanMask2D;
 import icy.roi.ROI;
-import icy.type.DataIterator;
+import icy.type.DataSpanIterator;
+import icy.type.DataSpanVisitor;
 import icy.type.DataType;
 import icy.type.collection.array.Array1DUtil;
 
@@ -32,12 +33,14 @@ import java.util.NoSuchElementException;
  * This class permit to use simple iterator to read / write <code>IcyBufferedImage</code> data<br>
  * as double in XYC <i>([C[Y[X]]])</i> dimension order .<br>
  * Whatever is the internal {@link DataType} data is returned and set as double.<br>
+ * Data can also be processed by spans of contiguous values with {@link #forEachSpan(DataSpanVisitor)}
+ * which is much faster for bulk operations.<br>
  * <b>If the image size or type is modified during iteration the iterator
  * becomes invalid and can causes exception to happen.</b>
  * 
  * @author Stephane
  */
-public class ImageDataIterator implements DataIterator
+public class ImageDataIterator implements DataSpanIterator
 {
     protected final IcyBufferedImage image;
     protected final DataType dataType;
@@ -58,16 +61,20 @@ public class ImageDataIterator implements DataIterator
     protected Object data;
 
     /**
-     * Create a new ImageData iterator to iterate data through the specified XY region and channel.
+     * Create a new ImageData iterator to iterate data through the specified XY region, <code>BooleanMask2D</code>
+     * and channel.
      * 
      * @param image
      *        Image we want to iterate data from
-     * @param XYBounds
-     *        XY region to iterate (inclusive).
+     * @param boundsXY
+     *        XY region to iterate (inclusive), when a mask is specified it is used to clip the mask region (can
+     *        be <code>null</code> in this case).
+     * @param maskXY
+     *        BooleanMask2D defining the XY region to iterate (can be <code>null</code>)
      * @param channel
      *        channel (C position) we want to iterate data
      */
-    protected ImageDataIterator(IcyBufferedImage image, Rectangle boundsXY, BooleanMask2D maskXY, int channel)
+    public ImageDataIterator(IcyBufferedImage image, Rectangle boundsXY, BooleanMask2D maskXY, int channel)
     {
         super();
 
@@ -92,7 +99,10 @@ public class ImageDataIterator implements DataIterator
             c = 0;
         }
 
-        finalBounds = regionBounds.intersection(imageBounds);
+        if ((maskXY != null) && (boundsXY != null))
+            finalBounds = regionBounds.intersection(imageBounds).intersection(boundsXY);
+        else
+            finalBounds = regionBounds.intersection(imageBounds);
 
         // cached
         w = finalBounds.width;
@@ -308,6 +318,121 @@ public class ImageDataIterator implements DataIterator
         Array1DUtil.setValue(data, imgOff, dataType, value);
     }
 
+    @Override
+    public void forEachSpan(DataSpanVisitor visitor)
+    {
+        forEachSpan(visitor, 0, 0);
+    }
+
+    /**
+     * Image iterator cannot be split (returns <code>null</code>), use {@link icy.sequence.SequenceDataIterator}
+     * to process image data in parallel.
+     */
+    @Override
+    public DataSpanIterator trySplit()
+    {
+        return null;
+    }
+
+    /**
+     * Give all data of the iterator to the visitor by spans of contiguous values (row by row).<br>
+     * Spans are the rows of the region or the runs of the mask rows when the iterator uses a
+     * {@link BooleanMask2D}.<br>
+     * The iterator is reset to its initial position after the operation.
+     * 
+     * @param z
+     *        Z position given to the visitor
+     * @param t
+     *        T position given to the visitor
+     */
+    public void forEachSpan(DataSpanVisitor visitor, int z, int t)
+    {
+        if ((image == null) || (c < 0) || (c >= image.getSizeC()) || finalBounds.isEmpty())
+            return;
+
+        final Object array = image.getDataXY(c);
+        final int startX = finalBounds.x;
+        int off = (startX - imageBounds.x) + ((finalBounds.y - imageBounds.y) * imageBounds.width);
+
+        if (mask != null)
+        {
+            final boolean[] m = mask.mask;
+            int mOff = (startX - regionBounds.x) + ((finalBounds.y - regionBounds.y) * regionBounds.width);
+
+            for (int j = 0; j < h; j++)
+            {
+                final int py = finalBounds.y + j;
+                int i = 0;
+
+                while (i < w)
+                {
+                    // find start of run
+                    while ((i < w) && !m[mOff + i])
+                        i++;
+
+                    final int start = i;
+
+                    // find end of run
+                    while ((i < w) && m[mOff + i])
+                        i++;
+
+                    if (i > start)
+                        visitSpan(visitor, array, off + start, i - start, startX + start, py, z, t);
+                }
+
+                off += imageBounds.width;
+                mOff += regionBounds.width;
+            }
+        }
+        else
+        {
+            for (int j = 0; j < h; j++)
+            {
+                visitSpan(visitor, array, off, w, startX, finalBounds.y + j, z, t);
+                off += imageBounds.width;
+            }
+        }
+
+        reset();
+    }
+
+    /**
+     * Give the specified span to the visitor (typed dispatch).
+     */
+    protected void visitSpan(DataSpanVisitor visitor, Object array, int offset, int length, int x, int y, int z,
+            int t)
+    {
+        switch (dataType.getJavaType())
+        {
+            case BYTE:
+                visitor.visitByte((byte[]) array, offset, length, dataType.isSigned(), x, y, z, t, c);
+                break;
+
+            case SHORT:
+                visitor.visitShort((short[]) array, offset, length, dataType.isSigned(), x, y, z, t, c);
+                break;
+
+            case INT:
+                visitor.visitInt((int[]) array, offset, length, dataType.isSigned(), x, y, z, t, c);
+                break;
+
+            case LONG:
+                visitor.visitLong((long[]) array, offset, length, dataType.isSigned(), x, y, z, t, c);
+                break;
+
+            case FLOAT:
+                visitor.visitFloat((float[]) array, offset, length, x, y, z, t, c);
+                break;
+
+            case DOUBLE:
+                visitor.visitDouble((double[]) array, offset, length, x, y, z, t, c);
+                break;
+
+            default:
+                break;
+        }
+    }
+
     /**
      * Returns current X position.
      */
@@ -116,7 +116,7 @@ public interface ImageProvider
      *        So for instance level 0 is the default image resolution while level 1 is base image
      *        resolution / 2 and so on...
      * @param rectangle
-     *        The 2D region we want to retrieve.<br>
+     *        The 2D region we want to retrieve (expressed in the wanted resolution level coordinates).<br>
      *        If set to <code>null</code> then the whole image is returned.
      * @param z
      *        Z position of the image (slice) we want retrieve
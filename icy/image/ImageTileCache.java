@@ -0,0 +1,462 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ *
+ * This file is part of Icy.
+ *
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.image;
+
+import icy.common.exception.UnsupportedFormatException;
+import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
+import icy.system.thread.Processor;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+/**
+ * Memory bounded cache of image tiles read from {@link ImageProvider}.<br>
+ * Tiles are read asynchronously by a pool of worker threads and least recently used tiles are discarded
+ * when the memory budget is exceeded. It is used to browse images which are too large to be loaded in
+ * memory at once (multi resolution tiled pyramid).<br>
+ * Note that all accesses to a provider are synchronized on the provider instance (the lock is shared with
+ * {@link icy.sequence.ImageProviderPlaneCache}), reads from a same provider are then serialized.
+ */
+public class ImageTileCache
+{
+    /**
+     * Listener notified when a requested tile has been read.
+     */
+    public static interface TileListener
+    {
+        /**
+         * Called from a worker thread when the specified tile is available.
+         */
+        public void tileLoaded(Tile tile);
+    }
+
+    /**
+     * Tile identifier
+     */
+    public static class Tile
+    {
+        final ImageProvider provider;
+        final int serie;
+        final int resolution;
+        final int z;
+        final int t;
+        /**
+         * tile region (resolution level coordinates)
+         */
+        final Rectangle region;
+
+        /**
+         * @param provider
+         *        image provider to read tile from
+         * @param serie
+         *        serie index
+         * @param resolution
+         *        resolution level (see {@link ImageProvider#getImage(int, int, Rectangle, int, int, int)})
+         * @param z
+         *        Z position
+         * @param t
+         *        T position
+         * @param region
+         *        tile region (resolution level coordinates)
+         */
+        public Tile(ImageProvider provider, int serie, int resolution, int z, int t, Rectangle region)
+        {
+            super();
+
+            this.provider = provider;
+            this.serie = serie;
+            this.resolution = resolution;
+            this.z = z;
+            this.t = t;
+            this.region = new Rectangle(region);
+        }
+
+        public ImageProvider getProvider()
+        {
+            return provider;
+        }
+
+        public int getSerie()
+        {
+            return serie;
+        }
+
+        public int getResolution()
+        {
+            return resolution;
+        }
+
+        public int getZ()
+        {
+            return z;
+        }
+
+        public int getT()
+        {
+            return t;
+        }
+
+        /**
+         * Returns the tile region (resolution level coordinates)
+         */
+        public Rectangle getRegion()
+        {
+            return new Rectangle(region);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof Tile)
+            {
+                final Tile tile = (Tile) obj;
+
+                return (tile.provider == provider) && (tile.serie == serie) && (tile.resolution == resolution)
+                        && (tile.z == z) && (tile.t == t) && tile.region.equals(region);
+            }
+
+            return super.equals(obj);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(provider) ^ (serie << 28) ^ (resolution << 24) ^ (z << 16) ^ (t << 8)
+                    ^ region.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "tile [S=" + serie + ", R=" + resolution + ", Z=" + z + ", T=" + t + ", " + region.x + ","
+                    + region.y + " " + region.width + "x" + region.height + "]";
+        }
+    }
+
+    private class TileRequest implements Runnable
+    {
+        final Tile tile;
+        final TileListener listener;
+        volatile boolean cancelled;
+
+        TileRequest(Tile tile, TileListener listener)
+        {
+            super();
+
+            this.tile = tile;
+            this.listener = listener;
+            cancelled = false;
+        }
+
+        @Override
+        public void run()
+        {
+            // not anymore wanted
+            if (cancelled)
+                return;
+
+            try
+            {
+                loadTile(tile);
+            }
+            finally
+            {
+                synchronized (tiles)
+                {
+                    if (pending.get(tile) == this)
+                        pending.remove(tile);
+                }
+            }
+
+            if (!cancelled && (get(tile) != null))
+                listener.tileLoaded(tile);
+        }
+    }
+
+    private static ImageTileCache instance = null;
+
+    /**
+     * Returns the default tile cache (shared by all viewers).<br>
+     * It uses a single worker thread: a provider can only be read by one thread at once (reads are
+     * synchronized on the provider) so more workers would only block on the provider lock.
+     */
+    public static synchronized ImageTileCache getInstance()
+    {
+        if (instance == null)
+            instance = new ImageTileCache(SystemUtil.getJavaMaxMemory() / 8, 1);
+
+        return instance;
+    }
+
+    /**
+     * Returns size in bytes of the specified tile image.
+     */
+    public static long getTileSize(IcyBufferedImage image)
+    {
+        return (long) image.getSizeX() * (long) image.getSizeY() * (long) image.getSizeC()
+                * image.getDataType_().getSize();
+    }
+
+    /**
+     * cached tiles (access ordered)
+     */
+    final LinkedHashMap<Tile, IcyBufferedImage> tiles;
+    /**
+     * waiting or processing tile requests
+     */
+    final HashMap<Tile, TileRequest> pending;
+    private final Processor processor;
+    private long maxMemory;
+    private long usedMemory;
+
+    /**
+     * Create a new tile cache.
+     *
+     * @param maxMemory
+     *        memory budget (in bytes) for cached tiles
+     * @param numThread
+     *        number of worker threads used to read tiles (reads of a same provider are serialized so more
+     *        than one thread only helps when tiles of several providers are requested)
+     */
+    public ImageTileCache(long maxMemory, int numThread)
+    {
+        super();
+
+        this.maxMemory = maxMemory;
+        usedMemory = 0L;
+
+        tiles = new LinkedHashMap<Tile, IcyBufferedImage>(64, 0.75f, true);
+        pending = new HashMap<Tile, TileRequest>();
+
+        processor = new Processor(-1, numThread);
+        processor.setThreadName("Tile loader");
+        processor.setPriority(Processor.NORM_PRIORITY - 1);
+    }
+
+    /**
+     * Returns the memory budget (in bytes) for cached tiles.
+     */
+    public long getMaxMemory()
+    {
+        return maxMemory;
+    }
+
+    /**
+     * Set the memory budget (in bytes) for cached tiles.
+     */
+    public void setMaxMemory(long value)
+    {
+        synchronized (tiles)
+        {
+            maxMemory = value;
+            evict(null);
+        }
+    }
+
+    /**
+     * Returns the memory (in bytes) currently used by cached tiles.
+     */
+    public long getUsedMemory()
+    {
+        synchronized (tiles)
+        {
+            return usedMemory;
+        }
+    }
+
+    /**
+     * Returns the cached tile image or <code>null</code> if the tile is not in the cache.
+     */
+    public IcyBufferedImage get(Tile tile)
+    {
+        synchronized (tiles)
+        {
+            return tiles.get(tile);
+        }
+    }
+
+    /**
+     * Returns the cached tile image.<br>
+     * If the tile is not in the cache it is read in background and the listener is notified when it
+     * becomes available, <code>null</code> is returned in the meantime.
+     */
+    public IcyBufferedImage getTile(Tile tile, TileListener listener)
+    {
+        synchronized (tiles)
+        {
+            final IcyBufferedImage result = tiles.get(tile);
+
+            if (result != null)
+                return result;
+
+            final TileRequest request = pending.get(tile);
+
+            // already requested
+            if ((request != null) && !request.cancelled)
+                return null;
+
+            final TileRequest newRequest = new TileRequest(tile, listener);
+
+            pending.put(tile, newRequest);
+            processor.submit(newRequest);
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the tile image, the tile is read now (in the calling thread) if not in the cache.<br>
+     * Returns <code>null</code> if the tile cannot be read.
+     */
+    public IcyBufferedImage loadTile(Tile tile)
+    {
+        IcyBufferedImage result = get(tile);
+
+        if (result != null)
+            return result;
+
+        try
+        {
+            synchronized (tile.provider)
+            {
+                result = tile.provider.getImage(tile.serie, tile.resolution, tile.region, tile.z, tile.t);
+            }
+        }
+        catch (UnsupportedFormatException e)
+        {
+            System.err.println("ImageTileCache: cannot read " + tile);
+            IcyExceptionHandler.showErrorMessage(e, false, true);
+        }
+        catch (IOException e)
+        {
+            System.err.println("ImageTileCache: cannot read " + tile);
+            IcyExceptionHandler.showErrorMessage(e, false, true);
+        }
+
+        if (result != null)
+        {
+            synchronized (tiles)
+            {
+                final IcyBufferedImage old = tiles.put(tile, result);
+
+                if (old != null)
+                    usedMemory -= getTileSize(old);
+                usedMemory += getTileSize(result);
+
+                evict(tile);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Cancel all waiting tile requests of the specified listener.
+     */
+    public void cancel(TileListener listener)
+    {
+        synchronized (tiles)
+        {
+            final Iterator<TileRequest> it = pending.values().iterator();
+
+            while (it.hasNext())
+            {
+                final TileRequest request = it.next();
+
+                if (request.listener == listener)
+                {
+                    request.cancelled = true;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all tiles of the specified provider from the cache (waiting requests are cancelled).
+     */
+    public void removeTiles(ImageProvider provider)
+    {
+        synchronized (tiles)
+        {
+            final Iterator<TileRequest> itReq = pending.values().iterator();
+
+            while (itReq.hasNext())
+            {
+                final TileRequest request = itReq.next();
+
+                if (request.tile.provider == provider)
+                {
+                    request.cancelled = true;
+                    itReq.remove();
+                }
+            }
+
+            final Iterator<Entry<Tile, IcyBufferedImage>> it = tiles.entrySet().iterator();
+
+            while (it.hasNext())
+            {
+                final Entry<Tile, IcyBufferedImage> entry = it.next();
+
+                if (entry.getKey().provider == provider)
+                {
+                    usedMemory -= getTileSize(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all tiles from the cache.
+     */
+    public void clear()
+    {
+        synchronized (tiles)
+        {
+            tiles.clear();
+            usedMemory = 0L;
+        }
+    }
+
+    /**
+     * Discard least recently used tiles to respect memory budget (should be called with lock)
+     */
+    private void evict(Tile keep)
+    {
+        final Iterator<Entry<Tile, IcyBufferedImage>> it = tiles.entrySet().iterator();
+
+        while ((usedMemory > maxMemory) && it.hasNext())
+        {
+            final Entry<Tile, IcyBufferedImage> entry = it.next();
+
+            // don't discard the tile we just added
+            if (!entry.getKey().equals(keep))
+            {
+                usedMemory -= getTileSize(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+}
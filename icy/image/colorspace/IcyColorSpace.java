@@ -28,6 +28,7 @@ import icy.image.colormap.IcyColorMapEvent;
 import icy.image.colormap.IcyColorMapListener;
 import icy.image.colormap.LinearColorMap;
 import icy.image.colormodel.IcyColorModel;
+import icy.image.colorspace.IcyColorSpace.ARGBKernel.ARGBKernelType;
 import icy.type.DataType;
 import icy.type.collection.array.ArrayUtil;
 import icy.util.ColorUtil;
@@ -35,6 +36,7 @@ import icy.util.ColorUtil;
 import java.awt.color.ColorSpace;
 import java.awt.image.ColorModel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -42,6 +44,101 @@ import java.util.List;
  */
 public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColorMapListener
 {
+    /**
+     * Specialized ARGB conversion kernel computed from the current colormaps state.<br>
+     * A kernel is immutable, a new one is built when a colormap changes (see
+     * {@link IcyColorSpace#getARGBKernel()}).
+     */
+    public static class ARGBKernel
+    {
+        public static enum ARGBKernelType
+        {
+            /**
+             * no enabled component, result is fully transparent
+             */
+            TRANSPARENT,
+            /**
+             * single enabled component, ARGB value is directly read from a precomputed table
+             */
+            SINGLE,
+            /**
+             * opaque components (no alpha) simply added, RGB values are read from precomputed tables
+             */
+            ADDITIVE,
+            /**
+             * generic conversion (see {@link IcyColorSpace#toRGBUnnorm(int[])})
+             */
+            GENERIC
+        };
+
+        /**
+         * ADDITIVE packing : b | (g << 10) | (r << 20), 10 bits per color to sum up to 4 components
+         */
+        static final int ADDITIVE_SHIFT = 10;
+        static final int ADDITIVE_MASK = (1 << ADDITIVE_SHIFT) - 1;
+        static final int ADDITIVE_MAX_COMPONENT = 4;
+
+        final ARGBKernelType type;
+        final int[] components;
+        final int[][] tables;
+
+        ARGBKernel(ARGBKernelType type, int[] components, int[][] tables)
+        {
+            super();
+
+            this.type = type;
+            this.components = components;
+            this.tables = tables;
+        }
+
+        public ARGBKernelType getType()
+        {
+            return type;
+        }
+
+        /**
+         * Returns index of components used by this kernel (enabled components).<br>
+         * Others components does not need to be scaled.
+         */
+        public int[] getComponents()
+        {
+            return components.clone();
+        }
+
+        /**
+         * Returns the precomputed table (256 entries) for the specified kernel component index :<br>
+         * ARGB values for <code>SINGLE</code> kernel, packed RGB values for <code>ADDITIVE</code> kernel.<br>
+         * Returns <code>null</code> for others kernel type.
+         */
+        public int[] getTable(int index)
+        {
+            if (tables == null)
+                return null;
+
+            return tables[index];
+        }
+
+        /**
+         * Returns ARGB value from packed and added RGB values (<code>ADDITIVE</code> kernel).
+         */
+        public static int unpackAdditive(int value)
+        {
+            // final alpha is 255 so we normalize with (x * 257) >> 8 as toRGBUnnorm(..) does
+            int b = ((value & ADDITIVE_MASK) * 257) >> 8;
+            int g = (((value >> ADDITIVE_SHIFT) & ADDITIVE_MASK) * 257) >> 8;
+            int r = (((value >> (ADDITIVE_SHIFT * 2)) & ADDITIVE_MASK) * 257) >> 8;
+
+            if (b > IcyColorMap.MAX_LEVEL)
+                b = IcyColorMap.MAX_LEVEL;
+            if (g > IcyColorMap.MAX_LEVEL)
+                g = IcyColorMap.MAX_LEVEL;
+            if (r > IcyColorMap.MAX_LEVEL)
+                r = IcyColorMap.MAX_LEVEL;
+
+            return b | (g << 8) | (r << 16) | 0xFF000000;
+        }
+    }
+
     /**
      * 
      */
@@ -71,6 +168,11 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
      */
     private final UpdateEventHandler updater;
 
+    /**
+     * cached ARGB kernel (rebuilt on colormap change)
+     */
+    private transient volatile ARGBKernel argbKernel;
+
     /**
      * Create an icy colorspace object
      * 
@@ -413,6 +515,113 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
         return result;
     }
 
+    /**
+     * Returns the ARGB conversion kernel for the current colormaps state.<br>
+     * The kernel tells which components are actually used so callers can avoid to scale the others.
+     */
+    public ARGBKernel getARGBKernel()
+    {
+        ARGBKernel result = argbKernel;
+
+        if (result == null)
+        {
+            synchronized (toRGBmaps)
+            {
+                result = argbKernel;
+
+                if (result == null)
+                {
+                    result = createARGBKernel();
+                    argbKernel = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private ARGBKernel createARGBKernel()
+    {
+        final int numComponents = getNumComponents();
+        int numEnabled = 0;
+
+        for (int comp = 0; comp < numComponents; comp++)
+            if (toRGBmaps[comp].isEnabled())
+                numEnabled++;
+
+        final int[] components = new int[numEnabled];
+        boolean additive = (numEnabled <= ARGBKernel.ADDITIVE_MAX_COMPONENT);
+
+        for (int comp = 0, ind = 0; comp < numComponents; comp++)
+        {
+            final IcyColorMap cm = toRGBmaps[comp];
+
+            if (cm.isEnabled())
+            {
+                components[ind++] = comp;
+
+                // additive kernel requires opaque colormaps (alpha does not change the final color)
+                if (additive)
+                {
+                    if (cm.getType() == IcyColorMapType.ALPHA)
+                        additive = false;
+                    else
+                    {
+                        for (float a : cm.alpha.mapf)
+                        {
+                            if (a != 1f)
+                            {
+                                additive = false;
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        if (numEnabled == 0)
+            return new ARGBKernel(ARGBKernelType.TRANSPARENT, components, null);
+
+        if (numEnabled == 1)
+        {
+            final int comp = components[0];
+            final int[] input = new int[numComponents];
+            final int[] table = new int[IcyColorMap.SIZE];
+
+            for (int v = 0; v < IcyColorMap.SIZE; v++)
+            {
+                input[comp] = v;
+                table[v] = toRGBUnnorm(input);
+            }
+
+            return new ARGBKernel(ARGBKernelType.SINGLE, components, new int[][] {table});
+        }
+
+        if (additive)
+        {
+            final int[][] tables = new int[numEnabled][IcyColorMap.SIZE];
+
+            for (int ind = 0; ind < numEnabled; ind++)
+            {
+                final int[][] premulRGB = toRGBmaps[components[ind]].getPremulRGB();
+                final int[] table = tables[ind];
+
+                for (int v = 0; v < IcyColorMap.SIZE; v++)
+                {
+                    final int[] rgb = premulRGB[v];
+
+                    table[v] = rgb[0] | (rgb[1] << ARGBKernel.ADDITIVE_SHIFT)
+                            | (rgb[2] << (ARGBKernel.ADDITIVE_SHIFT * 2));
+                }
+            }
+
+            return new ARGBKernel(ARGBKernelType.ADDITIVE, components, tables);
+        }
+
+        return new ARGBKernel(ARGBKernelType.GENERIC, components, null);
+    }
+
     /**
      * Set 8 bit ARGB data in an ARGB buffer from a scaled input buffer
      * 
@@ -423,20 +632,90 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
      */
     public void fillARGBBuffer(int[][] unnormSrc, int[] dest, int offset, int length)
     {
-        final int numComponents = getNumComponents();
+        fillARGBBuffer(getARGBKernel(), unnormSrc, dest, offset, length);
+    }
 
-        if (numComponents > 0)
+    /**
+     * Set 8 bit ARGB data in an ARGB buffer from a scaled input buffer using the specified kernel.<br>
+     * Only components used by the kernel (see {@link ARGBKernel#getComponents()}) need to be filled in the
+     * source buffer.
+     * 
+     * @param kernel
+     *        ARGB kernel (see {@link #getARGBKernel()})
+     * @param unnormSrc
+     *        source buffer containing unnormalized values ([0..255] range) for each component
+     * @param dest
+     *        ARGB components buffer
+     */
+    public void fillARGBBuffer(ARGBKernel kernel, int[][] unnormSrc, int[] dest, int offset, int length)
+    {
+        switch (kernel.type)
         {
-            final int[] input = new int[numComponents];
+            case TRANSPARENT:
+                Arrays.fill(dest, offset, offset + length, 0);
+                break;
+
+            case SINGLE:
+            {
+                final int[] src = unnormSrc[kernel.components[0]];
+                final int[] table = kernel.tables[0];
+
+                for (int i = 0; i < length; i++)
+                    dest[offset + i] = table[src[i]];
+                break;
+            }
 
-            for (int i = 0; i < length; i++)
+            case ADDITIVE:
             {
-                // get data value
-                for (int comp = 0; comp < numComponents; comp++)
-                    input[comp] = unnormSrc[comp][i];
+                final int[] src0 = unnormSrc[kernel.components[0]];
+                final int[] src1 = unnormSrc[kernel.components[1]];
+                final int[] table0 = kernel.tables[0];
+                final int[] table1 = kernel.tables[1];
+
+                if (kernel.components.length == 2)
+                {
+                    for (int i = 0; i < length; i++)
+                        dest[offset + i] = ARGBKernel.unpackAdditive(table0[src0[i]] + table1[src1[i]]);
+                }
+                else if (kernel.components.length == 3)
+                {
+                    final int[] src2 = unnormSrc[kernel.components[2]];
+                    final int[] table2 = kernel.tables[2];
 
-                // convert to RGBA
-                dest[offset + i] = toRGBUnnorm(input);
+                    for (int i = 0; i < length; i++)
+                        dest[offset + i] = ARGBKernel.unpackAdditive(table0[src0[i]] + table1[src1[i]]
+                                + table2[src2[i]]);
+                }
+                else
+                {
+                    final int[] src2 = unnormSrc[kernel.components[2]];
+                    final int[] src3 = unnormSrc[kernel.components[3]];
+                    final int[] table2 = kernel.tables[2];
+                    final int[] table3 = kernel.tables[3];
+
+                    for (int i = 0; i < length; i++)
+                        dest[offset + i] = ARGBKernel.unpackAdditive(table0[src0[i]] + table1[src1[i]]
+                                + table2[src2[i]] + table3[src3[i]]);
+                }
+                break;
+            }
+
+            default:
+            {
+                final int numComponents = getNumComponents();
+                final int[] input = new int[numComponents];
+                final int[] components = kernel.components;
+
+                for (int i = 0; i < length; i++)
+                {
+                    // get data value (only enabled components are used)
+                    for (int comp : components)
+                        input[comp] = unnormSrc[comp][i];
+
+                    // convert to RGBA
+                    dest[offset + i] = toRGBUnnorm(input);
+                }
+                break;
             }
         }
     }
@@ -465,20 +744,7 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
         }
 
         if (numComponents > 0)
-        {
-            final int size = unnormSrc[0].length;
-            final int[] input = new int[numComponents];
-
-            for (int i = 0; i < size; i++)
-            {
-                // get data value
-                for (int comp = 0; comp < numComponents; comp++)
-                    input[comp] = unnormSrc[comp][i];
-
-                // convert to RGBA
-                dest[i] = toRGBUnnorm(input);
-            }
-        }
+            fillARGBBuffer(getARGBKernel(), unnormSrc, dest, 0, unnormSrc[0].length);
     }
 
     /**
@@ -879,6 +1145,12 @@ public class IcyColorSpace extends ColorSpace implements ChangeListener, IcyColo
      */
     private void changed(int component)
     {
+        // ARGB kernel need to be rebuilt
+        synchronized (toRGBmaps)
+        {
+            argbKernel = null;
+        }
+
         final IcyColorMap colorMap = getColorMap(component);
 
         // we can have only 1 alpha colormap
@@ -23,7 +23,8 @@ import icy.type.collection.array.Array1DUtil;
 import icy.type.collection.array.ArrayUtil;
 
 /**
- * Class defining basic arithmetic and statistic operations on 1D double arrays.
+ * Class defining basic arithmetic and statistic operations on 1D double arrays.<br>
+ * See {@link ParallelArrayMath} for parallel versions of the main operations (faster on large arrays).
  * 
  * @author Alexandre Dufour & Stephane
  */
@@ -2442,7 +2443,9 @@ public class ArrayMath
     }
 
     /**
-     * Reorders the given array to compute its median value
+     * Reorders the given array to compute its median value.<br>
+     * The returned value is an element of the array (no interpolation for even length, see
+     * {@link #median(Object, boolean)} for an interpolated median).
      * 
      * @param input
      * @param preserveData
@@ -2453,6 +2456,24 @@ public class ArrayMath
         return select(input.length / 2, preserveData ? input.clone() : input);
     }
 
+    /**
+     * Computes the median value of the given array (same as {@link #median(double[], boolean)} with
+     * <code>preserveData</code> set to <code>true</code>) using the specified buffer as work array.
+     * 
+     * @param input
+     * @param buffer
+     *        work array, it is allocated only if <code>null</code> or smaller than <code>input</code> so it can be
+     *        reused between calls
+     */
+    public static double median(double[] input, double[] buffer)
+    {
+        final double[] temp = getBuffer(buffer, input.length);
+
+        System.arraycopy(input, 0, temp, 0, input.length);
+
+        return select(input.length / 2, temp, input.length);
+    }
+
     /**
      * Computes the Maximum Absolute Deviation aka MAD of the given array
      * 
@@ -2462,19 +2483,123 @@ public class ArrayMath
      */
     public static double mad(double[] input, boolean normalPopulation)
     {
-        double[] temp = new double[input.length];
-        double median = median(input, true);
+        return mad(input, normalPopulation, null);
+    }
+
+    /**
+     * Computes the Maximum Absolute Deviation aka MAD of the given array using the specified buffer as work array.
+     * 
+     * @param input
+     * @param normalPopulation
+     *        normalizes the population by 1.4826
+     * @param buffer
+     *        work array, it is allocated only if <code>null</code> or smaller than <code>input</code> so it can be
+     *        reused between calls
+     */
+    public static double mad(double[] input, boolean normalPopulation, double[] buffer)
+    {
+        final int len = input.length;
+        final double[] temp = getBuffer(buffer, len);
+
+        System.arraycopy(input, 0, temp, 0, len);
+
+        // select only reorders values so deviations can be computed in place
+        final double median = select(len / 2, temp, len);
 
         if (normalPopulation)
-            for (int i = 0; i < input.length; i++)
-                temp[i] = 1.4826f * (input[i] - median);
+            for (int i = 0; i < len; i++)
+                temp[i] = Math.abs(1.4826f * (temp[i] - median));
         else
-            for (int i = 0; i < input.length; i++)
-                temp[i] = (input[i] - median);
+            for (int i = 0; i < len; i++)
+                temp[i] = Math.abs(temp[i] - median);
 
-        abs(temp, true);
+        return select(len / 2, temp, len);
+    }
+
+    private static double[] getBuffer(double[] buffer, int len)
+    {
+        if ((buffer == null) || (buffer.length < len))
+            return new double[len];
 
-        return median(temp, false);
+        return buffer;
+    }
+
+    /**
+     * Computes the quantile of the given rank (0 = minimum, 0.5 = median, 1 = maximum) of the specified array
+     * without copying or reordering it.<br>
+     * Result is exact for integer arrays with a range of values lower than {@link QuantileEstimator#MAX_EXACT_RANGE},
+     * otherwise (float arrays or larger range) it has a bounded relative error (see {@link QuantileEstimator}).
+     * 
+     * @param array
+     *        an array
+     * @param q
+     *        quantile rank in [0, 1]
+     * @param signed
+     *        signed / unsigned flag
+     */
+    public static double quantile(Object array, double q, boolean signed)
+    {
+        final QuantileEstimator estimator = new QuantileEstimator();
+
+        estimator.addValues(array, 0, ArrayUtil.getLength(array), signed);
+
+        return estimator.getQuantile(q);
+    }
+
+    /**
+     * Computes the quantiles of the given ranks (0 = minimum, 0.5 = median, 1 = maximum) of the specified array in
+     * a single pass without copying or reordering it.<br>
+     * Results are exact for integer arrays with a range of values lower than
+     * {@link QuantileEstimator#MAX_EXACT_RANGE}, otherwise (float arrays or larger range) they have a bounded
+     * relative error (see {@link QuantileEstimator}).
+     * 
+     * @param array
+     *        an array
+     * @param q
+     *        quantile ranks in [0, 1]
+     * @param signed
+     *        signed / unsigned flag
+     */
+    public static double[] quantiles(Object array, double[] q, boolean signed)
+    {
+        final QuantileEstimator estimator = new QuantileEstimator();
+
+        estimator.addValues(array, 0, ArrayUtil.getLength(array), signed);
+
+        return estimator.getQuantiles(q);
+    }
+
+    /**
+     * Computes the median value of the specified array without copying or reordering it.<br>
+     * Result is interpolated between the two middle values for even length (unlike
+     * {@link #median(double[], boolean)} which returns an element of the array).<br>
+     * It is exact for integer arrays with a range of values lower than {@link QuantileEstimator#MAX_EXACT_RANGE},
+     * otherwise (float arrays or larger range) it has a bounded relative error (see {@link QuantileEstimator}).
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     */
+    public static double median(Object array, boolean signed)
+    {
+        return quantile(array, 0.5d, signed);
+    }
+
+    /**
+     * Computes the interquartile range (difference between 75th and 25th percentiles) of the specified array without
+     * copying or reordering it.
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     */
+    public static double interquartileRange(Object array, boolean signed)
+    {
+        final double[] q = quantiles(array, new double[] {0.25d, 0.75d}, signed);
+
+        return q[1] - q[0];
     }
 
     /**
@@ -2489,11 +2614,26 @@ public class ArrayMath
      * @return the k-th smallest value in the array
      */
     public static double select(int k, double[] data)
+    {
+        return select(k, data, data.length);
+    }
+
+    /**
+     * Same as {@link #select(int, double[])} but only the <code>length</code> first values of the array are
+     * considered (allow to use a larger work array).
+     * 
+     * @param k
+     * @param data
+     * @param length
+     *        number of values to consider
+     * @return the k-th smallest value in the array
+     */
+    public static double select(int k, double[] data, int length)
     {
         int i, ir, j, l, mid;
         double a, temp;
         l = 1;
-        ir = data.length;
+        ir = length;
         while (true)
         {
             if (ir <= l + 1)
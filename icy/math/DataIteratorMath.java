@@ -18,16 +18,368 @@
  */
 package icy.math;
 
+import icy.system.SystemUtil;
+import icy.system.thread.ParallelTaskRunner;
 import icy.type.DataIterator;
 import icy.type.DataIteratorUtil;
+import icy.type.DataSpanIterator;
+import icy.type.DataSpanVisitor;
+import icy.type.TypeUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
- * Math utilities for {@link DataIterator} classes.
+ * Math utilities for {@link DataIterator} classes.<br>
+ * {@link DataSpanIterator} are processed by spans of contiguous values (faster).
  * 
  * @author Stephane
  */
 public class DataIteratorMath
 {
+    /**
+     * Computes count, sum, sum of square, minimum and maximum in a single pass over the spans of a
+     * {@link DataSpanIterator}.<br>
+     * Partial statistics (computed from split iterators) can be merged with {@link #add(SpanStatistics)}.
+     */
+    public static class SpanStatistics implements DataSpanVisitor
+    {
+        long count;
+        double sum;
+        double sumSquare;
+        double min;
+        double max;
+
+        /**
+         * Create empty statistics.
+         */
+        public SpanStatistics()
+        {
+            super();
+
+            count = 0L;
+            sum = 0d;
+            sumSquare = 0d;
+            min = Double.MAX_VALUE;
+            max = -Double.MAX_VALUE;
+        }
+
+        /**
+         * Create statistics of all data of the specified iterator.
+         */
+        public SpanStatistics(DataSpanIterator it)
+        {
+            this();
+
+            it.forEachSpan(this);
+        }
+
+        /**
+         * Merge the specified statistics in this one.
+         */
+        public void add(SpanStatistics stats)
+        {
+            count += stats.count;
+            sum += stats.sum;
+            sumSquare += stats.sumSquare;
+            if (stats.min < min)
+                min = stats.min;
+            if (stats.max > max)
+                max = stats.max;
+        }
+
+        /**
+         * Returns the number of values
+         */
+        public long getCount()
+        {
+            return count;
+        }
+
+        public double getSum()
+        {
+            return sum;
+        }
+
+        public double getSumSquare()
+        {
+            return sumSquare;
+        }
+
+        /**
+         * Returns the minimum value (<code>Double.MAX_VALUE</code> if no value)
+         */
+        public double getMin()
+        {
+            return min;
+        }
+
+        /**
+         * Returns the maximum value (<code>-Double.MAX_VALUE</code> if no value)
+         */
+        public double getMax()
+        {
+            return max;
+        }
+
+        /**
+         * Returns the mean value (<code>0</code> if no value)
+         */
+        public double getMean()
+        {
+            if (count == 0L)
+                return 0d;
+
+            return sum / count;
+        }
+
+        /**
+         * Returns the (population) standard deviation (<code>0</code> if no value)
+         */
+        public double getStandardDeviation()
+        {
+            if (count == 0L)
+                return 0d;
+
+            final double mean = sum / count;
+
+            return Math.sqrt(Math.max(0d, (sumSquare / count) - (mean * mean)));
+        }
+
+        private void accumulate(double value)
+        {
+            count++;
+            sum += value;
+            sumSquare += value * value;
+            if (value < min)
+                min = value;
+            if (value > max)
+                max = value;
+        }
+
+        @Override
+        public void visitByte(byte[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+        {
+            final int end = offset + length;
+
+            if (signed)
+            {
+                for (int i = offset; i < end; i++)
+                    accumulate(data[i]);
+            }
+            else
+            {
+                for (int i = offset; i < end; i++)
+                    accumulate(data[i] & 0xFF);
+            }
+        }
+
+        @Override
+        public void visitShort(short[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+        {
+            final int end = offset + length;
+
+            if (signed)
+            {
+                for (int i = offset; i < end; i++)
+                    accumulate(data[i]);
+            }
+            else
+            {
+                for (int i = offset; i < end; i++)
+                    accumulate(data[i] & 0xFFFF);
+            }
+        }
+
+        @Override
+        public void visitInt(int[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+        {
+            final int end = offset + length;
+
+            if (signed)
+            {
+                for (int i = offset; i < end; i++)
+                    accumulate(data[i]);
+            }
+            else
+            {
+                for (int i = offset; i < end; i++)
+                    accumulate(data[i] & 0xFFFFFFFFL);
+            }
+        }
+
+        @Override
+        public void visitLong(long[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+        {
+            final int end = offset + length;
+
+            if (signed)
+            {
+                for (int i = offset; i < end; i++)
+                    accumulate(data[i]);
+            }
+            else
+            {
+                for (int i = offset; i < end; i++)
+                    accumulate(TypeUtil.unsign(data[i]));
+            }
+        }
+
+        @Override
+        public void visitFloat(float[] data, int offset, int length, int x, int y, int z, int t, int c)
+        {
+            final int end = offset + length;
+
+            for (int i = offset; i < end; i++)
+                accumulate(data[i]);
+        }
+
+        @Override
+        public void visitDouble(double[] data, int offset, int length, int x, int y, int z, int t, int c)
+        {
+            final int end = offset + length;
+
+            for (int i = offset; i < end; i++)
+                accumulate(data[i]);
+        }
+    }
+
+    /**
+     * Split the specified iterator (see {@link DataSpanIterator#trySplit()}) in at most <code>maxParts</code>
+     * parts of similar size.<br>
+     * Note that the specified iterator is reduced to the first part of the returned list.
+     */
+    public static List<DataSpanIterator> split(DataSpanIterator it, int maxParts)
+    {
+        final List<DataSpanIterator> result = new ArrayList<DataSpanIterator>();
+        boolean changed = true;
+
+        result.add(it);
+
+        // split all parts at each pass so they keep a similar size
+        while (changed && (result.size() < maxParts))
+        {
+            final int size = result.size();
+
+            changed = false;
+            for (int i = 0; (i < size) && (result.size() < maxParts); i++)
+            {
+                final DataSpanIterator part = result.get(i).trySplit();
+
+                if (part != null)
+                {
+                    result.add(part);
+                    changed = true;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes statistics (count, sum, sum of square, min and max) of all values of the specified
+     * {@link DataSpanIterator} in a single pass.<br>
+     * When <code>parallel</code> is <code>true</code> the iterator is split (by plane then by band of rows) and
+     * partial statistics are computed in parallel then merged. Note that in this case the specified iterator
+     * is reduced to a part of its initial region by the operation.
+     * 
+     * @throws InterruptedException
+     *         if the calling thread was interrupted during the parallel computation
+     * @throws ExecutionException
+     *         if the computation of a part failed
+     */
+    public static SpanStatistics computeStatistics(DataSpanIterator it, boolean parallel) throws InterruptedException,
+            ExecutionException
+    {
+        if (!parallel)
+            return new SpanStatistics(it);
+
+        // use more parts than threads to balance load (ROI can cover part of planes)
+        final List<DataSpanIterator> parts = split(it, Math.max(1, SystemUtil.getNumberOfCPUs()) * 4);
+
+        if (parts.size() == 1)
+            return new SpanStatistics(it);
+
+        final List<Callable<SpanStatistics>> tasks = new ArrayList<Callable<SpanStatistics>>(parts.size());
+        final SpanStatistics result = new SpanStatistics();
+
+        for (final DataSpanIterator part : parts)
+        {
+            tasks.add(new Callable<SpanStatistics>()
+            {
+                @Override
+                public SpanStatistics call() throws Exception
+                {
+                    return new SpanStatistics(part);
+                }
+            });
+        }
+
+        // partial results are merged in parts order
+        for (SpanStatistics stats : ParallelTaskRunner.invokeAll(tasks))
+            result.add(stats);
+
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        return result;
+    }
+
+    /**
+     * Computes a {@link QuantileEstimator} from all values of the specified {@link DataSpanIterator} in a single
+     * pass (values are neither stored nor sorted).<br>
+     * When <code>parallel</code> is <code>true</code> the iterator is split (by plane then by band of rows) and
+     * partial estimators are computed in parallel then merged. Note that in this case the specified iterator
+     * is reduced to a part of its initial region by the operation.
+     * 
+     * @throws InterruptedException
+     *         if the calling thread was interrupted during the parallel computation
+     * @throws ExecutionException
+     *         if the computation of a part failed
+     */
+    public static QuantileEstimator computeQuantiles(DataSpanIterator it, boolean parallel)
+            throws InterruptedException, ExecutionException
+    {
+        if (!parallel)
+        {
+            final QuantileEstimator result = new QuantileEstimator();
+            it.forEachSpan(result);
+            return result;
+        }
+
+        // exact counts can be large so we use less parts than for statistics
+        final List<DataSpanIterator> parts = split(it, Math.max(1, SystemUtil.getNumberOfCPUs()));
+
+        if (parts.size() == 1)
+            return computeQuantiles(it, false);
+
+        final List<Callable<QuantileEstimator>> tasks = new ArrayList<Callable<QuantileEstimator>>(parts.size());
+        final QuantileEstimator result = new QuantileEstimator();
+
+        for (final DataSpanIterator part : parts)
+        {
+            tasks.add(new Callable<QuantileEstimator>()
+            {
+                @Override
+                public QuantileEstimator call() throws Exception
+                {
+                    return computeQuantiles(part, false);
+                }
+            });
+        }
+
+        for (QuantileEstimator estimator : ParallelTaskRunner.invokeAll(tasks))
+            result.add(estimator);
+
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        return result;
+    }
+
     /**
      * @deprecated Use {@link DataIteratorUtil#count(DataIterator)} instead.
      */
@@ -43,6 +395,9 @@ public class DataIteratorMath
      */
     public static double sum(DataIterator it)
     {
+        if (it instanceof DataSpanIterator)
+            return new SpanStatistics((DataSpanIterator) it).sum;
+
         double result = 0;
 
         it.reset();
@@ -62,6 +417,9 @@ public class DataIteratorMath
      */
     public static double min(DataIterator it)
     {
+        if (it instanceof DataSpanIterator)
+            return new SpanStatistics((DataSpanIterator) it).min;
+
         double result = Double.MAX_VALUE;
 
         it.reset();
@@ -83,6 +441,9 @@ public class DataIteratorMath
      */
     public static double max(DataIterator it)
     {
+        if (it instanceof DataSpanIterator)
+            return new SpanStatistics((DataSpanIterator) it).max;
+
         double result = -Double.MAX_VALUE;
 
         it.reset();
@@ -104,6 +465,13 @@ public class DataIteratorMath
      */
     public static double mean(DataIterator it)
     {
+        if (it instanceof DataSpanIterator)
+        {
+            final SpanStatistics stats = new SpanStatistics((DataSpanIterator) it);
+
+            return stats.sum / stats.count;
+        }
+
         double result = 0;
         long numSample = 0;
 
@@ -19,6 +19,7 @@
 package icy.math;
 
 import icy.type.TypeUtil;
+import icy.type.collection.array.Array1DUtil;
 import icy.type.collection.array.ArrayUtil;
 
 import java.util.Arrays;
@@ -88,6 +89,48 @@ public class Histogram
             dataToBin = 0d;
     }
 
+    /**
+     * Create a histogram with the same range and bins as the specified one (bins content is copied).
+     */
+    public Histogram(Histogram source)
+    {
+        super();
+
+        minValue = source.minValue;
+        maxValue = source.maxValue;
+        integer = source.integer;
+        binWidth = source.binWidth;
+        dataToBin = source.dataToBin;
+        bins = source.bins.clone();
+    }
+
+    /**
+     * Returns <code>true</code> if the specified histogram has the same range and bins as this one (they
+     * can be merged).
+     */
+    public boolean isCompatible(Histogram histogram)
+    {
+        return (histogram.minValue == minValue) && (histogram.maxValue == maxValue)
+                && (histogram.integer == integer) && (histogram.bins.length == bins.length);
+    }
+
+    /**
+     * Add the content of the specified histogram to this histogram.
+     * 
+     * @throws IllegalArgumentException
+     *         if the specified histogram is not compatible (see {@link #isCompatible(Histogram)})
+     */
+    public void add(Histogram histogram)
+    {
+        if (!isCompatible(histogram))
+            throw new IllegalArgumentException("Histogram.add(..): histograms have different range or bins !");
+
+        final int[] srcBins = histogram.bins;
+
+        for (int i = 0; i < bins.length; i++)
+            bins[i] += srcBins[i];
+    }
+
     /**
      * Reset histogram
      */
@@ -107,6 +150,29 @@ public class Histogram
             bins[index]++;
     }
 
+    /**
+     * Add <code>length</code> values of the specified array starting at <code>offset</code> to the histogram
+     * (values out of the histogram range are ignored).
+     * 
+     * @param signed
+     *        false if the input array should be interpreted as unsigned values<br>
+     *        (integer type only)
+     */
+    public void addValues(Object array, int offset, int length, boolean signed)
+    {
+        final double[] buffer = new double[Math.min(length, 1024)];
+
+        for (int off = 0; off < length; off += buffer.length)
+        {
+            final int size = Math.min(buffer.length, length - off);
+
+            Array1DUtil.arrayToDoubleArray(array, offset + off, buffer, 0, size, signed);
+
+            for (int i = 0; i < size; i++)
+                addValue(buffer[i]);
+        }
+    }
+
     /**
      * Add the specified array of values to the histogram
      * 
@@ -0,0 +1,838 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.math;
+
+import icy.math.DataIteratorMath.SpanStatistics;
+import icy.system.thread.ParallelTaskRunner;
+import icy.system.thread.ParallelTaskRunner.IndexedTask;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+import icy.type.collection.array.ArrayUtil;
+
+/**
+ * Parallel versions of the main {@link ArrayMath} element-wise operations and reductions.<br>
+ * Arrays are split in chunks of {@link #CHUNK_SIZE} values (small enough to stay in CPU cache) which are processed
+ * by the calling thread and the threads of the shared {@link ParallelTaskRunner}. Arrays smaller than
+ * {@link #PARALLEL_THRESHOLD} are processed by the calling thread only.<br>
+ * Array type is resolved once per call (not per chunk or per value).<br>
+ * Element-wise operations accept an output array (which can be one of the input arrays for in place operation) so
+ * nothing is allocated. They have the same semantic as the {@link ArrayMath} ones (integer operations overflow
+ * the same way, integer division by zero throws an {@link ArithmeticException}).<br>
+ * Partial results of reductions are combined in chunk order so results don't depend on thread scheduling, they
+ * may slightly differ from the {@link ArrayMath} ones as floating point additions are done in a different order.
+ */
+public class ParallelArrayMath
+{
+    /**
+     * Arrays smaller than this size are processed by the calling thread only
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+    /**
+     * Number of values processed at once by a thread
+     */
+    public static final int CHUNK_SIZE = 1 << 13;
+
+    static final int ADD = 0;
+    static final int SUBTRACT = 1;
+    static final int MULTIPLY = 2;
+    static final int DIVIDE = 3;
+
+    /**
+     * Process a chunk of values
+     */
+    protected static interface ChunkTask
+    {
+        public void run(int chunk, int from, int to);
+    }
+
+    /**
+     * Returns the number of chunks used to process an array of the specified length
+     */
+    public static int getChunkCount(int length)
+    {
+        if (length < PARALLEL_THRESHOLD)
+            return 1;
+
+        return (length + (CHUNK_SIZE - 1)) / CHUNK_SIZE;
+    }
+
+    /**
+     * Run the specified task on all chunks of an array of the given length.<br>
+     * Chunks are distributed on the calling thread and the shared {@link ParallelTaskRunner} threads.
+     */
+    protected static void forEachChunk(final int length, final ChunkTask task)
+    {
+        final int numChunk = getChunkCount(length);
+
+        if (numChunk == 1)
+        {
+            task.run(0, 0, length);
+            return;
+        }
+
+        ParallelTaskRunner.runAll(numChunk, new IndexedTask()
+        {
+            @Override
+            public void run(int chunk)
+            {
+                final int from = chunk * CHUNK_SIZE;
+                task.run(chunk, from, Math.min(from + CHUNK_SIZE, length));
+            }
+        });
+    }
+
+    /**
+     * Element-wise addition of two arrays
+     * 
+     * @param out
+     *        the array receiving the result (allocated if <code>null</code>, can be <code>a1</code> or
+     *        <code>a2</code>)
+     */
+    public static Object add(Object a1, Object a2, Object out)
+    {
+        return apply(ADD, a1, a2, out);
+    }
+
+    /**
+     * Element-wise subtraction of two arrays
+     * 
+     * @param out
+     *        the array receiving the result (allocated if <code>null</code>, can be <code>a1</code> or
+     *        <code>a2</code>)
+     */
+    public static Object subtract(Object a1, Object a2, Object out)
+    {
+        return apply(SUBTRACT, a1, a2, out);
+    }
+
+    /**
+     * Element-wise multiplication of two arrays
+     * 
+     * @param out
+     *        the array receiving the result (allocated if <code>null</code>, can be <code>a1</code> or
+     *        <code>a2</code>)
+     */
+    public static Object multiply(Object a1, Object a2, Object out)
+    {
+        return apply(MULTIPLY, a1, a2, out);
+    }
+
+    /**
+     * Element-wise division of two arrays
+     * 
+     * @param out
+     *        the array receiving the result (allocated if <code>null</code>, can be <code>a1</code> or
+     *        <code>a2</code>)
+     */
+    public static Object divide(Object a1, Object a2, Object out)
+    {
+        return apply(DIVIDE, a1, a2, out);
+    }
+
+    /**
+     * Adds a value to all elements of the given array
+     * 
+     * @param out
+     *        the array receiving the result (allocated if <code>null</code>, can be <code>array</code>)
+     */
+    public static Object add(Object array, Number value, Object out)
+    {
+        return apply(ADD, array, value, out);
+    }
+
+    /**
+     * Subtracts a value to all elements of the given array
+     * 
+     * @param out
+     *        the array receiving the result (allocated if <code>null</code>, can be <code>array</code>)
+     */
+    public static Object subtract(Object array, Number value, Object out)
+    {
+        return apply(SUBTRACT, array, value, out);
+    }
+
+    /**
+     * Multiplies all elements of the given array by a value
+     * 
+     * @param out
+     *        the array receiving the result (allocated if <code>null</code>, can be <code>array</code>)
+     */
+    public static Object multiply(Object array, Number value, Object out)
+    {
+        return apply(MULTIPLY, array, value, out);
+    }
+
+    /**
+     * Divides all elements of the given array by a value
+     * 
+     * @param out
+     *        the array receiving the result (allocated if <code>null</code>, can be <code>array</code>)
+     */
+    public static Object divide(Object array, Number value, Object out)
+    {
+        return apply(DIVIDE, array, value, out);
+    }
+
+    /**
+     * Computes the absolute value of each value of the given array
+     * 
+     * @param out
+     *        the array receiving the result (allocated if <code>null</code>, can be <code>array</code>)
+     */
+    public static Object abs(final Object array, Object out)
+    {
+        final DataType dataType = ArrayUtil.getDataType(array);
+        final int len = ArrayUtil.getLength(array);
+        final Object result = Array1DUtil.allocIfNull(out, dataType, len);
+
+        forEachChunk(len, new ChunkTask()
+        {
+            @Override
+            public void run(int chunk, int from, int to)
+            {
+                switch (dataType)
+                {
+                    case BYTE:
+                    {
+                        final byte[] in = (byte[]) array;
+                        final byte[] res = (byte[]) result;
+                        for (int i = from; i < to; i++)
+                            res[i] = (byte) Math.abs(in[i]);
+                        break;
+                    }
+                    case SHORT:
+                    {
+                        final short[] in = (short[]) array;
+                        final short[] res = (short[]) result;
+                        for (int i = from; i < to; i++)
+                            res[i] = (short) Math.abs(in[i]);
+                        break;
+                    }
+                    case INT:
+                    {
+                        final int[] in = (int[]) array;
+                        final int[] res = (int[]) result;
+                        for (int i = from; i < to; i++)
+                            res[i] = Math.abs(in[i]);
+                        break;
+                    }
+                    case LONG:
+                    {
+                        final long[] in = (long[]) array;
+                        final long[] res = (long[]) result;
+                        for (int i = from; i < to; i++)
+                            res[i] = Math.abs(in[i]);
+                        break;
+                    }
+                    case FLOAT:
+                    {
+                        final float[] in = (float[]) array;
+                        final float[] res = (float[]) result;
+                        for (int i = from; i < to; i++)
+                            res[i] = Math.abs(in[i]);
+                        break;
+                    }
+                    case DOUBLE:
+                    {
+                        final double[] in = (double[]) array;
+                        final double[] res = (double[]) result;
+                        for (int i = from; i < to; i++)
+                            res[i] = Math.abs(in[i]);
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Rescales the given array to [newMin,newMax] (see {@link ArrayMath#rescale(double[], double, double, boolean)}).
+     * 
+     * @param out
+     *        the array receiving the result (allocated if <code>null</code>, can be <code>input</code>)
+     * @return the rescaled array or <code>input</code> if it is constant or if the new bounds equal the old ones
+     */
+    public static double[] rescale(final double[] input, double newMin, double newMax, double[] out)
+    {
+        final SpanStatistics stats = statistics(input, true);
+        final double min = stats.getMin();
+        final double max = stats.getMax();
+
+        if ((min == max) || ((min == newMin) && (max == newMax)))
+            return input;
+
+        final double[] result = Array1DUtil.allocIfNull(out, input.length);
+        final double ratio = (newMax - newMin) / (max - min);
+        final double base = newMin - (min * ratio);
+
+        forEachChunk(input.length, new ChunkTask()
+        {
+            @Override
+            public void run(int chunk, int from, int to)
+            {
+                for (int i = from; i < to; i++)
+                    result[i] = base + (input[i] * ratio);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Computes count, sum, sum of square, minimum and maximum of the specified array in a single parallel pass.
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     */
+    public static SpanStatistics statistics(final Object array, final boolean signed)
+    {
+        final DataType dataType = ArrayUtil.getDataType(array);
+        final int len = ArrayUtil.getLength(array);
+        final SpanStatistics[] partials = new SpanStatistics[getChunkCount(len)];
+
+        forEachChunk(len, new ChunkTask()
+        {
+            @Override
+            public void run(int chunk, int from, int to)
+            {
+                final SpanStatistics stats = new SpanStatistics();
+
+                switch (dataType)
+                {
+                    case BYTE:
+                        stats.visitByte((byte[]) array, from, to - from, signed, 0, 0, 0, 0, 0);
+                        break;
+                    case SHORT:
+                        stats.visitShort((short[]) array, from, to - from, signed, 0, 0, 0, 0, 0);
+                        break;
+                    case INT:
+                        stats.visitInt((int[]) array, from, to - from, signed, 0, 0, 0, 0, 0);
+                        break;
+                    case LONG:
+                        stats.visitLong((long[]) array, from, to - from, signed, 0, 0, 0, 0, 0);
+                        break;
+                    case FLOAT:
+                        stats.visitFloat((float[]) array, from, to - from, 0, 0, 0, 0, 0);
+                        break;
+                    case DOUBLE:
+                        stats.visitDouble((double[]) array, from, to - from, 0, 0, 0, 0, 0);
+                        break;
+                    default:
+                        break;
+                }
+
+                partials[chunk] = stats;
+            }
+        });
+
+        final SpanStatistics result = new SpanStatistics();
+
+        // combine in chunk order so result is deterministic
+        for (SpanStatistics partial : partials)
+            if (partial != null)
+                result.add(partial);
+
+        return result;
+    }
+
+    /**
+     * Computes the sum of all values from the specified array.
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     */
+    public static double sum(Object array, boolean signed)
+    {
+        return statistics(array, signed).getSum();
+    }
+
+    /**
+     * Returns the minimum value of the specified array (<code>Double.MAX_VALUE</code> if array is empty).
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     */
+    public static double min(Object array, boolean signed)
+    {
+        return statistics(array, signed).getMin();
+    }
+
+    /**
+     * Returns the maximum value of the specified array (<code>-Double.MAX_VALUE</code> if array is empty).
+     * 
+     * @param array
+     *        an array
+     * @param signed
+     *        signed / unsigned flag
+     */
+    public static double max(Object array, boolean signed)
+    {
+        return statistics(array, signed).getMax();
+    }
+
+    /**
+     * Computes the standard deviation of the given array (see {@link ArrayMath#std(double[], boolean)}).
+     * 
+     * @param input
+     * @param unbiased
+     *        set to true if the variance should be unbiased
+     */
+    public static double std(final double[] input, boolean unbiased)
+    {
+        final double mean = sum(input, true) / input.length;
+        final double[] partials = new double[getChunkCount(input.length)];
+
+        // 2 passes for better precision
+        forEachChunk(input.length, new ChunkTask()
+        {
+            @Override
+            public void run(int chunk, int from, int to)
+            {
+                double var = 0d;
+
+                for (int i = from; i < to; i++)
+                {
+                    final double d = input[i] - mean;
+                    var += d * d;
+                }
+
+                partials[chunk] = var;
+            }
+        });
+
+        double var = 0d;
+        for (double partial : partials)
+            var += partial;
+
+        return Math.sqrt(var / (unbiased ? input.length - 1 : input.length));
+    }
+
+    /**
+     * Computes the classical correlation coefficient between 2 populations (see
+     * {@link ArrayMath#correlation(double[], double[])}).
+     * 
+     * @throws IllegalArgumentException
+     *         if the two input population have different sizes
+     */
+    public static double correlation(final double[] a, final double[] b) throws IllegalArgumentException
+    {
+        if (a.length != b.length)
+            throw new IllegalArgumentException("Populations must have same size");
+
+        // sum, square sum of a, square sum of b per chunk
+        final double[][] partials = new double[getChunkCount(a.length)][];
+
+        forEachChunk(a.length, new ChunkTask()
+        {
+            @Override
+            public void run(int chunk, int from, int to)
+            {
+                double sum = 0, sqsum_a = 0, sqsum_b = 0;
+
+                for (int i = from; i < to; i++)
+                {
+                    final double ai = a[i];
+                    final double bi = b[i];
+                    sum += ai * bi;
+                    sqsum_a += ai * ai;
+                    sqsum_b += bi * bi;
+                }
+
+                partials[chunk] = new double[] {sum, sqsum_a, sqsum_b};
+            }
+        });
+
+        double sum = 0, sqsum_a = 0, sqsum_b = 0;
+
+        for (double[] partial : partials)
+        {
+            sum += partial[0];
+            sqsum_a += partial[1];
+            sqsum_b += partial[2];
+        }
+
+        return sum / Math.sqrt(sqsum_a * sqsum_b);
+    }
+
+    protected static Object apply(final int op, final Object a1, final Object a2, Object out)
+    {
+        final DataType dataType = ArrayUtil.getDataType(a1);
+        final int len = ArrayUtil.getLength(a1);
+        final Object result = Array1DUtil.allocIfNull(out, dataType, len);
+
+        forEachChunk(len, new ChunkTask()
+        {
+            @Override
+            public void run(int chunk, int from, int to)
+            {
+                switch (dataType)
+                {
+                    case BYTE:
+                        apply(op, (byte[]) a1, (byte[]) a2, (byte[]) result, from, to);
+                        break;
+                    case SHORT:
+                        apply(op, (short[]) a1, (short[]) a2, (short[]) result, from, to);
+                        break;
+                    case INT:
+                        apply(op, (int[]) a1, (int[]) a2, (int[]) result, from, to);
+                        break;
+                    case LONG:
+                        apply(op, (long[]) a1, (long[]) a2, (long[]) result, from, to);
+                        break;
+                    case FLOAT:
+                        apply(op, (float[]) a1, (float[]) a2, (float[]) result, from, to);
+                        break;
+                    case DOUBLE:
+                        apply(op, (double[]) a1, (double[]) a2, (double[]) result, from, to);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+
+        return result;
+    }
+
+    protected static Object apply(final int op, final Object array, final Number value, Object out)
+    {
+        final DataType dataType = ArrayUtil.getDataType(array);
+        final int len = ArrayUtil.getLength(array);
+        final Object result = Array1DUtil.allocIfNull(out, dataType, len);
+
+        forEachChunk(len, new ChunkTask()
+        {
+            @Override
+            public void run(int chunk, int from, int to)
+            {
+                switch (dataType)
+                {
+                    case BYTE:
+                        apply(op, (byte[]) array, value.byteValue(), (byte[]) result, from, to);
+                        break;
+                    case SHORT:
+                        apply(op, (short[]) array, value.shortValue(), (short[]) result, from, to);
+                        break;
+                    case INT:
+                        apply(op, (int[]) array, value.intValue(), (int[]) result, from, to);
+                        break;
+                    case LONG:
+                        apply(op, (long[]) array, value.longValue(), (long[]) result, from, to);
+                        break;
+                    case FLOAT:
+                        apply(op, (float[]) array, value.floatValue(), (float[]) result, from, to);
+                        break;
+                    case DOUBLE:
+                        apply(op, (double[]) array, value.doubleValue(), (double[]) result, from, to);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+
+        return result;
+    }
+
+    static void apply(int op, byte[] a1, byte[] a2, byte[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = (byte) (a1[i] + a2[i]);
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = (byte) (a1[i] - a2[i]);
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = (byte) (a1[i] * a2[i]);
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = (byte) (a1[i] / a2[i]);
+                break;
+        }
+    }
+
+    static void apply(int op, byte[] a1, byte value, byte[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = (byte) (a1[i] + value);
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = (byte) (a1[i] - value);
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = (byte) (a1[i] * value);
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = (byte) (a1[i] / value);
+                break;
+        }
+    }
+
+    static void apply(int op, short[] a1, short[] a2, short[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = (short) (a1[i] + a2[i]);
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = (short) (a1[i] - a2[i]);
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = (short) (a1[i] * a2[i]);
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = (short) (a1[i] / a2[i]);
+                break;
+        }
+    }
+
+    static void apply(int op, short[] a1, short value, short[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = (short) (a1[i] + value);
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = (short) (a1[i] - value);
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = (short) (a1[i] * value);
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = (short) (a1[i] / value);
+                break;
+        }
+    }
+
+    static void apply(int op, int[] a1, int[] a2, int[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] + a2[i];
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] - a2[i];
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] * a2[i];
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] / a2[i];
+                break;
+        }
+    }
+
+    static void apply(int op, int[] a1, int value, int[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] + value;
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] - value;
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] * value;
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] / value;
+                break;
+        }
+    }
+
+    static void apply(int op, long[] a1, long[] a2, long[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] + a2[i];
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] - a2[i];
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] * a2[i];
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] / a2[i];
+                break;
+        }
+    }
+
+    static void apply(int op, long[] a1, long value, long[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] + value;
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] - value;
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] * value;
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] / value;
+                break;
+        }
+    }
+
+    static void apply(int op, float[] a1, float[] a2, float[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] + a2[i];
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] - a2[i];
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] * a2[i];
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] / a2[i];
+                break;
+        }
+    }
+
+    static void apply(int op, float[] a1, float value, float[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] + value;
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] - value;
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] * value;
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] / value;
+                break;
+        }
+    }
+
+    static void apply(int op, double[] a1, double[] a2, double[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] + a2[i];
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] - a2[i];
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] * a2[i];
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] / a2[i];
+                break;
+        }
+    }
+
+    static void apply(int op, double[] a1, double value, double[] out, int from, int to)
+    {
+        switch (op)
+        {
+            case ADD:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] + value;
+                break;
+            case SUBTRACT:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] - value;
+                break;
+            case MULTIPLY:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] * value;
+                break;
+            case DIVIDE:
+                for (int i = from; i < to; i++)
+                    out[i] = a1[i] / value;
+                break;
+        }
+    }
+}
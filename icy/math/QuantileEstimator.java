@@ -0,0 +1,781 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.math;
+
+import icy.type.DataSpanVisitor;
+import icy.type.collection.array.ArrayUtil;
+
+/**
+ * Streaming quantile estimator.<br>
+ * Values are accumulated in a single pass without being stored or sorted:
+ * <ul>
+ * <li>integer values are counted in a dense histogram (one bin per value) so quantiles are exact as long as the
+ * range of values doesn't exceed {@link #MAX_EXACT_RANGE}</li>
+ * <li>otherwise (float values or too large range) values are counted in logarithmic buckets so the returned
+ * quantiles have a bounded relative error (see {@link #getRelativeAccuracy()})</li>
+ * </ul>
+ * Infinite values are counted apart (they are returned as is) and <code>NaN</code> values are ignored.<br>
+ * Estimators can be merged (see {@link #add(QuantileEstimator)}) so partial results can be computed in parallel.
+ * 
+ * @see DataIteratorMath#computeQuantiles(icy.type.DataSpanIterator, boolean)
+ */
+public class QuantileEstimator implements DataSpanVisitor
+{
+    /**
+     * Maximum range of integer values for exact quantiles
+     */
+    public static final int MAX_EXACT_RANGE = 1 << 18;
+    /**
+     * Default relative accuracy of quantiles when values cannot be counted exactly
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.005d;
+
+    /**
+     * Dense store of counts indexed from <code>offset</code>
+     */
+    protected static class Store
+    {
+        long[] counts;
+        long offset;
+        long minIndex;
+        long maxIndex;
+        long total;
+
+        public Store()
+        {
+            super();
+
+            counts = null;
+            offset = 0L;
+            minIndex = Long.MAX_VALUE;
+            maxIndex = Long.MIN_VALUE;
+            total = 0L;
+        }
+
+        public boolean isEmpty()
+        {
+            return total == 0L;
+        }
+
+        /**
+         * Ensure the store can receive the specified range of index
+         */
+        public void ensureRange(long min, long max)
+        {
+            if (counts == null)
+            {
+                final int size = (int) Math.max(64L, (max - min) + 1L);
+
+                counts = new long[size];
+                offset = min;
+            }
+            else if ((min < offset) || (max >= (offset + counts.length)))
+            {
+                final long newMin = Math.min(min, offset);
+                final long newMax = Math.max(max, (offset + counts.length) - 1);
+                // grow by at least 50% to limit reallocations
+                final long size = Math.max((newMax - newMin) + 1L, counts.length + (counts.length >> 1));
+                final long[] newCounts = new long[(int) size];
+                // keep new free space on the side where values came
+                final long newOffset = (min < offset) ? (newMax + 1L) - size : newMin;
+
+                System.arraycopy(counts, 0, newCounts, (int) (offset - newOffset), counts.length);
+                counts = newCounts;
+                offset = newOffset;
+            }
+        }
+
+        public void add(long index, long n)
+        {
+            ensureRange(index, index);
+            counts[(int) (index - offset)] += n;
+            updateBounds(index, index, n);
+        }
+
+        public void updateBounds(long min, long max, long n)
+        {
+            if (min < minIndex)
+                minIndex = min;
+            if (max > maxIndex)
+                maxIndex = max;
+            total += n;
+        }
+
+        public long getCount(long index)
+        {
+            return counts[(int) (index - offset)];
+        }
+    }
+
+    protected final double relativeAccuracy;
+    protected final double gamma;
+    protected final double logGamma;
+
+    /**
+     * exact counts (integer values), <code>null</code> when we switched to logarithmic buckets
+     */
+    protected Store exact;
+    /**
+     * logarithmic buckets for positive and negative values
+     */
+    protected final Store positive;
+    protected final Store negative;
+    protected long zeroCount;
+    /**
+     * infinite values (they can't be indexed in logarithmic buckets)
+     */
+    protected long negativeInfinityCount;
+    protected long positiveInfinityCount;
+
+    protected long count;
+    protected double min;
+    protected double max;
+
+    /**
+     * Create a quantile estimator with the specified relative accuracy (used only when quantiles cannot be computed
+     * exactly).
+     * 
+     * @param relativeAccuracy
+     *        relative accuracy of quantiles in ]0, 1[
+     */
+    public QuantileEstimator(double relativeAccuracy)
+    {
+        super();
+
+        if ((relativeAccuracy <= 0d) || (relativeAccuracy >= 1d))
+            throw new IllegalArgumentException("QuantileEstimator: relative accuracy should be in ]0, 1[");
+
+        this.relativeAccuracy = relativeAccuracy;
+        gamma = (1d + relativeAccuracy) / (1d - relativeAccuracy);
+        logGamma = Math.log(gamma);
+
+        exact = new Store();
+        positive = new Store();
+        negative = new Store();
+        zeroCount = 0L;
+        negativeInfinityCount = 0L;
+        positiveInfinityCount = 0L;
+
+        count = 0L;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Create a quantile estimator with default relative accuracy (see {@link #DEFAULT_RELATIVE_ACCURACY})
+     */
+    public QuantileEstimator()
+    {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Returns the number of values added to the estimator
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the minimum value (<code>Double.NaN</code> if estimator is empty)
+     */
+    public double getMin()
+    {
+        if (count == 0L)
+            return Double.NaN;
+
+        return min;
+    }
+
+    /**
+     * Returns the maximum value (<code>Double.NaN</code> if estimator is empty)
+     */
+    public double getMax()
+    {
+        if (count == 0L)
+            return Double.NaN;
+
+        return max;
+    }
+
+    /**
+     * Returns <code>true</code> if returned quantiles are exact (all values were integers in a limited range)
+     */
+    public boolean isExact()
+    {
+        return exact != null;
+    }
+
+    /**
+     * Returns the maximum relative error of returned quantiles when they are not exact (see {@link #isExact()})
+     */
+    public double getRelativeAccuracy()
+    {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Add the specified integer value
+     */
+    public void add(long value)
+    {
+        add(value, 1L);
+    }
+
+    protected void add(long value, long n)
+    {
+        if (exact != null)
+        {
+            ensureExactRange(value, value);
+
+            // still exact ?
+            if (exact != null)
+            {
+                exact.counts[(int) (value - exact.offset)] += n;
+                exact.updateBounds(value, value, n);
+                updateBounds(value, value, n);
+                return;
+            }
+        }
+
+        addBucket(value, n);
+        updateBounds(value, value, n);
+    }
+
+    /**
+     * Add the specified value (<code>NaN</code> values are ignored)
+     */
+    public void add(double value)
+    {
+        if (Double.isNaN(value))
+            return;
+
+        // integer value --> keep exact counting
+        if ((exact != null) && (value == Math.rint(value)) && (Math.abs(value) < (1L << 53)))
+            add((long) value, 1L);
+        else
+        {
+            toBuckets();
+            addBucket(value, 1L);
+            updateBounds(value, value, 1L);
+        }
+    }
+
+    /**
+     * Add all values from the specified estimator
+     */
+    public void add(QuantileEstimator estimator)
+    {
+        if (estimator.count == 0L)
+            return;
+
+        if (estimator.exact != null)
+        {
+            final Store store = estimator.exact;
+
+            for (long v = store.minIndex; v <= store.maxIndex; v++)
+            {
+                final long n = store.getCount(v);
+
+                if (n != 0L)
+                    add(v, n);
+            }
+        }
+        else
+        {
+            if (estimator.relativeAccuracy != relativeAccuracy)
+                throw new IllegalArgumentException("QuantileEstimator: cannot merge estimators of different accuracy");
+
+            toBuckets();
+            addStore(positive, estimator.positive);
+            addStore(negative, estimator.negative);
+            zeroCount += estimator.zeroCount;
+            negativeInfinityCount += estimator.negativeInfinityCount;
+            positiveInfinityCount += estimator.positiveInfinityCount;
+            updateBounds(estimator.min, estimator.max, estimator.count);
+        }
+    }
+
+    /**
+     * Add values from the specified array (can be any primitive array type)
+     * 
+     * @param array
+     *        primitive array
+     * @param offset
+     *        index of first value in the array
+     * @param length
+     *        number of values
+     * @param signed
+     *        signed / unsigned flag (for integer arrays)
+     */
+    public void addValues(Object array, int offset, int length, boolean signed)
+    {
+        switch (ArrayUtil.getDataType(array))
+        {
+            case BYTE:
+                visitByte((byte[]) array, offset, length, signed, 0, 0, 0, 0, 0);
+                break;
+            case SHORT:
+                visitShort((short[]) array, offset, length, signed, 0, 0, 0, 0, 0);
+                break;
+            case INT:
+                visitInt((int[]) array, offset, length, signed, 0, 0, 0, 0, 0);
+                break;
+            case LONG:
+                visitLong((long[]) array, offset, length, signed, 0, 0, 0, 0, 0);
+                break;
+            case FLOAT:
+                visitFloat((float[]) array, offset, length, 0, 0, 0, 0, 0);
+                break;
+            case DOUBLE:
+                visitDouble((double[]) array, offset, length, 0, 0, 0, 0, 0);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the quantile value for the specified rank (0 = minimum, 0.5 = median, 1 = maximum).<br>
+     * Exact quantiles are linearly interpolated between the two nearest ranked values.<br>
+     * Returns <code>Double.NaN</code> if the estimator is empty.
+     */
+    public double getQuantile(double q)
+    {
+        if (count == 0L)
+            return Double.NaN;
+
+        final double rank = Math.max(0d, Math.min(1d, q)) * (count - 1L);
+        final long lowRank = (long) Math.floor(rank);
+
+        if (exact != null)
+        {
+            final double low = getExactValue(lowRank);
+            final double frac = rank - lowRank;
+
+            if (frac == 0d)
+                return low;
+
+            return low + ((getExactValue(lowRank + 1L) - low) * frac);
+        }
+
+        return getBucketValue(Math.round(rank));
+    }
+
+    /**
+     * Returns the quantile values for the specified ranks (see {@link #getQuantile(double)})
+     */
+    public double[] getQuantiles(double[] q)
+    {
+        final double[] result = new double[q.length];
+
+        for (int i = 0; i < q.length; i++)
+            result[i] = getQuantile(q[i]);
+
+        return result;
+    }
+
+    /**
+     * Returns the median value
+     */
+    public double getMedian()
+    {
+        return getQuantile(0.5d);
+    }
+
+    /**
+     * Returns the interquartile range (difference between 75th and 25th percentiles)
+     */
+    public double getInterquartileRange()
+    {
+        if (count == 0L)
+            return Double.NaN;
+
+        return getQuantile(0.75d) - getQuantile(0.25d);
+    }
+
+    protected void updateBounds(double vmin, double vmax, long n)
+    {
+        if (vmin < min)
+            min = vmin;
+        if (vmax > max)
+            max = vmax;
+        count += n;
+    }
+
+    /**
+     * Make room for the specified range of integer values in exact store, switch to logarithmic buckets if range
+     * is too large
+     */
+    protected void ensureExactRange(long vmin, long vmax)
+    {
+        if (exact == null)
+            return;
+
+        // avoid overflow on range computation
+        if ((vmin < -(1L << 53)) || (vmax > (1L << 53)))
+        {
+            toBuckets();
+            return;
+        }
+
+        final long newMin = Math.min(vmin, exact.minIndex);
+        final long newMax = Math.max(vmax, exact.maxIndex);
+
+        if ((newMax - newMin) >= MAX_EXACT_RANGE)
+            toBuckets();
+        else
+            exact.ensureRange(vmin, vmax);
+    }
+
+    /**
+     * Switch from exact counting to logarithmic buckets
+     */
+    protected void toBuckets()
+    {
+        if (exact == null)
+            return;
+
+        final Store store = exact;
+
+        exact = null;
+
+        if (!store.isEmpty())
+        {
+            for (long v = store.minIndex; v <= store.maxIndex; v++)
+            {
+                final long n = store.getCount(v);
+
+                if (n != 0L)
+                    addBucket(v, n);
+            }
+        }
+    }
+
+    protected void addBucket(double value, long n)
+    {
+        if (value == Double.POSITIVE_INFINITY)
+            positiveInfinityCount += n;
+        else if (value == Double.NEGATIVE_INFINITY)
+            negativeInfinityCount += n;
+        else if (value > Double.MIN_NORMAL)
+            positive.add(getBucketIndex(value), n);
+        else if (value < -Double.MIN_NORMAL)
+            negative.add(getBucketIndex(-value), n);
+        else
+            zeroCount += n;
+    }
+
+    protected long getBucketIndex(double value)
+    {
+        return (long) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    protected double getBucketRepresentative(long index)
+    {
+        return (2d * Math.pow(gamma, index)) / (gamma + 1d);
+    }
+
+    protected static void addStore(Store dest, Store src)
+    {
+        if (src.isEmpty())
+            return;
+
+        dest.ensureRange(src.minIndex, src.maxIndex);
+
+        for (long i = src.minIndex; i <= src.maxIndex; i++)
+            dest.counts[(int) (i - dest.offset)] += src.getCount(i);
+
+        dest.updateBounds(src.minIndex, src.maxIndex, src.total);
+    }
+
+    /**
+     * Returns the value of given rank from exact counts
+     */
+    protected double getExactValue(long rank)
+    {
+        long cumul = 0L;
+
+        for (long v = exact.minIndex; v <= exact.maxIndex; v++)
+        {
+            cumul += exact.getCount(v);
+
+            if (cumul > rank)
+                return v;
+        }
+
+        return exact.maxIndex;
+    }
+
+    /**
+     * Returns the value of given rank from logarithmic buckets (clamped to min / max)
+     */
+    protected double getBucketValue(long rank)
+    {
+        double result = max;
+        long cumul = 0L;
+        boolean found = false;
+
+        cumul += negativeInfinityCount;
+
+        if (cumul > rank)
+        {
+            result = Double.NEGATIVE_INFINITY;
+            found = true;
+        }
+
+        // negative values are in reverse order (highest index first)
+        if (!found && !negative.isEmpty())
+        {
+            for (long i = negative.maxIndex; (i >= negative.minIndex) && !found; i--)
+            {
+                cumul += negative.getCount(i);
+
+                if (cumul > rank)
+                {
+                    result = -getBucketRepresentative(i);
+                    found = true;
+                }
+            }
+        }
+
+        if (!found)
+        {
+            cumul += zeroCount;
+
+            if (cumul > rank)
+            {
+                result = 0d;
+                found = true;
+            }
+        }
+
+        if (!found && !positive.isEmpty())
+        {
+            for (long i = positive.minIndex; (i <= positive.maxIndex) && !found; i++)
+            {
+                cumul += positive.getCount(i);
+
+                if (cumul > rank)
+                {
+                    result = getBucketRepresentative(i);
+                    found = true;
+                }
+            }
+        }
+
+        // remaining ranks are positive infinite values (result = max)
+
+        return Math.max(min, Math.min(max, result));
+    }
+
+    @Override
+    public void visitByte(byte[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+    {
+        if (length <= 0)
+            return;
+
+        if (signed)
+            ensureExactRange(Byte.MIN_VALUE, Byte.MAX_VALUE);
+        else
+            ensureExactRange(0, 0xFF);
+
+        final int end = offset + length;
+        int vmin = Integer.MAX_VALUE;
+        int vmax = Integer.MIN_VALUE;
+
+        if (exact != null)
+        {
+            final long[] counts = exact.counts;
+            final int off = (int) exact.offset;
+
+            for (int i = offset; i < end; i++)
+            {
+                final int v = signed ? data[i] : data[i] & 0xFF;
+
+                counts[v - off]++;
+                if (v < vmin)
+                    vmin = v;
+                if (v > vmax)
+                    vmax = v;
+            }
+
+            exact.updateBounds(vmin, vmax, length);
+        }
+        else
+        {
+            for (int i = offset; i < end; i++)
+            {
+                final int v = signed ? data[i] : data[i] & 0xFF;
+
+                addBucket(v, 1L);
+                if (v < vmin)
+                    vmin = v;
+                if (v > vmax)
+                    vmax = v;
+            }
+        }
+
+        updateBounds(vmin, vmax, length);
+    }
+
+    @Override
+    public void visitShort(short[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+    {
+        if (length <= 0)
+            return;
+
+        final int end = offset + length;
+        int vmin = Integer.MAX_VALUE;
+        int vmax = Integer.MIN_VALUE;
+
+        // first get the range of the span so exact store is resized only once
+        for (int i = offset; i < end; i++)
+        {
+            final int v = signed ? data[i] : data[i] & 0xFFFF;
+
+            if (v < vmin)
+                vmin = v;
+            if (v > vmax)
+                vmax = v;
+        }
+
+        ensureExactRange(vmin, vmax);
+
+        if (exact != null)
+        {
+            final long[] counts = exact.counts;
+            final int off = (int) exact.offset;
+
+            for (int i = offset; i < end; i++)
+                counts[(signed ? data[i] : data[i] & 0xFFFF) - off]++;
+
+            exact.updateBounds(vmin, vmax, length);
+        }
+        else
+        {
+            for (int i = offset; i < end; i++)
+                addBucket(signed ? data[i] : data[i] & 0xFFFF, 1L);
+        }
+
+        updateBounds(vmin, vmax, length);
+    }
+
+    @Override
+    public void visitInt(int[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+    {
+        if (length <= 0)
+            return;
+
+        final int end = offset + length;
+        long vmin = Long.MAX_VALUE;
+        long vmax = Long.MIN_VALUE;
+
+        for (int i = offset; i < end; i++)
+        {
+            final long v = signed ? data[i] : data[i] & 0xFFFFFFFFL;
+
+            if (v < vmin)
+                vmin = v;
+            if (v > vmax)
+                vmax = v;
+        }
+
+        ensureExactRange(vmin, vmax);
+
+        if (exact != null)
+        {
+            final long[] counts = exact.counts;
+            final long off = exact.offset;
+
+            for (int i = offset; i < end; i++)
+                counts[(int) ((signed ? data[i] : data[i] & 0xFFFFFFFFL) - off)]++;
+
+            exact.updateBounds(vmin, vmax, length);
+        }
+        else
+        {
+            for (int i = offset; i < end; i++)
+                addBucket(signed ? data[i] : data[i] & 0xFFFFFFFFL, 1L);
+        }
+
+        updateBounds(vmin, vmax, length);
+    }
+
+    @Override
+    public void visitLong(long[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+    {
+        if (length <= 0)
+            return;
+
+        final int end = offset + length;
+        long vmin = Long.MAX_VALUE;
+        long vmax = Long.MIN_VALUE;
+
+        // unsigned long are considered as signed (as everywhere else)
+        for (int i = offset; i < end; i++)
+        {
+            final long v = data[i];
+
+            if (v < vmin)
+                vmin = v;
+            if (v > vmax)
+                vmax = v;
+        }
+
+        ensureExactRange(vmin, vmax);
+
+        if (exact != null)
+        {
+            final long[] counts = exact.counts;
+            final long off = exact.offset;
+
+            for (int i = offset; i < end; i++)
+                counts[(int) (data[i] - off)]++;
+
+            exact.updateBounds(vmin, vmax, length);
+        }
+        else
+        {
+            for (int i = offset; i < end; i++)
+                addBucket(data[i], 1L);
+        }
+
+        updateBounds(vmin, vmax, length);
+    }
+
+    @Override
+    public void visitFloat(float[] data, int offset, int length, int x, int y, int z, int t, int c)
+    {
+        final int end = offset + length;
+
+        for (int i = offset; i < end; i++)
+            add(data[i]);
+    }
+
+    @Override
+    public void visitDouble(double[] data, int offset, int length, int x, int y, int z, int t, int c)
+    {
+        final int end = offset + length;
+
+        for (int i = offset; i < end; i++)
+            add(data[i]);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ *
+ * This file is part of Icy.
+ *
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.math;
+
+/**
+ * Histogram computed from a subset of the values (stratified sampling).<br>
+ * Bins contain sampled values count only, use {@link #getSamplingRatio()} to estimate the real counts and
+ * {@link #getErrorBound()} to know the precision of the estimation.
+ */
+public class SampledHistogram extends Histogram
+{
+    protected final long sampleCount;
+    protected final long totalCount;
+
+    /**
+     * Create a sampled histogram with the same range and bins as the specified one (bins content is
+     * copied).
+     * 
+     * @param source
+     *        histogram of sampled values
+     * @param sampleCount
+     *        number of sampled values
+     * @param totalCount
+     *        total number of values
+     */
+    public SampledHistogram(Histogram source, long sampleCount, long totalCount)
+    {
+        super(source);
+
+        this.sampleCount = sampleCount;
+        this.totalCount = Math.max(sampleCount, totalCount);
+    }
+
+    /**
+     * Returns the number of sampled values.
+     */
+    public long getSampleCount()
+    {
+        return sampleCount;
+    }
+
+    /**
+     * Returns the total number of values.
+     */
+    public long getTotalCount()
+    {
+        return totalCount;
+    }
+
+    /**
+     * Returns <code>true</code> if all values were used to compute the histogram.
+     */
+    public boolean isExact()
+    {
+        return sampleCount == totalCount;
+    }
+
+    /**
+     * Returns the sampling ratio (total count / sample count), bins should be multiplied by this value to
+     * estimate the real counts.
+     */
+    public double getSamplingRatio()
+    {
+        if (sampleCount == 0L)
+            return 1d;
+
+        return (double) totalCount / (double) sampleCount;
+    }
+
+    /**
+     * Returns the maximum error (95% confidence) on the fraction of values falling in any bin (bin count
+     * / total count).<br>
+     * Samples are considered as independent, which is a slightly pessimistic assumption for stratified
+     * sampling of images.
+     */
+    public double getErrorBound()
+    {
+        return getErrorBound(sampleCount, totalCount);
+    }
+
+    /**
+     * Returns the maximum error (95% confidence) on a bin fraction estimated from <code>sampleCount</code>
+     * values taken in a population of <code>totalCount</code> values.
+     */
+    public static double getErrorBound(long sampleCount, long totalCount)
+    {
+        if (sampleCount >= totalCount)
+            return 0d;
+        if (sampleCount <= 0L)
+            return 1d;
+
+        // worst case (p = 0.5) standard error with finite population correction
+        final double se = 0.5d * Math.sqrt((double) (totalCount - sampleCount) / (totalCount - 1d))
+                / Math.sqrt(sampleCount);
+
+        return Math.min(1d, 1.96d * se);
+    }
+}
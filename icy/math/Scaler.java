@@ -596,6 +596,267 @@ public class Scaler implements ChangeListener, XMLPersistent
             dest[destOffset + i] = (int) scale(src[srcOffset + i]);
     }
 
+    /**
+     * Scale each value in the "src" array, taking one sample every <code>srcStep</code> elements,
+     * and return result in "dest" array
+     * 
+     * @param src
+     *        array of primitive (unscaled values)
+     * @param srcOffset
+     *        offset for src buffer
+     * @param srcStep
+     *        step between two consecutive samples in src buffer
+     * @param dest
+     *        result as array of int (scaled values)
+     * @param destOffset
+     *        offset for dest buffer
+     * @param len
+     *        number of sample to compute
+     * @param signed
+     *        signed/unsigned src data flag
+     */
+    public void scale(Object src, int srcOffset, int srcStep, int[] dest, int destOffset, int len, boolean signed)
+    {
+        if ((src == null) || (dest == null))
+            throw new IllegalArgumentException("Parameters 'src' and 'dest' should not be null !");
+
+        // contiguous samples ? use faster method
+        if (srcStep == 1)
+        {
+            scale(src, srcOffset, dest, destOffset, len, signed);
+            return;
+        }
+
+        switch (ArrayUtil.getDataType(src))
+        {
+            case BYTE:
+                scale((byte[]) src, srcOffset, srcStep, dest, destOffset, len, signed);
+                break;
+
+            case SHORT:
+                scale((short[]) src, srcOffset, srcStep, dest, destOffset, len, signed);
+                break;
+
+            case INT:
+                scale((int[]) src, srcOffset, srcStep, dest, destOffset, len, signed);
+                break;
+
+            case LONG:
+                scale((long[]) src, srcOffset, srcStep, dest, destOffset, len, signed);
+                break;
+
+            case FLOAT:
+                scale((float[]) src, srcOffset, srcStep, dest, destOffset, len);
+                break;
+
+            case DOUBLE:
+                scale((double[]) src, srcOffset, srcStep, dest, destOffset, len);
+                break;
+        }
+    }
+
+    /**
+     * Scale each value in the "src" array, taking one sample every <code>srcStep</code> elements,
+     * and return result in "dest" array
+     * 
+     * @param src
+     *        array of byte (unscaled values)
+     * @param srcOffset
+     *        offset for src buffer
+     * @param srcStep
+     *        step between two consecutive samples in src buffer
+     * @param dest
+     *        result as array of int (scaled values)
+     * @param destOffset
+     *        offset for dest buffer
+     * @param len
+     *        number of sample to compute
+     * @param signed
+     *        signed/unsigned src data flag
+     */
+    public void scale(byte[] src, int srcOffset, int srcStep, int[] dest, int destOffset, int len, boolean signed)
+    {
+        if ((src == null) || (dest == null))
+            throw new IllegalArgumentException("Parameters 'src' and 'dest' should not be null !");
+
+        if (signed)
+        {
+            // signed
+            for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                dest[destOffset + i] = (int) scale(src[s]);
+        }
+        else
+        {
+            // unsigned
+            for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                dest[destOffset + i] = (int) scale(TypeUtil.unsign(src[s]));
+        }
+    }
+
+    /**
+     * Scale each value in the "src" array, taking one sample every <code>srcStep</code> elements,
+     * and return result in "dest" array
+     * 
+     * @param src
+     *        array of short (unscaled values)
+     * @param srcOffset
+     *        offset for src buffer
+     * @param srcStep
+     *        step between two consecutive samples in src buffer
+     * @param dest
+     *        result as array of int (scaled values)
+     * @param destOffset
+     *        offset for dest buffer
+     * @param len
+     *        number of sample to compute
+     * @param signed
+     *        signed/unsigned src data flag
+     */
+    public void scale(short[] src, int srcOffset, int srcStep, int[] dest, int destOffset, int len, boolean signed)
+    {
+        if ((src == null) || (dest == null))
+            throw new IllegalArgumentException("Parameters 'src' and 'dest' should not be null !");
+
+        if (signed)
+        {
+            // signed
+            for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                dest[destOffset + i] = (int) scale(src[s]);
+        }
+        else
+        {
+            // unsigned
+            for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                dest[destOffset + i] = (int) scale(TypeUtil.unsign(src[s]));
+        }
+    }
+
+    /**
+     * Scale each value in the "src" array, taking one sample every <code>srcStep</code> elements,
+     * and return result in "dest" array
+     * 
+     * @param src
+     *        array of int (unscaled values)
+     * @param srcOffset
+     *        offset for src buffer
+     * @param srcStep
+     *        step between two consecutive samples in src buffer
+     * @param dest
+     *        result as array of int (scaled values)
+     * @param destOffset
+     *        offset for dest buffer
+     * @param len
+     *        number of sample to compute
+     * @param signed
+     *        signed/unsigned src data flag
+     */
+    public void scale(int[] src, int srcOffset, int srcStep, int[] dest, int destOffset, int len, boolean signed)
+    {
+        if ((src == null) || (dest == null))
+            throw new IllegalArgumentException("Parameters 'src' and 'dest' should not be null !");
+
+        if (signed)
+        {
+            // signed
+            for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                dest[destOffset + i] = (int) scale(src[s]);
+        }
+        else
+        {
+            // unsigned
+            for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                dest[destOffset + i] = (int) scale(TypeUtil.unsign(src[s]));
+        }
+    }
+
+    /**
+     * Scale each value in the "src" array, taking one sample every <code>srcStep</code> elements,
+     * and return result in "dest" array
+     * 
+     * @param src
+     *        array of long (unscaled values)
+     * @param srcOffset
+     *        offset for src buffer
+     * @param srcStep
+     *        step between two consecutive samples in src buffer
+     * @param dest
+     *        result as array of int (scaled values)
+     * @param destOffset
+     *        offset for dest buffer
+     * @param len
+     *        number of sample to compute
+     * @param signed
+     *        signed/unsigned src data flag
+     */
+    public void scale(long[] src, int srcOffset, int srcStep, int[] dest, int destOffset, int len, boolean signed)
+    {
+        if ((src == null) || (dest == null))
+            throw new IllegalArgumentException("Parameters 'src' and 'dest' should not be null !");
+
+        if (signed)
+        {
+            // signed
+            for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                dest[destOffset + i] = (int) scale(src[s]);
+        }
+        else
+        {
+            // unsigned
+            for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+                dest[destOffset + i] = (int) scale(TypeUtil.unsign(src[s]));
+        }
+    }
+
+    /**
+     * Scale array, taking one sample every <code>srcStep</code> elements
+     * 
+     * @param src
+     *        array of float (unscaled values)
+     * @param srcOffset
+     *        offset for src buffer
+     * @param srcStep
+     *        step between two consecutive samples in src buffer
+     * @param dest
+     *        result as array of int (scaled values)
+     * @param destOffset
+     *        offset for dest buffer
+     * @param len
+     *        number of sample to compute
+     */
+    public void scale(float[] src, int srcOffset, int srcStep, int[] dest, int destOffset, int len)
+    {
+        if ((src == null) || (dest == null))
+            throw new IllegalArgumentException("Parameters 'src' and 'dest' should not be null !");
+
+        for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+            dest[destOffset + i] = (int) scale(src[s]);
+    }
+
+    /**
+     * Scale array, taking one sample every <code>srcStep</code> elements
+     * 
+     * @param src
+     *        array of double (unscaled values)
+     * @param srcOffset
+     *        offset for src buffer
+     * @param srcStep
+     *        step between two consecutive samples in src buffer
+     * @param dest
+     *        result as array of int (scaled values)
+     * @param destOffset
+     *        offset for dest buffer
+     * @param len
+     *        number of sample to compute
+     */
+    public void scale(double[] src, int srcOffset, int srcStep, int[] dest, int destOffset, int len)
+    {
+        if ((src == null) || (dest == null))
+            throw new IllegalArgumentException("Parameters 'src' and 'dest' should not be null !");
+
+        for (int i = 0, s = srcOffset; i < len; i++, s += srcStep)
+            dest[destOffset + i] = (int) scale(src[s]);
+    }
+
     /**
      * Scale each value in the "src" array and return result in "dest" array
      * 
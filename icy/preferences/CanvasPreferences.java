@@ -34,6 +34,7 @@ public class CanvasPreferences
     private static final String ID_FILTERING = "filtering";
     private static final String ID_INVERT_MOUSEWHEEL_AXIS = "invertMouseWheelAxis";
     private static final String ID_MOUSEWHEEL_SENSIBILITY = "mouseWheelSensibility";
+    private static final String ID_VIEWPORT_RENDERING = "viewportRendering";
 
     /**
      * preferences
@@ -87,4 +88,18 @@ public class CanvasPreferences
         preferences.putDouble(ID_MOUSEWHEEL_SENSIBILITY, value);
     }
 
+    /**
+     * Viewport rendering: only the visible part of the image is rendered at a resolution adapted
+     * to the current zoom factor.
+     */
+    public static boolean getViewportRendering()
+    {
+        return preferences.getBoolean(ID_VIEWPORT_RENDERING, true);
+    }
+
+    public static void setViewportRendering(boolean value)
+    {
+        preferences.putBoolean(ID_VIEWPORT_RENDERING, value);
+    }
+
 }
@@ -42,6 +42,7 @@ public class GeneralPreferences
      */
     public static final String ID_SEQUENCE_PERSISTENCE = "sequencePersistence";
     public static final String ID_SAVE_NEW_SEQUENCE = "saveNewSequence";
+    public static final String ID_VIRTUAL_STACK = "virtualStack";
     public static final String ID_AUTO_UPDATE = "autoUpdate";
     public static final String ID_LAST_UPDATECHECK_TIME = "lastUpdateCheckTime";
     public static final String ID_RIBBON_MINIMIZED = "ribbonMinimized";
@@ -136,6 +137,11 @@ public class GeneralPreferences
         return prefGeneral.getBoolean(ID_SEQUENCE_PERSISTENCE, true);
     }
 
+    public static boolean getVirtualStack()
+    {
+        return prefGeneral.getBoolean(ID_VIRTUAL_STACK, false);
+    }
+
     public static boolean getAutomaticUpdate()
     {
         return prefGeneral.getBoolean(ID_AUTO_UPDATE, true);
@@ -226,6 +232,11 @@ public class GeneralPreferences
         prefGeneral.putBoolean(ID_SEQUENCE_PERSISTENCE, value);
     }
 
+    public static void setVirtualStack(boolean value)
+    {
+        prefGeneral.putBoolean(ID_VIRTUAL_STACK, value);
+    }
+
     public static void setAutomaticUpdate(boolean value)
     {
         prefGeneral.putBoolean(ID_AUTO_UPDATE, value);
@@ -339,28 +339,31 @@ public class BooleanMask2D implements Cloneable
         return points;
     }
 
+    private static List<PackedBooleanMask2D> toPackedMasks(List<BooleanMask2D> masks)
+    {
+        final List<PackedBooleanMask2D> result = new ArrayList<PackedBooleanMask2D>(masks.size());
+
+        for (BooleanMask2D mask : masks)
+            result.add(mask.getPackedMask());
+
+        return result;
+    }
+
+    /**
+     * Returns a {@link BooleanMask2D} from the specified packed mask.
+     */
+    private static BooleanMask2D fromPackedMask(PackedBooleanMask2D packed)
+    {
+        return new BooleanMask2D(packed.getBounds(), packed.getBooleanArray());
+    }
+
     /**
      * Build global boolean mask from union of all specified mask
      */
     public static BooleanMask2D getUnion(List<BooleanMask2D> masks)
     {
-        BooleanMask2D result = null;
-
-        // compute global union boolean mask of all ROI2D
-        for (BooleanMask2D bm : masks)
-        {
-            // update global mask
-            if (result == null)
-                result = new BooleanMask2D(bm.bounds, bm.mask);
-            else
-                result = getUnion(result, bm);
-        }
-
-        // return an empty BooleanMask2D instead of null
-        if (result == null)
-            result = new BooleanMask2D();
-
-        return result;
+        // bit packed masks: single result allocation, 64 pixels at once
+        return fromPackedMask(PackedBooleanMask2D.getUnion(toPackedMasks(masks)));
     }
 
     /**
@@ -379,7 +382,8 @@ public class BooleanMask2D implements Cloneable
         if ((mask2 == null) || mask2.isEmpty())
             return (BooleanMask2D) mask1.clone();
 
-        return getUnion(mask1.bounds, mask1.mask, mask2.bounds, mask2.mask);
+        // use bit packed masks (64 pixels at once)
+        return fromPackedMask(PackedBooleanMask2D.getUnion(mask1.getPackedMask(), mask2.getPackedMask()));
     }
 
     /**
@@ -442,23 +446,8 @@ public class BooleanMask2D implements Cloneable
      */
     public static BooleanMask2D getIntersection(List<BooleanMask2D> masks)
     {
-        BooleanMask2D result = null;
-
-        // compute global intersect boolean mask of all ROI2D
-        for (BooleanMask2D bm : masks)
-        {
-            // update global mask
-            if (result == null)
-                result = new BooleanMask2D(bm.bounds, bm.mask);
-            else
-                result = getIntersection(result, bm);
-        }
-
-        // return an empty BooleanMask2D instead of null
-        if (result == null)
-            result = new BooleanMask2D();
-
-        return result;
+        // bit packed masks: 64 pixels at once
+        return fromPackedMask(PackedBooleanMask2D.getIntersection(toPackedMasks(masks)));
     }
 
     /**
@@ -469,8 +458,12 @@ public class BooleanMask2D implements Cloneable
     {
         if ((mask1 == null) || (mask2 == null))
             return new BooleanMask2D();
+        // no intersection
+        if (!mask1.bounds.intersects(mask2.bounds))
+            return new BooleanMask2D();
 
-        return getIntersection(mask1.bounds, mask1.mask, mask2.bounds, mask2.mask);
+        // use bit packed masks (64 pixels at once)
+        return fromPackedMask(PackedBooleanMask2D.getIntersection(mask1.getPackedMask(), mask2.getPackedMask()));
     }
 
     /**
@@ -522,23 +515,8 @@ public class BooleanMask2D implements Cloneable
      */
     public static BooleanMask2D getExclusiveUnion(List<BooleanMask2D> masks)
     {
-        BooleanMask2D result = null;
-
-        // compute global exclusive union boolean mask of all ROI2D
-        for (BooleanMask2D bm : masks)
-        {
-            // update global mask
-            if (result == null)
-                result = new BooleanMask2D(bm.bounds, bm.mask);
-            else
-                result = getExclusiveUnion(result, bm);
-        }
-
-        // return an empty BooleanMask2D instead of null
-        if (result == null)
-            result = new BooleanMask2D();
-
-        return result;
+        // bit packed masks: single result allocation, 64 pixels at once
+        return fromPackedMask(PackedBooleanMask2D.getExclusiveUnion(toPackedMasks(masks)));
     }
 
     /**
@@ -557,7 +535,8 @@ public class BooleanMask2D implements Cloneable
         if ((mask2 == null) || mask2.isEmpty())
             return (BooleanMask2D) mask1.clone();
 
-        return getExclusiveUnion(mask1.bounds, mask1.mask, mask2.bounds, mask2.mask);
+        // use bit packed masks (64 pixels at once)
+        return fromPackedMask(PackedBooleanMask2D.getExclusiveUnion(mask1.getPackedMask(), mask2.getPackedMask()));
     }
 
     /**
@@ -629,10 +608,12 @@ public class BooleanMask2D implements Cloneable
     {
         if (mask1 == null)
             return new BooleanMask2D();
-        if (mask2 == null)
+        // nothing to subtract
+        if ((mask2 == null) || !mask1.bounds.intersects(mask2.bounds))
             return (BooleanMask2D) mask1.clone();
 
-        return getSubtraction(mask1.bounds, mask1.mask, mask2.bounds, mask2.mask);
+        // use bit packed masks (64 pixels at once)
+        return fromPackedMask(PackedBooleanMask2D.getSubtraction(mask1.getPackedMask(), mask2.getPackedMask()));
     }
 
     /**
@@ -1113,6 +1094,15 @@ public class BooleanMask2D implements Cloneable
         return false;
     }
 
+    /**
+     * Returns a bit packed copy of this mask ({@link PackedBooleanMask2D} uses 8 times less memory
+     * and does boolean operations 64 pixels at a time).
+     */
+    public PackedBooleanMask2D getPackedMask()
+    {
+        return new PackedBooleanMask2D(bounds, mask);
+    }
+
     /**
      * Return the number of points contained in this boolean mask.
      */
@@ -1193,7 +1183,10 @@ public class BooleanMask2D implements Cloneable
      * Return a 2D array of integer representing points of each component of the current mask.<br>
      * A component is basically an isolated object which does not touch any other objects.<br>
      * Internal use only.
+     * 
+     * @deprecated Use {@link #getComponentLabeling(int)} instead.
      */
+    @Deprecated
     protected List<Component> getComponentsPointsInternal()
     {
         final List<Component> components = new ArrayList<Component>();
@@ -1368,14 +1361,18 @@ public class BooleanMask2D implements Cloneable
         if (bounds.isEmpty())
             return new int[0][0];
 
-        final List<Component> components = getComponentsPointsInternal();
-        final int[][] result = new int[components.size()][];
-
-        // convert list of point to Point array
-        for (int i = 0; i < result.length; i++)
-            result[i] = components.get(i).getAllPoints();
+        return getComponentLabeling(ComponentLabeling.CONNECTIVITY_8).getComponentsPointsAsIntArray();
+    }
 
-        return result;
+    /**
+     * Compute the connected components labeling of the current mask.
+     * 
+     * @param connectivity
+     *        {@link ComponentLabeling#CONNECTIVITY_4} or {@link ComponentLabeling#CONNECTIVITY_8}
+     */
+    public ComponentLabeling getComponentLabeling(int connectivity)
+    {
+        return new ComponentLabeling(this, connectivity);
     }
 
     /**
@@ -1384,18 +1381,23 @@ public class BooleanMask2D implements Cloneable
      * A component is basically an isolated object which does not touch any other objects.
      */
     public BooleanMask2D[] getComponents()
+    {
+        return getComponents(ComponentLabeling.CONNECTIVITY_8);
+    }
+
+    /**
+     * Return an array of boolean mask representing each independent component of the current
+     * mask using the specified connectivity.
+     * 
+     * @param connectivity
+     *        {@link ComponentLabeling#CONNECTIVITY_4} or {@link ComponentLabeling#CONNECTIVITY_8}
+     */
+    public BooleanMask2D[] getComponents(int connectivity)
     {
         if (bounds.isEmpty())
             return new BooleanMask2D[0];
 
-        final int[][] componentsPoints = getComponentsPointsAsIntArray();
-        final List<BooleanMask2D> result = new ArrayList<BooleanMask2D>();
-
-        // convert array of point to boolean mask
-        for (int[] componentPoints : componentsPoints)
-            result.add(new BooleanMask2D(componentPoints));
-
-        return result.toArray(new BooleanMask2D[result.size()]);
+        return getComponentLabeling(connectivity).getMasks2D();
     }
 
     /**
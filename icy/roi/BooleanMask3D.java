@@ -31,8 +31,9 @@ public class BooleanMask3D implements Cloneable
             // only use the 2D mask from first mask
             return (BooleanMask2D) m1.clone();
 
-        // process union of 2D mask
-        return BooleanMask2D.getUnion(m1, m2);
+        // process union of 2D mask on runs (result fits its content)
+        return RunLengthBooleanMask2D.getUnion(new RunLengthBooleanMask2D(m1), new RunLengthBooleanMask2D(m2))
+                .toBooleanMask2D();
     }
 
     // Internal use only
@@ -41,8 +42,9 @@ public class BooleanMask3D implements Cloneable
         if ((m1 == null) || (m2 == null))
             return null;
 
-        // process intersection of 2D mask
-        return BooleanMask2D.getIntersection(m1, m2);
+        // process intersection of 2D mask on runs (result fits its content)
+        return RunLengthBooleanMask2D.getIntersection(new RunLengthBooleanMask2D(m1),
+                new RunLengthBooleanMask2D(m2)).toBooleanMask2D();
     }
 
     // Internal use only
@@ -868,6 +870,48 @@ public class BooleanMask3D implements Cloneable
         return result.asArray();
     }
 
+    /**
+     * Compute the connected components labeling of the current mask.
+     * 
+     * @param connectivity
+     *        {@link ComponentLabeling#CONNECTIVITY_6} or {@link ComponentLabeling#CONNECTIVITY_26} (
+     *        {@link ComponentLabeling#CONNECTIVITY_4} or {@link ComponentLabeling#CONNECTIVITY_8} to
+     *        label each Z slice independently)
+     * @throws IllegalArgumentException
+     *         if the mask has an infinite Z dimension
+     */
+    public ComponentLabeling getComponentLabeling(int connectivity) throws IllegalArgumentException
+    {
+        return new ComponentLabeling(this, connectivity);
+    }
+
+    /**
+     * Return an array of boolean mask representing each independent component of the current
+     * mask (26-connectivity).<br>
+     * A component is basically an isolated object which does not touch any other objects.
+     * 
+     * @throws IllegalArgumentException
+     *         if the mask has an infinite Z dimension
+     */
+    public BooleanMask3D[] getComponents() throws IllegalArgumentException
+    {
+        return getComponents(ComponentLabeling.CONNECTIVITY_26);
+    }
+
+    /**
+     * Return an array of boolean mask representing each independent component of the current
+     * mask using the specified connectivity.
+     * 
+     * @see #getComponentLabeling(int)
+     */
+    public BooleanMask3D[] getComponents(int connectivity) throws IllegalArgumentException
+    {
+        if (isEmpty())
+            return new BooleanMask3D[0];
+
+        return getComponentLabeling(connectivity).getMasks3D();
+    }
+
     /**
      * Return an array of {@link icy.type.point.Point3D.Integer} containing the contour/surface
      * points of the 3D mask.<br>
@@ -0,0 +1,919 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import icy.system.SystemUtil;
+import icy.system.thread.ParallelTaskRunner;
+import icy.type.rectangle.Rectangle3D;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Connected component labeling of 2D and 3D boolean masks.<br>
+ * Labeling is done in two passes using a union-find structure: image rows are split in stripes which are labeled
+ * in parallel (provisional labels with partial bounds and point count), provisional labels touching across stripe
+ * borders are then merged and final labels are written back in parallel.<br>
+ * Components are labeled from <code>1</code> to {@link #getComponentCount()} in the order of their first point (Z,
+ * Y then X order), <code>0</code> is the background label.
+ */
+public class ComponentLabeling
+{
+    /**
+     * 2D 4-connectivity (no connection between Z slices)
+     */
+    public static final int CONNECTIVITY_4 = 4;
+    /**
+     * 2D 8-connectivity (no connection between Z slices)
+     */
+    public static final int CONNECTIVITY_8 = 8;
+    /**
+     * 3D 6-connectivity
+     */
+    public static final int CONNECTIVITY_6 = 6;
+    /**
+     * 3D 26-connectivity
+     */
+    public static final int CONNECTIVITY_26 = 26;
+
+    /**
+     * Masks with less points than this value are labeled by the calling thread only
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 18;
+
+    // statistics layout (per label)
+    private static final int MIN_X = 0;
+    private static final int MIN_Y = 1;
+    private static final int MIN_Z = 2;
+    private static final int MAX_X = 3;
+    private static final int MAX_Y = 4;
+    private static final int MAX_Z = 5;
+    private static final int COUNT = 6;
+    private static final int STAT_SIZE = 7;
+
+    /**
+     * Group of consecutive rows labeled by a single thread
+     */
+    private static class Stripe
+    {
+        final int fromLine;
+        final int toLine;
+
+        int numLabel;
+        // provisional labels union-find (local to the stripe)
+        int[] parent;
+        // provisional labels statistics
+        int[] stats;
+        // offset of the stripe provisional labels in the global label space
+        int base;
+
+        Stripe(int fromLine, int toLine)
+        {
+            super();
+
+            this.fromLine = fromLine;
+            this.toLine = toLine;
+            numLabel = 0;
+            parent = new int[64];
+            stats = new int[64 * STAT_SIZE];
+            base = 0;
+        }
+
+        int newLabel()
+        {
+            final int label = ++numLabel;
+
+            if (label >= parent.length)
+            {
+                final int[] newParent = new int[parent.length * 2];
+                final int[] newStats = new int[newParent.length * STAT_SIZE];
+
+                System.arraycopy(parent, 0, newParent, 0, parent.length);
+                System.arraycopy(stats, 0, newStats, 0, stats.length);
+                parent = newParent;
+                stats = newStats;
+            }
+
+            parent[label] = label;
+            initStats(stats, label);
+
+            return label;
+        }
+    }
+
+    static int find(int[] parent, int label)
+    {
+        int l = label;
+
+        while (parent[l] != l)
+        {
+            // path halving
+            parent[l] = parent[parent[l]];
+            l = parent[l];
+        }
+
+        return l;
+    }
+
+    /**
+     * Merge the 2 labels sets, the smallest root label is kept as root (and returned)
+     */
+    static int union(int[] parent, int label1, int label2)
+    {
+        final int r1 = find(parent, label1);
+        final int r2 = find(parent, label2);
+
+        if (r1 < r2)
+        {
+            parent[r2] = r1;
+            return r1;
+        }
+        if (r2 < r1)
+            parent[r1] = r2;
+
+        return r2;
+    }
+
+    static void initStats(int[] stats, int label)
+    {
+        final int off = label * STAT_SIZE;
+
+        stats[off + MIN_X] = Integer.MAX_VALUE;
+        stats[off + MIN_Y] = Integer.MAX_VALUE;
+        stats[off + MIN_Z] = Integer.MAX_VALUE;
+        stats[off + MAX_X] = Integer.MIN_VALUE;
+        stats[off + MAX_Y] = Integer.MIN_VALUE;
+        stats[off + MAX_Z] = Integer.MIN_VALUE;
+        stats[off + COUNT] = 0;
+    }
+
+    static void mergeStats(int[] dst, int dstLabel, int[] src, int srcLabel)
+    {
+        final int d = dstLabel * STAT_SIZE;
+        final int s = srcLabel * STAT_SIZE;
+
+        dst[d + MIN_X] = Math.min(dst[d + MIN_X], src[s + MIN_X]);
+        dst[d + MIN_Y] = Math.min(dst[d + MIN_Y], src[s + MIN_Y]);
+        dst[d + MIN_Z] = Math.min(dst[d + MIN_Z], src[s + MIN_Z]);
+        dst[d + MAX_X] = Math.max(dst[d + MAX_X], src[s + MAX_X]);
+        dst[d + MAX_Y] = Math.max(dst[d + MAX_Y], src[s + MAX_Y]);
+        dst[d + MAX_Z] = Math.max(dst[d + MAX_Z], src[s + MAX_Z]);
+        dst[d + COUNT] += src[s + COUNT];
+    }
+
+    protected final int width;
+    protected final int height;
+    protected final int depth;
+    protected final int offsetX;
+    protected final int offsetY;
+    protected final int offsetZ;
+    protected final int connectivity;
+
+    /**
+     * label array: <code>labels[z][(y * width) + x]</code>
+     */
+    protected final int[][] labels;
+    protected final int numComponent;
+    /**
+     * component statistics (bounds and point count) in label array coordinates
+     */
+    protected final int[] stats;
+
+    // neighbor connectivity
+    private final boolean inPlane8;
+    private final boolean interSlice;
+    private final boolean interSlice26;
+
+    /**
+     * Computes the connected components of the specified mask.
+     * 
+     * @param mask
+     *        the mask data: <code>mask[z][(y * width) + x]</code>, all slices should be
+     *        <code>width * height</code> sized
+     * @param width
+     *        mask width
+     * @param height
+     *        mask height
+     * @param offsetX
+     *        X position of the mask (used to return components bounds and masks in absolute coordinates)
+     * @param offsetY
+     *        Y position of the mask
+     * @param offsetZ
+     *        Z position of the mask
+     * @param connectivity
+     *        {@link #CONNECTIVITY_4}, {@link #CONNECTIVITY_8}, {@link #CONNECTIVITY_6} or {@link #CONNECTIVITY_26}
+     * @throws IllegalArgumentException
+     *         if connectivity or mask size are not valid
+     */
+    public ComponentLabeling(boolean[][] mask, int width, int height, int offsetX, int offsetY, int offsetZ,
+            int connectivity) throws IllegalArgumentException
+    {
+        super();
+
+        switch (connectivity)
+        {
+            case CONNECTIVITY_4:
+                inPlane8 = false;
+                interSlice = false;
+                interSlice26 = false;
+                break;
+            case CONNECTIVITY_8:
+                inPlane8 = true;
+                interSlice = false;
+                interSlice26 = false;
+                break;
+            case CONNECTIVITY_6:
+                inPlane8 = false;
+                interSlice = true;
+                interSlice26 = false;
+                break;
+            case CONNECTIVITY_26:
+                inPlane8 = true;
+                interSlice = true;
+                interSlice26 = true;
+                break;
+            default:
+                throw new IllegalArgumentException("ComponentLabeling: unsupported connectivity (" + connectivity
+                        + "), should be 4, 8, 6 or 26.");
+        }
+
+        for (boolean[] slice : mask)
+            if (slice.length < (width * height))
+                throw new IllegalArgumentException("ComponentLabeling: mask slice size is lower than width * height.");
+
+        this.width = width;
+        this.height = height;
+        this.depth = mask.length;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.offsetZ = offsetZ;
+        this.connectivity = connectivity;
+
+        labels = new int[depth][width * height];
+
+        // build stripes
+        final int numLine = depth * height;
+        final int numStripe;
+
+        if (((long) numLine * width) < PARALLEL_THRESHOLD)
+            numStripe = Math.min(1, numLine);
+        else
+            numStripe = Math.min(SystemUtil.getNumberOfCPUs(), numLine);
+
+        final List<Stripe> stripes = new ArrayList<Stripe>(numStripe);
+
+        if (numStripe > 0)
+        {
+            final int linePerStripe = (numLine + (numStripe - 1)) / numStripe;
+
+            for (int l = 0; l < numLine; l += linePerStripe)
+                stripes.add(new Stripe(l, Math.min(l + linePerStripe, numLine)));
+        }
+
+        // first pass: provisional labeling of each stripe
+        final List<Runnable> tasks = new ArrayList<Runnable>(stripes.size());
+
+        for (final Stripe stripe : stripes)
+        {
+            tasks.add(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    labelStripe(mask, stripe);
+                }
+            });
+        }
+
+        ParallelTaskRunner.runAll(tasks);
+
+        // merge provisional labels in a global label space
+        int numLabel = 0;
+        for (Stripe stripe : stripes)
+        {
+            stripe.base = numLabel;
+            numLabel += stripe.numLabel;
+        }
+
+        final int[] parent = new int[numLabel + 1];
+
+        for (Stripe stripe : stripes)
+            for (int l = 1; l <= stripe.numLabel; l++)
+                parent[stripe.base + l] = stripe.base + stripe.parent[l];
+
+        // join labels touching across stripe borders
+        for (int s = 1; s < stripes.size(); s++)
+            mergeStripe(mask, stripes, s, parent);
+
+        // compute final labels (root label is always the smallest one so it is processed first)
+        final int[] finalLabels = new int[numLabel + 1];
+        int numComp = 0;
+
+        for (int l = 1; l <= numLabel; l++)
+        {
+            final int root = find(parent, l);
+
+            if (root == l)
+                finalLabels[l] = ++numComp;
+            else
+                finalLabels[l] = finalLabels[root];
+        }
+
+        numComponent = numComp;
+
+        // reduce statistics
+        stats = new int[(numComp + 1) * STAT_SIZE];
+        for (int c = 1; c <= numComp; c++)
+            initStats(stats, c);
+        for (Stripe stripe : stripes)
+        {
+            for (int l = 1; l <= stripe.numLabel; l++)
+                mergeStats(stats, finalLabels[stripe.base + l], stripe.stats, l);
+
+            // not anymore needed
+            stripe.parent = null;
+            stripe.stats = null;
+        }
+
+        // second pass: write final labels
+        tasks.clear();
+        for (final Stripe stripe : stripes)
+        {
+            tasks.add(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    relabelStripe(stripe, finalLabels);
+                }
+            });
+        }
+
+        ParallelTaskRunner.runAll(tasks);
+    }
+
+    /**
+     * Computes the connected components of the specified 2D mask.
+     * 
+     * @param connectivity
+     *        {@link #CONNECTIVITY_4} or {@link #CONNECTIVITY_8}
+     */
+    public ComponentLabeling(BooleanMask2D mask, int connectivity) throws IllegalArgumentException
+    {
+        this(new boolean[][] {mask.mask}, mask.bounds.width, mask.bounds.height, mask.bounds.x, mask.bounds.y, 0,
+                connectivity);
+    }
+
+    /**
+     * Computes the connected components of the specified 3D mask.
+     * 
+     * @param connectivity
+     *        {@link #CONNECTIVITY_6} or {@link #CONNECTIVITY_26} ({@link #CONNECTIVITY_4} or
+     *        {@link #CONNECTIVITY_8} to label each Z slice independently)
+     * @throws IllegalArgumentException
+     *         if the mask has an infinite Z dimension
+     */
+    public ComponentLabeling(BooleanMask3D mask, int connectivity) throws IllegalArgumentException
+    {
+        this(toArray(mask), getXYBounds(mask).width, getXYBounds(mask).height, getXYBounds(mask).x,
+                getXYBounds(mask).y, mask.mask.isEmpty() ? 0 : mask.mask.firstKey().intValue(), connectivity);
+    }
+
+    private static Rectangle getXYBounds(BooleanMask3D mask)
+    {
+        Rectangle result = null;
+
+        for (BooleanMask2D slice : mask.mask.values())
+        {
+            if (result == null)
+                result = new Rectangle(slice.bounds);
+            else
+                result.add(slice.bounds);
+        }
+
+        if (result == null)
+            return new Rectangle();
+
+        return result;
+    }
+
+    private static boolean[][] toArray(BooleanMask3D mask)
+    {
+        if (mask.bounds.isInfiniteZ())
+            throw new IllegalArgumentException("ComponentLabeling: can't label a mask with infinite Z dimension.");
+        if (mask.mask.isEmpty())
+            return new boolean[0][];
+
+        final Rectangle bnd = getXYBounds(mask);
+        final int minZ = mask.mask.firstKey().intValue();
+        final boolean[][] result = new boolean[(mask.mask.lastKey().intValue() - minZ) + 1][];
+
+        for (int z = 0; z < result.length; z++)
+            result[z] = new boolean[bnd.width * bnd.height];
+
+        for (Entry<Integer, BooleanMask2D> entry : mask.mask.entrySet())
+        {
+            final BooleanMask2D slice = entry.getValue();
+            final Rectangle sb = slice.bounds;
+            final boolean[] dst = result[entry.getKey().intValue() - minZ];
+
+            // copy slice mask rows
+            for (int y = 0; y < sb.height; y++)
+                System.arraycopy(slice.mask, y * sb.width, dst, ((sb.y - bnd.y) + y) * bnd.width + (sb.x - bnd.x),
+                        sb.width);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the lines (<code>z * height + y</code>) of the neighbor rows located before the specified line (in
+     * scan order) and their X extent (0 = same X only, 1 = X-1 to X+1).<br>
+     * Returns the number of neighbor rows.
+     */
+    private int getNeighborRows(int line, int[] nbLines, int[] nbExtents)
+    {
+        final int z = line / height;
+        final int y = line - (z * height);
+        int num = 0;
+
+        // previous row in same slice
+        if (y > 0)
+        {
+            nbLines[num] = line - 1;
+            nbExtents[num++] = inPlane8 ? 1 : 0;
+        }
+        // rows of previous slice
+        if (interSlice && (z > 0))
+        {
+            if (interSlice26)
+            {
+                for (int dy = -1; dy <= 1; dy++)
+                {
+                    if (((y + dy) >= 0) && ((y + dy) < height))
+                    {
+                        nbLines[num] = (line - height) + dy;
+                        nbExtents[num++] = 1;
+                    }
+                }
+            }
+            else
+            {
+                nbLines[num] = line - height;
+                nbExtents[num++] = 0;
+            }
+        }
+
+        return num;
+    }
+
+    /**
+     * First pass: provisional labeling of a stripe (neighbors outside the stripe are ignored).
+     */
+    void labelStripe(boolean[][] mask, Stripe stripe)
+    {
+        final int[] nbLines = new int[4];
+        final int[] nbExtents = new int[4];
+        final boolean[][] nbMasks = new boolean[4][];
+        final int[][] nbLabels = new int[4][];
+        final int[] nbOffsets = new int[4];
+        final int w = width;
+
+        for (int line = stripe.fromLine; line < stripe.toLine; line++)
+        {
+            final int z = line / height;
+            final int y = line - (z * height);
+            final boolean[] m = mask[z];
+            final int[] lb = labels[z];
+            final int off = y * w;
+
+            // keep only neighbor rows inside the stripe
+            final int numRow = getNeighborRows(line, nbLines, nbExtents);
+            int numNb = 0;
+            for (int r = 0; r < numRow; r++)
+            {
+                final int nl = nbLines[r];
+
+                if (nl >= stripe.fromLine)
+                {
+                    final int nz = nl / height;
+
+                    nbMasks[numNb] = mask[nz];
+                    nbLabels[numNb] = labels[nz];
+                    nbOffsets[numNb] = (nl - (nz * height)) * w;
+                    nbExtents[numNb] = nbExtents[r];
+                    numNb++;
+                }
+            }
+
+            for (int x = 0; x < w; x++)
+            {
+                final int i = off + x;
+
+                if (!m[i])
+                    continue;
+
+                int label = 0;
+
+                // left neighbor
+                if ((x > 0) && m[i - 1])
+                    label = lb[i - 1];
+
+                for (int r = 0; r < numNb; r++)
+                {
+                    final boolean[] nm = nbMasks[r];
+                    final int[] nlb = nbLabels[r];
+                    final int ext = nbExtents[r];
+                    final int minX = Math.max(0, x - ext);
+                    final int maxX = Math.min(w - 1, x + ext);
+
+                    for (int nx = minX; nx <= maxX; nx++)
+                    {
+                        final int ni = nbOffsets[r] + nx;
+
+                        if (nm[ni])
+                        {
+                            final int nlabel = nlb[ni];
+
+                            if (label == 0)
+                                label = nlabel;
+                            else if (label != nlabel)
+                                label = union(stripe.parent, label, nlabel);
+                        }
+                    }
+                }
+
+                // new component
+                if (label == 0)
+                    label = stripe.newLabel();
+
+                lb[i] = label;
+
+                // update statistics
+                final int[] st = stripe.stats;
+                final int so = label * STAT_SIZE;
+
+                if (x < st[so + MIN_X])
+                    st[so + MIN_X] = x;
+                if (x > st[so + MAX_X])
+                    st[so + MAX_X] = x;
+                if (y < st[so + MIN_Y])
+                    st[so + MIN_Y] = y;
+                if (y > st[so + MAX_Y])
+                    st[so + MAX_Y] = y;
+                if (z < st[so + MIN_Z])
+                    st[so + MIN_Z] = z;
+                if (z > st[so + MAX_Z])
+                    st[so + MAX_Z] = z;
+                st[so + COUNT]++;
+            }
+        }
+    }
+
+    /**
+     * Merge step: join labels of the specified stripe with the labels of previous stripes they touch.
+     */
+    void mergeStripe(boolean[][] mask, List<Stripe> stripes, int index, int[] parent)
+    {
+        final Stripe stripe = stripes.get(index);
+        final int linePerStripe = stripes.get(0).toLine - stripes.get(0).fromLine;
+        final int[] nbLines = new int[4];
+        final int[] nbExtents = new int[4];
+        final int w = width;
+        // only the first rows of the stripe can have neighbors in previous stripes
+        final int toLine = Math.min(stripe.toLine, stripe.fromLine + height + 1);
+
+        for (int line = stripe.fromLine; line < toLine; line++)
+        {
+            final int z = line / height;
+            final int y = line - (z * height);
+            final boolean[] m = mask[z];
+            final int[] lb = labels[z];
+            final int off = y * w;
+            final int numRow = getNeighborRows(line, nbLines, nbExtents);
+
+            for (int r = 0; r < numRow; r++)
+            {
+                final int nl = nbLines[r];
+
+                // neighbor row inside the stripe --> already done
+                if (nl >= stripe.fromLine)
+                    continue;
+
+                final int nz = nl / height;
+                final boolean[] nm = mask[nz];
+                final int[] nlb = labels[nz];
+                final int noff = (nl - (nz * height)) * w;
+                final int nbase = stripes.get(nl / linePerStripe).base;
+                final int ext = nbExtents[r];
+
+                for (int x = 0; x < w; x++)
+                {
+                    if (!m[off + x])
+                        continue;
+
+                    final int label = stripe.base + lb[off + x];
+                    final int minX = Math.max(0, x - ext);
+                    final int maxX = Math.min(w - 1, x + ext);
+
+                    for (int nx = minX; nx <= maxX; nx++)
+                        if (nm[noff + nx])
+                            union(parent, label, nbase + nlb[noff + nx]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Second pass: replace provisional labels by final labels.
+     */
+    void relabelStripe(Stripe stripe, int[] finalLabels)
+    {
+        final int base = stripe.base;
+
+        for (int line = stripe.fromLine; line < stripe.toLine; line++)
+        {
+            final int z = line / height;
+            final int[] lb = labels[z];
+            final int off = (line - (z * height)) * width;
+            final int end = off + width;
+
+            for (int i = off; i < end; i++)
+                if (lb[i] != 0)
+                    lb[i] = finalLabels[base + lb[i]];
+        }
+    }
+
+    /**
+     * Returns the connectivity used for labeling.
+     */
+    public int getConnectivity()
+    {
+        return connectivity;
+    }
+
+    /**
+     * Returns the width of the label array.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Returns the height of the label array.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Returns the depth (number of Z slices) of the label array.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Returns the number of component.
+     */
+    public int getComponentCount()
+    {
+        return numComponent;
+    }
+
+    /**
+     * Returns the label array: <code>labels[z][(y * width) + x]</code> where <code>0</code> is the background and
+     * components are labeled from <code>1</code> to {@link #getComponentCount()}.<br>
+     * Array coordinates are relative to the mask position (see {@link #getBounds(int)} for absolute coordinates).
+     * The returned array is the internal one, it should not be modified.
+     */
+    public int[][] getLabels()
+    {
+        return labels;
+    }
+
+    /**
+     * Returns the label at the specified absolute position (<code>0</code> if outside the mask).
+     */
+    public int getLabel(int x, int y, int z)
+    {
+        final int lx = x - offsetX;
+        final int ly = y - offsetY;
+        final int lz = z - offsetZ;
+
+        if ((lx < 0) || (ly < 0) || (lz < 0) || (lx >= width) || (ly >= height) || (lz >= depth))
+            return 0;
+
+        return labels[lz][(ly * width) + lx];
+    }
+
+    private void checkLabel(int label)
+    {
+        if ((label < 1) || (label > numComponent))
+            throw new IllegalArgumentException("ComponentLabeling: invalid label (" + label + ")");
+    }
+
+    /**
+     * Returns the number of point of the specified component.
+     */
+    public int getPointCount(int label)
+    {
+        checkLabel(label);
+
+        return stats[(label * STAT_SIZE) + COUNT];
+    }
+
+    /**
+     * Returns the 3D bounds (absolute coordinates) of the specified component.
+     */
+    public Rectangle3D.Integer getBounds(int label)
+    {
+        checkLabel(label);
+
+        final int off = label * STAT_SIZE;
+
+        return new Rectangle3D.Integer(stats[off + MIN_X] + offsetX, stats[off + MIN_Y] + offsetY, stats[off + MIN_Z]
+                + offsetZ, (stats[off + MAX_X] - stats[off + MIN_X]) + 1, (stats[off + MAX_Y] - stats[off + MIN_Y]) + 1,
+                (stats[off + MAX_Z] - stats[off + MIN_Z]) + 1);
+    }
+
+    /**
+     * Returns the XY bounds (absolute coordinates) of the specified component.
+     */
+    public Rectangle getBounds2D(int label)
+    {
+        checkLabel(label);
+
+        final int off = label * STAT_SIZE;
+
+        return new Rectangle(stats[off + MIN_X] + offsetX, stats[off + MIN_Y] + offsetY,
+                (stats[off + MAX_X] - stats[off + MIN_X]) + 1, (stats[off + MAX_Y] - stats[off + MIN_Y]) + 1);
+    }
+
+    /**
+     * Returns the points (absolute coordinates) of each component in the same format than
+     * {@link BooleanMask2D#getComponentsPointsAsIntArray()}:<br>
+     * <code>result[c][(pt * 2) + 0]</code> = X coordinate for point <i>pt</i> of component <i>c</i>.<br>
+     * <code>result[c][(pt * 2) + 1]</code> = Y coordinate for point <i>pt</i> of component <i>c</i>.<br>
+     * Points are returned in ascending Y, X order. Z position is ignored so it should only be used for 2D labeling.
+     */
+    public int[][] getComponentsPointsAsIntArray()
+    {
+        final int[][] result = new int[numComponent][];
+        final int[] pos = new int[numComponent];
+
+        for (int c = 0; c < numComponent; c++)
+            result[c] = new int[getPointCount(c + 1) * 2];
+
+        for (int z = 0; z < depth; z++)
+        {
+            final int[] lb = labels[z];
+            int off = 0;
+
+            for (int y = 0; y < height; y++)
+            {
+                for (int x = 0; x < width; x++, off++)
+                {
+                    final int c = lb[off] - 1;
+
+                    if (c >= 0)
+                    {
+                        final int[] pts = result[c];
+
+                        pts[pos[c]++] = x + offsetX;
+                        pts[pos[c]++] = y + offsetY;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the 2D boolean mask of each component (Z position is ignored so it should only be used for 2D
+     * labeling).
+     */
+    public BooleanMask2D[] getMasks2D()
+    {
+        final BooleanMask2D[] result = new BooleanMask2D[numComponent];
+        final Rectangle[] bounds = new Rectangle[numComponent];
+
+        for (int c = 0; c < numComponent; c++)
+        {
+            final Rectangle b = getBounds2D(c + 1);
+
+            // use array coordinates while filling
+            b.translate(-offsetX, -offsetY);
+            bounds[c] = b;
+            result[c] = new BooleanMask2D(new Rectangle(b), new boolean[b.width * b.height]);
+        }
+
+        for (int z = 0; z < depth; z++)
+        {
+            final int[] lb = labels[z];
+            int off = 0;
+
+            for (int y = 0; y < height; y++)
+            {
+                for (int x = 0; x < width; x++, off++)
+                {
+                    final int c = lb[off] - 1;
+
+                    if (c >= 0)
+                    {
+                        final Rectangle b = bounds[c];
+                        result[c].mask[((y - b.y) * b.width) + (x - b.x)] = true;
+                    }
+                }
+            }
+        }
+
+        // set absolute position
+        for (BooleanMask2D m : result)
+            m.bounds.translate(offsetX, offsetY);
+
+        return result;
+    }
+
+    /**
+     * Returns the 3D boolean mask of each component.
+     */
+    public BooleanMask3D[] getMasks3D()
+    {
+        final BooleanMask3D[] result = new BooleanMask3D[numComponent];
+        final Rectangle3D.Integer[] bounds = new Rectangle3D.Integer[numComponent];
+        final BooleanMask2D[][] slices = new BooleanMask2D[numComponent][];
+
+        for (int c = 0; c < numComponent; c++)
+        {
+            bounds[c] = getBounds(c + 1);
+            slices[c] = new BooleanMask2D[bounds[c].sizeZ];
+        }
+
+        for (int z = 0; z < depth; z++)
+        {
+            final int[] lb = labels[z];
+            int off = 0;
+
+            for (int y = 0; y < height; y++)
+            {
+                for (int x = 0; x < width; x++, off++)
+                {
+                    final int c = lb[off] - 1;
+
+                    if (c >= 0)
+                    {
+                        final Rectangle3D.Integer b = bounds[c];
+                        final int bx = b.x - offsetX;
+                        final int by = b.y - offsetY;
+                        final int sz = (z + offsetZ) - b.z;
+                        BooleanMask2D slice = slices[c][sz];
+
+                        if (slice == null)
+                        {
+                            slice = new BooleanMask2D(new Rectangle(b.x, b.y, b.sizeX, b.sizeY),
+                                    new boolean[b.sizeX * b.sizeY]);
+                            slices[c][sz] = slice;
+                        }
+
+                        slice.mask[((y - by) * b.sizeX) + (x - bx)] = true;
+                    }
+                }
+            }
+        }
+
+        for (int c = 0; c < numComponent; c++)
+        {
+            // use tight 2D bounds for each slice
+            for (BooleanMask2D slice : slices[c])
+                if (slice != null)
+                    slice.optimizeBounds();
+
+            result[c] = new BooleanMask3D(bounds[c], slices[c]);
+        }
+
+        return result;
+    }
+}
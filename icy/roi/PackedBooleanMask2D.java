@@ -0,0 +1,657 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+/**
+ * Bit packed version of {@link BooleanMask2D}.<br>
+ * The mask is stored in a <code>long[]</code> array where each pixel use a single bit (8 times less
+ * memory than a <code>boolean[]</code> mask) and boolean operations between masks are done 64
+ * pixels at a time.<br>
+ * Each row of the mask starts on a new word so rows can be processed independently, bits past the
+ * mask width are always kept to 0.<br>
+ * Use {@link #PackedBooleanMask2D(BooleanMask2D)} and {@link #toBooleanMask2D()} to convert from /
+ * to the classic {@link BooleanMask2D}.
+ */
+public class PackedBooleanMask2D implements Cloneable
+{
+    private static final int OP_OR = 0;
+    private static final int OP_XOR = 1;
+    private static final int OP_ANDNOT = 2;
+
+    /**
+     * Returns the number of <code>long</code> words needed to store a row of the specified width
+     */
+    public static int getWordsPerRow(int width)
+    {
+        return (width + 63) >>> 6;
+    }
+
+    /**
+     * Extract <code>len</code> bits from the source row starting at bit <code>srcBit</code> and
+     * store them in the destination row starting at bit 0 (bits past <code>len</code> are cleared).
+     */
+    private static void extractRow(long[] src, int srcOff, int srcWords, int srcBit, int len, long[] dst, int dstOff)
+    {
+        final int numWord = getWordsPerRow(len);
+        final int shift = srcBit & 63;
+        final int srcEnd = srcOff + srcWords;
+        int s = srcOff + (srcBit >>> 6);
+
+        if (shift == 0)
+            System.arraycopy(src, s, dst, dstOff, numWord);
+        else
+        {
+            for (int i = 0; i < numWord; i++, s++)
+            {
+                long w = src[s] >>> shift;
+
+                if ((s + 1) < srcEnd)
+                    w |= src[s + 1] << (64 - shift);
+
+                dst[dstOff + i] = w;
+            }
+        }
+
+        // clear bits past the extracted length
+        final int rem = len & 63;
+        if (rem != 0)
+            dst[(dstOff + numWord) - 1] &= (1L << rem) - 1;
+    }
+
+    /**
+     * Combine the source row (starting at bit 0) into the destination row starting at bit
+     * <code>dstBit</code> using the specified operation.<br>
+     * Only OR, XOR and ANDNOT operations are supported as a 0 source word doesn't modify destination.
+     */
+    private static void combineRow(int op, long[] src, int srcOff, int srcWords, long[] dst, int dstOff,
+            int dstWords, int dstBit)
+    {
+        final int shift = dstBit & 63;
+        final int dstEnd = dstOff + dstWords;
+        int d = dstOff + (dstBit >>> 6);
+
+        for (int i = 0; i < srcWords; i++, d++)
+        {
+            final long w = src[srcOff + i];
+
+            if (w == 0L)
+                continue;
+
+            applyOp(op, dst, d, w << shift);
+            if ((shift != 0) && ((d + 1) < dstEnd))
+                applyOp(op, dst, d + 1, w >>> (64 - shift));
+        }
+    }
+
+    private static void applyOp(int op, long[] dst, int index, long value)
+    {
+        switch (op)
+        {
+            case OP_OR:
+                dst[index] |= value;
+                break;
+            case OP_XOR:
+                dst[index] ^= value;
+                break;
+            case OP_ANDNOT:
+                dst[index] &= ~value;
+                break;
+        }
+    }
+
+    /**
+     * Build resulting mask from union of all specified masks
+     */
+    public static PackedBooleanMask2D getUnion(List<PackedBooleanMask2D> masks)
+    {
+        final Rectangle bounds = getUnionBounds(masks);
+
+        if (bounds == null)
+            return new PackedBooleanMask2D();
+
+        final PackedBooleanMask2D result = new PackedBooleanMask2D(bounds);
+
+        for (PackedBooleanMask2D mask : masks)
+            result.combine(OP_OR, mask);
+
+        return result;
+    }
+
+    /**
+     * Build resulting mask from intersection of all specified masks
+     */
+    public static PackedBooleanMask2D getIntersection(List<PackedBooleanMask2D> masks)
+    {
+        PackedBooleanMask2D result = null;
+
+        for (PackedBooleanMask2D mask : masks)
+        {
+            if (result == null)
+                result = (PackedBooleanMask2D) mask.clone();
+            else
+                result.intersect(mask);
+
+            // no need to go further
+            if (result.bounds.isEmpty())
+                break;
+        }
+
+        if (result == null)
+            return new PackedBooleanMask2D();
+
+        return result;
+    }
+
+    /**
+     * Build resulting mask from exclusive union of all specified masks
+     */
+    public static PackedBooleanMask2D getExclusiveUnion(List<PackedBooleanMask2D> masks)
+    {
+        final Rectangle bounds = getUnionBounds(masks);
+
+        if (bounds == null)
+            return new PackedBooleanMask2D();
+
+        final PackedBooleanMask2D result = new PackedBooleanMask2D(bounds);
+
+        for (PackedBooleanMask2D mask : masks)
+            result.combine(OP_XOR, mask);
+
+        // optimize bounds
+        result.optimizeBounds();
+
+        return result;
+    }
+
+    private static Rectangle getUnionBounds(List<PackedBooleanMask2D> masks)
+    {
+        Rectangle result = null;
+
+        for (PackedBooleanMask2D mask : masks)
+        {
+            if (mask.bounds.isEmpty())
+                continue;
+
+            if (result == null)
+                result = new Rectangle(mask.bounds);
+            else
+                result.add(mask.bounds);
+        }
+
+        return result;
+    }
+
+    /**
+     * Build resulting mask from union of the mask1 and mask2.
+     */
+    public static PackedBooleanMask2D getUnion(PackedBooleanMask2D mask1, PackedBooleanMask2D mask2)
+    {
+        final PackedBooleanMask2D result = (PackedBooleanMask2D) mask1.clone();
+
+        result.add(mask2);
+
+        return result;
+    }
+
+    /**
+     * Build resulting mask from intersection of the mask1 and mask2.
+     */
+    public static PackedBooleanMask2D getIntersection(PackedBooleanMask2D mask1, PackedBooleanMask2D mask2)
+    {
+        final PackedBooleanMask2D result = (PackedBooleanMask2D) mask1.clone();
+
+        result.intersect(mask2);
+
+        return result;
+    }
+
+    /**
+     * Build resulting mask from exclusive union of the mask1 and mask2.
+     */
+    public static PackedBooleanMask2D getExclusiveUnion(PackedBooleanMask2D mask1, PackedBooleanMask2D mask2)
+    {
+        final PackedBooleanMask2D result = (PackedBooleanMask2D) mask1.clone();
+
+        result.exclusiveAdd(mask2);
+        // optimize bounds
+        result.optimizeBounds();
+
+        return result;
+    }
+
+    /**
+     * Build resulting mask from the subtraction of mask2 from mask1.
+     */
+    public static PackedBooleanMask2D getSubtraction(PackedBooleanMask2D mask1, PackedBooleanMask2D mask2)
+    {
+        final PackedBooleanMask2D result = (PackedBooleanMask2D) mask1.clone();
+
+        result.subtract(mask2);
+        // optimize bounds
+        result.optimizeBounds();
+
+        return result;
+    }
+
+    /**
+     * Region represented by the mask.
+     */
+    protected Rectangle bounds;
+    /**
+     * Packed mask data, each row uses {@link #wordsPerRow} words.
+     */
+    protected long[] words;
+    protected int wordsPerRow;
+
+    /**
+     * Create an empty mask
+     */
+    public PackedBooleanMask2D()
+    {
+        this(new Rectangle());
+    }
+
+    /**
+     * Create a cleared mask (no point set) for the specified region
+     */
+    public PackedBooleanMask2D(Rectangle bounds)
+    {
+        super();
+
+        this.bounds = new Rectangle(bounds);
+        if (bounds.isEmpty())
+        {
+            wordsPerRow = 0;
+            words = new long[0];
+        }
+        else
+        {
+            wordsPerRow = getWordsPerRow(bounds.width);
+            words = new long[wordsPerRow * bounds.height];
+        }
+    }
+
+    /**
+     * Create a packed mask from the specified <code>boolean</code> mask
+     */
+    public PackedBooleanMask2D(Rectangle bounds, boolean[] mask)
+    {
+        this(bounds);
+
+        if (!bounds.isEmpty())
+        {
+            final int w = bounds.width;
+            int off = 0;
+            int rowOff = 0;
+
+            for (int y = 0; y < bounds.height; y++)
+            {
+                for (int x = 0; x < w; x++)
+                    if (mask[off++])
+                        words[rowOff + (x >>> 6)] |= 1L << (x & 63);
+
+                rowOff += wordsPerRow;
+            }
+        }
+    }
+
+    /**
+     * Create a packed mask from the specified {@link BooleanMask2D}
+     */
+    public PackedBooleanMask2D(BooleanMask2D mask)
+    {
+        this(mask.bounds, mask.mask);
+    }
+
+    /**
+     * Returns the region represented by the mask
+     */
+    public Rectangle getBounds()
+    {
+        return new Rectangle(bounds);
+    }
+
+    /**
+     * Returns the internal packed data (row by row, each row uses {@link #getWordsPerRow()} words)
+     */
+    public long[] getWords()
+    {
+        return words;
+    }
+
+    /**
+     * Returns the number of <code>long</code> words used to store a row of the mask
+     */
+    public int getWordsPerRow()
+    {
+        return wordsPerRow;
+    }
+
+    /**
+     * Return a {@link BooleanMask2D} (<code>boolean[]</code> based) version of this mask
+     */
+    public BooleanMask2D toBooleanMask2D()
+    {
+        return new BooleanMask2D(new Rectangle(bounds), getBooleanArray());
+    }
+
+    /**
+     * Returns the mask as a <code>boolean</code> array (same layout as {@link BooleanMask2D#mask})
+     */
+    public boolean[] getBooleanArray()
+    {
+        final boolean[] result = new boolean[bounds.width * bounds.height];
+        int off = 0;
+        int rowOff = 0;
+
+        for (int y = 0; y < bounds.height; y++)
+        {
+            for (int i = 0; i < wordsPerRow; i++)
+            {
+                long w = words[rowOff + i];
+                final int base = off + (i << 6);
+
+                while (w != 0L)
+                {
+                    result[base + Long.numberOfTrailingZeros(w)] = true;
+                    // clear lowest set bit
+                    w &= w - 1;
+                }
+            }
+
+            off += bounds.width;
+            rowOff += wordsPerRow;
+        }
+
+        return result;
+    }
+
+    /**
+     * Return true if mask is empty
+     */
+    public boolean isEmpty()
+    {
+        for (long w : words)
+            if (w != 0L)
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Return true if mask contains the specified point
+     */
+    public boolean contains(int x, int y)
+    {
+        if (bounds.contains(x, y))
+        {
+            final int dx = x - bounds.x;
+            return (words[((y - bounds.y) * wordsPerRow) + (dx >>> 6)] & (1L << (dx & 63))) != 0L;
+        }
+
+        return false;
+    }
+
+    /**
+     * Set or clear the specified point (should be inside mask bounds)
+     */
+    public void set(int x, int y, boolean value)
+    {
+        final int dx = x - bounds.x;
+        final int index = ((y - bounds.y) * wordsPerRow) + (dx >>> 6);
+
+        if (value)
+            words[index] |= 1L << (dx & 63);
+        else
+            words[index] &= ~(1L << (dx & 63));
+    }
+
+    /**
+     * Return the number of points contained in this mask
+     */
+    public int getNumberOfPoints()
+    {
+        int result = 0;
+
+        for (long w : words)
+            result += Long.bitCount(w);
+
+        return result;
+    }
+
+    /**
+     * Combine the specified mask into this mask using given operation.<br>
+     * Only the part of <code>mask</code> inside current bounds is considered.
+     */
+    private void combine(int op, PackedBooleanMask2D mask)
+    {
+        final Rectangle inter = bounds.intersection(mask.bounds);
+
+        if (inter.isEmpty())
+            return;
+
+        final int srcBit = inter.x - mask.bounds.x;
+        final int dstBit = inter.x - bounds.x;
+        // need to extract source row ?
+        final boolean extract = (srcBit != 0) || (inter.width != mask.bounds.width);
+        final int tmpWords = getWordsPerRow(inter.width);
+        final long[] tmp = extract ? new long[tmpWords] : null;
+        int srcOff = (inter.y - mask.bounds.y) * mask.wordsPerRow;
+        int dstOff = (inter.y - bounds.y) * wordsPerRow;
+
+        for (int y = 0; y < inter.height; y++)
+        {
+            if (extract)
+            {
+                extractRow(mask.words, srcOff, mask.wordsPerRow, srcBit, inter.width, tmp, 0);
+                combineRow(op, tmp, 0, tmpWords, words, dstOff, wordsPerRow, dstBit);
+            }
+            else
+                combineRow(op, mask.words, srcOff, mask.wordsPerRow, words, dstOff, wordsPerRow, dstBit);
+
+            srcOff += mask.wordsPerRow;
+            dstOff += wordsPerRow;
+        }
+    }
+
+    /**
+     * Add the specified mask into the current mask (bounds can be enlarged):
+     */
+    public void add(PackedBooleanMask2D mask)
+    {
+        if (mask.bounds.isEmpty())
+            return;
+
+        if (bounds.isEmpty())
+            setBounds(mask.bounds);
+        else if (!bounds.contains(mask.bounds))
+            setBounds(bounds.union(mask.bounds));
+
+        combine(OP_OR, mask);
+    }
+
+    /**
+     * Exclusively add the specified mask into the current mask (bounds can be enlarged):
+     */
+    public void exclusiveAdd(PackedBooleanMask2D mask)
+    {
+        if (mask.bounds.isEmpty())
+            return;
+
+        if (bounds.isEmpty())
+            setBounds(mask.bounds);
+        else if (!bounds.contains(mask.bounds))
+            setBounds(bounds.union(mask.bounds));
+
+        combine(OP_XOR, mask);
+    }
+
+    /**
+     * Subtract the specified mask from the current mask (bounds are not modified)
+     */
+    public void subtract(PackedBooleanMask2D mask)
+    {
+        combine(OP_ANDNOT, mask);
+    }
+
+    /**
+     * Intersect the specified mask with the current mask (bounds can be reduced)
+     */
+    public void intersect(PackedBooleanMask2D mask)
+    {
+        final Rectangle inter = bounds.intersection(mask.bounds);
+
+        if (inter.isEmpty())
+        {
+            setBounds(new Rectangle());
+            return;
+        }
+
+        final int newWordsPerRow = getWordsPerRow(inter.width);
+        final long[] newWords = new long[newWordsPerRow * inter.height];
+        final long[] tmp = new long[newWordsPerRow];
+        final int bit1 = inter.x - bounds.x;
+        final int bit2 = inter.x - mask.bounds.x;
+        int off1 = (inter.y - bounds.y) * wordsPerRow;
+        int off2 = (inter.y - mask.bounds.y) * mask.wordsPerRow;
+        int off = 0;
+
+        for (int y = 0; y < inter.height; y++)
+        {
+            extractRow(words, off1, wordsPerRow, bit1, inter.width, newWords, off);
+            extractRow(mask.words, off2, mask.wordsPerRow, bit2, inter.width, tmp, 0);
+
+            for (int i = 0; i < newWordsPerRow; i++)
+                newWords[off + i] &= tmp[i];
+
+            off1 += wordsPerRow;
+            off2 += mask.wordsPerRow;
+            off += newWordsPerRow;
+        }
+
+        bounds = inter;
+        words = newWords;
+        wordsPerRow = newWordsPerRow;
+    }
+
+    /**
+     * Return an optimized bounds which contains all points of the mask (empty rectangle if mask is
+     * empty)
+     */
+    public Rectangle getOptimizedBounds()
+    {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = -1;
+        int maxY = -1;
+        int rowOff = 0;
+
+        for (int y = 0; y < bounds.height; y++)
+        {
+            for (int i = 0; i < wordsPerRow; i++)
+            {
+                final long w = words[rowOff + i];
+
+                if (w != 0L)
+                {
+                    final int first = (i << 6) + Long.numberOfTrailingZeros(w);
+
+                    if (first < minX)
+                        minX = first;
+                    if (minY == Integer.MAX_VALUE)
+                        minY = y;
+                    maxY = y;
+                    break;
+                }
+            }
+
+            for (int i = wordsPerRow - 1; i >= 0; i--)
+            {
+                final long w = words[rowOff + i];
+
+                if (w != 0L)
+                {
+                    final int last = (i << 6) + (63 - Long.numberOfLeadingZeros(w));
+
+                    if (last > maxX)
+                        maxX = last;
+                    break;
+                }
+            }
+
+            rowOff += wordsPerRow;
+        }
+
+        // empty
+        if (maxY == -1)
+            return new Rectangle();
+
+        return new Rectangle(bounds.x + minX, bounds.y + minY, (maxX - minX) + 1, (maxY - minY) + 1);
+    }
+
+    /**
+     * Optimize mask bounds so it fits mask content.
+     */
+    public void optimizeBounds()
+    {
+        setBounds(getOptimizedBounds());
+    }
+
+    /**
+     * Change the bounds of the mask, mask content is preserved where old and new bounds intersect.
+     */
+    public void setBounds(Rectangle value)
+    {
+        if (bounds.equals(value))
+            return;
+
+        final PackedBooleanMask2D old = new PackedBooleanMask2D();
+        old.bounds = bounds;
+        old.words = words;
+        old.wordsPerRow = wordsPerRow;
+
+        bounds = new Rectangle(value);
+        if (bounds.isEmpty())
+        {
+            wordsPerRow = 0;
+            words = new long[0];
+        }
+        else
+        {
+            wordsPerRow = getWordsPerRow(bounds.width);
+            words = new long[wordsPerRow * bounds.height];
+            combine(OP_OR, old);
+        }
+    }
+
+    @Override
+    public Object clone()
+    {
+        final PackedBooleanMask2D result = new PackedBooleanMask2D();
+
+        result.bounds = new Rectangle(bounds);
+        result.words = words.clone();
+        result.wordsPerRow = wordsPerRow;
+
+        return result;
+    }
+}
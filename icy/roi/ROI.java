@@ -1261,6 +1261,15 @@ public abstract class ROI implements ChangeListener, XMLPersistent
     protected boolean numberOfContourPointsInvalid;
     protected boolean numberOfPointsInvalid;
 
+    /**
+     * content version (incremented on each change which can affect descriptors)
+     */
+    protected volatile long contentVersion;
+    /**
+     * cached descriptor results
+     */
+    protected final ROIDescriptorCache descriptorCache;
+
     /**
      * listeners
      */
@@ -1290,6 +1299,9 @@ public abstract class ROI implements ChangeListener, XMLPersistent
         numberOfPointsInvalid = true;
         numberOfContourPointsInvalid = true;
 
+        contentVersion = 0L;
+        descriptorCache = new ROIDescriptorCache(this);
+
         listeners = new ArrayList<ROIListener>();
         updater = new UpdateEventHandler(this, false);
 
@@ -3454,6 +3466,26 @@ public abstract class ROI implements ChangeListener, XMLPersistent
         return true;
     }
 
+    /**
+     * Returns the content version of the ROI.<br>
+     * It is incremented each time the ROI content or a ROI property changed so it can be used to detect obsolete
+     * descriptor results.
+     * 
+     * @see #getDescriptorCache()
+     */
+    public long getContentVersion()
+    {
+        return contentVersion;
+    }
+
+    /**
+     * Returns the descriptor results cache of this ROI.
+     */
+    public ROIDescriptorCache getDescriptorCache()
+    {
+        return descriptorCache;
+    }
+
     /**
      * @deprecated Use {@link #roiChanged(boolean)} instead
      */
@@ -3630,6 +3662,15 @@ public abstract class ROI implements ChangeListener, XMLPersistent
                 break;
         }
 
+        // cached descriptor results may be obsolete
+        if ((event.getType() == ROIEventType.ROI_CHANGED) || (event.getType() == ROIEventType.PROPERTY_CHANGED))
+        {
+            final long oldVersion = contentVersion;
+
+            contentVersion = oldVersion + 1;
+            descriptorCache.roiChanged(event, oldVersion, oldVersion + 1);
+        }
+
         // notify listener we have changed
         fireChangedEvent(event);
     }
@@ -157,6 +157,10 @@ public abstract class ROI2D extends ROI
             if (imagePoint == null)
                 return false;
 
+            // fast rejection through the sequence ROI index (avoid costly edge test when far from ROI)
+            if (!isFocused() && isOutOfReach(imagePoint, canvas))
+                return false;
+
             // test on canvas has already be done, don't do it again
             final boolean focused = isOverEdge(canvas, imagePoint.getX(), imagePoint.getY());
 
@@ -165,6 +169,26 @@ public abstract class ROI2D extends ROI
             return focused;
         }
 
+        /**
+         * Returns <code>true</code> if the specified image position is too far from the ROI bounds to
+         * be over the ROI edge (uses the ROI spatial index of the canvas sequence).
+         */
+        protected boolean isOutOfReach(Point5D imagePoint, IcyCanvas canvas)
+        {
+            if (!(canvas instanceof IcyCanvas2D))
+                return false;
+
+            final Sequence sequence = canvas.getSequence();
+
+            if (sequence == null)
+                return false;
+
+            // edge test uses a (3 * stroke) wide area, keep a safety margin
+            final double tolerance = getAdjustedStroke(canvas) * 4;
+
+            return !sequence.getROIIndex().isNear(ROI2D.this, imagePoint.getX(), imagePoint.getY(), tolerance);
+        }
+
         @Override
         protected boolean updateDrag(InputEvent e, Point5D imagePoint, IcyCanvas canvas)
         {
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import icy.image.IcyBufferedImage;
+import icy.image.ImageDataIterator;
+import icy.math.DataIteratorMath.SpanStatistics;
+import icy.sequence.Sequence;
+import icy.system.thread.ParallelTaskRunner;
+import icy.type.point.Point5D;
+import icy.type.rectangle.Rectangle5D;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Batch measurement of intensity statistics (min, max, mean, sum, standard deviation) and mass center for many ROIs
+ * at once.<br>
+ * ROIs are indexed by plane (T,Z position) so each plane of the sequence is read only once for all the ROIs it
+ * contains, the ROI masks are computed once per plane and reused for all channels. Planes (or groups of ROIs of a
+ * plane) are processed in parallel.<br>
+ * Only the part of the ROIs which is inside the sequence is measured, ROI pixels are included when they are
+ * partially contained (same as the intensity descriptors).<br>
+ * The mass center only depends on the ROI masks so it can be computed alone without reading any pixel (see
+ * {@link #compute(Collection, Sequence, boolean)}).
+ */
+public class ROIBatchMeasure
+{
+    /**
+     * Measure of a single ROI.
+     */
+    public static class Measure
+    {
+        final SpanStatistics intensity;
+        long numPoints;
+        double sumX;
+        double sumY;
+        double sumZ;
+        double sumT;
+        double sumC;
+
+        Measure()
+        {
+            super();
+
+            intensity = new SpanStatistics();
+            numPoints = 0L;
+            sumX = 0d;
+            sumY = 0d;
+            sumZ = 0d;
+            sumT = 0d;
+            sumC = 0d;
+        }
+
+        void add(Measure measure)
+        {
+            intensity.add(measure.intensity);
+            numPoints += measure.numPoints;
+            sumX += measure.sumX;
+            sumY += measure.sumY;
+            sumZ += measure.sumZ;
+            sumT += measure.sumT;
+            sumC += measure.sumC;
+        }
+
+        /**
+         * Returns intensity statistics of the ROI (all channels of the ROI are merged).
+         */
+        public SpanStatistics getIntensity()
+        {
+            return intensity;
+        }
+
+        /**
+         * Returns the mass center of the ROI, infinite dimensions of the ROI are set to <code>-1</code>.
+         */
+        public Point5D getMassCenter()
+        {
+            if (numPoints == 0L)
+                return new Point5D.Double();
+
+            return new Point5D.Double(sumX / numPoints, sumY / numPoints, sumZ / numPoints, sumT / numPoints, sumC
+                    / numPoints);
+        }
+    }
+
+    /**
+     * ROI informations (position in the sequence)
+     */
+    static class Entry
+    {
+        final ROI roi;
+        final int dim;
+        final Rectangle5D.Integer bounds;
+        final boolean infiniteZ;
+        final boolean infiniteT;
+        final boolean infiniteC;
+
+        Entry(ROI roi, Rectangle5D.Integer sequenceBounds)
+        {
+            super();
+
+            final Rectangle5D roiBounds = roi.getBounds5D();
+
+            this.roi = roi;
+            dim = roi.getDimension();
+            bounds = (Rectangle5D.Integer) sequenceBounds.createIntersection(roiBounds);
+            infiniteZ = roiBounds.isInfiniteZ();
+            infiniteT = roiBounds.isInfiniteT();
+            infiniteC = roiBounds.isInfiniteC();
+        }
+
+        /**
+         * Returns the ROI mask for the specified position (same as {@link icy.sequence.SequenceDataIterator}).
+         */
+        BooleanMask2D getMask(int z, int t, int c)
+        {
+            switch (dim)
+            {
+                case 2:
+                    return roi.getBooleanMask2D(-1, -1, -1, true);
+                case 3:
+                    return roi.getBooleanMask2D(z, -1, -1, true);
+                case 4:
+                    return roi.getBooleanMask2D(z, t, -1, true);
+                default:
+                    return roi.getBooleanMask2D(z, t, c, true);
+            }
+        }
+    }
+
+    /**
+     * maximum number of ROIs measured by a single task
+     */
+    private static final int ROIS_PER_TASK = 256;
+
+    /**
+     * Measure intensity statistics and mass center of all specified ROIs on the sequence.<br>
+     * Be careful: the returned result may be incorrect or exception may be thrown if the ROIs or the sequence change
+     * while the measure is being computed.
+     * 
+     * @return ROI measures (in ROI collection order)
+     * @throws InterruptedException
+     *         if the calling thread was interrupted during the computation
+     * @throws ExecutionException
+     *         if the measure of a plane failed (image not available for instance)
+     */
+    public static Map<ROI, Measure> compute(Collection<? extends ROI> rois, Sequence sequence)
+            throws InterruptedException, ExecutionException
+    {
+        return compute(rois, sequence, true);
+    }
+
+    /**
+     * Measure mass center and optionally intensity statistics of all specified ROIs on the sequence.<br>
+     * When <code>intensity</code> is <code>false</code> only the ROI masks are used: no image is read and infinite
+     * dimensions (Z, T, C) are visited only once (intensity statistics of the returned measures are then empty).<br>
+     * Be careful: the returned result may be incorrect or exception may be thrown if the ROIs or the sequence change
+     * while the measure is being computed.
+     * 
+     * @param intensity
+     *        if <code>true</code> the intensity statistics are computed (sequence images are read)
+     * @return ROI measures (in ROI collection order)
+     * @throws InterruptedException
+     *         if the calling thread was interrupted during the computation
+     * @throws ExecutionException
+     *         if the measure of a plane failed (image not available for instance)
+     */
+    public static Map<ROI, Measure> compute(Collection<? extends ROI> rois, final Sequence sequence,
+            final boolean intensity) throws InterruptedException, ExecutionException
+    {
+        final Map<ROI, Measure> result = new LinkedHashMap<ROI, Measure>();
+        final List<Entry> entries = new ArrayList<Entry>(rois.size());
+        final Rectangle5D.Integer sequenceBounds = sequence.getBounds5D();
+        // plane (T,Z) --> index of contained ROIs
+        final Map<Long, List<Integer>> planeIndex = new HashMap<Long, List<Integer>>();
+
+        for (ROI roi : rois)
+        {
+            final Entry entry = new Entry(roi, sequenceBounds);
+            final int index = entries.size();
+            final Rectangle5D.Integer b = entry.bounds;
+
+            entries.add(entry);
+            result.put(roi, new Measure());
+
+            if (b.isEmpty())
+                continue;
+
+            // mask is the same for all Z (or T) of an infinite dimension --> visit it once
+            final int sizeT = (!intensity && entry.infiniteT) ? 1 : b.sizeT;
+            final int sizeZ = (!intensity && entry.infiniteZ) ? 1 : b.sizeZ;
+
+            for (int t = b.t; t < (b.t + sizeT); t++)
+            {
+                for (int z = b.z; z < (b.z + sizeZ); z++)
+                {
+                    final Long key = Long.valueOf((((long) t) << 32) | (z & 0xFFFFFFFFL));
+                    List<Integer> planeRois = planeIndex.get(key);
+
+                    if (planeRois == null)
+                    {
+                        planeRois = new ArrayList<Integer>();
+                        planeIndex.put(key, planeRois);
+                    }
+
+                    planeRois.add(Integer.valueOf(index));
+                }
+            }
+        }
+
+        final List<Callable<Measure[]>> tasks = new ArrayList<Callable<Measure[]>>();
+        final List<List<Integer>> tasksRois = new ArrayList<List<Integer>>();
+
+        for (Map.Entry<Long, List<Integer>> plane : planeIndex.entrySet())
+        {
+            final long key = plane.getKey().longValue();
+            final int t = (int) (key >> 32);
+            final int z = (int) key;
+            final List<Integer> planeRois = plane.getValue();
+
+            // split planes containing many ROIs so they are processed in parallel
+            for (int i = 0; i < planeRois.size(); i += ROIS_PER_TASK)
+            {
+                final List<Integer> taskRois = planeRois.subList(i, Math.min(planeRois.size(), i + ROIS_PER_TASK));
+
+                tasksRois.add(taskRois);
+                tasks.add(new Callable<Measure[]>()
+                {
+                    @Override
+                    public Measure[] call() throws Exception
+                    {
+                        if (intensity)
+                            return measurePlane(sequence, entries, taskRois, z, t);
+
+                        return measurePlaneMasks(entries, taskRois, z, t);
+                    }
+                });
+            }
+        }
+
+        final List<Measure[]> tasksMeasures = ParallelTaskRunner.invokeAll(tasks);
+
+        if (Thread.interrupted())
+            throw new InterruptedException();
+
+        for (int i = 0; i < tasksMeasures.size(); i++)
+        {
+            final Measure[] measures = tasksMeasures.get(i);
+            final List<Integer> taskRois = tasksRois.get(i);
+
+            for (int j = 0; j < measures.length; j++)
+                result.get(entries.get(taskRois.get(j).intValue()).roi).add(measures[j]);
+        }
+
+        // infinite dimensions are reported as -1 (as ROIIterator does)
+        for (Entry entry : entries)
+        {
+            final Measure measure = result.get(entry.roi);
+
+            if (entry.infiniteZ)
+                measure.sumZ = -measure.numPoints;
+            if (entry.infiniteT)
+                measure.sumT = -measure.numPoints;
+        }
+
+        return result;
+    }
+
+    /**
+     * Measure the specified ROIs on the given plane (all channels).
+     * 
+     * @throws IllegalStateException
+     *         if the image of the plane is not available
+     */
+    static Measure[] measurePlane(Sequence sequence, List<Entry> entries, List<Integer> rois, int z, int t)
+    {
+        final IcyBufferedImage image = sequence.getImage(t, z);
+
+        // don't return an empty measure for the ROIs of this plane
+        if (image == null)
+            throw new IllegalStateException("Cannot measure ROIs: image at T=" + t + ", Z=" + z
+                    + " is not available.");
+
+        final Measure[] result = new Measure[rois.size()];
+
+        for (int i = 0; i < result.length; i++)
+        {
+            final Entry entry = entries.get(rois.get(i).intValue());
+            final Measure measure = new Measure();
+            final Rectangle5D.Integer b = entry.bounds;
+            BooleanMask2D mask = null;
+
+            for (int c = b.c; c < (b.c + b.sizeC); c++)
+            {
+                // mask only depends from channel for 5D ROI
+                if ((mask == null) || (entry.dim >= 5))
+                    mask = entry.getMask(z, t, c);
+
+                new ImageDataIterator(image, null, mask, c).forEachSpan(measure.intensity, z, t);
+
+                // infinite C --> single position (-1) for mass center
+                if (entry.infiniteC)
+                {
+                    if (c == b.c)
+                        addPoints(measure, mask, z, t, -1);
+                }
+                else
+                    addPoints(measure, mask, z, t, c);
+            }
+
+            result[i] = measure;
+        }
+
+        return result;
+    }
+
+    /**
+     * Measure the mass center of the specified ROIs on the given plane from their masks only (all channels).
+     */
+    static Measure[] measurePlaneMasks(List<Entry> entries, List<Integer> rois, int z, int t)
+    {
+        final Measure[] result = new Measure[rois.size()];
+
+        for (int i = 0; i < result.length; i++)
+        {
+            final Entry entry = entries.get(rois.get(i).intValue());
+            final Measure measure = new Measure();
+            final Rectangle5D.Integer b = entry.bounds;
+
+            // infinite C --> single position (-1)
+            if (entry.infiniteC)
+                addPoints(measure, entry.getMask(z, t, b.c), z, t, -1);
+            // mask only depends from channel for 5D ROI
+            else if (entry.dim >= 5)
+            {
+                for (int c = b.c; c < (b.c + b.sizeC); c++)
+                    addPoints(measure, entry.getMask(z, t, c), z, t, c);
+            }
+            else
+            {
+                final Measure plane = new Measure();
+
+                // same mask for all channels --> count points once
+                addPoints(plane, entry.getMask(z, t, b.c), z, t, 0);
+
+                for (int c = b.c; c < (b.c + b.sizeC); c++)
+                {
+                    plane.sumC = plane.numPoints * (double) c;
+                    measure.add(plane);
+                }
+            }
+
+            result[i] = measure;
+        }
+
+        return result;
+    }
+
+    /**
+     * Add mask points to the mass center computation.
+     */
+    private static void addPoints(Measure measure, BooleanMask2D mask, int z, int t, int c)
+    {
+        final boolean[] m = mask.mask;
+        final int w = mask.bounds.width;
+        final int h = mask.bounds.height;
+        long n = 0L;
+        double sx = 0d;
+        double sy = 0d;
+        int off = 0;
+
+        for (int y = 0; y < h; y++)
+        {
+            for (int x = 0; x < w; x++)
+            {
+                if (m[off++])
+                {
+                    n++;
+                    sx += x;
+                    sy += y;
+                }
+            }
+        }
+
+        measure.numPoints += n;
+        measure.sumX += sx + (n * (double) mask.bounds.x);
+        measure.sumY += sy + (n * (double) mask.bounds.y);
+        measure.sumZ += n * (double) z;
+        measure.sumT += n * (double) t;
+        measure.sumC += n * (double) c;
+    }
+}
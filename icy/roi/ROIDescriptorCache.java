@@ -0,0 +1,373 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import icy.roi.ROIEvent.ROIEventType;
+import icy.sequence.Sequence;
+import icy.sequence.SequenceEvent;
+import icy.sequence.SequenceEvent.SequenceEventSourceType;
+import icy.util.StringUtil;
+import icy.util.XMLUtil;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Cache of descriptor results for a ROI.<br>
+ * Each result is keyed by descriptor id and channel and is tagged with the ROI content version (see
+ * {@link ROI#getContentVersion()}) and the sequence data version (see {@link Sequence#getDataVersion()}) at
+ * computation time. A result is valid as long as these versions match the current ones.<br>
+ * On ROI or sequence change, results of descriptors which don't need to be recomputed (see
+ * {@link ROIDescriptor#needRecompute(ROIEvent)} and {@link ROIDescriptor#needRecompute(SequenceEvent)}) are moved
+ * to the new versions so they stay valid.<br>
+ * Only simple values (numbers, booleans and strings) of descriptors which don't depend on the sequence pixel data
+ * are persisted in XML: pixel data can change outside the application between save and load.
+ */
+public class ROIDescriptorCache
+{
+    public static final String ID_DESCRIPTOR = "descriptor";
+    public static final String ID_ID = "id";
+    public static final String ID_CHANNEL = "channel";
+    public static final String ID_TYPE = "type";
+
+    protected static class Key
+    {
+        final String descriptorId;
+        final int channel;
+
+        public Key(String descriptorId, int channel)
+        {
+            super();
+
+            this.descriptorId = descriptorId;
+            this.channel = channel;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof Key)
+            {
+                final Key key = (Key) obj;
+                return (channel == key.channel) && descriptorId.equals(key.descriptorId);
+            }
+
+            return false;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return descriptorId.hashCode() ^ (channel * 31);
+        }
+    }
+
+    protected static class CachedResult
+    {
+        /**
+         * descriptor (can be <code>null</code> when result has been loaded from XML)
+         */
+        ROIDescriptor descriptor;
+        final WeakReference<Sequence> sequence;
+        final Object value;
+        long roiVersion;
+        long sequenceVersion;
+
+        public CachedResult(ROIDescriptor descriptor, Sequence sequence, Object value, long roiVersion,
+                long sequenceVersion)
+        {
+            super();
+
+            this.descriptor = descriptor;
+            this.sequence = new WeakReference<Sequence>(sequence);
+            this.value = value;
+            this.roiVersion = roiVersion;
+            this.sequenceVersion = sequenceVersion;
+        }
+
+        boolean needRecompute(ROIEvent event)
+        {
+            if (descriptor != null)
+                return descriptor.needRecompute(event);
+
+            // default behavior
+            return event.getType() == ROIEventType.ROI_CHANGED;
+        }
+
+        boolean needRecompute(SequenceEvent event)
+        {
+            if (descriptor != null)
+                return descriptor.needRecompute(event);
+
+            // we don't know the descriptor so we consider it depends from sequence data
+            return (event.getSourceType() == SequenceEventSourceType.SEQUENCE_DATA)
+                    || (event.getSourceType() == SequenceEventSourceType.SEQUENCE_TYPE);
+        }
+    }
+
+    protected static class SavedValue
+    {
+        final Key key;
+        final Object value;
+
+        SavedValue(Key key, Object value)
+        {
+            super();
+
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    protected final ROI roi;
+    protected final Map<Key, CachedResult> results;
+
+    public ROIDescriptorCache(ROI roi)
+    {
+        super();
+
+        this.roi = roi;
+        results = new HashMap<Key, CachedResult>();
+    }
+
+    /**
+     * Returns the cached value of the specified descriptor for the given sequence and channel.<br>
+     * Returns <code>null</code> if there is no valid cached value.
+     */
+    public Object get(ROIDescriptor descriptor, Sequence sequence, int channel)
+    {
+        synchronized (results)
+        {
+            final CachedResult result = results.get(new Key(descriptor.getId(), channel));
+
+            if ((result == null) || (result.sequence.get() != sequence))
+                return null;
+            if (result.roiVersion != roi.getContentVersion())
+                return null;
+            if ((sequence != null) && (result.sequenceVersion != sequence.getDataVersion()))
+                return null;
+
+            // descriptor is now known
+            result.descriptor = descriptor;
+
+            return result.value;
+        }
+    }
+
+    /**
+     * Store the value of the specified descriptor computed for the given sequence and channel.<br>
+     * <code>roiVersion</code> and <code>sequenceVersion</code> should be retrieved <b>before</b> computation so a
+     * value computed from obsolete data is never considered as valid.
+     * 
+     * @see ROI#getContentVersion()
+     * @see Sequence#getDataVersion()
+     */
+    public void put(ROIDescriptor descriptor, Sequence sequence, int channel, Object value, long roiVersion,
+            long sequenceVersion)
+    {
+        synchronized (results)
+        {
+            results.put(new Key(descriptor.getId(), channel), new CachedResult(descriptor, sequence, value,
+                    roiVersion, sequenceVersion));
+        }
+    }
+
+    /**
+     * Remove all cached values
+     */
+    public void clear()
+    {
+        synchronized (results)
+        {
+            results.clear();
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        synchronized (results)
+        {
+            return results.isEmpty();
+        }
+    }
+
+    /**
+     * Called by the ROI when its content version changed.
+     */
+    protected void roiChanged(ROIEvent event, long oldVersion, long newVersion)
+    {
+        synchronized (results)
+        {
+            for (CachedResult result : results.values())
+            {
+                // result still valid --> move it to the new version
+                if ((result.roiVersion == oldVersion) && !result.needRecompute(event))
+                    result.roiVersion = newVersion;
+            }
+        }
+    }
+
+    /**
+     * Called by the sequence when its data version changed.
+     */
+    public void sequenceChanged(Sequence sequence, SequenceEvent event, long oldVersion, long newVersion)
+    {
+        synchronized (results)
+        {
+            for (CachedResult result : results.values())
+            {
+                // result still valid --> move it to the new version
+                if ((result.sequence.get() == sequence) && (result.sequenceVersion == oldVersion)
+                        && !result.needRecompute(event))
+                    result.sequenceVersion = newVersion;
+            }
+        }
+    }
+
+    /**
+     * Load cached values from XML, loaded values are considered valid for the given sequence (only values which
+     * don't depend on the sequence pixel data are saved).
+     */
+    public boolean loadFromXML(Node node, Sequence sequence)
+    {
+        if (node == null)
+            return false;
+
+        final List<Element> elements = XMLUtil.getElements(node, ID_DESCRIPTOR);
+        final long roiVersion = roi.getContentVersion();
+        final long sequenceVersion = (sequence != null) ? sequence.getDataVersion() : 0L;
+
+        synchronized (results)
+        {
+            for (Element element : elements)
+            {
+                final String id = XMLUtil.getAttributeValue(element, ID_ID, "");
+                final int channel = XMLUtil.getAttributeIntValue(element, ID_CHANNEL, -1);
+                final Object value = valueFromString(XMLUtil.getAttributeValue(element, ID_TYPE, ""),
+                        XMLUtil.getValue(element, null));
+
+                if (!StringUtil.isEmpty(id) && (value != null))
+                    results.put(new Key(id, channel), new CachedResult(null, sequence, value, roiVersion,
+                            sequenceVersion));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Save valid cached values for the given sequence to XML.<br>
+     * Values of descriptors depending on the sequence pixel data (intensity descriptors...) are not saved as we
+     * cannot know if the data they were computed from is still the same when loading them back.
+     */
+    public boolean saveToXML(Node node, Sequence sequence)
+    {
+        if (node == null)
+            return false;
+
+        final List<SavedValue> entries = new ArrayList<SavedValue>();
+        final long roiVersion = roi.getContentVersion();
+
+        synchronized (results)
+        {
+            for (Map.Entry<Key, CachedResult> entry : results.entrySet())
+            {
+                final CachedResult result = entry.getValue();
+
+                if ((result.sequence.get() != sequence) || (result.roiVersion != roiVersion))
+                    continue;
+                if ((sequence != null) && (result.sequenceVersion != sequence.getDataVersion()))
+                    continue;
+                // we can only persist simple values
+                if (!isPersistable(result.value))
+                    continue;
+                // loaded values (unknown descriptor) were saved so they are still persistable
+                if ((result.descriptor != null) && dependsOnData(result.descriptor, sequence))
+                    continue;
+
+                entries.add(new SavedValue(entry.getKey(), result.value));
+            }
+        }
+
+        for (SavedValue entry : entries)
+        {
+            final Element element = XMLUtil.addElement(node, ID_DESCRIPTOR, entry.value.toString());
+
+            XMLUtil.setAttributeValue(element, ID_ID, entry.key.descriptorId);
+            XMLUtil.setAttributeIntValue(element, ID_CHANNEL, entry.key.channel);
+            XMLUtil.setAttributeValue(element, ID_TYPE, entry.value.getClass().getName());
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns <code>true</code> if the specified descriptor result depends on the sequence pixel data.
+     */
+    protected static boolean dependsOnData(ROIDescriptor descriptor, Sequence sequence)
+    {
+        return descriptor.needRecompute(new SequenceEvent(sequence, SequenceEventSourceType.SEQUENCE_DATA))
+                || descriptor.needRecompute(new SequenceEvent(sequence, SequenceEventSourceType.SEQUENCE_TYPE));
+    }
+
+    protected static boolean isPersistable(Object value)
+    {
+        return (value instanceof Double) || (value instanceof Float) || (value instanceof Long)
+                || (value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)
+                || (value instanceof Boolean) || (value instanceof String);
+    }
+
+    protected static Object valueFromString(String type, String value)
+    {
+        if (value == null)
+            return null;
+
+        try
+        {
+            if (Double.class.getName().equals(type))
+                return Double.valueOf(value);
+            if (Float.class.getName().equals(type))
+                return Float.valueOf(value);
+            if (Long.class.getName().equals(type))
+                return Long.valueOf(value);
+            if (Integer.class.getName().equals(type))
+                return Integer.valueOf(value);
+            if (Short.class.getName().equals(type))
+                return Short.valueOf(value);
+            if (Byte.class.getName().equals(type))
+                return Byte.valueOf(value);
+            if (Boolean.class.getName().equals(type))
+                return Boolean.valueOf(value);
+            if (String.class.getName().equals(type))
+                return value;
+        }
+        catch (NumberFormatException e)
+        {
+            // ignore
+        }
+
+        return null;
+    }
+}
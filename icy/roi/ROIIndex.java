@@ -0,0 +1,509 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import icy.type.rectangle.Rectangle5D;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Spatial index of ROI built over the ROI 5D bounds ({@link ROI#getBounds5D()}).<br>
+ * ROI are stored in a uniform XY grid (cells of {@link #getCellSize()} pixels) so hit-testing and
+ * region queries only look at the ROI located around the requested area instead of iterating over
+ * all ROI. ROI with infinite or very large XY bounds are kept in a separate list which is always
+ * tested.<br>
+ * The index does not listen ROI by itself, {@link #update(ROI)} should be called when ROI bounds
+ * changed (see {@link icy.sequence.Sequence#getROIIndex()}).<br>
+ * This class is thread safe.
+ */
+public class ROIIndex
+{
+    /**
+     * Default grid cell size (in pixel)
+     */
+    public static final int DEFAULT_CELL_SIZE = 64;
+    /**
+     * ROI covering more grid cells than this value are stored in the global list
+     */
+    public static final int MAX_CELLS_PER_ROI = 1024;
+
+    private static class Entry
+    {
+        final ROI roi;
+        final Rectangle5D bounds;
+        // grid cell range (inclusive), not used for global entry
+        final boolean global;
+        final int minCX;
+        final int minCY;
+        final int maxCX;
+        final int maxCY;
+
+        Entry(ROI roi, Rectangle5D bounds, int cellSize)
+        {
+            super();
+
+            this.roi = roi;
+            this.bounds = bounds;
+
+            final double minX = bounds.getMinX();
+            final double minY = bounds.getMinY();
+            final double maxX = bounds.getMaxX();
+            final double maxY = bounds.getMaxY();
+
+            if (isFinite(minX) && isFinite(minY) && isFinite(maxX) && isFinite(maxY))
+            {
+                minCX = toCell(minX, cellSize);
+                minCY = toCell(minY, cellSize);
+                maxCX = toCell(maxX, cellSize);
+                maxCY = toCell(maxY, cellSize);
+
+                global = (((long) (maxCX - minCX) + 1L) * ((long) (maxCY - minCY) + 1L)) > MAX_CELLS_PER_ROI;
+            }
+            else
+            {
+                minCX = 0;
+                minCY = 0;
+                maxCX = -1;
+                maxCY = -1;
+                global = true;
+            }
+        }
+    }
+
+    protected final int cellSize;
+
+    /**
+     * ROI --> index entry
+     */
+    private final Map<ROI, Entry> entries;
+    /**
+     * cell key --> entries
+     */
+    private final Map<Long, List<Entry>> cells;
+    /**
+     * entries which can't be stored in the grid
+     */
+    private final List<Entry> globals;
+
+    /**
+     * internal modification counter (used to invalidate the cached candidates)
+     */
+    private int modCount;
+
+    // cached result of the last proximity query (shared by all ROI painters for a same mouse event)
+    private Set<ROI> cachedCandidates;
+    private double cachedX;
+    private double cachedY;
+    private double cachedTolerance;
+    private int cachedModCount;
+
+    /**
+     * Creates a new empty ROI index using the specified grid cell size (in pixel).
+     */
+    public ROIIndex(int cellSize)
+    {
+        super();
+
+        if (cellSize <= 0)
+            throw new IllegalArgumentException("ROIIndex: cell size should be > 0 (" + cellSize + ")");
+
+        this.cellSize = cellSize;
+        entries = new HashMap<ROI, Entry>();
+        cells = new HashMap<Long, List<Entry>>();
+        globals = new ArrayList<Entry>();
+        modCount = 0;
+        cachedCandidates = null;
+    }
+
+    /**
+     * Creates a new empty ROI index.
+     */
+    public ROIIndex()
+    {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    static boolean isFinite(double value)
+    {
+        return !Double.isInfinite(value) && !Double.isNaN(value);
+    }
+
+    static int toCell(double value, int cellSize)
+    {
+        final double cell = Math.floor(value / cellSize);
+
+        // clamp (so very large ROI just end in the global list)
+        if (cell <= Integer.MIN_VALUE)
+            return Integer.MIN_VALUE / 2;
+        if (cell >= Integer.MAX_VALUE)
+            return Integer.MAX_VALUE / 2;
+
+        return (int) cell;
+    }
+
+    private static Long getKey(int cx, int cy)
+    {
+        return Long.valueOf((((long) cx) << 32) | (cy & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Returns the grid cell size (in pixel).
+     */
+    public int getCellSize()
+    {
+        return cellSize;
+    }
+
+    /**
+     * Returns the number of indexed ROI.
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns <code>true</code> if the specified ROI is indexed.
+     */
+    public synchronized boolean contains(ROI roi)
+    {
+        return entries.containsKey(roi);
+    }
+
+    /**
+     * Returns all indexed ROI.
+     */
+    public synchronized List<ROI> getROIs()
+    {
+        return new ArrayList<ROI>(entries.keySet());
+    }
+
+    /**
+     * Adds the specified ROI to the index (or update it if already indexed).
+     */
+    public synchronized void add(ROI roi)
+    {
+        if (roi == null)
+            return;
+
+        // remove previous entry if any
+        removeEntry(entries.remove(roi));
+
+        final Entry entry = new Entry(roi, roi.getBounds5D(), cellSize);
+
+        entries.put(roi, entry);
+
+        if (entry.global)
+            globals.add(entry);
+        else
+        {
+            for (int cy = entry.minCY; cy <= entry.maxCY; cy++)
+            {
+                for (int cx = entry.minCX; cx <= entry.maxCX; cx++)
+                {
+                    final Long key = getKey(cx, cy);
+                    List<Entry> cell = cells.get(key);
+
+                    if (cell == null)
+                    {
+                        cell = new ArrayList<Entry>(4);
+                        cells.put(key, cell);
+                    }
+
+                    cell.add(entry);
+                }
+            }
+        }
+
+        modCount++;
+    }
+
+    /**
+     * Adds the specified ROI to the index.
+     */
+    public synchronized void add(Collection<? extends ROI> rois)
+    {
+        for (ROI roi : rois)
+            add(roi);
+    }
+
+    /**
+     * Updates the index entry of the specified ROI (should be called when ROI bounds changed).<br>
+     * Does nothing if the ROI is not indexed.
+     */
+    public synchronized void update(ROI roi)
+    {
+        final Entry entry = entries.get(roi);
+
+        // not indexed or bounds did not changed --> nothing to do
+        if ((entry == null) || entry.bounds.equals(roi.getBounds5D()))
+            return;
+
+        add(roi);
+    }
+
+    /**
+     * Removes the specified ROI from the index.
+     */
+    public synchronized void remove(ROI roi)
+    {
+        if (roi == null)
+            return;
+
+        final Entry entry = entries.remove(roi);
+
+        if (entry != null)
+        {
+            removeEntry(entry);
+            modCount++;
+        }
+    }
+
+    private void removeEntry(Entry entry)
+    {
+        if (entry == null)
+            return;
+
+        if (entry.global)
+            globals.remove(entry);
+        else
+        {
+            for (int cy = entry.minCY; cy <= entry.maxCY; cy++)
+            {
+                for (int cx = entry.minCX; cx <= entry.maxCX; cx++)
+                {
+                    final Long key = getKey(cx, cy);
+                    final List<Entry> cell = cells.get(key);
+
+                    if (cell != null)
+                    {
+                        cell.remove(entry);
+                        if (cell.isEmpty())
+                            cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all ROI from the index.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        cells.clear();
+        globals.clear();
+        modCount++;
+    }
+
+    /**
+     * Collects entries (without duplicate) whose XY bounds may intersect the specified XY area.
+     */
+    private Set<Entry> getEntries(double minX, double minY, double maxX, double maxY)
+    {
+        final Set<Entry> result = new HashSet<Entry>();
+
+        if (isFinite(minX) && isFinite(minY) && isFinite(maxX) && isFinite(maxY))
+        {
+            final int minCX = toCell(minX, cellSize);
+            final int minCY = toCell(minY, cellSize);
+            final int maxCX = toCell(maxX, cellSize);
+            final int maxCY = toCell(maxY, cellSize);
+            final long numCell = ((long) (maxCX - minCX) + 1L) * ((long) (maxCY - minCY) + 1L);
+
+            // small area --> only iterate over the covered cells
+            if (numCell <= Math.max(cells.size(), 1))
+            {
+                for (int cy = minCY; cy <= maxCY; cy++)
+                {
+                    for (int cx = minCX; cx <= maxCX; cx++)
+                    {
+                        final List<Entry> cell = cells.get(getKey(cx, cy));
+
+                        if (cell != null)
+                            result.addAll(cell);
+                    }
+                }
+
+                result.addAll(globals);
+
+                return result;
+            }
+        }
+
+        // large area --> test all entries
+        result.addAll(entries.values());
+
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if the specified position is contained in the specified bounds
+     * dimension (<code>-1</code> position means any position).
+     */
+    private static boolean isInside(double pos, double min, double max)
+    {
+        if (pos == -1d)
+            return true;
+
+        // handle empty dimension as a single position
+        return (pos >= min) && ((pos < max) || (pos == min));
+    }
+
+    /**
+     * Returns all indexed ROI whose bounds intersect the specified 5D region.<br>
+     * This is a fast pre-filtering so it may return ROI which do not actually intersect the region
+     * (only bounds are tested), use {@link ROI#intersects(Rectangle5D)} for an exact test.
+     */
+    public synchronized List<ROI> getROIs(Rectangle5D region)
+    {
+        final List<ROI> result = new ArrayList<ROI>();
+
+        for (Entry entry : getEntries(region.getMinX(), region.getMinY(), region.getMaxX(), region.getMaxY()))
+        {
+            final Rectangle5D b = entry.bounds;
+
+            // inclusive test so empty bounds (point, line) are correctly handled
+            if ((b.getMinX() <= region.getMaxX()) && (b.getMaxX() >= region.getMinX())
+                    && (b.getMinY() <= region.getMaxY()) && (b.getMaxY() >= region.getMinY())
+                    && (b.getMinZ() <= region.getMaxZ()) && (b.getMaxZ() >= region.getMinZ())
+                    && (b.getMinT() <= region.getMaxT()) && (b.getMaxT() >= region.getMinT())
+                    && (b.getMinC() <= region.getMaxC()) && (b.getMaxC() >= region.getMinC()))
+                result.add(entry.roi);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns all indexed ROI whose bounds are located at less than <code>tolerance</code> from the
+     * specified position.<br>
+     * <code>-1</code> value for Z, T or C position means any position.<br>
+     * This is a fast pre-filtering for hit-testing (only bounds are tested).
+     */
+    public synchronized List<ROI> getROIsAt(double x, double y, double z, double t, double c, double tolerance)
+    {
+        final List<ROI> result = new ArrayList<ROI>();
+
+        for (Entry entry : getEntries(x - tolerance, y - tolerance, x + tolerance, y + tolerance))
+            if (isNear(entry.bounds, x, y, z, t, c, tolerance))
+                result.add(entry.roi);
+
+        return result;
+    }
+
+    /**
+     * Returns the indexed ROI whose bounds are the nearest from the specified position (distance is
+     * computed in XY only) or <code>null</code> if no ROI is found within <code>maxDistance</code>.<br>
+     * When several ROI contain the position, the one with the smallest XY bounds is returned.<br>
+     * <code>-1</code> value for Z, T or C position means any position.
+     */
+    public synchronized ROI getNearest(double x, double y, double z, double t, double c, double maxDistance)
+    {
+        ROI result = null;
+        double bestDist = Double.MAX_VALUE;
+        double bestArea = Double.MAX_VALUE;
+
+        for (Entry entry : getEntries(x - maxDistance, y - maxDistance, x + maxDistance, y + maxDistance))
+        {
+            final Rectangle5D b = entry.bounds;
+
+            if (!isInside(z, b.getMinZ(), b.getMaxZ()) || !isInside(t, b.getMinT(), b.getMaxT())
+                    || !isInside(c, b.getMinC(), b.getMaxC()))
+                continue;
+
+            final double dist = getDistance(b, x, y);
+
+            if (dist > maxDistance)
+                continue;
+
+            final double area = b.getSizeX() * b.getSizeY();
+
+            if ((dist < bestDist) || ((dist == bestDist) && (area < bestArea)))
+            {
+                result = entry.roi;
+                bestDist = dist;
+                bestArea = area;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns <code>false</code> if the specified ROI is indexed and its bounds are located at more
+     * than <code>tolerance</code> from the specified XY position, <code>true</code> otherwise.<br>
+     * This method is designed to be called for each ROI with the same position (as done by ROI
+     * painters for a mouse event): the candidate set is computed once and cached.
+     */
+    public synchronized boolean isNear(ROI roi, double x, double y, double tolerance)
+    {
+        // not indexed --> can't tell
+        if (!entries.containsKey(roi))
+            return true;
+
+        if ((cachedCandidates == null) || (cachedModCount != modCount) || (cachedX != x) || (cachedY != y)
+                || (cachedTolerance != tolerance))
+        {
+            final Set<ROI> candidates = new HashSet<ROI>();
+
+            for (Entry entry : getEntries(x - tolerance, y - tolerance, x + tolerance, y + tolerance))
+                if (isNear(entry.bounds, x, y, -1d, -1d, -1d, tolerance))
+                    candidates.add(entry.roi);
+
+            cachedCandidates = candidates;
+            cachedModCount = modCount;
+            cachedX = x;
+            cachedY = y;
+            cachedTolerance = tolerance;
+        }
+
+        return cachedCandidates.contains(roi);
+    }
+
+    private static boolean isNear(Rectangle5D b, double x, double y, double z, double t, double c,
+            double tolerance)
+    {
+        return isInside(z, b.getMinZ(), b.getMaxZ()) && isInside(t, b.getMinT(), b.getMaxT())
+                && isInside(c, b.getMinC(), b.getMaxC()) && (getDistance(b, x, y) <= tolerance);
+    }
+
+    /**
+     * Returns the XY distance from the specified position to the specified bounds (0 if inside).
+     */
+    private static double getDistance(Rectangle5D b, double x, double y)
+    {
+        final double dx = Math.max(Math.max(b.getMinX() - x, x - b.getMaxX()), 0d);
+        final double dy = Math.max(Math.max(b.getMinY() - y, y - b.getMaxY()), 0d);
+
+        if (dx == 0d)
+            return dy;
+        if (dy == 0d)
+            return dx;
+
+        return Math.sqrt((dx * dx) + (dy * dy));
+    }
+}
@@ -28,6 +28,8 @@ import icy.plugin.interface_.PluginROIDescriptor;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceDataIterator;
 import icy.system.IcyExceptionHandler;
+import icy.system.SystemUtil;
+import icy.system.thread.ParallelTaskRunner;
 import icy.type.DataIteratorUtil;
 import icy.type.point.Point3D;
 import icy.type.point.Point4D;
@@ -40,7 +42,10 @@ import icy.util.StringUtil;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -59,6 +64,9 @@ import plugins.kernel.roi.descriptor.measure.ROIMassCenterDescriptorsPlugin;
 import plugins.kernel.roi.descriptor.measure.ROIPerimeterDescriptor;
 import plugins.kernel.roi.descriptor.measure.ROISurfaceAreaDescriptor;
 import plugins.kernel.roi.descriptor.measure.ROIVolumeDescriptor;
+import plugins.kernel.roi.roi2d.ROI2DArea;
+import plugins.kernel.roi.roi2d.ROI2DShape;
+import plugins.kernel.roi.roi3d.ROI3DArea;
 
 /**
  * ROI utilities class.
@@ -67,6 +75,13 @@ import plugins.kernel.roi.descriptor.measure.ROIVolumeDescriptor;
  */
 public class ROIUtil
 {
+    /**
+     * Minimum number of 2D ROIs lying on a same plane (same Z, T and C position) to merge them from
+     * their masks in a single pass (see {@link #merge(List, BooleanOperator)}).<br>
+     * Smaller groups use the generic ROI operations so shape ROIs still give a shape result.
+     */
+    public static final int MASK_MERGE_THRESHOLD = 8;
+
     /**
      * Returns all available ROI descriptors (see {@link ROIDescriptor}) and their attached plugin
      * (see {@link PluginROIDescriptor}).<br/>
@@ -846,6 +861,9 @@ public class ROIUtil
 
     /**
      * Merge the specified array of {@link ROI} with the given {@link BooleanOperator}.<br>
+     * 2D ROIs lying on a same plane are merged in a single pass from their masks when there are at
+     * least {@link #MASK_MERGE_THRESHOLD} of them (the plane result is then a {@link ROI2DArea}), other
+     * ROIs are merged as a balanced tree using parallel processing.
      * 
      * @param rois
      *        ROIs we want to merge.
@@ -858,49 +876,201 @@ public class ROIUtil
         if (rois.size() == 0)
             return null;
 
-        ROI result = rois.get(0).getCopy();
+        // group 2D ROIs by plane
+        final Map<List<Integer>, List<ROI2D>> planes = new LinkedHashMap<List<Integer>, List<ROI2D>>();
+        final List<ROI> others = new ArrayList<ROI>();
 
-        // copy can fail...
-        if (result != null)
+        for (ROI roi : rois)
         {
-            switch (operator)
+            if (roi instanceof ROI2D)
             {
-                case AND:
-                    for (int i = 1; i < rois.size(); i++)
-                        result = result.intersect(rois.get(i), true);
-                    break;
-                case OR:
-                    for (int i = 1; i < rois.size(); i++)
-                        result = result.add(rois.get(i), true);
-                    break;
-                case XOR:
-                    for (int i = 1; i < rois.size(); i++)
-                        result = result.exclusiveAdd(rois.get(i), true);
-                    break;
+                final ROI2D roi2d = (ROI2D) roi;
+                final List<Integer> key = Arrays.asList(Integer.valueOf(roi2d.getZ()), Integer.valueOf(roi2d.getT()),
+                        Integer.valueOf(roi2d.getC()));
+                List<ROI2D> plane = planes.get(key);
+
+                if (plane == null)
+                {
+                    plane = new ArrayList<ROI2D>();
+                    planes.put(key, plane);
+                }
+
+                plane.add(roi2d);
             }
+            else
+                others.add(roi);
+        }
+
+        // merge large planes in a single pass from the ROI masks
+        final List<ROI> merged = new ArrayList<ROI>();
+
+        for (List<ROI2D> plane : planes.values())
+        {
+            if (plane.size() >= MASK_MERGE_THRESHOLD)
+                merged.add(mergeMasks(plane, operator));
+            else
+                others.addAll(plane);
+        }
+
+        // nothing merged --> keep original order
+        if (merged.isEmpty())
+            return reduce(rois, merged, operator);
+
+        return reduce(others, merged, operator);
+    }
+
+    /**
+     * Merge 2D ROIs lying on the same plane from their run length masks (see
+     * {@link RunLengthBooleanMask2D#getUnion(List)}).
+     */
+    private static ROI mergeMasks(final List<ROI2D> rois, BooleanOperator operator)
+    {
+        final int numRoi = rois.size();
+        final RunLengthBooleanMask2D[] masks = new RunLengthBooleanMask2D[numRoi];
+        final int numTask = Math.min(numRoi, SystemUtil.getNumberOfCPUs() * 4);
+        final int roiPerTask = (numRoi + (numTask - 1)) / numTask;
+        final List<Runnable> tasks = new ArrayList<Runnable>(numTask);
+
+        // compute masks in parallel (shape rasterization can be costly)
+        for (int r = 0; r < numRoi; r += roiPerTask)
+        {
+            final int start = r;
+            final int end = Math.min(r + roiPerTask, numRoi);
+
+            tasks.add(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = start; i < end; i++)
+                        masks[i] = getRunLengthMask(rois.get(i));
+                }
+            });
+        }
+
+        ParallelTaskRunner.runAll(tasks);
+
+        final List<RunLengthBooleanMask2D> maskList = Arrays.asList(masks);
+        final RunLengthBooleanMask2D mask;
+
+        switch (operator)
+        {
+            case AND:
+                mask = RunLengthBooleanMask2D.getIntersection(maskList);
+                break;
+            case XOR:
+                mask = RunLengthBooleanMask2D.getExclusiveUnion(maskList);
+                break;
+            default:
+                mask = RunLengthBooleanMask2D.getUnion(maskList);
+                break;
         }
 
-        // for (int i = 1; i < rois.size(); i++)
-        // {
-        // final ROI roi = rois.get(i);
-        //
-        // switch (operator)
-        // {
-        // case AND:
-        // result = result.getIntersection(roi);
-        // break;
-        // case OR:
-        // result = result.getUnion(roi);
-        // break;
-        // case XOR:
-        // result = result.getExclusiveUnion(roi);
-        // break;
-        // }
-        // }
+        final ROI2D first = rois.get(0);
+        final ROI2DArea result = new ROI2DArea(mask.toBooleanMask2D());
+
+        result.setZ(first.getZ());
+        result.setT(first.getT());
+        result.setC(first.getC());
 
         return result;
     }
 
+    private static RunLengthBooleanMask2D getRunLengthMask(ROI2D roi)
+    {
+        // use the cached shape mask
+        if (roi instanceof ROI2DShape)
+            return ((ROI2DShape) roi).getRunLengthMask(true);
+
+        return new RunLengthBooleanMask2D(roi.getBooleanMask(true));
+    }
+
+    /**
+     * Merge the specified ROIs as a balanced binary tree, operations of a same tree level being done
+     * in parallel.
+     * 
+     * @param rois
+     *        input ROIs (not modified)
+     * @param owned
+     *        intermediate ROIs which can be modified in place
+     */
+    private static ROI reduce(List<? extends ROI> rois, List<ROI> owned, final BooleanOperator operator)
+    {
+        int n = owned.size() + rois.size();
+        final ROI[] nodes = new ROI[n];
+        final boolean[] writable = new boolean[n];
+        int index = 0;
+
+        // owned ROIs first so they are used as left (modified) operand
+        for (ROI roi : owned)
+        {
+            nodes[index] = roi;
+            writable[index++] = true;
+        }
+        for (ROI roi : rois)
+            nodes[index++] = roi;
+
+        while (n > 1)
+        {
+            final int numPair = n / 2;
+            final ROI[] results = new ROI[numPair];
+            final List<Runnable> tasks = new ArrayList<Runnable>(numPair);
+
+            for (int p = 0; p < numPair; p++)
+            {
+                // XML persistence used for copy isn't thread safe so we do it here
+                final ROI left = writable[p * 2] ? nodes[p * 2] : nodes[p * 2].getCopy();
+                final ROI right = nodes[(p * 2) + 1];
+                final int pair = p;
+
+                // copy can fail...
+                if (left == null)
+                    return null;
+
+                tasks.add(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        switch (operator)
+                        {
+                            case AND:
+                                results[pair] = left.intersect(right, true);
+                                break;
+                            case OR:
+                                results[pair] = left.add(right, true);
+                                break;
+                            case XOR:
+                                results[pair] = left.exclusiveAdd(right, true);
+                                break;
+                        }
+                    }
+                });
+            }
+
+            ParallelTaskRunner.runAll(tasks);
+
+            // odd node goes up unchanged
+            if ((n & 1) != 0)
+            {
+                nodes[numPair] = nodes[n - 1];
+                writable[numPair] = writable[n - 1];
+            }
+            for (int p = 0; p < numPair; p++)
+            {
+                nodes[p] = results[p];
+                writable[p] = true;
+            }
+
+            n = numPair + (n & 1);
+        }
+
+        if (writable[0])
+            return nodes[0];
+
+        return nodes[0].getCopy();
+    }
+
     /**
      * Builds and returns a ROI corresponding to the union of the specified ROI list.
      */
@@ -936,4 +1106,55 @@ public class ROIUtil
         return roi1.getSubtraction(roi2);
     }
 
+    /**
+     * Split the specified ROI into its connected components (8-connectivity for 2D ROI, 26-connectivity for 3D
+     * ROI).<br>
+     * Each component is returned as a new area ROI ({@link ROI2DArea} or {@link ROI3DArea}) located at the same
+     * Z, T, C position than the source ROI.
+     * 
+     * @throws UnsupportedOperationException
+     *         if the ROI is not a 2D or 3D ROI (or has an infinite Z dimension)
+     */
+    public static List<ROI> getComponents(ROI roi) throws UnsupportedOperationException
+    {
+        final List<ROI> result = new ArrayList<ROI>();
+
+        if (roi instanceof ROI2D)
+        {
+            final ROI2D roi2d = (ROI2D) roi;
+
+            for (BooleanMask2D mask : roi2d.getBooleanMask(true).getComponents())
+            {
+                final ROI2DArea area = new ROI2DArea(mask);
+
+                // set on same position
+                area.setZ(roi2d.getZ());
+                area.setT(roi2d.getT());
+                area.setC(roi2d.getC());
+                result.add(area);
+            }
+        }
+        else if (roi instanceof ROI3D)
+        {
+            final ROI3D roi3d = (ROI3D) roi;
+            final BooleanMask3D mask3d = roi3d.getBooleanMask(true);
+
+            if (mask3d.bounds.isInfiniteZ())
+                throw new UnsupportedOperationException("Can't split a ROI with infinite Z dimension.");
+
+            for (BooleanMask3D mask : mask3d.getComponents())
+            {
+                final ROI3DArea area = new ROI3DArea(mask);
+
+                // set on same position
+                area.setT(roi3d.getT());
+                area.setC(roi3d.getC());
+                result.add(area);
+            }
+        }
+        else
+            throw new UnsupportedOperationException("Split into components is only supported for 2D and 3D ROI.");
+
+        return result;
+    }
 }
@@ -0,0 +1,798 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import icy.system.SystemUtil;
+import icy.system.thread.ParallelTaskRunner;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Run length encoded 2D boolean mask.<br>
+ * Each row of the mask is stored as a sorted list of runs (horizontal segments of set pixels) so
+ * memory usage depends on the object contour rather than on its bounding box area, which is
+ * interesting for large and sparse masks.<br>
+ * Runs are stored as boundaries in absolute X coordinates: <code>[start0, end0, start1, end1...]</code>
+ * where start is inclusive and end is exclusive.<br>
+ * Boolean operations work directly on runs. Use {@link #RunLengthBooleanMask2D(BooleanMask2D)} and
+ * {@link #toBooleanMask2D()} to convert from / to the dense {@link BooleanMask2D} form.<br>
+ * This object is immutable.
+ */
+public class RunLengthBooleanMask2D
+{
+    private static final int[] EMPTY_ROW = new int[0];
+
+    private static final int OP_OR = 0;
+    private static final int OP_AND = 1;
+    private static final int OP_XOR = 2;
+    private static final int OP_ANDNOT = 3;
+
+    /**
+     * Masks with less runs than this value are merged by the calling thread only
+     */
+    public static final int PARALLEL_MERGE_THRESHOLD = 1 << 16;
+
+    /**
+     * Returns the runs (boundaries) of the specified dense row.
+     */
+    private static int[] getRuns(boolean[] mask, int offset, int width, int x)
+    {
+        int numBoundary = 0;
+        boolean last = false;
+
+        // count boundaries first
+        for (int i = 0; i < width; i++)
+        {
+            final boolean value = mask[offset + i];
+
+            if (value != last)
+            {
+                numBoundary++;
+                last = value;
+            }
+        }
+        if (last)
+            numBoundary++;
+
+        if (numBoundary == 0)
+            return EMPTY_ROW;
+
+        final int[] result = new int[numBoundary];
+        int n = 0;
+
+        last = false;
+        for (int i = 0; i < width; i++)
+        {
+            final boolean value = mask[offset + i];
+
+            if (value != last)
+            {
+                result[n++] = x + i;
+                last = value;
+            }
+        }
+        if (last)
+            result[n] = x + width;
+
+        return result;
+    }
+
+    /**
+     * Returns the runs (boundaries) of the specified dense byte row (non zero value = inside).
+     */
+    private static int[] getRuns(byte[] mask, int offset, int width, int x)
+    {
+        int numBoundary = 0;
+        boolean last = false;
+
+        // count boundaries first
+        for (int i = 0; i < width; i++)
+        {
+            final boolean value = mask[offset + i] != 0;
+
+            if (value != last)
+            {
+                numBoundary++;
+                last = value;
+            }
+        }
+        if (last)
+            numBoundary++;
+
+        if (numBoundary == 0)
+            return EMPTY_ROW;
+
+        final int[] result = new int[numBoundary];
+        int n = 0;
+
+        last = false;
+        for (int i = 0; i < width; i++)
+        {
+            final boolean value = mask[offset + i] != 0;
+
+            if (value != last)
+            {
+                result[n++] = x + i;
+                last = value;
+            }
+        }
+        if (last)
+            result[n] = x + width;
+
+        return result;
+    }
+
+    /**
+     * Merge the 2 specified rows (boundaries) with given boolean operation.
+     */
+    private static int[] mergeRuns(int[] runs1, int[] runs2, int op)
+    {
+        final int len1 = runs1.length;
+        final int len2 = runs2.length;
+
+        // fast path
+        if (len2 == 0)
+            return ((op == OP_AND) || (len1 == 0)) ? EMPTY_ROW : runs1;
+        if (len1 == 0)
+            return ((op == OP_OR) || (op == OP_XOR)) ? runs2 : EMPTY_ROW;
+
+        final int[] result = new int[len1 + len2];
+        boolean in1 = false;
+        boolean in2 = false;
+        boolean in = false;
+        int i1 = 0;
+        int i2 = 0;
+        int n = 0;
+
+        // sweep all boundaries in ascending order
+        while ((i1 < len1) || (i2 < len2))
+        {
+            final int pos = Math.min((i1 < len1) ? runs1[i1] : Integer.MAX_VALUE, (i2 < len2) ? runs2[i2]
+                    : Integer.MAX_VALUE);
+
+            while ((i1 < len1) && (runs1[i1] == pos))
+            {
+                in1 = !in1;
+                i1++;
+            }
+            while ((i2 < len2) && (runs2[i2] == pos))
+            {
+                in2 = !in2;
+                i2++;
+            }
+
+            final boolean value;
+
+            switch (op)
+            {
+                default:
+                case OP_OR:
+                    value = in1 | in2;
+                    break;
+                case OP_AND:
+                    value = in1 & in2;
+                    break;
+                case OP_XOR:
+                    value = in1 ^ in2;
+                    break;
+                case OP_ANDNOT:
+                    value = in1 & !in2;
+                    break;
+            }
+
+            if (value != in)
+            {
+                result[n++] = pos;
+                in = value;
+            }
+        }
+
+        if (n == 0)
+            return EMPTY_ROW;
+        if (n == result.length)
+            return result;
+
+        return Arrays.copyOf(result, n);
+    }
+
+    private static RunLengthBooleanMask2D merge(RunLengthBooleanMask2D mask1, RunLengthBooleanMask2D mask2, int op)
+    {
+        final int minY;
+        final int maxY;
+
+        switch (op)
+        {
+            case OP_AND:
+                minY = Math.max(mask1.bounds.y, mask2.bounds.y);
+                maxY = Math.min(mask1.bounds.y + mask1.bounds.height, mask2.bounds.y + mask2.bounds.height);
+                break;
+
+            case OP_ANDNOT:
+                minY = mask1.bounds.y;
+                maxY = mask1.bounds.y + mask1.bounds.height;
+                break;
+
+            default:
+                if (mask1.isEmpty())
+                    return mask2;
+                if (mask2.isEmpty())
+                    return mask1;
+
+                minY = Math.min(mask1.bounds.y, mask2.bounds.y);
+                maxY = Math.max(mask1.bounds.y + mask1.bounds.height, mask2.bounds.y + mask2.bounds.height);
+                break;
+        }
+
+        if (maxY <= minY)
+            return new RunLengthBooleanMask2D();
+
+        final int[][] rows = new int[maxY - minY][];
+
+        for (int y = minY; y < maxY; y++)
+            rows[y - minY] = mergeRuns(mask1.getRuns(y), mask2.getRuns(y), op);
+
+        return new RunLengthBooleanMask2D(minY, rows);
+    }
+
+    /**
+     * Build resulting mask from union of the mask1 and mask2.
+     */
+    public static RunLengthBooleanMask2D getUnion(RunLengthBooleanMask2D mask1, RunLengthBooleanMask2D mask2)
+    {
+        return merge(mask1, mask2, OP_OR);
+    }
+
+    /**
+     * Build resulting mask from intersection of the mask1 and mask2.
+     */
+    public static RunLengthBooleanMask2D getIntersection(RunLengthBooleanMask2D mask1, RunLengthBooleanMask2D mask2)
+    {
+        return merge(mask1, mask2, OP_AND);
+    }
+
+    /**
+     * Build resulting mask from exclusive union of the mask1 and mask2.
+     */
+    public static RunLengthBooleanMask2D getExclusiveUnion(RunLengthBooleanMask2D mask1, RunLengthBooleanMask2D mask2)
+    {
+        return merge(mask1, mask2, OP_XOR);
+    }
+
+    /**
+     * Build resulting mask from the subtraction of mask2 from mask1.
+     */
+    public static RunLengthBooleanMask2D getSubtraction(RunLengthBooleanMask2D mask1, RunLengthBooleanMask2D mask2)
+    {
+        return merge(mask1, mask2, OP_ANDNOT);
+    }
+
+    /**
+     * Merge all the specified masks in a single pass: for each row the runs of all masks are sorted
+     * and swept from left to right while counting how many masks cover the current position.<br>
+     * Rows are processed in parallel for large inputs.
+     */
+    private static RunLengthBooleanMask2D merge(List<RunLengthBooleanMask2D> masks, final int op)
+    {
+        final List<RunLengthBooleanMask2D> inputs = new ArrayList<RunLengthBooleanMask2D>(masks.size());
+        int minY = (op == OP_AND) ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int maxY = (op == OP_AND) ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+        long numRun = 0;
+
+        for (RunLengthBooleanMask2D mask : masks)
+        {
+            if (mask.isEmpty())
+            {
+                // empty intersection
+                if (op == OP_AND)
+                    return new RunLengthBooleanMask2D();
+
+                continue;
+            }
+
+            final int y0 = mask.bounds.y;
+            final int y1 = mask.bounds.y + mask.bounds.height;
+
+            if (op == OP_AND)
+            {
+                minY = Math.max(minY, y0);
+                maxY = Math.min(maxY, y1);
+            }
+            else
+            {
+                minY = Math.min(minY, y0);
+                maxY = Math.max(maxY, y1);
+            }
+
+            inputs.add(mask);
+            numRun += mask.getNumberOfRuns();
+        }
+
+        if (inputs.isEmpty() || (maxY <= minY))
+            return new RunLengthBooleanMask2D();
+        if (inputs.size() == 1)
+            return inputs.get(0);
+
+        final int[][] rows = new int[maxY - minY][];
+        final int numRow = rows.length;
+        final int numStripe;
+
+        if (numRun < PARALLEL_MERGE_THRESHOLD)
+            numStripe = 1;
+        else
+            numStripe = Math.min(SystemUtil.getNumberOfCPUs() * 4, numRow);
+
+        final int rowPerStripe = (numRow + (numStripe - 1)) / numStripe;
+        final int offsetY = minY;
+        final List<Runnable> tasks = new ArrayList<Runnable>(numStripe);
+
+        for (int r = 0; r < numRow; r += rowPerStripe)
+        {
+            final int startY = offsetY + r;
+            final int endY = offsetY + Math.min(r + rowPerStripe, numRow);
+
+            tasks.add(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    sweepRows(inputs, op, rows, offsetY, startY, endY);
+                }
+            });
+        }
+
+        ParallelTaskRunner.runAll(tasks);
+
+        return new RunLengthBooleanMask2D(offsetY, rows);
+    }
+
+    /**
+     * Compute the merged runs of rows [startY, endY[ (see {@link #merge(List, int)}).
+     */
+    private static void sweepRows(List<RunLengthBooleanMask2D> masks, int op, int[][] rows, int offsetY, int startY,
+            int endY)
+    {
+        final int numMask = masks.size();
+        final List<RunLengthBooleanMask2D> active = new ArrayList<RunLengthBooleanMask2D>();
+
+        // only keep masks intersecting the row range
+        for (RunLengthBooleanMask2D mask : masks)
+            if ((mask.bounds.y < endY) && ((mask.bounds.y + mask.bounds.height) > startY))
+                active.add(mask);
+
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int[] result = new int[32];
+
+        for (int y = startY; y < endY; y++)
+        {
+            int n = 0;
+            int numContrib = 0;
+            int[] single = EMPTY_ROW;
+
+            for (RunLengthBooleanMask2D mask : active)
+            {
+                final int[] runs = mask.getRuns(y);
+                final int len = runs.length >> 1;
+
+                if (len == 0)
+                    continue;
+
+                if ((n + len) > starts.length)
+                {
+                    final int size = Math.max(starts.length * 2, n + len);
+
+                    starts = Arrays.copyOf(starts, size);
+                    ends = Arrays.copyOf(ends, size);
+                }
+
+                for (int i = 0; i < runs.length; i += 2)
+                {
+                    starts[n] = runs[i];
+                    ends[n] = runs[i + 1];
+                    n++;
+                }
+
+                numContrib++;
+                single = runs;
+            }
+
+            // fast path: only one mask on this row (mostly the case for disjoint inputs)
+            if (numContrib <= 1)
+            {
+                // we always have at least 2 masks here
+                rows[y - offsetY] = (op == OP_AND) ? EMPTY_ROW : single;
+                continue;
+            }
+
+            Arrays.sort(starts, 0, n);
+            Arrays.sort(ends, 0, n);
+
+            if (result.length < (n * 2))
+                result = new int[n * 2];
+
+            int numBoundary = 0;
+            int count = 0;
+            boolean inside = false;
+            int i = 0;
+            int j = 0;
+
+            // ends can't be exhausted before starts
+            while (j < n)
+            {
+                final int x = ((i < n) && (starts[i] <= ends[j])) ? starts[i] : ends[j];
+
+                while ((i < n) && (starts[i] == x))
+                {
+                    count++;
+                    i++;
+                }
+                while ((j < n) && (ends[j] == x))
+                {
+                    count--;
+                    j++;
+                }
+
+                final boolean set;
+
+                switch (op)
+                {
+                    case OP_AND:
+                        set = (count == numMask);
+                        break;
+
+                    case OP_XOR:
+                        set = (count & 1) != 0;
+                        break;
+
+                    default:
+                        set = (count > 0);
+                        break;
+                }
+
+                // adjacent runs are coalesced as coverage state doesn't change
+                if (set != inside)
+                {
+                    result[numBoundary++] = x;
+                    inside = set;
+                }
+            }
+
+            rows[y - offsetY] = (numBoundary == 0) ? EMPTY_ROW : Arrays.copyOf(result, numBoundary);
+        }
+    }
+
+    /**
+     * Build resulting mask from union of all the specified masks.<br>
+     * Cost is linear in the total number of runs (plus the sorting of runs sharing a same row) and
+     * large inputs are processed in parallel.
+     */
+    public static RunLengthBooleanMask2D getUnion(List<RunLengthBooleanMask2D> masks)
+    {
+        return merge(masks, OP_OR);
+    }
+
+    /**
+     * Build resulting mask from intersection of all the specified masks.
+     * 
+     * @see #getUnion(List)
+     */
+    public static RunLengthBooleanMask2D getIntersection(List<RunLengthBooleanMask2D> masks)
+    {
+        return merge(masks, OP_AND);
+    }
+
+    /**
+     * Build resulting mask from exclusive union of all the specified masks (points contained in an
+     * odd number of masks).
+     * 
+     * @see #getUnion(List)
+     */
+    public static RunLengthBooleanMask2D getExclusiveUnion(List<RunLengthBooleanMask2D> masks)
+    {
+        return merge(masks, OP_XOR);
+    }
+
+    /**
+     * Optimized region represented by the mask (fit mask content)
+     */
+    protected final Rectangle bounds;
+    /**
+     * Runs for each row of bounds
+     */
+    protected final int[][] rows;
+
+    /**
+     * Create an empty mask
+     */
+    public RunLengthBooleanMask2D()
+    {
+        super();
+
+        bounds = new Rectangle();
+        rows = new int[0][];
+    }
+
+    /**
+     * Create a run length encoded mask from the specified dense mask.
+     */
+    public RunLengthBooleanMask2D(Rectangle bounds, boolean[] mask)
+    {
+        this(bounds.y, getRows(bounds, mask));
+    }
+
+    /**
+     * Create a run length encoded mask from the specified dense byte mask (non zero value = inside).
+     */
+    public RunLengthBooleanMask2D(Rectangle bounds, byte[] mask)
+    {
+        this(bounds.y, getRows(bounds, mask));
+    }
+
+    /**
+     * Create a run length encoded mask from the specified {@link BooleanMask2D}.
+     */
+    public RunLengthBooleanMask2D(BooleanMask2D mask)
+    {
+        this(mask.bounds, mask.mask);
+    }
+
+    /**
+     * Internal constructor, remove empty rows on top and bottom and compute bounds.
+     */
+    protected RunLengthBooleanMask2D(int y, int[][] rows)
+    {
+        super();
+
+        int first = 0;
+        int last = rows.length - 1;
+
+        while ((first <= last) && (rows[first].length == 0))
+            first++;
+        while ((last >= first) && (rows[last].length == 0))
+            last--;
+
+        if (first > last)
+        {
+            bounds = new Rectangle();
+            this.rows = new int[0][];
+        }
+        else
+        {
+            int minX = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+
+            for (int i = first; i <= last; i++)
+            {
+                final int[] runs = rows[i];
+
+                if (runs.length > 0)
+                {
+                    minX = Math.min(minX, runs[0]);
+                    maxX = Math.max(maxX, runs[runs.length - 1]);
+                }
+            }
+
+            bounds = new Rectangle(minX, y + first, maxX - minX, (last - first) + 1);
+            this.rows = ((first == 0) && (last == (rows.length - 1))) ? rows : Arrays.copyOfRange(rows, first,
+                    last + 1);
+        }
+    }
+
+    private static int[][] getRows(Rectangle bounds, boolean[] mask)
+    {
+        if (bounds.isEmpty())
+            return new int[0][];
+
+        final int[][] result = new int[bounds.height][];
+        int offset = 0;
+
+        for (int y = 0; y < bounds.height; y++)
+        {
+            result[y] = getRuns(mask, offset, bounds.width, bounds.x);
+            offset += bounds.width;
+        }
+
+        return result;
+    }
+
+    private static int[][] getRows(Rectangle bounds, byte[] mask)
+    {
+        if (bounds.isEmpty())
+            return new int[0][];
+
+        final int[][] result = new int[bounds.height][];
+        int offset = 0;
+
+        for (int y = 0; y < bounds.height; y++)
+        {
+            result[y] = getRuns(mask, offset, bounds.width, bounds.x);
+            offset += bounds.width;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the optimized region represented by the mask.
+     */
+    public Rectangle getBounds()
+    {
+        return new Rectangle(bounds);
+    }
+
+    /**
+     * Returns the runs (as <code>[start0, end0, start1, end1...]</code> absolute X boundaries) for
+     * the specified row.<br>
+     * Returned array should not be modified.
+     */
+    public int[] getRuns(int y)
+    {
+        final int index = y - bounds.y;
+
+        if ((index < 0) || (index >= rows.length))
+            return EMPTY_ROW;
+
+        return rows[index];
+    }
+
+    /**
+     * Return true if mask is empty
+     */
+    public boolean isEmpty()
+    {
+        return rows.length == 0;
+    }
+
+    /**
+     * Return true if mask contains the specified point
+     */
+    public boolean contains(int x, int y)
+    {
+        final int[] runs = getRuns(y);
+
+        if (runs.length == 0)
+            return false;
+
+        final int index = Arrays.binarySearch(runs, x);
+
+        // x is a boundary --> inside only if it's a run start
+        if (index >= 0)
+            return (index & 1) == 0;
+
+        // inside if insertion point is after a run start
+        return ((-index - 1) & 1) == 1;
+    }
+
+    /**
+     * Return true if mask contains the specified mask (computed on runs, stops at first uncovered run).
+     */
+    public boolean contains(RunLengthBooleanMask2D mask)
+    {
+        if (mask.isEmpty())
+            return true;
+        if (!bounds.contains(mask.bounds))
+            return false;
+
+        for (int y = mask.bounds.y; y < (mask.bounds.y + mask.bounds.height); y++)
+            if (mergeRuns(mask.getRuns(y), getRuns(y), OP_ANDNOT).length > 0)
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Return true if mask intersects (contains at least one point) the specified mask (computed on
+     * runs, stops at first common point).
+     */
+    public boolean intersects(RunLengthBooleanMask2D mask)
+    {
+        if (!bounds.intersects(mask.bounds))
+            return false;
+
+        final int minY = Math.max(bounds.y, mask.bounds.y);
+        final int maxY = Math.min(bounds.y + bounds.height, mask.bounds.y + mask.bounds.height);
+
+        for (int y = minY; y < maxY; y++)
+            if (mergeRuns(getRuns(y), mask.getRuns(y), OP_AND).length > 0)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Return the number of runs contained in this mask
+     */
+    public int getNumberOfRuns()
+    {
+        int result = 0;
+
+        for (int[] runs : rows)
+            result += runs.length / 2;
+
+        return result;
+    }
+
+    /**
+     * Return the number of points contained in this mask
+     */
+    public int getNumberOfPoints()
+    {
+        int result = 0;
+
+        for (int[] runs : rows)
+            for (int i = 0; i < runs.length; i += 2)
+                result += runs[i + 1] - runs[i];
+
+        return result;
+    }
+
+    /**
+     * Returns the dense <code>boolean</code> mask for the specified rectangular region:<br>
+     * result[(j * width) + i] = contains(x + i, y + j)
+     */
+    public boolean[] getBooleanArray(int x, int y, int width, int height)
+    {
+        final boolean[] result = new boolean[width * height];
+        final int endX = x + width;
+        int offset = -x;
+
+        for (int j = 0; j < height; j++)
+        {
+            final int[] runs = getRuns(y + j);
+
+            for (int i = 0; i < runs.length; i += 2)
+            {
+                final int start = Math.max(runs[i], x);
+                final int end = Math.min(runs[i + 1], endX);
+
+                if (start < end)
+                    Arrays.fill(result, offset + start, offset + end, true);
+            }
+
+            offset += width;
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the dense {@link BooleanMask2D} version of this mask
+     */
+    public BooleanMask2D toBooleanMask2D()
+    {
+        if (isEmpty())
+            return new BooleanMask2D();
+
+        final boolean[] mask = new boolean[bounds.width * bounds.height];
+        int offset = -bounds.x;
+
+        for (int[] runs : rows)
+        {
+            for (int i = 0; i < runs.length; i += 2)
+                Arrays.fill(mask, offset + runs[i], offset + runs[i + 1], true);
+
+            offset += bounds.width;
+        }
+
+        return new BooleanMask2D(new Rectangle(bounds), mask);
+    }
+}
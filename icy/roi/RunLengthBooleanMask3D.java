@@ -0,0 +1,327 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import icy.type.rectangle.Rectangle3D;
+
+import java.awt.Rectangle;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Run length encoded 3D boolean mask.<br>
+ * The mask is stored as a set of {@link RunLengthBooleanMask2D} (one per non empty Z slice) so memory
+ * usage scales with the object surface instead of its bounding box volume, which makes it well
+ * suited for thin and sparse structures in large volumes.<br>
+ * Use {@link #RunLengthBooleanMask3D(BooleanMask3D)} and {@link #toBooleanMask3D()} to convert from /
+ * to the dense {@link BooleanMask3D} form.<br>
+ * This object is immutable.
+ */
+public class RunLengthBooleanMask3D
+{
+    private static final int OP_OR = 0;
+    private static final int OP_AND = 1;
+    private static final int OP_XOR = 2;
+    private static final int OP_ANDNOT = 3;
+
+    private static RunLengthBooleanMask3D merge(RunLengthBooleanMask3D mask1, RunLengthBooleanMask3D mask2, int op)
+    {
+        final TreeSet<Integer> zs = new TreeSet<Integer>();
+
+        switch (op)
+        {
+            case OP_AND:
+                zs.addAll(mask1.slices.keySet());
+                zs.retainAll(mask2.slices.keySet());
+                break;
+
+            case OP_ANDNOT:
+                zs.addAll(mask1.slices.keySet());
+                break;
+
+            default:
+                zs.addAll(mask1.slices.keySet());
+                zs.addAll(mask2.slices.keySet());
+                break;
+        }
+
+        final TreeMap<Integer, RunLengthBooleanMask2D> result = new TreeMap<Integer, RunLengthBooleanMask2D>();
+
+        for (Integer z : zs)
+        {
+            final RunLengthBooleanMask2D m1 = mask1.getMask2D(z.intValue());
+            final RunLengthBooleanMask2D m2 = mask2.getMask2D(z.intValue());
+            final RunLengthBooleanMask2D m;
+
+            switch (op)
+            {
+                case OP_AND:
+                    m = RunLengthBooleanMask2D.getIntersection(m1, m2);
+                    break;
+                case OP_XOR:
+                    m = RunLengthBooleanMask2D.getExclusiveUnion(m1, m2);
+                    break;
+                case OP_ANDNOT:
+                    m = RunLengthBooleanMask2D.getSubtraction(m1, m2);
+                    break;
+                default:
+                    m = RunLengthBooleanMask2D.getUnion(m1, m2);
+                    break;
+            }
+
+            result.put(z, m);
+        }
+
+        return new RunLengthBooleanMask3D(result);
+    }
+
+    /**
+     * Build resulting mask from union of the mask1 and mask2.
+     */
+    public static RunLengthBooleanMask3D getUnion(RunLengthBooleanMask3D mask1, RunLengthBooleanMask3D mask2)
+    {
+        return merge(mask1, mask2, OP_OR);
+    }
+
+    /**
+     * Build resulting mask from intersection of the mask1 and mask2.
+     */
+    public static RunLengthBooleanMask3D getIntersection(RunLengthBooleanMask3D mask1, RunLengthBooleanMask3D mask2)
+    {
+        return merge(mask1, mask2, OP_AND);
+    }
+
+    /**
+     * Build resulting mask from exclusive union of the mask1 and mask2.
+     */
+    public static RunLengthBooleanMask3D getExclusiveUnion(RunLengthBooleanMask3D mask1, RunLengthBooleanMask3D mask2)
+    {
+        return merge(mask1, mask2, OP_XOR);
+    }
+
+    /**
+     * Build resulting mask from the subtraction of mask2 from mask1.
+     */
+    public static RunLengthBooleanMask3D getSubtraction(RunLengthBooleanMask3D mask1, RunLengthBooleanMask3D mask2)
+    {
+        return merge(mask1, mask2, OP_ANDNOT);
+    }
+
+    /**
+     * Optimized region represented by the mask (fit mask content)
+     */
+    protected final Rectangle3D.Integer bounds;
+    /**
+     * Non empty 2D masks indexed by Z position
+     */
+    protected final TreeMap<Integer, RunLengthBooleanMask2D> slices;
+
+    /**
+     * Create an empty mask
+     */
+    public RunLengthBooleanMask3D()
+    {
+        this(new TreeMap<Integer, RunLengthBooleanMask2D>());
+    }
+
+    /**
+     * Create a run length encoded mask from the specified 2D masks (indexed by Z position).<br>
+     * Empty 2D masks are ignored.
+     */
+    public RunLengthBooleanMask3D(Map<Integer, RunLengthBooleanMask2D> masks)
+    {
+        super();
+
+        slices = new TreeMap<Integer, RunLengthBooleanMask2D>();
+        for (Entry<Integer, RunLengthBooleanMask2D> entry : masks.entrySet())
+            if ((entry.getValue() != null) && !entry.getValue().isEmpty())
+                slices.put(entry.getKey(), entry.getValue());
+
+        if (slices.isEmpty())
+            bounds = new Rectangle3D.Integer();
+        else
+        {
+            Rectangle bounds2D = null;
+
+            for (RunLengthBooleanMask2D mask : slices.values())
+            {
+                if (bounds2D == null)
+                    bounds2D = mask.getBounds();
+                else
+                    bounds2D.add(mask.getBounds());
+            }
+
+            final int minZ = slices.firstKey().intValue();
+            final int maxZ = slices.lastKey().intValue();
+
+            bounds = new Rectangle3D.Integer(bounds2D.x, bounds2D.y, minZ, bounds2D.width, bounds2D.height,
+                    (maxZ - minZ) + 1);
+        }
+    }
+
+    /**
+     * Create a run length encoded mask from the specified dense {@link BooleanMask3D}.
+     * 
+     * @throws IllegalArgumentException
+     *         if the mask has an infinite Z dimension
+     */
+    public RunLengthBooleanMask3D(BooleanMask3D mask)
+    {
+        this(getMasks(mask));
+    }
+
+    private static Map<Integer, RunLengthBooleanMask2D> getMasks(BooleanMask3D mask)
+    {
+        if (mask.bounds.isInfiniteZ())
+            throw new IllegalArgumentException("Cannot encode a mask with infinite Z dimension.");
+
+        final TreeMap<Integer, RunLengthBooleanMask2D> result = new TreeMap<Integer, RunLengthBooleanMask2D>();
+
+        for (Entry<Integer, BooleanMask2D> entry : mask.mask.entrySet())
+            if (entry.getValue() != null)
+                result.put(entry.getKey(), new RunLengthBooleanMask2D(entry.getValue()));
+
+        return result;
+    }
+
+    /**
+     * Returns the optimized region represented by the mask.
+     */
+    public Rectangle3D.Integer getBounds()
+    {
+        return (Rectangle3D.Integer) bounds.clone();
+    }
+
+    /**
+     * Returns the non empty 2D masks indexed by Z position
+     */
+    public SortedMap<Integer, RunLengthBooleanMask2D> getMasks2D()
+    {
+        return Collections.unmodifiableSortedMap(slices);
+    }
+
+    /**
+     * Returns the 2D mask for the specified Z position (empty mask if Z is outside the mask)
+     */
+    public RunLengthBooleanMask2D getMask2D(int z)
+    {
+        final RunLengthBooleanMask2D result = slices.get(Integer.valueOf(z));
+
+        if (result == null)
+            return new RunLengthBooleanMask2D();
+
+        return result;
+    }
+
+    /**
+     * Return true if mask is empty
+     */
+    public boolean isEmpty()
+    {
+        return slices.isEmpty();
+    }
+
+    /**
+     * Return true if mask contains the specified point
+     */
+    public boolean contains(int x, int y, int z)
+    {
+        final RunLengthBooleanMask2D mask = slices.get(Integer.valueOf(z));
+
+        if (mask != null)
+            return mask.contains(x, y);
+
+        return false;
+    }
+
+    /**
+     * Return true if mask contains the specified mask (computed on runs, slice by slice).
+     */
+    public boolean contains(RunLengthBooleanMask3D mask)
+    {
+        for (Entry<Integer, RunLengthBooleanMask2D> entry : mask.slices.entrySet())
+            if (!getMask2D(entry.getKey().intValue()).contains(entry.getValue()))
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Return true if mask intersects (contains at least one point) the specified mask (computed on
+     * runs, slice by slice).
+     */
+    public boolean intersects(RunLengthBooleanMask3D mask)
+    {
+        for (Entry<Integer, RunLengthBooleanMask2D> entry : mask.slices.entrySet())
+        {
+            final RunLengthBooleanMask2D slice = slices.get(entry.getKey());
+
+            if ((slice != null) && slice.intersects(entry.getValue()))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Return the number of runs contained in this mask
+     */
+    public long getNumberOfRuns()
+    {
+        long result = 0;
+
+        for (RunLengthBooleanMask2D mask : slices.values())
+            result += mask.getNumberOfRuns();
+
+        return result;
+    }
+
+    /**
+     * Return the number of points contained in this mask
+     */
+    public long getNumberOfPoints()
+    {
+        long result = 0;
+
+        for (RunLengthBooleanMask2D mask : slices.values())
+            result += mask.getNumberOfPoints();
+
+        return result;
+    }
+
+    /**
+     * Return the dense {@link BooleanMask3D} version of this mask
+     */
+    public BooleanMask3D toBooleanMask3D()
+    {
+        if (isEmpty())
+            return new BooleanMask3D();
+
+        final BooleanMask2D[] masks = new BooleanMask2D[bounds.sizeZ];
+
+        for (Entry<Integer, RunLengthBooleanMask2D> entry : slices.entrySet())
+            masks[entry.getKey().intValue() - bounds.z] = entry.getValue().toBooleanMask2D();
+
+        return new BooleanMask3D((Rectangle3D.Integer) bounds.clone(), masks);
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.roi;
+
+import java.awt.Shape;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Scanline polygon rasterizer which converts a {@link Shape} into a {@link RunLengthBooleanMask2D}
+ * without any intermediate image.<br>
+ * A pixel is considered inside the shape when its center is inside it, pixel centers lying exactly
+ * on a vertical boundary or on a top edge are excluded (same rule as Java2D non antialiased filling).
+ * Both even-odd and non-zero winding rules are supported, the one of the shape path is used.<br>
+ * Curves are flattened with {@link #FLATNESS} precision and open sub paths are implicitly closed.<br>
+ * {@link #rasterizeOutline(Shape, boolean)} returns the pixels crossed by the shape path itself, it
+ * can be used to add or remove partially covered pixels from the filled mask.
+ */
+public class ShapeRasterizer
+{
+    /**
+     * Maximum distance (in pixel) between flattened segments and the original curve
+     */
+    public static final double FLATNESS = 0.05d;
+
+    /**
+     * Rasterize the specified shape.
+     */
+    public static RunLengthBooleanMask2D rasterize(Shape shape)
+    {
+        return rasterize(shape.getPathIterator(null));
+    }
+
+    /**
+     * Rasterize the specified path.
+     */
+    public static RunLengthBooleanMask2D rasterize(PathIterator pathIt)
+    {
+        final Edges edges = new Edges();
+        final double[] coords = new double[6];
+        double startX = 0d;
+        double startY = 0d;
+        double lastX = 0d;
+        double lastY = 0d;
+        final boolean evenOdd = (pathIt.getWindingRule() == PathIterator.WIND_EVEN_ODD);
+        final PathIterator it = new FlatteningPathIterator(pathIt, FLATNESS);
+
+        while (!it.isDone())
+        {
+            switch (it.currentSegment(coords))
+            {
+                case PathIterator.SEG_MOVETO:
+                    // implicit close of previous sub path
+                    edges.add(lastX, lastY, startX, startY);
+                    startX = lastX = coords[0];
+                    startY = lastY = coords[1];
+                    break;
+
+                case PathIterator.SEG_LINETO:
+                    edges.add(lastX, lastY, coords[0], coords[1]);
+                    lastX = coords[0];
+                    lastY = coords[1];
+                    break;
+
+                case PathIterator.SEG_CLOSE:
+                    edges.add(lastX, lastY, startX, startY);
+                    lastX = startX;
+                    lastY = startY;
+                    break;
+            }
+
+            it.next();
+        }
+
+        // implicit close of last sub path
+        edges.add(lastX, lastY, startX, startY);
+
+        return edges.rasterize(evenOdd);
+    }
+
+    /**
+     * Returns the pixels crossed by the path of the specified shape (open sub paths are not closed).
+     * 
+     * @param touching
+     *        if <code>true</code> all pixels touched by the path are returned (a path lying exactly on
+     *        a pixel boundary gives the pixels at its right / bottom), otherwise only pixels whose
+     *        interior is crossed by the path are returned.
+     */
+    public static RunLengthBooleanMask2D rasterizeOutline(Shape shape, boolean touching)
+    {
+        final PathIterator it = new FlatteningPathIterator(shape.getPathIterator(null), FLATNESS);
+        final double[] coords = new double[6];
+        final Pixels pixels = new Pixels();
+        double startX = 0d;
+        double startY = 0d;
+        double lastX = 0d;
+        double lastY = 0d;
+
+        while (!it.isDone())
+        {
+            switch (it.currentSegment(coords))
+            {
+                case PathIterator.SEG_MOVETO:
+                    startX = lastX = coords[0];
+                    startY = lastY = coords[1];
+                    break;
+
+                case PathIterator.SEG_LINETO:
+                    pixels.addSegment(lastX, lastY, coords[0], coords[1], touching);
+                    lastX = coords[0];
+                    lastY = coords[1];
+                    break;
+
+                case PathIterator.SEG_CLOSE:
+                    pixels.addSegment(lastX, lastY, startX, startY, touching);
+                    lastX = startX;
+                    lastY = startY;
+                    break;
+            }
+
+            it.next();
+        }
+
+        return pixels.toMask();
+    }
+
+    /**
+     * Returns the first pixel index whose center is > value
+     */
+    static int firstPixelAfter(double value)
+    {
+        return (int) Math.floor(value - 0.5d) + 1;
+    }
+
+    /**
+     * Returns the first pixel index whose center is >= value
+     */
+    static int firstPixelFrom(double value)
+    {
+        return (int) Math.ceil(value - 0.5d);
+    }
+
+    /**
+     * Set of individual pixels
+     */
+    private static class Pixels
+    {
+        // (y << 32) | (x + 2^31) so natural ordering is Y then X
+        long[] keys = new long[256];
+        int size = 0;
+
+        void add(int x, int y)
+        {
+            if (size == keys.length)
+                keys = Arrays.copyOf(keys, size * 2);
+
+            keys[size++] = (((long) y) << 32) | (x + 0x80000000L);
+        }
+
+        void addColumn(int x, int y0, int y1)
+        {
+            for (int y = y0; y <= y1; y++)
+                add(x, y);
+        }
+
+        void addSegment(double x0, double y0, double x1, double y1, boolean touching)
+        {
+            final double minX = Math.min(x0, x1);
+            final double maxX = Math.max(x0, x1);
+            final double slope = (x0 != x1) ? (y1 - y0) / (x1 - x0) : 0d;
+            final int firstCol;
+            final int lastCol;
+
+            if (touching)
+            {
+                firstCol = (int) Math.floor(minX);
+                lastCol = (int) Math.floor(maxX);
+            }
+            else if (minX == maxX)
+            {
+                // vertical segment on a pixel boundary doesn't cross any pixel
+                if (minX == Math.floor(minX))
+                    return;
+
+                firstCol = lastCol = (int) Math.floor(minX);
+            }
+            else
+            {
+                firstCol = (int) Math.floor(minX);
+                lastCol = (int) Math.ceil(maxX) - 1;
+            }
+
+            for (int col = firstCol; col <= lastCol; col++)
+            {
+                final double ya;
+                final double yb;
+
+                // segment part inside this column
+                if (minX == maxX)
+                {
+                    ya = y0;
+                    yb = y1;
+                }
+                else
+                {
+                    ya = y0 + ((Math.max(col, minX) - x0) * slope);
+                    yb = y0 + ((Math.min(col + 1, maxX) - x0) * slope);
+                }
+
+                final double lo = Math.min(ya, yb);
+                final double hi = Math.max(ya, yb);
+
+                if (touching)
+                    addColumn(col, (int) Math.floor(lo), (int) Math.floor(hi));
+                else if (lo < hi)
+                    addColumn(col, (int) Math.floor(lo), (int) Math.ceil(hi) - 1);
+                // horizontal segment inside pixels
+                else if (lo != Math.floor(lo))
+                    add(col, (int) Math.floor(lo));
+            }
+        }
+
+        RunLengthBooleanMask2D toMask()
+        {
+            if (size == 0)
+                return new RunLengthBooleanMask2D();
+
+            Arrays.sort(keys, 0, size);
+
+            final int firstRow = (int) (keys[0] >> 32);
+            final int lastRow = (int) (keys[size - 1] >> 32);
+            final int[][] rows = new int[(lastRow - firstRow) + 1][];
+            int[] runs = new int[16];
+            int i = 0;
+
+            for (int row = firstRow; row <= lastRow; row++)
+            {
+                int numRun = 0;
+
+                while ((i < size) && ((int) (keys[i] >> 32) == row))
+                {
+                    final int x = (int) ((keys[i] & 0xFFFFFFFFL) - 0x80000000L);
+
+                    // extend previous run (or duplicate pixel)
+                    if ((numRun > 0) && (x <= runs[numRun - 1]))
+                        runs[numRun - 1] = Math.max(runs[numRun - 1], x + 1);
+                    else
+                    {
+                        if ((numRun + 2) > runs.length)
+                            runs = Arrays.copyOf(runs, runs.length * 2);
+                        runs[numRun++] = x;
+                        runs[numRun++] = x + 1;
+                    }
+
+                    i++;
+                }
+
+                rows[row - firstRow] = Arrays.copyOf(runs, numRun);
+            }
+
+            return new RunLengthBooleanMask2D(firstRow, rows);
+        }
+    }
+
+    private static class Edges
+    {
+        // top Y, bottom Y, X at top Y, X increment per Y unit
+        double[] yTop = new double[64];
+        double[] yBottom = new double[64];
+        double[] xTop = new double[64];
+        double[] slope = new double[64];
+        // +1 for downward edge, -1 for upward edge
+        int[] dir = new int[64];
+        int size = 0;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        void add(double x0, double y0, double x1, double y1)
+        {
+            // horizontal edges never cross a scanline
+            if (y0 == y1)
+                return;
+
+            if (size == yTop.length)
+            {
+                final int newSize = size * 2;
+
+                yTop = Arrays.copyOf(yTop, newSize);
+                yBottom = Arrays.copyOf(yBottom, newSize);
+                xTop = Arrays.copyOf(xTop, newSize);
+                slope = Arrays.copyOf(slope, newSize);
+                dir = Arrays.copyOf(dir, newSize);
+            }
+
+            if (y0 < y1)
+            {
+                yTop[size] = y0;
+                yBottom[size] = y1;
+                xTop[size] = x0;
+                dir[size] = 1;
+            }
+            else
+            {
+                yTop[size] = y1;
+                yBottom[size] = y0;
+                xTop[size] = x1;
+                dir[size] = -1;
+            }
+            slope[size] = (x1 - x0) / (y1 - y0);
+
+            minY = Math.min(minY, yTop[size]);
+            maxY = Math.max(maxY, yBottom[size]);
+            size++;
+        }
+
+        RunLengthBooleanMask2D rasterize(boolean evenOdd)
+        {
+            if (size == 0)
+                return new RunLengthBooleanMask2D();
+
+            // scanline j samples Y = j + 0.5, an edge crosses it if yTop < Y <= yBottom
+            final int firstRow = firstPixelAfter(minY);
+            final int lastRow = firstPixelAfter(maxY);
+
+            if (lastRow <= firstRow)
+                return new RunLengthBooleanMask2D();
+
+            // sort edges by top Y
+            final Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+                order[i] = Integer.valueOf(i);
+            Arrays.sort(order, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer o1, Integer o2)
+                {
+                    return Double.compare(yTop[o1.intValue()], yTop[o2.intValue()]);
+                }
+            });
+
+            final int[][] rows = new int[lastRow - firstRow][];
+            int[] active = new int[16];
+            int numActive = 0;
+            double[] xs = new double[16];
+            int[] dirs = new int[16];
+            int[] runs = new int[16];
+            int next = 0;
+
+            for (int row = firstRow; row < lastRow; row++)
+            {
+                final double y = row + 0.5d;
+
+                // remove finished edges
+                int n = 0;
+                for (int i = 0; i < numActive; i++)
+                    if (yBottom[active[i]] >= y)
+                        active[n++] = active[i];
+                numActive = n;
+
+                // add new edges
+                while ((next < size) && (yTop[order[next].intValue()] < y))
+                {
+                    final int e = order[next++].intValue();
+
+                    if (yBottom[e] >= y)
+                    {
+                        if (numActive == active.length)
+                            active = Arrays.copyOf(active, numActive * 2);
+                        active[numActive++] = e;
+                    }
+                }
+
+                if (numActive == 0)
+                {
+                    rows[row - firstRow] = new int[0];
+                    continue;
+                }
+
+                if (xs.length < numActive)
+                {
+                    xs = new double[active.length];
+                    dirs = new int[active.length];
+                }
+
+                // compute crossings and sort them by X (insertion sort as there is usually few of them)
+                for (int i = 0; i < numActive; i++)
+                {
+                    final int e = active[i];
+                    final double x = xTop[e] + ((y - yTop[e]) * slope[e]);
+                    final int d = dir[e];
+                    int j = i - 1;
+
+                    while ((j >= 0) && (xs[j] > x))
+                    {
+                        xs[j + 1] = xs[j];
+                        dirs[j + 1] = dirs[j];
+                        j--;
+                    }
+                    xs[j + 1] = x;
+                    dirs[j + 1] = d;
+                }
+
+                // build runs from spans
+                int numRun = 0;
+                int winding = 0;
+
+                for (int i = 0; i < (numActive - 1); i++)
+                {
+                    winding += dirs[i];
+
+                    final boolean inside = evenOdd ? ((i & 1) == 0) : (winding != 0);
+
+                    if (inside)
+                    {
+                        final int start = firstPixelAfter(xs[i]);
+                        final int end = firstPixelFrom(xs[i + 1]);
+
+                        if (start < end)
+                        {
+                            // merge with previous run ?
+                            if ((numRun > 0) && (start <= runs[numRun - 1]))
+                                runs[numRun - 1] = Math.max(runs[numRun - 1], end);
+                            else
+                            {
+                                if ((numRun + 2) > runs.length)
+                                    runs = Arrays.copyOf(runs, runs.length * 2);
+                                runs[numRun++] = start;
+                                runs[numRun++] = end;
+                            }
+                        }
+                    }
+                }
+
+                rows[row - firstRow] = Arrays.copyOf(runs, numRun);
+            }
+
+            return new RunLengthBooleanMask2D(firstRow, rows);
+        }
+    }
+}
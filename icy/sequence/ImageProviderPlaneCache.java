@@ -0,0 +1,340 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ *
+ * This file is part of Icy.
+ *
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.sequence;
+
+import icy.common.exception.UnsupportedFormatException;
+import icy.image.AbstractImageProvider;
+import icy.image.IcyBufferedImage;
+import icy.image.ImageProvider;
+import icy.image.ImageTileCache;
+import icy.image.colormodel.IcyColorModel;
+import icy.system.IcyExceptionHandler;
+import icy.type.DataType;
+
+import java.io.File;
+import java.io.IOException;
+
+import loci.formats.ome.OMEXMLMetadataImpl;
+
+/**
+ * Plane cache backed by an {@link ImageProvider} (virtual stack).<br>
+ * Sequence planes are not read when the sequence is created: they are read from the provider on first
+ * access then released from memory (as for {@link PlaneCache}) when the memory budget is exceeded.<br>
+ * Unmodified planes are simply read again from the provider when needed, only modified planes are written
+ * to scratch files.<br>
+ * <br>
+ * The provider has to stay open as long as the sequence is used and should not be shared with another
+ * sequence (use one provider instance per serie). If the provider is a {@link SequenceIdImporter} it is
+ * closed when the sequence is closed and automatically reopened if a plane is accessed again.
+ *
+ * @see #initialize(Sequence)
+ */
+public class ImageProviderPlaneCache extends PlaneCache implements SequenceListener
+{
+    /**
+     * Plane which can be read from the image provider.
+     */
+    public static class ProviderPlane extends StoredPlane
+    {
+        final int z;
+        final int t;
+
+        ProviderPlane(PlaneCache cache, int z, int t, int sizeX, int sizeY, int sizeC, DataType dataType)
+        {
+            super(cache, null, sizeX, sizeY, sizeC, dataType);
+
+            this.z = z;
+            this.t = t;
+        }
+
+        /**
+         * Returns Z position of the plane in the image provider.
+         */
+        public int getZ()
+        {
+            return z;
+        }
+
+        /**
+         * Returns T position of the plane in the image provider.
+         */
+        public int getT()
+        {
+            return t;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "plane [Z=" + z + ", T=" + t + "]";
+        }
+    }
+
+    protected final ImageProvider provider;
+    protected final int serie;
+    /**
+     * id used to reopen the provider if it has been closed (only for {@link SequenceIdImporter})
+     */
+    protected final String id;
+
+    /**
+     * Create a new virtual stack plane cache.
+     *
+     * @param provider
+     *        image provider to read planes from (should be opened)
+     * @param serie
+     *        serie index to read
+     * @param maxMemory
+     *        memory budget (in bytes) for in memory planes
+     * @param scratchDirectory
+     *        directory where scratch files of modified planes are created (system temporary directory if
+     *        <code>null</code>)
+     */
+    public ImageProviderPlaneCache(ImageProvider provider, int serie, long maxMemory, File scratchDirectory)
+    {
+        super(maxMemory, scratchDirectory);
+
+        this.provider = provider;
+        this.serie = serie;
+
+        if (provider instanceof SequenceIdImporter)
+            id = ((SequenceIdImporter) provider).getOpened();
+        else
+            id = null;
+    }
+
+    /**
+     * Create a new virtual stack plane cache.
+     *
+     * @param provider
+     *        image provider to read planes from (should be opened)
+     * @param serie
+     *        serie index to read
+     * @param maxMemory
+     *        memory budget (in bytes) for in memory planes
+     */
+    public ImageProviderPlaneCache(ImageProvider provider, int serie, long maxMemory)
+    {
+        this(provider, serie, maxMemory, null);
+    }
+
+    /**
+     * Returns the image provider used to read planes (it is reopened if it has been closed).<br>
+     * Accesses to the provider should be synchronized on it.
+     */
+    public ImageProvider getProvider()
+    {
+        synchronized (provider)
+        {
+            try
+            {
+                ensureOpened();
+            }
+            catch (Exception e)
+            {
+                System.err.println("ImageProviderPlaneCache: cannot reopen '" + id + "'");
+                IcyExceptionHandler.showErrorMessage(e, false, true);
+            }
+        }
+
+        return provider;
+    }
+
+    /**
+     * Reopen the provider if it has been closed (or used for another image), should be called with lock.
+     */
+    private void ensureOpened() throws UnsupportedFormatException, IOException
+    {
+        if ((id != null) && !id.equals(((SequenceIdImporter) provider).getOpened()))
+        {
+            if (!((SequenceIdImporter) provider).open(id, 0))
+                throw new UnsupportedFormatException("Cannot reopen '" + id + "'");
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a plane of the specified size is too large to be loaded at once with
+     * the memory budget of this cache (it should then be read by tiles).
+     */
+    public boolean isLargePlane(int sizeX, int sizeY, int sizeC, DataType dataType)
+    {
+        return ((long) sizeX * (long) sizeY * (long) sizeC * dataType.getSize()) > (getMaxMemory() / 4);
+    }
+
+    /**
+     * Returns the serie index read from the image provider.
+     */
+    public int getSerie()
+    {
+        return serie;
+    }
+
+    /**
+     * Fill the specified sequence with all planes of the image provider serie without reading them.<br>
+     * Only the first plane is read to define the sequence type (a low resolution version for large plane),
+     * others planes are read on first access.<br>
+     * The specified sequence should be empty, it then uses this plane cache.<br>
+     * If the initialization fails the provider is closed (if it is a {@link SequenceIdImporter}).
+     *
+     * @throws UnsupportedFormatException
+     * @throws IOException
+     */
+    public void initialize(Sequence sequence) throws UnsupportedFormatException, IOException
+    {
+        boolean initialized = false;
+
+        try
+        {
+            internalInitialize(sequence);
+            initialized = true;
+        }
+        finally
+        {
+            // don't leak the opened provider
+            if (!initialized)
+                closeProvider();
+        }
+    }
+
+    private void internalInitialize(Sequence sequence) throws UnsupportedFormatException, IOException
+    {
+        final OMEXMLMetadataImpl meta;
+
+        synchronized (provider)
+        {
+            meta = provider.getMetaData();
+        }
+
+        final int sizeX = MetaDataUtil.getSizeX(meta, serie);
+        final int sizeY = MetaDataUtil.getSizeY(meta, serie);
+        final int sizeC = MetaDataUtil.getSizeC(meta, serie);
+        final int sizeZ = MetaDataUtil.getSizeZ(meta, serie);
+        final int sizeT = MetaDataUtil.getSizeT(meta, serie);
+        final DataType dataType = MetaDataUtil.getDataType(meta, serie);
+
+        sequence.beginUpdate();
+        try
+        {
+            sequence.setPlaneCache(this);
+
+            for (int t = 0; t < sizeT; t++)
+                for (int z = 0; z < sizeZ; z++)
+                    sequence.setStoredImage(t, z, new ProviderPlane(this, z, t, sizeX, sizeY, sizeC, dataType));
+
+            // large plane (whole slide image) --> define sequence type from a low resolution image
+            if (isLargePlane(sizeX, sizeY, sizeC, dataType))
+            {
+                final IcyBufferedImage image;
+
+                synchronized (provider)
+                {
+                    image = provider.getImage(serie, AbstractImageProvider.getResolutionFactor(sizeX, sizeY, 1024),
+                            0, 0);
+                }
+
+                if (image == null)
+                    throw new IOException("Cannot read first image of serie " + serie);
+
+                sequence.setColorModel(IcyColorModel.createInstance(image.getIcyColorModel(), true, true));
+            }
+            // read first plane to define sequence type
+            else if (sequence.getImage(0, 0) == null)
+                throw new IOException("Cannot read first image of serie " + serie);
+        }
+        finally
+        {
+            sequence.endUpdate();
+        }
+
+        // we want to close the provider when sequence is closed
+        sequence.addListener(this);
+    }
+
+    @Override
+    protected IcyBufferedImage load(StoredPlane plane) throws IOException
+    {
+        // modified plane stored in scratch file
+        if (!(plane instanceof ProviderPlane))
+            return super.load(plane);
+
+        final ProviderPlane providerPlane = (ProviderPlane) plane;
+        final IcyBufferedImage result;
+
+        try
+        {
+            synchronized (provider)
+            {
+                // provider has been closed (or used for another image) ? --> reopen it
+                ensureOpened();
+
+                result = provider.getImage(serie, 0, providerPlane.z, providerPlane.t);
+            }
+        }
+        catch (UnsupportedFormatException e)
+        {
+            throw new IOException("Cannot read " + plane + " from image provider.", e);
+        }
+
+        if (result == null)
+            throw new IOException("Cannot read " + plane + " from image provider.");
+
+        // restore image state
+        plane.restoreState(result);
+
+        return result;
+    }
+
+    @Override
+    public void sequenceChanged(SequenceEvent sequenceEvent)
+    {
+        // nothing to do here
+    }
+
+    @Override
+    public void sequenceClosed(Sequence sequence)
+    {
+        // release tiles read for this provider
+        ImageTileCache.getInstance().removeTiles(provider);
+
+        // provider is automatically reopened if the sequence is used again
+        closeProvider();
+    }
+
+    /**
+     * Close the provider (only for {@link SequenceIdImporter}).
+     */
+    private void closeProvider()
+    {
+        if (id != null)
+        {
+            try
+            {
+                synchronized (provider)
+                {
+                    ((SequenceIdImporter) provider).close();
+                }
+            }
+            catch (IOException e)
+            {
+                System.err.println("ImageProviderPlaneCache: cannot close image provider.");
+                IcyExceptionHandler.showErrorMessage(e, false, true);
+            }
+        }
+    }
+}
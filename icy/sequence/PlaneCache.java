@@ -0,0 +1,786 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ *
+ * This file is part of Icy.
+ *
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.sequence;
+
+import icy.file.FileUtil;
+import icy.image.IcyBufferedImage;
+import icy.image.IcyBufferedImageEvent;
+import icy.image.IcyBufferedImageEvent.IcyBufferedImageEventType;
+import icy.image.IcyBufferedImageListener;
+import icy.system.IcyExceptionHandler;
+import icy.system.thread.Processor;
+import icy.type.DataType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory bounded plane store for {@link Sequence}.<br>
+ * Planes (images) stay on the java heap as long as the total size of the in memory planes is lower than
+ * the memory budget. When the budget is exceeded the least recently used planes are written to memory
+ * mapped scratch files and released from the heap. They are transparently paged back when accessed again
+ * through {@link Sequence#getImage(int, int)}, {@link Sequence#getDataXY(int, int, int)}...<br>
+ * <br>
+ * A plane which is reloaded keeps its scratch file so it is only written again if its data has been
+ * modified in the meantime. Data modification is detected through the <code>DATA_CHANGED</code> image
+ * event so you should always call {@link IcyBufferedImage#dataChanged()} after a direct modification of
+ * the image data array (as you already do to refresh display).<br>
+ * <br>
+ * Override {@link #store(IcyBufferedImage, StoredPlane)} and {@link #load(StoredPlane)} to use another
+ * storage backend.
+ *
+ * @see Sequence#setPlaneCache(PlaneCache)
+ */
+public class PlaneCache
+{
+    /**
+     * Plane which has been released from the heap and saved in a scratch file (or which can be retrieved
+     * from another source, see {@link ImageProviderPlaneCache}).
+     */
+    public static class StoredPlane
+    {
+        final PlaneCache cache;
+        final File file;
+        final int sizeX;
+        final int sizeY;
+        final int sizeC;
+        final DataType dataType;
+        boolean autoUpdateChannelBounds;
+        double[][] channelsTypeBounds;
+        double[][] channelsBounds;
+
+        /**
+         * last image instance (we reuse it if still alive when the plane is reloaded)
+         */
+        WeakReference<IcyBufferedImage> lastImage;
+
+        protected StoredPlane(PlaneCache cache, File file, IcyBufferedImage image)
+        {
+            super();
+
+            this.cache = cache;
+            this.file = file;
+            sizeX = image.getSizeX();
+            sizeY = image.getSizeY();
+            sizeC = image.getSizeC();
+            dataType = image.getDataType_();
+            saveState(image);
+        }
+
+        /**
+         * Create a stored plane for a plane which has never been loaded (channels bounds are unknown).
+         */
+        protected StoredPlane(PlaneCache cache, File file, int sizeX, int sizeY, int sizeC, DataType dataType)
+        {
+            super();
+
+            this.cache = cache;
+            this.file = file;
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.sizeC = sizeC;
+            this.dataType = dataType;
+            autoUpdateChannelBounds = true;
+            channelsTypeBounds = null;
+            channelsBounds = null;
+            lastImage = null;
+        }
+
+        /**
+         * Save image state (channels bounds) so we can restore it on reload.
+         */
+        void saveState(IcyBufferedImage image)
+        {
+            autoUpdateChannelBounds = image.getAutoUpdateChannelBounds();
+            channelsTypeBounds = image.getChannelsTypeBounds();
+            channelsBounds = image.getChannelsBounds();
+            lastImage = new WeakReference<IcyBufferedImage>(image);
+        }
+
+        /**
+         * Restore the saved image state (channels bounds) in the specified image.
+         */
+        void restoreState(IcyBufferedImage image)
+        {
+            image.setAutoUpdateChannelBounds(autoUpdateChannelBounds);
+            // bounds are unknown for plane never loaded
+            if (channelsTypeBounds != null)
+                image.setChannelsTypeBounds(channelsTypeBounds);
+            if (channelsBounds != null)
+                image.setChannelsBounds(channelsBounds);
+        }
+
+        /**
+         * Returns the scratch file containing the plane data (<code>null</code> if the plane is not
+         * stored in a scratch file).
+         */
+        public File getFile()
+        {
+            return file;
+        }
+
+        /**
+         * Returns the last known channels type bounds of the plane (<code>null</code> if unknown).
+         */
+        public double[][] getChannelsTypeBounds()
+        {
+            return channelsTypeBounds;
+        }
+
+        /**
+         * Returns the last known channels bounds of the plane (<code>null</code> if unknown).
+         */
+        public double[][] getChannelsBounds()
+        {
+            return channelsBounds;
+        }
+
+        /**
+         * Returns the size (in bytes) of the plane data.
+         */
+        public long getDataSize()
+        {
+            return (long) sizeX * (long) sizeY * (long) sizeC * dataType.getSize();
+        }
+
+        /**
+         * Returns <code>true</code> if the stored plane is compatible with the specified image (same size
+         * and data type) so we can reuse the scratch file.
+         */
+        boolean isCompatible(IcyBufferedImage image)
+        {
+            return (image.getSizeX() == sizeX) && (image.getSizeY() == sizeY) && (image.getSizeC() == sizeC)
+                    && (image.getDataType_() == dataType);
+        }
+
+        /**
+         * Returns the image instance from which the plane was stored if it is still alive.
+         */
+        IcyBufferedImage getAliveImage()
+        {
+            if (lastImage != null)
+                return lastImage.get();
+
+            return null;
+        }
+
+        /**
+         * Release the scratch file
+         */
+        void release()
+        {
+            lastImage = null;
+            cache.release(this);
+        }
+    }
+
+    /**
+     * In memory plane
+     */
+    private class CachedPlane implements IcyBufferedImageListener
+    {
+        final VolumetricImage owner;
+        final int z;
+        final IcyBufferedImage image;
+        final long size;
+        StoredPlane stored;
+        boolean dirty;
+
+        CachedPlane(VolumetricImage owner, int z, IcyBufferedImage image, StoredPlane stored)
+        {
+            super();
+
+            this.owner = owner;
+            this.z = z;
+            this.image = image;
+            this.stored = stored;
+            size = getPlaneSize(image);
+            // not yet stored --> need to be written
+            dirty = (stored == null);
+
+            image.addListener(this);
+        }
+
+        @Override
+        public void imageChanged(IcyBufferedImageEvent e)
+        {
+            if (e.getType() == IcyBufferedImageEventType.DATA_CHANGED)
+                dirty = true;
+        }
+    }
+
+    /**
+     * Returns size in bytes of the specified plane.
+     */
+    public static long getPlaneSize(IcyBufferedImage image)
+    {
+        return (long) image.getSizeX() * (long) image.getSizeY() * (long) image.getSizeC()
+                * image.getDataType_().getSize();
+    }
+
+    /**
+     * in memory planes (access ordered)
+     */
+    private final LinkedHashMap<IcyBufferedImage, CachedPlane> planes;
+    private final File scratchDirectory;
+    private long maxMemory;
+    private long usedMemory;
+
+    /**
+     * background plane loader
+     */
+    private final Processor prefetcher;
+
+    /**
+     * statistics
+     */
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private final AtomicLong evictionCount;
+    private final AtomicLong storedCount;
+
+    /**
+     * Create a new plane cache.
+     *
+     * @param maxMemory
+     *        memory budget (in bytes) for in memory planes
+     * @param scratchDirectory
+     *        directory where scratch files are created (system temporary directory if <code>null</code>)
+     */
+    public PlaneCache(long maxMemory, File scratchDirectory)
+    {
+        super();
+
+        this.maxMemory = maxMemory;
+        if (scratchDirectory == null)
+            this.scratchDirectory = new File(FileUtil.getTempDirectory());
+        else
+            this.scratchDirectory = scratchDirectory;
+
+        planes = new LinkedHashMap<IcyBufferedImage, CachedPlane>(16, 0.75f, true);
+        usedMemory = 0L;
+        hitCount = new AtomicLong();
+        missCount = new AtomicLong();
+        evictionCount = new AtomicLong();
+        storedCount = new AtomicLong();
+
+        prefetcher = new Processor(-1, 1, Processor.MIN_PRIORITY);
+        prefetcher.setThreadName("Plane prefetcher");
+    }
+
+    /**
+     * Create a new plane cache using the system temporary directory for scratch files.
+     *
+     * @param maxMemory
+     *        memory budget (in bytes) for in memory planes
+     */
+    public PlaneCache(long maxMemory)
+    {
+        this(maxMemory, null);
+    }
+
+    /**
+     * Returns the memory budget (in bytes) for in memory planes.
+     */
+    public long getMaxMemory()
+    {
+        return maxMemory;
+    }
+
+    /**
+     * Set the memory budget (in bytes) for in memory planes.
+     */
+    public void setMaxMemory(long value)
+    {
+        final List<CachedPlane> evicted;
+
+        synchronized (planes)
+        {
+            maxMemory = value;
+            evicted = getPlanesToEvict(null);
+        }
+
+        evict(evicted);
+    }
+
+    /**
+     * Returns the memory (in bytes) currently used by in memory planes.
+     */
+    public long getUsedMemory()
+    {
+        synchronized (planes)
+        {
+            return usedMemory;
+        }
+    }
+
+    /**
+     * Returns the number of in memory planes.
+     */
+    public int getNumCachedPlane()
+    {
+        synchronized (planes)
+        {
+            return planes.size();
+        }
+    }
+
+    /**
+     * Returns the number of plane access which did not require to reload the plane.
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of plane access which required to reload the plane from its scratch file.
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of planes released from the heap.
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    /**
+     * Returns the number of plane written to scratch files.
+     */
+    public long getStoredCount()
+    {
+        return storedCount.get();
+    }
+
+    /**
+     * Reset statistics counters.
+     */
+    public void resetStatistics()
+    {
+        hitCount.set(0L);
+        missCount.set(0L);
+        evictionCount.set(0L);
+        storedCount.set(0L);
+    }
+
+    /**
+     * Returns the directory where scratch files are created.
+     */
+    public File getScratchDirectory()
+    {
+        return scratchDirectory;
+    }
+
+    /**
+     * Remove all planes of the specified sequence from the cache.<br>
+     * Planes stay in memory and are not anymore managed by this cache.
+     */
+    public void removePlanes(Sequence sequence)
+    {
+        final List<CachedPlane> removed = new ArrayList<CachedPlane>();
+
+        synchronized (planes)
+        {
+            final Iterator<CachedPlane> it = planes.values().iterator();
+
+            while (it.hasNext())
+            {
+                final CachedPlane plane = it.next();
+
+                if (plane.owner.sequence == sequence)
+                {
+                    it.remove();
+                    usedMemory -= plane.size;
+                    removed.add(plane);
+                }
+            }
+        }
+
+        for (CachedPlane plane : removed)
+        {
+            plane.image.removeListener(plane);
+            // scratch file not anymore needed
+            if (plane.stored != null)
+                plane.stored.release();
+        }
+    }
+
+    /**
+     * Load in background the Z and T neighbours of the specified position if they are not in memory.<br>
+     * Pending prefetch requests are discarded so only the neighbours of the last requested position are
+     * loaded.
+     */
+    public void prefetch(final Sequence sequence, final int t, final int z)
+    {
+        prefetcher.removeAllWaitingTasks();
+
+        // next planes first as we generally browse forward
+        prefetcher.submit(new PrefetchTask(sequence, t, z + 1));
+        prefetcher.submit(new PrefetchTask(sequence, t, z - 1));
+        prefetcher.submit(new PrefetchTask(sequence, t + 1, z));
+        prefetcher.submit(new PrefetchTask(sequence, t - 1, z));
+    }
+
+    private class PrefetchTask implements Runnable
+    {
+        final Sequence sequence;
+        final int t;
+        final int z;
+
+        PrefetchTask(Sequence sequence, int t, int z)
+        {
+            super();
+
+            this.sequence = sequence;
+            this.t = t;
+            this.z = z;
+        }
+
+        @Override
+        public void run()
+        {
+            // sequence not anymore using this cache
+            if (sequence.getPlaneCache() != PlaneCache.this)
+                return;
+
+            final VolumetricImage volImg = sequence.getVolumetricImage(t);
+
+            // only released planes need to be loaded
+            if ((volImg != null) && volImg.isStored(z))
+                volImg.getImage(z);
+        }
+    }
+
+    /**
+     * Notify that the specified plane has been accessed (or added).<br>
+     * Least recently used planes are released from the heap if the memory budget is exceeded.
+     *
+     * @param owner
+     *        the {@link VolumetricImage} containing the plane
+     * @param z
+     *        Z position of the plane
+     * @param image
+     *        the plane
+     * @param stored
+     *        the stored copy of the plane when the plane has been just reloaded (<code>null</code> otherwise)
+     */
+    void planeAccessed(VolumetricImage owner, int z, IcyBufferedImage image, StoredPlane stored)
+    {
+        final List<CachedPlane> evicted;
+
+        synchronized (planes)
+        {
+            CachedPlane plane = planes.get(image);
+
+            if (plane == null)
+            {
+                plane = new CachedPlane(owner, z, image, stored);
+                planes.put(image, plane);
+                usedMemory += plane.size;
+
+                if (stored != null)
+                    missCount.incrementAndGet();
+            }
+            else
+                hitCount.incrementAndGet();
+
+            evicted = getPlanesToEvict(image);
+        }
+
+        evict(evicted);
+    }
+
+    /**
+     * Notify that the specified plane has been removed from its {@link VolumetricImage}.
+     */
+    void planeRemoved(IcyBufferedImage image)
+    {
+        final CachedPlane plane;
+
+        synchronized (planes)
+        {
+            plane = planes.remove(image);
+
+            if (plane != null)
+                usedMemory -= plane.size;
+        }
+
+        if (plane != null)
+        {
+            plane.image.removeListener(plane);
+            // scratch file not anymore needed
+            if (plane.stored != null)
+                plane.stored.release();
+        }
+    }
+
+    /**
+     * Returns the list of planes we need to evict to respect memory budget.
+     */
+    private List<CachedPlane> getPlanesToEvict(IcyBufferedImage keep)
+    {
+        final List<CachedPlane> result = new ArrayList<CachedPlane>();
+        final Iterator<CachedPlane> it = planes.values().iterator();
+
+        while ((usedMemory > maxMemory) && it.hasNext())
+        {
+            final CachedPlane plane = it.next();
+
+            // don't evict the plane we are accessing
+            if (plane.image != keep)
+            {
+                it.remove();
+                usedMemory -= plane.size;
+                result.add(plane);
+            }
+        }
+
+        return result;
+    }
+
+    private void evict(List<CachedPlane> evicted)
+    {
+        for (CachedPlane plane : evicted)
+        {
+            plane.image.removeListener(plane);
+
+            try
+            {
+                final StoredPlane stored;
+
+                // only write plane data if modified
+                if (plane.dirty || (plane.stored == null))
+                {
+                    stored = store(plane.image, plane.stored);
+                    storedCount.incrementAndGet();
+                }
+                else
+                {
+                    stored = plane.stored;
+                    stored.saveState(plane.image);
+                }
+
+                if (plane.owner.swapOut(plane.z, plane.image, stored))
+                    evictionCount.incrementAndGet();
+                else
+                    // plane replaced or removed in the meantime --> stored copy not anymore needed
+                    stored.release();
+            }
+            catch (IOException e)
+            {
+                System.err.println("PlaneCache: cannot store plane, plane kept in memory.");
+                IcyExceptionHandler.showErrorMessage(e, false, true);
+
+                // keep it in memory then
+                synchronized (planes)
+                {
+                    planes.put(plane.image, plane);
+                    usedMemory += plane.size;
+                }
+                plane.image.addListener(plane);
+            }
+        }
+    }
+
+    /**
+     * Save plane data into a scratch file.
+     *
+     * @param image
+     *        the plane to save
+     * @param previous
+     *        previous stored copy of this plane (can be <code>null</code>), its scratch file can be reused
+     * @return the stored plane
+     * @throws IOException
+     */
+    protected StoredPlane store(IcyBufferedImage image, StoredPlane previous) throws IOException
+    {
+        final File file;
+
+        if ((previous != null) && (previous.cache == this) && (previous.file != null)
+                && previous.isCompatible(image))
+            file = previous.file;
+        else
+        {
+            if (previous != null)
+                previous.release();
+
+            if (!scratchDirectory.exists())
+                FileUtil.createDir(scratchDirectory);
+
+            file = File.createTempFile("icyplane", ".raw", scratchDirectory);
+            file.deleteOnExit();
+        }
+
+        final StoredPlane result = new StoredPlane(this, file, image);
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            final MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, result.getDataSize());
+
+            buffer.order(ByteOrder.nativeOrder());
+
+            for (int c = 0; c < result.sizeC; c++)
+                putData(buffer, image.getDataXY(c));
+
+            buffer.force();
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Load plane from the scratch file.
+     *
+     * @return the plane as a new {@link IcyBufferedImage}
+     * @throws IOException
+     */
+    protected IcyBufferedImage load(StoredPlane plane) throws IOException
+    {
+        final IcyBufferedImage result = new IcyBufferedImage(plane.sizeX, plane.sizeY, plane.sizeC, plane.dataType);
+        final RandomAccessFile raf = new RandomAccessFile(plane.file, "r");
+
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, plane.getDataSize());
+
+            buffer.order(ByteOrder.nativeOrder());
+
+            for (int c = 0; c < plane.sizeC; c++)
+                getData(buffer, result.getDataXY(c));
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        // restore image state
+        plane.restoreState(result);
+
+        return result;
+    }
+
+    /**
+     * Delete scratch file of the specified stored plane.
+     */
+    protected void release(StoredPlane plane)
+    {
+        if (plane.file == null)
+            return;
+
+        if (!plane.file.delete())
+            // mapped file can't be deleted on some OS, retry on exit
+            plane.file.deleteOnExit();
+    }
+
+    private static void putData(ByteBuffer buffer, Object data)
+    {
+        if (data instanceof byte[])
+            buffer.put((byte[]) data);
+        else if (data instanceof short[])
+        {
+            final short[] array = (short[]) data;
+            buffer.asShortBuffer().put(array);
+            buffer.position(buffer.position() + (array.length * 2));
+        }
+        else if (data instanceof int[])
+        {
+            final int[] array = (int[]) data;
+            buffer.asIntBuffer().put(array);
+            buffer.position(buffer.position() + (array.length * 4));
+        }
+        else if (data instanceof long[])
+        {
+            final long[] array = (long[]) data;
+            buffer.asLongBuffer().put(array);
+            buffer.position(buffer.position() + (array.length * 8));
+        }
+        else if (data instanceof float[])
+        {
+            final float[] array = (float[]) data;
+            buffer.asFloatBuffer().put(array);
+            buffer.position(buffer.position() + (array.length * 4));
+        }
+        else if (data instanceof double[])
+        {
+            final double[] array = (double[]) data;
+            buffer.asDoubleBuffer().put(array);
+            buffer.position(buffer.position() + (array.length * 8));
+        }
+    }
+
+    private static void getData(ByteBuffer buffer, Object data)
+    {
+        if (data instanceof byte[])
+            buffer.get((byte[]) data);
+        else if (data instanceof short[])
+        {
+            final short[] array = (short[]) data;
+            buffer.asShortBuffer().get(array);
+            buffer.position(buffer.position() + (array.length * 2));
+        }
+        else if (data instanceof int[])
+        {
+            final int[] array = (int[]) data;
+            buffer.asIntBuffer().get(array);
+            buffer.position(buffer.position() + (array.length * 4));
+        }
+        else if (data instanceof long[])
+        {
+            final long[] array = (long[]) data;
+            buffer.asLongBuffer().get(array);
+            buffer.position(buffer.position() + (array.length * 8));
+        }
+        else if (data instanceof float[])
+        {
+            final float[] array = (float[]) data;
+            buffer.asFloatBuffer().get(array);
+            buffer.position(buffer.position() + (array.length * 4));
+        }
+        else if (data instanceof double[])
+        {
+            final double[] array = (double[]) data;
+            buffer.asDoubleBuffer().get(array);
+            buffer.position(buffer.position() + (array.length * 8));
+        }
+    }
+}
@@ -47,7 +47,10 @@ import icy.roi.ROI;
 import icy.roi.ROI2D;
 import icy.roi.ROI3D;
 import icy.roi.ROIEvent;
+import icy.roi.ROIEvent.ROIEventType;
+import icy.roi.ROIIndex;
 import icy.roi.ROIListener;
+import icy.sequence.PlaneCache.StoredPlane;
 import icy.sequence.SequenceEvent.SequenceEventSourceType;
 import icy.sequence.SequenceEvent.SequenceEventType;
 import icy.sequence.edit.DataSequenceEdit;
@@ -63,6 +66,7 @@ import icy.type.DataType;
 import icy.type.TypeUtil;
 import icy.type.collection.CollectionUtil;
 import icy.type.collection.array.Array1DUtil;
+import icy.type.collection.array.ArrayPool;
 import icy.type.dimension.Dimension5D;
 import icy.type.rectangle.Rectangle5D;
 import icy.undo.IcyUndoManager;
@@ -73,6 +77,7 @@ import icy.util.StringUtil;
 import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.nio.Buffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -166,6 +171,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      * ROIs
      */
     protected final Set<ROI> rois;
+    /**
+     * ROIs spatial index (kept in sync with {@link #rois})
+     */
+    protected final ROIIndex roiIndex;
 
     /**
      * id of sequence (uniq during an Icy session)
@@ -179,6 +188,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      * user lut for this sequence (saved in metadata)
      */
     protected LUT userLut;
+    /**
+     * memory bounded plane store (null = all planes stay in memory)
+     */
+    protected PlaneCache planeCache;
     /**
      * Origin filename (from/to which the sequence has been loaded/saved)<br>
      * null --> no file attachment<br>
@@ -237,6 +250,14 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      * internals
      */
     protected boolean channelBoundsInvalid;
+    /**
+     * cached statistics (lazy creation)
+     */
+    protected SequenceStatistics statistics;
+    /**
+     * data version (incremented on each change which can affect ROI descriptors)
+     */
+    protected volatile long dataVersion;
 
     /**
      * Creates a new empty sequence with specified meta data object and name.
@@ -282,6 +303,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         volumetricImages = new TreeMap<Integer, VolumetricImage>();
         overlays = new HashSet<Overlay>();
         rois = new HashSet<ROI>();
+        roiIndex = new ROIIndex();
         persistent = new SequencePersistent(this);
         undoManager = new IcyUndoManager(this, GeneralPreferences.getHistorySize());
 
@@ -293,8 +315,12 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         colorModel = null;
         userLut = null;
         channelBoundsInvalid = false;
+        statistics = null;
+        dataVersion = 0L;
         // automatic update of channel bounds
         autoUpdateChannelBounds = true;
+        // all planes in memory by default
+        planeCache = null;
     }
 
     /**
@@ -374,10 +400,23 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
 
     /**
      * Called when sequence has been closed (all viewers displaying it closed).<br>
+     * Images are not managed by the {@link PlaneCache} anymore and images released from memory to scratch
+     * files are discarded.<br>
      * <i>Used internally, you should not call it this method directly !</i>
      */
     public void closed()
     {
+        // release plane cache resources (memory budget and scratch files)
+        final PlaneCache cache = planeCache;
+
+        if (cache != null)
+        {
+            cache.removePlanes(this);
+
+            for (VolumetricImage volImg : getAllVolumetricImage())
+                volImg.releaseScratchImages();
+        }
+
         // do this in background as it can take sometime
         while (!ThreadUtil.bgRun(new Runnable()
         {
@@ -1217,6 +1256,95 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         }
     }
 
+    /**
+     * Returns the statistics service of this sequence.<br>
+     * It caches per plane and per channel statistics and histograms which are automatically invalidated
+     * when data change, use it instead of scanning sequence data each time.
+     */
+    public synchronized SequenceStatistics getStatistics()
+    {
+        if (statistics == null)
+            statistics = new SequenceStatistics(this);
+
+        return statistics;
+    }
+
+    /**
+     * Returns the data version of the sequence.<br>
+     * It is incremented on each sequence change which can affect ROI descriptors (data, type and pixel size changes)
+     * so it can be used to detect obsolete descriptor results.
+     * 
+     * @see ROI#getDescriptorCache()
+     */
+    public long getDataVersion()
+    {
+        return dataVersion;
+    }
+
+    /**
+     * Returns <code>true</code> if the specified event changes the data version (data, type or pixel size change).
+     * <br>
+     * Display changes (colormap, component bounds...) are excluded as they can be fired at high rate and don't
+     * affect ROI descriptors.
+     */
+    protected static boolean isDataVersionChange(SequenceEvent event)
+    {
+        switch (event.getSourceType())
+        {
+            case SEQUENCE_DATA:
+            case SEQUENCE_TYPE:
+                return true;
+
+            case SEQUENCE_META:
+                // measure descriptors depend on pixel size
+                final Object metaName = event.getSource();
+
+                return (metaName == null) || StringUtil.isEmpty(metaName.toString())
+                        || StringUtil.equals(metaName.toString(), ID_PIXEL_SIZE_X)
+                        || StringUtil.equals(metaName.toString(), ID_PIXEL_SIZE_Y)
+                        || StringUtil.equals(metaName.toString(), ID_PIXEL_SIZE_Z);
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the {@link PlaneCache} used to limit the memory used by the sequence images.<br>
+     * Returns <code>null</code> if all images stay in memory (default).
+     */
+    public PlaneCache getPlaneCache()
+    {
+        return planeCache;
+    }
+
+    /**
+     * Set the {@link PlaneCache} used to limit the memory used by the sequence images.<br>
+     * When set, least recently used images are written to scratch files and released from memory when
+     * the cache memory budget is exceeded. They are transparently reloaded on access.<br>
+     * The same cache can be shared by several sequences to use a global memory budget.<br>
+     * Set it to <code>null</code> to keep all images in memory (default).
+     */
+    public void setPlaneCache(PlaneCache value)
+    {
+        if (planeCache != value)
+        {
+            final PlaneCache previous = planeCache;
+
+            planeCache = value;
+
+            // previous cache does not manage our images anymore
+            if (previous != null)
+                previous.removePlanes(this);
+            // register current in memory images
+            if (value != null)
+            {
+                for (VolumetricImage volImg : getAllVolumetricImage())
+                    volImg.registerImages(value);
+            }
+        }
+    }
+
     /**
      * @deprecated Use {@link #getAutoUpdateChannelBounds()} instead.
      */
@@ -1536,6 +1664,45 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         }
     }
 
+    /**
+     * Returns the spatial index of the ROIs attached to this sequence.<br>
+     * The index is automatically updated when ROIs are added, removed or modified.
+     */
+    public ROIIndex getROIIndex()
+    {
+        return roiIndex;
+    }
+
+    /**
+     * Returns ROIs attached to this sequence whose bounds intersect the specified 5D region.<br>
+     * Only bounds are tested (fast pre-filtering using the ROI spatial index), use
+     * {@link ROI#intersects(Rectangle5D)} for an exact test.
+     */
+    public List<ROI> getROIs(Rectangle5D region)
+    {
+        return roiIndex.getROIs(region);
+    }
+
+    /**
+     * Returns ROIs attached to this sequence whose bounds are located at less than
+     * <code>tolerance</code> from the specified position (fast hit-testing pre-filtering).<br>
+     * <code>-1</code> value for Z, T or C position means any position.
+     */
+    public List<ROI> getROIsAt(double x, double y, double z, double t, double c, double tolerance)
+    {
+        return roiIndex.getROIsAt(x, y, z, t, c, tolerance);
+    }
+
+    /**
+     * Returns the ROI attached to this sequence whose bounds are the nearest from the specified
+     * position or <code>null</code> if no ROI is found within <code>maxDistance</code>.<br>
+     * <code>-1</code> value for Z, T or C position means any position.
+     */
+    public ROI getNearestROI(double x, double y, double z, double t, double c, double maxDistance)
+    {
+        return roiIndex.getNearest(x, y, z, t, c, maxDistance);
+    }
+
     /**
      * Returns all 2D ROIs attached to this sequence.
      * 
@@ -1976,16 +2143,42 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         if (!rois.isEmpty())
         {
-            final List<ROI> addedRois = new ArrayList<ROI>();
+            final List<ROI> addedRois = new ArrayList<ROI>(rois.size());
 
-            for (ROI roi : rois)
+            beginUpdate();
+            try
             {
-                if (addROI(roi, false))
-                    addedRois.add(roi);
-            }
+                synchronized (this.rois)
+                {
+                    for (ROI roi : rois)
+                        if ((roi != null) && this.rois.add(roi))
+                            addedRois.add(roi);
+                }
+
+                if (!addedRois.isEmpty())
+                {
+                    final List<Overlay> addedOverlays = new ArrayList<Overlay>(addedRois.size());
+
+                    for (ROI roi : addedRois)
+                    {
+                        roiIndex.add(roi);
+                        // add listener to ROI
+                        roi.addListener(this);
+                        addedOverlays.add(roi.getOverlay());
+                    }
+                    // notify rois added (single group event)
+                    roisChanged(addedRois, SequenceEventType.ADDED);
+                    // then add ROI overlays to sequence (single group event)
+                    addOverlays(addedOverlays);
 
-            if (canUndo && !addedRois.isEmpty())
-                addUndoableEdit(new ROIAddsSequenceEdit(this, addedRois));
+                    if (canUndo)
+                        addUndoableEdit(new ROIAddsSequenceEdit(this, addedRois));
+                }
+            }
+            finally
+            {
+                endUpdate();
+            }
 
             return addedRois.size() == rois.size();
         }
@@ -2023,6 +2216,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         {
             rois.add(roi);
         }
+        roiIndex.add(roi);
         // add listener to ROI
         roi.addListener(this);
         // notify roi added
@@ -2070,6 +2264,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
             {
                 rois.remove(roi);
             }
+            roiIndex.remove(roi);
             // remove listener
             roi.removeListener(this);
             // notify roi removed
@@ -2097,16 +2292,44 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         if (!rois.isEmpty())
         {
-            final List<ROI> removedRois = new ArrayList<ROI>();
+            final List<ROI> removedRois = new ArrayList<ROI>(rois.size());
 
-            for (ROI roi : rois)
+            beginUpdate();
+            try
             {
-                if (removeROI(roi, false))
-                    removedRois.add(roi);
-            }
+                synchronized (this.rois)
+                {
+                    for (ROI roi : rois)
+                        if ((roi != null) && this.rois.remove(roi))
+                            removedRois.add(roi);
+                }
+
+                if (!removedRois.isEmpty())
+                {
+                    final List<Overlay> removedOverlays = new ArrayList<Overlay>(removedRois.size());
+
+                    for (ROI roi : removedRois)
+                        removedOverlays.add(roi.getOverlay());
+                    // remove ROI overlays first (single group event)
+                    removeOverlays(removedOverlays);
+
+                    for (ROI roi : removedRois)
+                    {
+                        roiIndex.remove(roi);
+                        // remove listener
+                        roi.removeListener(this);
+                    }
+                    // notify rois removed (single group event)
+                    roisChanged(removedRois, SequenceEventType.REMOVED);
 
-            if (canUndo && !removedRois.isEmpty())
-                addUndoableEdit(new ROIRemovesSequenceEdit(this, removedRois));
+                    if (canUndo)
+                        addUndoableEdit(new ROIRemovesSequenceEdit(this, removedRois));
+                }
+            }
+            finally
+            {
+                endUpdate();
+            }
 
             return removedRois.size() == rois.size();
         }
@@ -2139,41 +2362,18 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     public boolean removeSelectedROIs(boolean removeReadOnly, boolean canUndo)
     {
-        final List<ROI> undoList = new ArrayList<ROI>();
+        final List<ROI> toRemove = new ArrayList<ROI>();
 
-        beginUpdate();
-        try
-        {
-            synchronized (rois)
-            {
-                for (ROI roi : getROIs())
-                {
-                    if (roi.isSelected() && (removeReadOnly || !roi.isReadOnly()))
-                    {
-                        // remove ROI overlay first
-                        removeOverlay(roi.getOverlay());
+        for (ROI roi : getROIs())
+            if (roi.isSelected() && (removeReadOnly || !roi.isReadOnly()))
+                toRemove.add(roi);
 
-                        rois.remove(roi);
-                        // remove listener
-                        roi.removeListener(this);
-                        // notify roi removed
-                        roiChanged(roi, SequenceEventType.REMOVED);
+        if (toRemove.isEmpty())
+            return false;
 
-                        // save deleted ROI
-                        undoList.add(roi);
-                    }
-                }
-            }
+        removeROIs(toRemove, canUndo);
 
-            if (canUndo)
-                undoManager.addEdit(new ROIRemovesSequenceEdit(this, undoList));
-        }
-        finally
-        {
-            endUpdate();
-        }
-
-        return !undoList.isEmpty();
+        return true;
     }
 
     /**
@@ -2194,14 +2394,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     {
         if (!rois.isEmpty())
         {
-            final List<ROI> allROIs = getROIs();
-
             // remove all ROI
-            for (ROI roi : allROIs)
-                removeROI(roi, false);
-
-            if (canUndo)
-                addUndoableEdit(new ROIRemovesSequenceEdit(this, allROIs));
+            removeROIs(getROIs(), canUndo);
         }
     }
 
@@ -2276,6 +2470,64 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         return true;
     }
 
+    /**
+     * Add the specified collection of overlay to the sequence.<br>
+     * Listeners are notified with a single group event (see {@link SequenceGroupEventListener}).
+     * 
+     * @return <code>true</code> if all overlays were added (<code>false</code> if some were already present)
+     */
+    public boolean addOverlays(Collection<? extends Overlay> overlays)
+    {
+        final List<Overlay> added = new ArrayList<Overlay>(overlays.size());
+
+        synchronized (this.overlays)
+        {
+            for (Overlay overlay : overlays)
+                if ((overlay != null) && this.overlays.add(overlay))
+                    added.add(overlay);
+        }
+
+        if (!added.isEmpty())
+        {
+            // add listener
+            for (Overlay overlay : added)
+                overlay.addOverlayListener(this);
+            // notify overlays added
+            overlaysChanged(added, SequenceEventType.ADDED);
+        }
+
+        return added.size() == overlays.size();
+    }
+
+    /**
+     * Remove the specified collection of overlay from the sequence.<br>
+     * Listeners are notified with a single group event (see {@link SequenceGroupEventListener}).
+     * 
+     * @return <code>true</code> if all overlays were removed
+     */
+    public boolean removeOverlays(Collection<? extends Overlay> overlays)
+    {
+        final List<Overlay> removed = new ArrayList<Overlay>(overlays.size());
+
+        synchronized (this.overlays)
+        {
+            for (Overlay overlay : overlays)
+                if ((overlay != null) && this.overlays.remove(overlay))
+                    removed.add(overlay);
+        }
+
+        if (!removed.isEmpty())
+        {
+            // remove listener
+            for (Overlay overlay : removed)
+                overlay.removeOverlayListener(this);
+            // notify overlays removed
+            overlaysChanged(removed, SequenceEventType.REMOVED);
+        }
+
+        return removed.size() == overlays.size();
+    }
+
     /**
      * Remove an overlay from the sequence.
      */
@@ -2372,6 +2624,20 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         return volImg;
     }
 
+    /**
+     * Set a stored image (loaded on first access) at the specified position.<br>
+     * Used by {@link ImageProviderPlaneCache} to build virtual stack.
+     */
+    void setStoredImage(int t, int z, StoredPlane stored)
+    {
+        VolumetricImage volImg = getVolumetricImage(t);
+
+        if (volImg == null)
+            volImg = setVolumetricImage(t);
+
+        volImg.setStoredImage(z, stored);
+    }
+
     /**
      * Add a volumetricImage at t position<br>
      * It actually create a new volumetricImage and add it to the sequence<br>
@@ -3322,8 +3588,9 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         try
         {
             // recalculate images bounds (automatically update sequence bounds with event)
+            // images released from memory keep the bounds they had when stored (data didn't change since)
             for (VolumetricImage volImg : volumes)
-                for (IcyBufferedImage img : volImg.getAllImage())
+                for (IcyBufferedImage img : volImg.getLoadedImages())
                     img.updateChannelsBounds();
         }
         finally
@@ -3346,19 +3613,18 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         double[][] bounds;
 
         bounds = null;
-        // recalculate bounds from all images
+        // recalculate bounds from all images (don't reload images released from memory)
         synchronized (volumetricImages)
         {
             for (VolumetricImage volImg : volumetricImages.values())
-            {
-                for (IcyBufferedImage img : volImg.getAllImage())
-                {
-                    if (img != null)
-                        bounds = adjustBounds(img.getChannelsTypeBounds(), bounds);
-                }
-            }
+                for (double[][] imgBounds : volImg.getAllChannelsBounds(true))
+                    bounds = adjustBounds(imgBounds, bounds);
         }
 
+        // no image bounds known yet
+        if (bounds == null)
+            return;
+
         // set new computed bounds
         colorModel.setComponentsAbsBounds(bounds);
 
@@ -3367,13 +3633,8 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         synchronized (volumetricImages)
         {
             for (VolumetricImage volImg : volumetricImages.values())
-            {
-                for (IcyBufferedImage img : volImg.getAllImage())
-                {
-                    if (img != null)
-                        bounds = adjustBounds(img.getChannelsBounds(), bounds);
-                }
-            }
+                for (double[][] imgBounds : volImg.getAllChannelsBounds(false))
+                    bounds = adjustBounds(imgBounds, bounds);
         }
 
         // set new computed bounds
@@ -4099,6 +4360,109 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         }
     }
 
+    /**
+     * Copy the 1D array data [XY] for specified t, z, c into the given NIO buffer.<br>
+     * Data is written at the current buffer position which is then advanced by the plane size.<br>
+     * The buffer should match the java data type of the sequence (<code>ByteBuffer</code> for
+     * byte data, <code>ShortBuffer</code> for short data...), direct buffers are accepted.
+     * 
+     * @return the <code>out</code> buffer
+     */
+    public Buffer getDataCopyXY(int t, int z, int c, Buffer out)
+    {
+        final int len = getSizeX() * getSizeY();
+        final Object data = getDataXY(t, z, c);
+
+        if (data != null)
+            Array1DUtil.copyToBuffer(data, 0, len, out);
+        else
+            out.position(out.position() + len);
+
+        return out;
+    }
+
+    /**
+     * Copy the 1D array data [CXY] for specified t, z into the given NIO buffer.<br>
+     * Data is written at the current buffer position which is then advanced by the copied size.<br>
+     * The buffer should match the java data type of the sequence, direct buffers are accepted.
+     * 
+     * @return the <code>out</code> buffer
+     */
+    public Buffer getDataCopyCXY(int t, int z, Buffer out)
+    {
+        final int len = getSizeX() * getSizeY() * getSizeC();
+        final ArrayPool pool = ArrayPool.getSharedPool();
+        final Object data = pool.acquire(getDataType_(), len);
+
+        try
+        {
+            if (getImage(t, z) != null)
+            {
+                getDataCopyCXY(t, z, data, 0);
+                Array1DUtil.copyToBuffer(data, 0, len, out);
+            }
+            else
+                out.position(out.position() + len);
+        }
+        finally
+        {
+            pool.release(data);
+        }
+
+        return out;
+    }
+
+    /**
+     * Copy the 1D array data [XYZ] for specified t, c into the given NIO buffer.<br>
+     * Data is written at the current buffer position which is then advanced by the copied size.<br>
+     * The buffer should match the java data type of the sequence, direct buffers are accepted.
+     * 
+     * @return the <code>out</code> buffer
+     */
+    public Buffer getDataCopyXYZ(int t, int c, Buffer out)
+    {
+        final int sizeZ = getSizeZ();
+
+        for (int z = 0; z < sizeZ; z++)
+            getDataCopyXY(t, z, c, out);
+
+        return out;
+    }
+
+    /**
+     * Copy the 1D array data [CXYZ] for specified t into the given NIO buffer.<br>
+     * Data is written at the current buffer position which is then advanced by the copied size.<br>
+     * The buffer should match the java data type of the sequence, direct buffers are accepted.
+     * 
+     * @return the <code>out</code> buffer
+     */
+    public Buffer getDataCopyCXYZ(int t, Buffer out)
+    {
+        final int sizeZ = getSizeZ();
+
+        for (int z = 0; z < sizeZ; z++)
+            getDataCopyCXY(t, z, out);
+
+        return out;
+    }
+
+    /**
+     * Copy the 1D array data [XYZT] for specified c into the given NIO buffer.<br>
+     * Data is written at the current buffer position which is then advanced by the copied size.<br>
+     * The buffer should match the java data type of the sequence, direct buffers are accepted.
+     * 
+     * @return the <code>out</code> buffer
+     */
+    public Buffer getDataCopyXYZT(int c, Buffer out)
+    {
+        final int sizeT = getSizeT();
+
+        for (int t = 0; t < sizeT; t++)
+            getDataCopyXYZ(t, c, out);
+
+        return out;
+    }
+
     /**
      * Returns a direct reference to 4D byte array data [T][Z][C][XY]
      */
@@ -5942,6 +6306,120 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         dataChanged(image, SequenceEventType.ADDED);
     }
 
+    /**
+     * Attach again an image reloaded by the {@link PlaneCache}.
+     * 
+     * @param newInstance
+     *        <code>true</code> if the image is a new instance, <code>false</code> if we reuse the instance which
+     *        was released from the cache
+     */
+    void onImageLoaded(IcyBufferedImage image, boolean newInstance)
+    {
+        // first loaded image of a virtual stack --> define colorModel from it
+        if (colorModel == null)
+            setColorModel(IcyColorModel.createInstance(image.getIcyColorModel(), true, true));
+        else
+        {
+            final IcyColorModel cm = image.getIcyColorModel();
+
+            // share the sequence color space (see setImage(..))
+            if (newInstance)
+                cm.setColorSpace(colorModel.getIcyColorSpace());
+            else
+                colorModel.getIcyColorSpace().addListener(cm);
+        }
+
+        if (newInstance)
+            image.addListener(this);
+    }
+
+    /**
+     * Called when an image which had never been loaded (virtual stack) is loaded for the first time, its
+     * channels bounds are now known.
+     */
+    void onImageFirstLoaded(IcyBufferedImage image)
+    {
+        imageBoundsChanged();
+    }
+
+    /**
+     * Detach an image released from memory by the {@link PlaneCache}.
+     */
+    void onImageUnloaded(IcyBufferedImage image)
+    {
+        // the sequence color space keeps a reference on image color model
+        if (colorModel != null)
+            colorModel.getIcyColorSpace().removeListener(image.getIcyColorModel());
+    }
+
+    /**
+     * Do common job on removal of an image released from memory by the {@link PlaneCache}.<br>
+     * The image is not reloaded just to be notified: if its last instance is not alive anymore a global
+     * <code>SEQUENCE_DATA</code> REMOVED event (<code>null</code> source) is sent.
+     */
+    void onStoredImageRemoved(StoredPlane stored)
+    {
+        final IcyBufferedImage image = stored.getAliveImage();
+
+        if (image != null)
+            onImageRemoved(image);
+        else
+        {
+            // no more image ? --> release the global colorModel
+            if (isEmpty())
+                setColorModel(null);
+
+            // notify changed
+            dataChanged(null, SequenceEventType.REMOVED);
+        }
+    }
+
+    /**
+     * Do common job on "image replaced" when the replaced image was released from memory by the {@link PlaneCache}
+     * (it is not reloaded just for that).
+     */
+    void onStoredImageReplaced(StoredPlane oldStored, IcyBufferedImage newImage)
+    {
+        final IcyBufferedImage oldImage = oldStored.getAliveImage();
+
+        // old image instance still alive --> classic replace
+        if (oldImage != null)
+        {
+            onImageReplaced(oldImage, newImage);
+            return;
+        }
+
+        beginUpdate();
+        try
+        {
+            // no image loaded yet (virtual stack) --> define colorModel from the new image
+            if (colorModel == null)
+                setColorModel(IcyColorModel.createInstance(newImage.getIcyColorModel(), true, true));
+            // we replaced the only present image
+            else if (getNumImage() == 1)
+            {
+                // colorModel not compatible ?
+                if (!colorModel.isCompatible(newImage.getIcyColorModel()))
+                    setColorModel(IcyColorModel.createInstance(newImage.getIcyColorModel(), true, true));
+                // old image size is unknown so sizeX and sizeY may have changed
+                else
+                    typeChanged();
+            }
+
+            // notify about old image remove
+            dataChanged(null, SequenceEventType.REMOVED);
+
+            // add listener to new image
+            newImage.addListener(this);
+            // notify about new image added
+            dataChanged(newImage, SequenceEventType.ADDED);
+        }
+        finally
+        {
+            endUpdate();
+        }
+    }
+
     /**
      * Do common job on "image replaced" here
      */
@@ -6015,22 +6493,45 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         final List<SequenceListener> cachedListeners = new ArrayList<SequenceListener>(listeners);
 
         for (SequenceListener listener : cachedListeners)
-            listener.sequenceChanged(e);
+            sendChangedEvent(listener, e);
 
         // provide backward compatibility for painter
         if (e.getSourceType() == SequenceEventSourceType.SEQUENCE_OVERLAY)
         {
-            final Painter painter;
+            final List<Painter> painters = new ArrayList<Painter>();
 
-            if (e.getSource() instanceof OverlayWrapper)
-                painter = ((OverlayWrapper) e.getSource()).getPainter();
-            else
-                painter = (Painter) e.getSource();
+            for (Object overlay : e.getSources())
+            {
+                if (overlay instanceof OverlayWrapper)
+                    painters.add(((OverlayWrapper) overlay).getPainter());
+                else
+                    painters.add((Painter) overlay);
+            }
+
+            final SequenceEvent event;
 
-            final SequenceEvent event = new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_PAINTER, painter,
-                    e.getType(), e.getParam());
+            if (e.isGroupEvent())
+                event = new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_PAINTER, e.getType(), painters);
+            else
+                event = new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_PAINTER,
+                        painters.isEmpty() ? null : painters.get(0), e.getType(), e.getParam());
 
             for (SequenceListener listener : cachedListeners)
+                sendChangedEvent(listener, event);
+        }
+    }
+
+    /**
+     * Send the specified event to the listener: group events are split in single source events for
+     * listeners which does not implement {@link SequenceGroupEventListener}.
+     */
+    static void sendChangedEvent(SequenceListener listener, SequenceEvent e)
+    {
+        if (!e.isGroupEvent() || (listener instanceof SequenceGroupEventListener))
+            listener.sequenceChanged(e);
+        else
+        {
+            for (SequenceEvent event : e.getSingleEvents())
                 listener.sequenceChanged(event);
         }
     }
@@ -6160,6 +6661,14 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         updater.changed(new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_OVERLAY, overlay, type));
     }
 
+    /**
+     * Notify specified overlays have changed (single group event)
+     */
+    protected void overlaysChanged(List<Overlay> overlays, SequenceEventType type)
+    {
+        updater.changed(new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_OVERLAY, type, overlays));
+    }
+
     /**
      * Notify specified painter of overlay has changed (the sequence should contains the specified
      * Overlay)
@@ -6212,6 +6721,14 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         updater.changed(new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_ROI, roi, type));
     }
 
+    /**
+     * Notify specified rois have changed (single group event)
+     */
+    protected void roisChanged(List<ROI> rois, SequenceEventType type)
+    {
+        updater.changed(new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_ROI, type, rois));
+    }
+
     /**
      * Data has changed (global change)<br>
      * Be careful, this implies all component bounds are recalculated, can be heavy !
@@ -6226,7 +6743,15 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
      */
     protected void dataChanged(IcyBufferedImage image, SequenceEventType type)
     {
-        updater.changed(new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_DATA, image, type, 0));
+        dataChanged(image, type, null);
+    }
+
+    /**
+     * data has changed in the specified region of the image (<code>null</code> = whole image)
+     */
+    protected void dataChanged(IcyBufferedImage image, SequenceEventType type, Rectangle region)
+    {
+        updater.changed(new SequenceEvent(this, SequenceEventSourceType.SEQUENCE_DATA, image, type, 0, region));
     }
 
     @Override
@@ -6244,6 +6769,20 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         }
     }
 
+    private void imageBoundsChanged()
+    {
+        // update sequence channel bounds
+        if (autoUpdateChannelBounds)
+        {
+            // updating sequence ? delay update
+            if (isUpdating())
+                channelBoundsInvalid = true;
+            else
+                // refresh sequence channel bounds from images bounds
+                internalUpdateChannelsBounds();
+        }
+    }
+
     @Override
     public void imageChanged(IcyBufferedImageEvent e)
     {
@@ -6253,15 +6792,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
         {
             case BOUNDS_CHANGED:
                 // update sequence channel bounds
-                if (autoUpdateChannelBounds)
-                {
-                    // updating sequence ? delay update
-                    if (isUpdating())
-                        channelBoundsInvalid = true;
-                    else
-                        // refresh sequence channel bounds from images bounds
-                        internalUpdateChannelsBounds();
-                }
+                imageBoundsChanged();
                 break;
 
             case COLORMAP_CHANGED:
@@ -6270,7 +6801,7 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
 
             case DATA_CHANGED:
                 // image data changed
-                dataChanged(image, SequenceEventType.CHANGED);
+                dataChanged(image, SequenceEventType.CHANGED, e.getRegion());
                 break;
         }
     }
@@ -6278,6 +6809,10 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
     @Override
     public void roiChanged(ROIEvent event)
     {
+        // ROI bounds may have changed --> update index
+        if (event.getType() == ROIEventType.ROI_CHANGED)
+            roiIndex.update(event.getSource());
+
         // notify the ROI has changed
         roiChanged(event.getSource(), SequenceEventType.CHANGED);
     }
@@ -6333,6 +6868,20 @@ public class Sequence implements SequenceModel, IcyColorModelListener, IcyBuffer
                 break;
         }
 
+        // cached statistics are no more valid
+        if (statistics != null)
+            statistics.sequenceChanged(event);
+
+        // cached ROI descriptors results may be obsolete
+        if (isDataVersionChange(event))
+        {
+            final long oldVersion = dataVersion;
+
+            dataVersion = oldVersion + 1;
+            for (ROI roi : getROIs())
+                roi.getDescriptorCache().sequenceChanged(this, event, oldVersion, oldVersion + 1);
+        }
+
         // notify listener we have changed
         fireChangedEvent(event);
     }
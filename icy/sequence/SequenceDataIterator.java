@@ -20,8 +20,10 @@ package icy.sequence;
 
 import icy.image.IcyBufferedImage;
 import icy.image.ImageDataIterator;
+import icy.roi.BooleanMask2D;
 import icy.roi.ROI;
-import icy.type.DataIterator;
+import icy.type.DataSpanIterator;
+import icy.type.DataSpanVisitor;
 import icy.type.DataType;
 import icy.type.rectangle.Rectangle5D;
 import icy.type.rectangle.Rectangle5D.Integer;
@@ -34,20 +36,68 @@ import java.util.NoSuchElementException;
  * This class permit to use simple iterator to read / write <code>Sequence</code> data<br>
  * as double in XYCZT <i>([T[Z[C[Y[X}}]]])</i> dimension order.<br>
  * Whatever is the internal {@link DataType} data is returned and set as double.<br>
+ * Data can also be processed by spans of contiguous values with {@link #forEachSpan(DataSpanVisitor)}
+ * which is much faster for bulk operations and the iterator can be split with {@link #trySplit()} to
+ * process data in parallel.<br>
  * <b>If the sequence size or type is modified during iteration the iterator
  * becomes invalid and can exception can happen.</b>
  * 
  * @author Stephane
  */
-public class SequenceDataIterator implements DataIterator
+public class SequenceDataIterator implements DataSpanIterator
 {
+    /**
+     * minimum number of rows of a band when splitting a single plane
+     */
+    protected static final int MIN_SPLIT_ROWS = 64;
+
+    /**
+     * Last computed ROI plane mask, shared by the bands of a plane so the mask is computed only once when the
+     * plane is split in bands of rows (see {@link SequenceDataIterator#trySplit()}).<br>
+     * The ROI should not be modified during iteration.
+     */
+    protected static class MaskCache
+    {
+        private int z;
+        private int t;
+        private int c;
+        private BooleanMask2D mask;
+
+        public MaskCache()
+        {
+            super();
+
+            mask = null;
+        }
+
+        /**
+         * Returns the 2D mask of the ROI for the specified position (computed only if the position changed).
+         */
+        public synchronized BooleanMask2D getMask(ROI roi, int z, int t, int c, boolean inclusive)
+        {
+            if ((mask == null) || (this.z != z) || (this.t != t) || (this.c != c))
+            {
+                mask = roi.getBooleanMask2D(z, t, c, inclusive);
+                this.z = z;
+                this.t = t;
+                this.c = c;
+            }
+
+            return mask;
+        }
+    }
+
     protected final Sequence sequence;
     protected final ROI roi;
 
     protected final Rectangle XYBounds;
-    protected final int startC, endC;
-    protected final int startZ, endZ;
-    protected final int startT, endT;
+    /**
+     * iterated ranges (can be reduced by {@link #trySplit()})
+     */
+    protected int startY, endY;
+    protected int startC, endC;
+    protected int startZ, endZ;
+    protected int startT, endT;
     protected final boolean inclusive;
 
     /**
@@ -56,6 +106,7 @@ public class SequenceDataIterator implements DataIterator
     protected int c, z, t;
     protected boolean done;
     protected ImageDataIterator imageIterator;
+    protected MaskCache maskCache;
 
     /**
      * Create a new SequenceData iterator to iterate data through the specified 5D region
@@ -73,6 +124,7 @@ public class SequenceDataIterator implements DataIterator
         this.sequence = sequence;
         roi = null;
         imageIterator = null;
+        maskCache = null;
         inclusive = true;
 
         if (sequence != null)
@@ -81,6 +133,8 @@ public class SequenceDataIterator implements DataIterator
 
             XYBounds = (Rectangle) bounds.toRectangle2D();
 
+            startY = XYBounds.y;
+            endY = (XYBounds.y + XYBounds.height) - 1;
             startZ = bounds.z;
             endZ = (bounds.z + bounds.sizeZ) - 1;
             startT = bounds.t;
@@ -91,6 +145,8 @@ public class SequenceDataIterator implements DataIterator
         else
         {
             XYBounds = null;
+            startY = 0;
+            endY = 0;
             startZ = 0;
             endZ = 0;
             startT = 0;
@@ -201,6 +257,7 @@ public class SequenceDataIterator implements DataIterator
         this.roi = roi;
         this.inclusive = inclusive;
         XYBounds = null;
+        maskCache = new MaskCache();
 
         if ((sequence != null) && (roi != null))
         {
@@ -228,6 +285,8 @@ public class SequenceDataIterator implements DataIterator
             // get final bounds
             final Rectangle5D.Integer bounds = (Integer) sequence.getBounds5D().createIntersection(bounds5D);
 
+            startY = bounds.y;
+            endY = (bounds.y + bounds.sizeY) - 1;
             startZ = bounds.z;
             endZ = (bounds.z + bounds.sizeZ) - 1;
             startT = bounds.t;
@@ -237,6 +296,8 @@ public class SequenceDataIterator implements DataIterator
         }
         else
         {
+            startY = 0;
+            endY = 0;
             startZ = 0;
             endZ = 0;
             startT = 0;
@@ -277,10 +338,98 @@ public class SequenceDataIterator implements DataIterator
         this(sequence, roi, false);
     }
 
+    /**
+     * Create a copy of the specified iterator (same region, reset to initial position).
+     */
+    protected SequenceDataIterator(SequenceDataIterator source)
+    {
+        super();
+
+        sequence = source.sequence;
+        roi = source.roi;
+        inclusive = source.inclusive;
+        XYBounds = source.XYBounds;
+        maskCache = (roi != null) ? new MaskCache() : null;
+        startY = source.startY;
+        endY = source.endY;
+        startZ = source.startZ;
+        endZ = source.endZ;
+        startT = source.startT;
+        endT = source.endT;
+        startC = source.startC;
+        endC = source.endC;
+
+        // start iterator
+        reset();
+    }
+
+    /**
+     * Split the iterated region in two parts (following the <code>Spliterator</code> semantic) so they can be
+     * processed in parallel.<br>
+     * The region is split in half along T, then Z, then C and finally in bands of rows when a single plane
+     * remains. The returned iterator covers the first part while this iterator is reduced to the second one
+     * and reset to its initial position.
+     * 
+     * @return an iterator covering the first part of the region or <code>null</code> if the region cannot be
+     *         split anymore
+     */
+    @Override
+    public SequenceDataIterator trySplit()
+    {
+        if (sequence == null)
+            return null;
+
+        final SequenceDataIterator result = new SequenceDataIterator(this);
+
+        if (endT > startT)
+        {
+            result.endT = (startT + endT) >>> 1;
+            startT = result.endT + 1;
+        }
+        else if (endZ > startZ)
+        {
+            result.endZ = (startZ + endZ) >>> 1;
+            startZ = result.endZ + 1;
+        }
+        else if (endC > startC)
+        {
+            result.endC = (startC + endC) >>> 1;
+            startC = result.endC + 1;
+        }
+        else if (((endY - startY) + 1) >= (MIN_SPLIT_ROWS * 2))
+        {
+            result.endY = (startY + endY) >>> 1;
+            startY = result.endY + 1;
+            // same plane --> share the plane mask
+            result.maskCache = maskCache;
+        }
+        else
+            return null;
+
+        result.reset();
+        reset();
+
+        return result;
+    }
+
+    /**
+     * Returns an estimation of the number of elements (upper bound as ROI mask is not considered).
+     */
+    public long estimateSize()
+    {
+        if ((sequence == null) || (startT > endT) || (startZ > endZ) || (startC > endC) || (startY > endY))
+            return 0L;
+
+        final long sizeX = (XYBounds != null) ? XYBounds.width : sequence.getSizeX();
+
+        return sizeX * ((endY - startY) + 1L) * ((endC - startC) + 1L) * ((endZ - startZ) + 1L)
+                * ((endT - startT) + 1L);
+    }
+
     @Override
     public void reset()
     {
-        done = (sequence == null) || (startT > endT) || (startZ > endZ) || (startC > endC);
+        done = (sequence == null) || (startT > endT) || (startZ > endZ) || (startC > endC) || (startY > endY);
 
         if (!done)
         {
@@ -300,34 +449,45 @@ public class SequenceDataIterator implements DataIterator
     protected void prepareDataXY()
     {
         final IcyBufferedImage img = sequence.getImage(t, z);
+        final Rectangle band;
+
+        // restrict to the iterated rows
+        if (XYBounds != null)
+            band = new Rectangle(XYBounds.x, startY, XYBounds.width, (endY - startY) + 1);
+        else
+            band = new Rectangle(0, startY, sequence.getSizeX(), (endY - startY) + 1);
 
-        // get the 2D mask for specified C
+        // get the 2D mask for specified C (whole plane mask, shared by bands of the plane)
         if (roi != null)
         {
+            final BooleanMask2D mask;
+
             switch (roi.getDimension())
             {
                 case 2:
                     // ignore Z, T and C roi informations (wanted for fixed Z, T and C positions)
-                    imageIterator = new ImageDataIterator(img, roi.getBooleanMask2D(-1, -1, -1, inclusive), c);
+                    mask = maskCache.getMask(roi, -1, -1, -1, inclusive);
                     break;
 
                 case 3:
                     // ignore T and C roi informations (wanted for fixed T and C positions)
-                    imageIterator = new ImageDataIterator(img, roi.getBooleanMask2D(z, -t, -1, inclusive), c);
+                    mask = maskCache.getMask(roi, z, -t, -1, inclusive);
                     break;
 
                 case 4:
                     // ignore C roi information (wanted for fixed C position)
-                    imageIterator = new ImageDataIterator(img, roi.getBooleanMask2D(z, t, -1, inclusive), c);
+                    mask = maskCache.getMask(roi, z, t, -1, inclusive);
                     break;
 
                 // assume 5D
                 default:
-                    imageIterator = new ImageDataIterator(img, roi.getBooleanMask2D(z, t, c, inclusive), c);
+                    mask = maskCache.getMask(roi, z, t, c, inclusive);
             }
+
+            imageIterator = new ImageDataIterator(img, band, mask, c);
         }
         else
-            imageIterator = new ImageDataIterator(img, XYBounds, c);
+            imageIterator = new ImageDataIterator(img, band, c);
     }
 
     @Override
@@ -370,6 +530,27 @@ public class SequenceDataIterator implements DataIterator
         return done;
     }
 
+    @Override
+    public void forEachSpan(DataSpanVisitor visitor)
+    {
+        if ((sequence != null) && (startT <= endT) && (startZ <= endZ) && (startC <= endC))
+        {
+            for (t = startT; t <= endT; t++)
+            {
+                for (z = startZ; z <= endZ; z++)
+                {
+                    for (c = startC; c <= endC; c++)
+                    {
+                        prepareDataXY();
+                        imageIterator.forEachSpan(visitor, z, t);
+                    }
+                }
+            }
+        }
+
+        reset();
+    }
+
     @Override
     public double get()
     {
@@ -21,6 +21,12 @@ package icy.sequence;
 import icy.common.CollapsibleEvent;
 import icy.util.StringUtil;
 
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 public class SequenceEvent implements CollapsibleEvent
 {
     public enum SequenceEventSourceType
@@ -42,6 +48,11 @@ public class SequenceEvent implements CollapsibleEvent
     private SequenceEventType type;
     private Object source;
     private int param;
+    private Rectangle region;
+    /**
+     * source objects of a group event (<code>null</code> for single source event)
+     */
+    private List<Object> sources;
 
     public SequenceEvent(Sequence sequence, SequenceEventSourceType sourceType)
     {
@@ -70,6 +81,12 @@ public class SequenceEvent implements CollapsibleEvent
 
     public SequenceEvent(Sequence sequence, SequenceEventSourceType sourceType, Object source, SequenceEventType type,
             int param)
+    {
+        this(sequence, sourceType, source, type, param, null);
+    }
+
+    public SequenceEvent(Sequence sequence, SequenceEventSourceType sourceType, Object source, SequenceEventType type,
+            int param, Rectangle region)
     {
         super();
 
@@ -78,6 +95,27 @@ public class SequenceEvent implements CollapsibleEvent
         this.source = source;
         this.type = type;
         this.param = param;
+        if (region != null)
+            this.region = new Rectangle(region);
+        else
+            this.region = null;
+        sources = null;
+    }
+
+    /**
+     * Creates a group event: several objects (ROI, overlay...) of the same source type were added, removed or
+     * changed at once.<br>
+     * The <code>source</code> of a group event is <code>null</code>, use {@link #getSources()} to retrieve the
+     * source objects.<br>
+     * Group events are only sent as is to {@link SequenceGroupEventListener}, other listeners receive the
+     * single source events returned by {@link #getSingleEvents()}.
+     */
+    public SequenceEvent(Sequence sequence, SequenceEventSourceType sourceType, SequenceEventType type,
+            Collection<?> sources)
+    {
+        this(sequence, sourceType, null, type, -1, null);
+
+        this.sources = new ArrayList<Object>(sources);
     }
 
     /**
@@ -100,9 +138,9 @@ public class SequenceEvent implements CollapsibleEvent
      * <code>SEQUENCE_DATA</code> --> source object is an instance of IcyBufferedImage<br>
      * source object can be null when severals images has been modified<br>
      * <code>SEQUENCE_ROI</code> --> source object is an instance of ROI<br>
-     * source object can be null when severals images has been modified<br>
+     * source object is null for a group event (severals ROI modified at once, see {@link #getSources()})<br>
      * <code>SEQUENCE_OVERLAY</code> --> source object is an instance of Overlay<br>
-     * source object can be null when severals images has been modified<br>
+     * source object is null for a group event (severals overlays modified at once, see {@link #getSources()})<br>
      * <code>SEQUENCE_PAINTER</code> --> source object is an instance of Painter<br>
      * source object can be null when severals images has been modified<br>
      * <br>
@@ -121,6 +159,48 @@ public class SequenceEvent implements CollapsibleEvent
         return source;
     }
 
+    /**
+     * Returns <code>true</code> if this event is a group event (several source objects).
+     * 
+     * @see #getSources()
+     */
+    public boolean isGroupEvent()
+    {
+        return sources != null;
+    }
+
+    /**
+     * Returns all source objects of the event.<br>
+     * For a group event it returns all the source objects, otherwise it returns a single element list containing
+     * {@link #getSource()} (or an empty list if source is <code>null</code>).
+     */
+    public List<Object> getSources()
+    {
+        if (sources != null)
+            return new ArrayList<Object>(sources);
+        if (source != null)
+            return Collections.singletonList(source);
+
+        return new ArrayList<Object>();
+    }
+
+    /**
+     * Returns the event split in single source events (one per source object) for a group event, otherwise
+     * returns a single element list containing this event.
+     */
+    public List<SequenceEvent> getSingleEvents()
+    {
+        if (sources == null)
+            return Collections.singletonList(this);
+
+        final List<SequenceEvent> result = new ArrayList<SequenceEvent>(sources.size());
+
+        for (Object src : sources)
+            result.add(new SequenceEvent(sequence, sourceType, src, type, param));
+
+        return result;
+    }
+
     /**
      * Type define the type of event.<br>
      * <br>
@@ -156,6 +236,19 @@ public class SequenceEvent implements CollapsibleEvent
         return param;
     }
 
+    /**
+     * Changed region (XY image coordinates) of the <code>source</code> image.<br>
+     * Only defined when <code>sourceType</code> is <code>SEQUENCE_DATA</code> and <code>type</code> is
+     * <code>SequenceEventType.CHANGED</code>, it is <code>null</code> if the whole image changed.
+     */
+    public Rectangle getRegion()
+    {
+        if (region == null)
+            return null;
+
+        return new Rectangle(region);
+    }
+
     @Override
     public boolean collapse(CollapsibleEvent event)
     {
@@ -178,6 +271,20 @@ public class SequenceEvent implements CollapsibleEvent
                         type = SequenceEventType.CHANGED;
                     if (e.getSource() != source)
                         source = null;
+                    // merge changed regions (only for the same image)
+                    if ((source != null) && (type == SequenceEventType.CHANGED) && (region != null)
+                            && (e.region != null))
+                        region.add(e.region);
+                    else
+                        region = null;
+                    break;
+
+                case SEQUENCE_PAINTER:
+                case SEQUENCE_OVERLAY:
+                case SEQUENCE_ROI:
+                    // merge group events
+                    if ((sources != null) && (e.sources != null))
+                        sources.addAll(e.sources);
                     break;
 
                 default:
@@ -242,7 +349,8 @@ public class SequenceEvent implements CollapsibleEvent
                     case SEQUENCE_PAINTER:
                     case SEQUENCE_OVERLAY:
                     case SEQUENCE_ROI:
-                        return ((e.getType() == type) && (e.getSource() == source));
+                        return ((e.getType() == type) && (e.getSource() == source)
+                                && (e.isGroupEvent() == isGroupEvent()));
 
                     case SEQUENCE_TYPE:
                         return true;
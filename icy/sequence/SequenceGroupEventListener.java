@@ -0,0 +1,35 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.sequence;
+
+import java.util.EventListener;
+
+/**
+ * Marker interface for {@link SequenceListener} and {@link icy.gui.main.ActiveSequenceListener} which accept
+ * group events (see {@link SequenceEvent#isGroupEvent()}).<br>
+ * A group event is sent when several ROIs or overlays are added, removed or changed at once (see
+ * {@link Sequence#addROIs(java.util.Collection, boolean)}), its source is <code>null</code> and
+ * {@link SequenceEvent#getSources()} returns all the source objects.<br>
+ * Listeners which do not implement this interface receive one single source event per object of the
+ * group instead (as before group events were introduced).
+ */
+public interface SequenceGroupEventListener extends EventListener
+{
+
+}
@@ -28,10 +28,13 @@ import icy.util.StringUtil;
 import icy.util.XMLUtil;
 
 import java.io.File;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 /**
@@ -43,6 +46,7 @@ public class SequencePersistent implements XMLPersistent
     private final static String ID_ROIS = "rois";
     private final static String ID_OVERLAYS = "overlays";
     private final static String ID_LUT = "lut";
+    private final static String ID_DESCRIPTORS = "descriptors";
 
     private final Sequence sequence;
 
@@ -217,6 +221,17 @@ public class SequencePersistent implements XMLPersistent
         final int roiCount = ROI.getROICount(roisNode);
         final List<ROI> rois = ROI.loadROIsFromXML(roisNode);
 
+        // restore cached descriptors results (not depending on pixel data) so they don't need to be computed again
+        final Map<Integer, Node> roiNodes = getROINodes(roisNode);
+
+        for (ROI roi : rois)
+        {
+            final Node roiNode = roiNodes.get(Integer.valueOf(roi.getId()));
+
+            if (roiNode != null)
+                roi.getDescriptorCache().loadFromXML(XMLUtil.getElement(roiNode, ID_DESCRIPTORS), sequence);
+        }
+
         // add to sequence
         for (ROI roi : rois)
             sequence.addROI(roi);
@@ -303,9 +318,33 @@ public class SequencePersistent implements XMLPersistent
 
             // set rois in the XML node
             ROI.saveROIsToXML(nodeROIs, rois);
+
+            // save cached descriptors results along the ROI
+            final Map<Integer, Node> roiNodes = getROINodes(nodeROIs);
+
+            for (ROI roi : rois)
+            {
+                final Node roiNode = roiNodes.get(Integer.valueOf(roi.getId()));
+
+                if (roiNode != null)
+                    roi.getDescriptorCache().saveToXML(XMLUtil.setElement(roiNode, ID_DESCRIPTORS), sequence);
+            }
         }
     }
 
+    /**
+     * Returns ROI nodes by ROI id
+     */
+    private static Map<Integer, Node> getROINodes(Node roisNode)
+    {
+        final Map<Integer, Node> result = new HashMap<Integer, Node>();
+
+        for (Element roiNode : XMLUtil.getElements(roisNode, ROI.ID_ROI))
+            result.put(Integer.valueOf(XMLUtil.getElementIntValue(roiNode, ROI.ID_ID, 0)), roiNode);
+
+        return result;
+    }
+
     private void saveOverlaysToXML(Node node)
     {
         final Node nodeOverlays = XMLUtil.setElement(node, ID_OVERLAYS);
@@ -0,0 +1,558 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ *
+ * This file is part of Icy.
+ *
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.sequence;
+
+import icy.image.IcyBufferedImage;
+import icy.math.Histogram;
+import icy.math.SampledHistogram;
+import icy.sequence.SequenceEvent.SequenceEventType;
+import icy.system.IcyExceptionHandler;
+import icy.system.thread.ParallelTaskRunner;
+import icy.type.DataType;
+import icy.type.collection.array.Array1DUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cached statistics (min, max, sum, sum of square and histogram) of a {@link Sequence}.<br>
+ * Statistics are computed per plane and per channel on first request and kept until data of the plane
+ * change. Sequence wide statistics are merged from the cached planes statistics so the sequence data is
+ * read only once.<br>
+ * Planes histograms are computed in parallel and can be sampled (every Nth plane and row) to bound the
+ * computation time on large sequences.
+ *
+ * @see Sequence#getStatistics()
+ */
+public class SequenceStatistics
+{
+    /**
+     * Statistics of a single channel (of one plane or merged from several planes).
+     */
+    public static class ChannelStatistics
+    {
+        double min;
+        double max;
+        double sum;
+        double sumSquare;
+        long count;
+        /**
+         * cached histogram (plane statistics only)
+         */
+        Histogram histogram;
+
+        ChannelStatistics()
+        {
+            super();
+
+            min = Double.MAX_VALUE;
+            max = -Double.MAX_VALUE;
+            sum = 0d;
+            sumSquare = 0d;
+            count = 0L;
+            histogram = null;
+        }
+
+        /**
+         * Merge the specified statistics in this one.
+         */
+        void add(ChannelStatistics stats)
+        {
+            if (stats.min < min)
+                min = stats.min;
+            if (stats.max > max)
+                max = stats.max;
+            sum += stats.sum;
+            sumSquare += stats.sumSquare;
+            count += stats.count;
+        }
+
+        public double getMin()
+        {
+            return min;
+        }
+
+        public double getMax()
+        {
+            return max;
+        }
+
+        public double getSum()
+        {
+            return sum;
+        }
+
+        public double getSumSquare()
+        {
+            return sumSquare;
+        }
+
+        /**
+         * Returns the number of values
+         */
+        public long getCount()
+        {
+            return count;
+        }
+
+        public double getMean()
+        {
+            if (count == 0L)
+                return 0d;
+
+            return sum / count;
+        }
+
+        /**
+         * Returns the (population) variance
+         */
+        public double getVariance()
+        {
+            if (count == 0L)
+                return 0d;
+
+            final double mean = sum / count;
+
+            return Math.max(0d, (sumSquare / count) - (mean * mean));
+        }
+
+        public double getStandardDeviation()
+        {
+            return Math.sqrt(getVariance());
+        }
+    }
+
+    protected final Sequence sequence;
+    /**
+     * cached plane statistics (key = T,Z position)
+     */
+    protected final HashMap<Long, ChannelStatistics[]> planes;
+    /**
+     * modification counter (avoid to cache statistics computed from modified data)
+     */
+    protected int modCount;
+
+    public SequenceStatistics(Sequence sequence)
+    {
+        super();
+
+        this.sequence = sequence;
+        planes = new HashMap<Long, ChannelStatistics[]>();
+        modCount = 0;
+    }
+
+    private static Long getKey(int t, int z)
+    {
+        return Long.valueOf((((long) t) << 32) | (z & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Returns statistics of the specified plane and channel (computed if not yet cached).<br>
+     * Returns <code>null</code> if the plane does not exist.
+     */
+    public ChannelStatistics getPlaneStatistics(int t, int z, int c)
+    {
+        final Long key = getKey(t, z);
+        final int mod;
+
+        synchronized (planes)
+        {
+            final ChannelStatistics[] stats = planes.get(key);
+
+            if ((stats != null) && (c < stats.length))
+                return stats[c];
+
+            mod = modCount;
+        }
+
+        final IcyBufferedImage image = sequence.getImage(t, z);
+
+        if ((image == null) || (c < 0) || (c >= image.getSizeC()))
+            return null;
+
+        final int sizeC = image.getSizeC();
+        final ChannelStatistics[] stats = new ChannelStatistics[sizeC];
+
+        for (int ch = 0; ch < sizeC; ch++)
+            stats[ch] = computeStatistics(image, ch);
+
+        synchronized (planes)
+        {
+            // data did not change in the meantime --> cache result
+            if (mod == modCount)
+                planes.put(key, stats);
+        }
+
+        return stats[c];
+    }
+
+    /**
+     * Returns statistics of the specified position, -1 for <code>t</code>, <code>z</code> or <code>c</code>
+     * means all positions (statistics are then merged from planes statistics).
+     */
+    public ChannelStatistics getStatistics(int t, int z, int c)
+    {
+        final ChannelStatistics result = new ChannelStatistics();
+        final int startT = (t == -1) ? 0 : t;
+        final int endT = (t == -1) ? sequence.getSizeT() - 1 : t;
+        final int startZ = (z == -1) ? 0 : z;
+        final int endZ = (z == -1) ? sequence.getSizeZ() - 1 : z;
+        final int startC = (c == -1) ? 0 : c;
+        final int endC = (c == -1) ? sequence.getSizeC() - 1 : c;
+
+        for (int tt = startT; tt <= endT; tt++)
+        {
+            for (int zz = startZ; zz <= endZ; zz++)
+            {
+                for (int cc = startC; cc <= endC; cc++)
+                {
+                    final ChannelStatistics stats = getPlaneStatistics(tt, zz, cc);
+
+                    if (stats != null)
+                        result.add(stats);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the histogram of the specified plane and channel (computed if not yet cached).<br>
+     * The returned histogram has the same range and bins as the <code>template</code> histogram and
+     * should not be modified.<br>
+     * Returns <code>null</code> if the plane does not exist.
+     */
+    public Histogram getPlaneHistogram(int t, int z, int c, Histogram template)
+    {
+        final ChannelStatistics stats = getPlaneStatistics(t, z, c);
+
+        if (stats == null)
+            return null;
+
+        final int mod;
+
+        synchronized (planes)
+        {
+            final Histogram histo = stats.histogram;
+
+            if ((histo != null) && histo.isCompatible(template))
+                return histo;
+
+            mod = modCount;
+        }
+
+        final IcyBufferedImage image = sequence.getImage(t, z);
+
+        if (image == null)
+            return null;
+
+        final Histogram result = new Histogram(template);
+        final DataType dataType = image.getDataType_();
+        final Object data = image.getDataXY(c);
+
+        result.reset();
+
+        // all values are in histogram range --> fast path
+        if ((stats.min >= result.getMinValue()) && (stats.max <= result.getMaxValue()))
+            result.addValues(data, dataType.isSigned());
+        else
+        {
+            final int len = image.getSizeX() * image.getSizeY();
+
+            for (int i = 0; i < len; i++)
+                result.addValue(Array1DUtil.getValue(data, i, dataType));
+        }
+
+        synchronized (planes)
+        {
+            // data did not change in the meantime --> cache result
+            if (mod == modCount)
+                stats.histogram = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the histogram of the specified position, -1 for <code>t</code> or <code>z</code> means all
+     * positions (histogram is then merged from planes histograms computed in parallel).<br>
+     * The returned histogram has the same range and bins as the <code>template</code> histogram.
+     */
+    public Histogram getHistogram(int t, int z, final int c, final Histogram template)
+    {
+        final List<Callable<Histogram>> tasks = new ArrayList<Callable<Histogram>>();
+
+        for (final int[] pos : getPlanePositions(t, z))
+        {
+            tasks.add(new Callable<Histogram>()
+            {
+                @Override
+                public Histogram call() throws Exception
+                {
+                    return getPlaneHistogram(pos[0], pos[1], c, template);
+                }
+            });
+        }
+
+        return merge(tasks, template);
+    }
+
+    /**
+     * Returns the histogram of the specified position, -1 for <code>t</code> or <code>z</code> means all
+     * positions.<br>
+     * When the number of values exceeds <code>maxSamples</code>, only every Nth plane and row are used
+     * (stratified sampling) so the computation time does not depend on the sequence size, the sampling
+     * error can be retrieved with {@link SampledHistogram#getErrorBound()}.<br>
+     * The returned histogram has the same range and bins as the <code>template</code> histogram.
+     */
+    public SampledHistogram getSampledHistogram(int t, int z, final int c, final Histogram template,
+            long maxSamples)
+    {
+        final List<int[]> positions = getPlanePositions(t, z);
+        final int sizeX = sequence.getSizeX();
+        final int sizeY = sequence.getSizeY();
+        final long planeSize = (long) sizeX * (long) sizeY;
+        final long total = positions.size() * planeSize;
+
+        // no need to sample
+        if ((total <= maxSamples) || (planeSize == 0L))
+            return new SampledHistogram(getHistogram(t, z, c, template), total, total);
+
+        final long ratio = (total + maxSamples - 1) / Math.max(1L, maxSamples);
+        // distribute sampling between planes and rows
+        int rowStep = (int) Math.min(sizeY, Math.max(1L, (long) Math.ceil(Math.sqrt(ratio))));
+        final int planeStep = (int) Math.min(positions.size(), Math.max(1L, (ratio + rowStep - 1) / rowStep));
+        rowStep = (int) Math.min(sizeY, Math.max(1L, (ratio + planeStep - 1) / planeStep));
+
+        final int step = rowStep;
+        final int rowOffset = rowStep / 2;
+        final List<Callable<Histogram>> tasks = new ArrayList<Callable<Histogram>>();
+        long samples = 0L;
+
+        // take the middle plane of each stratum
+        for (int i = planeStep / 2; i < positions.size(); i += planeStep)
+        {
+            final int[] pos = positions.get(i);
+
+            tasks.add(new Callable<Histogram>()
+            {
+                @Override
+                public Histogram call() throws Exception
+                {
+                    // all rows --> use the (cached) plane histogram
+                    if (step == 1)
+                        return getPlaneHistogram(pos[0], pos[1], c, template);
+
+                    return computeSampledHistogram(pos[0], pos[1], c, template, rowOffset, step);
+                }
+            });
+
+            samples += ((sizeY - rowOffset + step - 1) / step) * (long) sizeX;
+        }
+
+        return new SampledHistogram(merge(tasks, template), samples, total);
+    }
+
+    /**
+     * Returns planes (T,Z) positions, -1 for <code>t</code> or <code>z</code> means all positions.
+     */
+    protected List<int[]> getPlanePositions(int t, int z)
+    {
+        final List<int[]> result = new ArrayList<int[]>();
+        final int startT = (t == -1) ? 0 : t;
+        final int endT = (t == -1) ? sequence.getSizeT() - 1 : t;
+        final int startZ = (z == -1) ? 0 : z;
+        final int endZ = (z == -1) ? sequence.getSizeZ() - 1 : z;
+
+        for (int tt = startT; tt <= endT; tt++)
+            for (int zz = startZ; zz <= endZ; zz++)
+                result.add(new int[] {tt, zz});
+
+        return result;
+    }
+
+    /**
+     * Compute the histogram of every <code>rowStep</code> rows (starting at <code>rowOffset</code>) of the
+     * specified plane and channel (result is not cached).
+     */
+    protected Histogram computeSampledHistogram(int t, int z, int c, Histogram template, int rowOffset,
+            int rowStep)
+    {
+        final IcyBufferedImage image = sequence.getImage(t, z);
+
+        if ((image == null) || (c < 0) || (c >= image.getSizeC()))
+            return null;
+
+        final Histogram result = new Histogram(template);
+        final Object data = image.getDataXY(c);
+        final boolean signed = image.getDataType_().isSigned();
+        final int sizeX = image.getSizeX();
+        final int sizeY = image.getSizeY();
+
+        result.reset();
+
+        for (int y = rowOffset; y < sizeY; y += rowStep)
+            result.addValues(data, y * sizeX, sizeX, signed);
+
+        return result;
+    }
+
+    /**
+     * Execute the partial histogram tasks in parallel and merge their results in a new histogram.
+     */
+    protected static Histogram merge(List<Callable<Histogram>> tasks, Histogram template)
+    {
+        final Histogram result = new Histogram(template);
+
+        result.reset();
+
+        try
+        {
+            // single plane is computed directly by the calling thread
+            for (Histogram histo : ParallelTaskRunner.invokeAll(tasks))
+                if (histo != null)
+                    result.add(histo);
+        }
+        catch (ExecutionException e)
+        {
+            System.err.println("SequenceStatistics: cannot compute histogram");
+            IcyExceptionHandler.showErrorMessage(e.getCause(), false, true);
+        }
+
+        return result;
+    }
+
+    /**
+     * Clear all cached statistics.
+     */
+    public void clear()
+    {
+        synchronized (planes)
+        {
+            planes.clear();
+            modCount++;
+        }
+    }
+
+    /**
+     * Clear cached statistics of the specified plane.
+     */
+    public void invalidate(int t, int z)
+    {
+        synchronized (planes)
+        {
+            planes.remove(getKey(t, z));
+            modCount++;
+        }
+    }
+
+    /**
+     * Clear cached statistics of the specified image (all statistics are cleared if the image is not found).
+     */
+    public void invalidate(IcyBufferedImage image)
+    {
+        for (Entry<Integer, VolumetricImage> entry : sequence.getVolumetricImages().entrySet())
+        {
+            final int z = entry.getValue().indexOf(image);
+
+            if (z != -1)
+            {
+                invalidate(entry.getKey().intValue(), z);
+                return;
+            }
+        }
+
+        clear();
+    }
+
+    /**
+     * Called by the sequence when its data or type changed.
+     */
+    void sequenceChanged(SequenceEvent event)
+    {
+        switch (event.getSourceType())
+        {
+            case SEQUENCE_DATA:
+                final Object source = event.getSource();
+
+                // changed (or added) image --> clear its statistics
+                if ((source instanceof IcyBufferedImage) && (event.getType() != SequenceEventType.REMOVED))
+                    invalidate((IcyBufferedImage) source);
+                else
+                    clear();
+                break;
+
+            case SEQUENCE_TYPE:
+                clear();
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Compute statistics of the specified image channel
+     */
+    protected static ChannelStatistics computeStatistics(IcyBufferedImage image, int c)
+    {
+        final ChannelStatistics result = new ChannelStatistics();
+        final Object data = image.getDataXY(c);
+        final boolean signed = image.getDataType_().isSigned();
+        final int len = image.getSizeX() * image.getSizeY();
+        final double[] buffer = new double[Math.min(len, 4096)];
+
+        double min = result.min;
+        double max = result.max;
+        double sum = 0d;
+        double sumSquare = 0d;
+
+        for (int off = 0; off < len; off += buffer.length)
+        {
+            final int size = Math.min(buffer.length, len - off);
+
+            Array1DUtil.arrayToDoubleArray(data, off, buffer, 0, size, signed);
+
+            for (int i = 0; i < size; i++)
+            {
+                final double value = buffer[i];
+
+                if (value < min)
+                    min = value;
+                if (value > max)
+                    max = value;
+                sum += value;
+                sumSquare += value * value;
+            }
+        }
+
+        result.min = min;
+        result.max = max;
+        result.sum = sum;
+        result.sumSquare = sumSquare;
+        result.count = len;
+
+        return result;
+    }
+}
@@ -19,8 +19,13 @@
 package icy.sequence;
 
 import icy.image.IcyBufferedImage;
+import icy.sequence.PlaneCache.StoredPlane;
+import icy.system.IcyExceptionHandler;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
@@ -31,11 +36,16 @@ public class VolumetricImage
 {
     protected final Sequence sequence;
     protected final TreeMap<Integer, IcyBufferedImage> images;
+    /**
+     * images released from the heap by the sequence {@link PlaneCache}
+     */
+    protected final TreeMap<Integer, StoredPlane> storedImages;
 
     public VolumetricImage(Sequence seq)
     {
         sequence = seq;
         images = new TreeMap<Integer, IcyBufferedImage>();
+        storedImages = new TreeMap<Integer, StoredPlane>();
     }
 
     public VolumetricImage()
@@ -43,6 +53,17 @@ public class VolumetricImage
         this(null);
     }
 
+    /**
+     * Returns the {@link PlaneCache} of the parent sequence (can be <code>null</code>)
+     */
+    protected PlaneCache getPlaneCache()
+    {
+        if (sequence != null)
+            return sequence.getPlaneCache();
+
+        return null;
+    }
+
     /**
      * Return number of loaded image
      */
@@ -55,6 +76,8 @@ public class VolumetricImage
             for (Entry<Integer, IcyBufferedImage> entry : images.entrySet())
                 if (entry.getValue() != null)
                     result++;
+
+            result += storedImages.size();
         }
 
         return result;
@@ -67,10 +90,14 @@ public class VolumetricImage
     {
         synchronized (images)
         {
-            if (images.isEmpty())
-                return 0;
+            int result = 0;
+
+            if (!images.isEmpty())
+                result = images.lastKey().intValue() + 1;
+            if (!storedImages.isEmpty())
+                result = Math.max(result, storedImages.lastKey().intValue() + 1);
 
-            return images.lastKey().intValue() + 1;
+            return result;
         }
     }
 
@@ -87,30 +114,41 @@ public class VolumetricImage
      */
     public IcyBufferedImage getFirstImage()
     {
-        final Entry<Integer, IcyBufferedImage> entry;
+        final Integer key;
 
         synchronized (images)
         {
-            entry = images.firstEntry();
+            key = getFirstKey(images.isEmpty() ? null : images.firstKey(),
+                    storedImages.isEmpty() ? null : storedImages.firstKey());
         }
 
-        if (entry != null)
-            return entry.getValue();
+        if (key != null)
+            return getImage(key.intValue());
 
         return null;
     }
 
     public IcyBufferedImage getFirstNonNullImage()
     {
+        Integer key = null;
+
         synchronized (images)
         {
-            for (IcyBufferedImage img : images.values())
+            for (Entry<Integer, IcyBufferedImage> entry : images.entrySet())
             {
-                if (img != null)
-                    return img;
+                if (entry.getValue() != null)
+                {
+                    key = entry.getKey();
+                    break;
+                }
             }
+
+            key = getFirstKey(key, storedImages.isEmpty() ? null : storedImages.firstKey());
         }
 
+        if (key != null)
+            return getImage(key.intValue());
+
         return null;
     }
 
@@ -119,28 +157,222 @@ public class VolumetricImage
      */
     public IcyBufferedImage getLastImage()
     {
-        final Entry<Integer, IcyBufferedImage> entry;
+        final Integer key;
 
         synchronized (images)
         {
-            entry = images.lastEntry();
+            key = getLastKey(images.isEmpty() ? null : images.lastKey(),
+                    storedImages.isEmpty() ? null : storedImages.lastKey());
         }
 
-        if (entry != null)
-            return entry.getValue();
+        if (key != null)
+            return getImage(key.intValue());
 
         return null;
     }
 
+    private static Integer getFirstKey(Integer key1, Integer key2)
+    {
+        if (key1 == null)
+            return key2;
+        if (key2 == null)
+            return key1;
+
+        return (key1.intValue() <= key2.intValue()) ? key1 : key2;
+    }
+
+    private static Integer getLastKey(Integer key1, Integer key2)
+    {
+        if (key1 == null)
+            return key2;
+        if (key2 == null)
+            return key1;
+
+        return (key1.intValue() >= key2.intValue()) ? key1 : key2;
+    }
+
     /**
      * Return image at position z
      */
     public IcyBufferedImage getImage(int z)
     {
+        final Integer key = Integer.valueOf(z);
+        StoredPlane stored;
+        IcyBufferedImage result;
+
+        synchronized (images)
+        {
+            result = images.get(key);
+            stored = (result == null) ? storedImages.get(key) : null;
+        }
+
+        // image released from memory ? --> reload it
+        if (stored != null)
+        {
+            // read data outside the lock as it can take sometime
+            final IcyBufferedImage alive = stored.getAliveImage();
+            final IcyBufferedImage loaded = (alive != null) ? alive : readImage(stored);
+
+            synchronized (images)
+            {
+                result = images.get(key);
+
+                // not reloaded nor removed in the meantime ?
+                if ((result == null) && (loaded != null) && (storedImages.get(key) == stored))
+                {
+                    storedImages.remove(key);
+                    images.put(key, loaded);
+                    // attach image to sequence again
+                    if (sequence != null)
+                        sequence.onImageLoaded(loaded, alive == null);
+
+                    result = loaded;
+                }
+                else
+                    stored = null;
+            }
+        }
+
+        if (result != null)
+        {
+            final PlaneCache cache = getPlaneCache();
+
+            if (cache != null)
+                cache.planeAccessed(this, z, result, stored);
+            // no more plane cache --> stored copy not anymore needed
+            else if (stored != null)
+                stored.release();
+
+            // image bounds were unknown until now (virtual stack) --> update sequence bounds
+            if ((stored != null) && (stored.getChannelsBounds() == null) && (sequence != null))
+                sequence.onImageFirstLoaded(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Read image data from its stored state (returns <code>null</code> on error)
+     */
+    private static IcyBufferedImage readImage(StoredPlane stored)
+    {
+        try
+        {
+            return stored.cache.load(stored);
+        }
+        catch (IOException e)
+        {
+            System.err.println("VolumetricImage: cannot reload image from "
+                    + ((stored.getFile() != null) ? stored.getFile() : stored));
+            IcyExceptionHandler.showErrorMessage(e, false, true);
+
+            return null;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the image at position z is released from memory (it will be loaded on
+     * next access).
+     */
+    public boolean isStored(int z)
+    {
+        synchronized (images)
+        {
+            return storedImages.containsKey(Integer.valueOf(z));
+        }
+    }
+
+    /**
+     * Set a stored image at the specified position, the image will be loaded on first access.<br>
+     * Used by {@link ImageProviderPlaneCache} to build virtual stack.
+     */
+    void setStoredImage(int z, StoredPlane stored)
+    {
+        final Integer key = Integer.valueOf(z);
+        final IcyBufferedImage oldImg;
+        final StoredPlane oldStored;
+
         synchronized (images)
         {
-            return images.get(Integer.valueOf(z));
+            oldImg = images.remove(key);
+            oldStored = storedImages.put(key, stored);
         }
+
+        if (oldStored != null)
+            oldStored.release();
+        if (oldImg != null)
+            imageRemoved(oldImg);
+    }
+
+    /**
+     * Discard images released from memory to a scratch file (scratch files are deleted).<br>
+     * Images which can be read again from their source (virtual stack) are kept.<br>
+     * Used when the sequence is closed.
+     */
+    void releaseScratchImages()
+    {
+        final List<StoredPlane> released = new ArrayList<StoredPlane>();
+
+        synchronized (images)
+        {
+            final Iterator<StoredPlane> it = storedImages.values().iterator();
+
+            while (it.hasNext())
+            {
+                final StoredPlane stored = it.next();
+
+                if (stored.getFile() != null)
+                {
+                    it.remove();
+                    released.add(stored);
+                }
+            }
+        }
+
+        for (StoredPlane stored : released)
+            stored.release();
+    }
+
+    /**
+     * Release the specified image from memory, it will be reloaded from its stored state on next access.<br>
+     * Used by {@link PlaneCache}.
+     * 
+     * @return <code>false</code> if the image is not anymore present at position z
+     */
+    boolean swapOut(int z, IcyBufferedImage image, StoredPlane stored)
+    {
+        final Integer key = Integer.valueOf(z);
+
+        synchronized (images)
+        {
+            // image replaced or removed in the meantime ?
+            if (images.get(key) != image)
+                return false;
+
+            images.remove(key);
+            storedImages.put(key, stored);
+
+            // detach image from sequence so it can be garbage collected
+            if (sequence != null)
+                sequence.onImageUnloaded(image);
+        }
+
+        return true;
+    }
+
+    /**
+     * Do common job on image removal
+     */
+    private void imageRemoved(IcyBufferedImage image)
+    {
+        final PlaneCache cache = getPlaneCache();
+
+        if (cache != null)
+            cache.planeRemoved(image);
+
+        // raise event on sequence
+        if (sequence != null)
+            sequence.onImageRemoved(image);
     }
 
     /**
@@ -158,9 +390,20 @@ public class VolumetricImage
                 while (!images.isEmpty())
                 {
                     final IcyBufferedImage image = images.pollFirstEntry().getValue();
-                    // raise event on sequence
-                    if ((image != null) && (sequence != null))
-                        sequence.onImageRemoved(image);
+
+                    if (image != null)
+                        imageRemoved(image);
+                }
+
+                while (!storedImages.isEmpty())
+                {
+                    final StoredPlane stored = storedImages.pollFirstEntry().getValue();
+
+                    // raise event on sequence (image is not reloaded just for that)
+                    if (sequence != null)
+                        sequence.onStoredImageRemoved(stored);
+
+                    stored.release();
                 }
             }
         }
@@ -176,18 +419,29 @@ public class VolumetricImage
      */
     public boolean removeImage(int z)
     {
+        final Integer key = Integer.valueOf(z);
         final IcyBufferedImage image;
+        final StoredPlane stored;
 
         synchronized (images)
         {
-            image = images.remove(Integer.valueOf(z));
+            image = images.remove(key);
+            stored = storedImages.remove(key);
         }
 
-        // raise event on sequence
-        if ((image != null) && (sequence != null))
-            sequence.onImageRemoved(image);
+        if (image != null)
+            imageRemoved(image);
+
+        if (stored != null)
+        {
+            // raise event on sequence (image is not reloaded just for that)
+            if (sequence != null)
+                sequence.onStoredImageRemoved(stored);
 
-        return image != null;
+            stored.release();
+        }
+
+        return (image != null) || (stored != null);
     }
 
     /**
@@ -197,16 +451,27 @@ public class VolumetricImage
      */
     public void setImage(int z, IcyBufferedImage image)
     {
-        final IcyBufferedImage oldImg = getImage(z);
+        final Integer key = Integer.valueOf(z);
+        final PlaneCache cache = getPlaneCache();
+        final IcyBufferedImage oldImg;
+        final StoredPlane oldStored;
 
         if (sequence != null)
             sequence.beginUpdate();
         try
         {
-            // set the new image
+            // set the new image (a released previous image is not reloaded just to be replaced)
             synchronized (images)
             {
-                images.put(Integer.valueOf(z), image);
+                oldImg = images.put(key, image);
+                oldStored = storedImages.remove(key);
+            }
+
+            if (cache != null)
+            {
+                if ((oldImg != null) && (oldImg != image))
+                    cache.planeRemoved(oldImg);
+                cache.planeAccessed(this, z, image, null);
             }
 
             // raise event on sequence
@@ -215,9 +480,15 @@ public class VolumetricImage
                 // we are replacing a previous image ?
                 if (oldImg != null)
                     sequence.onImageReplaced(oldImg, image);
+                else if (oldStored != null)
+                    sequence.onStoredImageReplaced(oldStored, image);
                 else
                     sequence.onImageAdded(image);
             }
+
+            // stored copy not anymore needed
+            if (oldStored != null)
+                oldStored.release();
         }
         finally
         {
@@ -227,20 +498,48 @@ public class VolumetricImage
     }
 
     /**
-     * Return all images of volume image as TreeMap (contains z position)
+     * Return all images of volume image as TreeMap (contains z position).<br>
+     * Images released from memory by the {@link PlaneCache} are reloaded so the memory budget of the cache
+     * cannot be respected as long as the returned images are referenced: prefer {@link #getImage(int)} to
+     * process planes one by one or {@link #getLoadedImages()} if only in memory images are needed.
      */
     public TreeMap<Integer, IcyBufferedImage> getImages()
     {
+        final TreeMap<Integer, IcyBufferedImage> result;
+        final ArrayList<Integer> storedKeys;
+
         synchronized (images)
         {
-            return new TreeMap<Integer, IcyBufferedImage>(images);
+            result = new TreeMap<Integer, IcyBufferedImage>(images);
+            storedKeys = new ArrayList<Integer>(storedImages.keySet());
+        }
+
+        // reload released images
+        for (Integer key : storedKeys)
+        {
+            final IcyBufferedImage image = getImage(key.intValue());
+
+            if (image != null)
+                result.put(key, image);
         }
+
+        return result;
     }
 
     /**
-     * Return all images of volume image
+     * Return all images of volume image.<br>
+     * Images released from memory by the {@link PlaneCache} are reloaded (see {@link #getImages()}).
      */
     public ArrayList<IcyBufferedImage> getAllImage()
+    {
+        return new ArrayList<IcyBufferedImage>(getImages().values());
+    }
+
+    /**
+     * Return all images of volume image which are currently in memory (images released from memory by the
+     * {@link PlaneCache} are not reloaded).
+     */
+    public ArrayList<IcyBufferedImage> getLoadedImages()
     {
         synchronized (images)
         {
@@ -248,6 +547,70 @@ public class VolumetricImage
         }
     }
 
+    /**
+     * Returns channels type bounds (if <code>type</code> is <code>true</code>) or channels bounds of all
+     * images.<br>
+     * Images released from memory are not reloaded: their last known bounds are used (images which have
+     * never been loaded are ignored).
+     */
+    List<double[][]> getAllChannelsBounds(boolean type)
+    {
+        final List<double[][]> result = new ArrayList<double[][]>();
+
+        synchronized (images)
+        {
+            for (IcyBufferedImage image : images.values())
+                if (image != null)
+                    result.add(type ? image.getChannelsTypeBounds() : image.getChannelsBounds());
+
+            for (StoredPlane stored : storedImages.values())
+            {
+                final double[][] bounds = type ? stored.getChannelsTypeBounds() : stored.getChannelsBounds();
+
+                if (bounds != null)
+                    result.add(bounds);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the Z position of the specified image if it is currently in memory, -1 otherwise.
+     */
+    int indexOf(IcyBufferedImage image)
+    {
+        synchronized (images)
+        {
+            for (Entry<Integer, IcyBufferedImage> entry : images.entrySet())
+                if (entry.getValue() == image)
+                    return entry.getKey().intValue();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Register all in memory images in the specified {@link PlaneCache}
+     */
+    void registerImages(PlaneCache cache)
+    {
+        final TreeMap<Integer, IcyBufferedImage> inMemoryImages;
+
+        synchronized (images)
+        {
+            inMemoryImages = new TreeMap<Integer, IcyBufferedImage>(images);
+        }
+
+        for (Entry<Integer, IcyBufferedImage> entry : inMemoryImages.entrySet())
+        {
+            final IcyBufferedImage image = entry.getValue();
+
+            if (image != null)
+                cache.planeAccessed(this, entry.getKey().intValue(), image, null);
+        }
+    }
+
     /**
      * Remove empty element of image list
      */
@@ -21,11 +21,13 @@ package icy.sequence;
 import icy.common.listener.weak.WeakListener;
 
 /**
- * Weak listener wrapper for SequenceListener interface
+ * Weak listener wrapper for SequenceListener interface.<br>
+ * Group events are forwarded as is only if the wrapped listener is a {@link SequenceGroupEventListener}.
  * 
  * @author Stephane
  */
-public class WeakSequenceListener extends WeakListener<SequenceListener> implements SequenceListener
+public class WeakSequenceListener extends WeakListener<SequenceListener> implements SequenceListener,
+        SequenceGroupEventListener
 {
     public WeakSequenceListener(SequenceListener listener)
     {
@@ -45,7 +47,7 @@ public class WeakSequenceListener extends WeakListener<SequenceListener> impleme
         final SequenceListener listener = getListener(event.getSequence());
 
         if (listener != null)
-            listener.sequenceChanged(event);
+            Sequence.sendChangedEvent(listener, event);
     }
 
     @Override
@@ -32,16 +32,7 @@ public class ROIAddsSequenceEdit extends AbstractROIsSequenceEdit
 
         final Sequence sequence = getSequence();
 
-        sequence.beginUpdate();
-        try
-        {
-            for (ROI roi : getROIs())
-                sequence.removeROI(roi, false);
-        }
-        finally
-        {
-            sequence.endUpdate();
-        }
+        sequence.removeROIs(getROIs(), false);
     }
 
     @Override
@@ -51,15 +42,6 @@ public class ROIAddsSequenceEdit extends AbstractROIsSequenceEdit
 
         final Sequence sequence = getSequence();
 
-        sequence.beginUpdate();
-        try
-        {
-            for (ROI roi : getROIs())
-                sequence.addROI(roi, false);
-        }
-        finally
-        {
-            sequence.endUpdate();
-        }
+        sequence.addROIs(getROIs(), false);
     }
 }
@@ -27,16 +27,7 @@ public class ROIRemovesSequenceEdit extends AbstractROIsSequenceEdit
 
         final Sequence sequence = getSequence();
 
-        sequence.beginUpdate();
-        try
-        {
-            for (ROI roi : getROIs())
-                sequence.addROI(roi, false);
-        }
-        finally
-        {
-            sequence.endUpdate();
-        }
+        sequence.addROIs(getROIs(), false);
     }
 
     @Override
@@ -46,16 +37,7 @@ public class ROIRemovesSequenceEdit extends AbstractROIsSequenceEdit
 
         final Sequence sequence = getSequence();
 
-        sequence.beginUpdate();
-        try
-        {
-            for (ROI roi : getROIs())
-                sequence.removeROI(roi, false);
-        }
-        finally
-        {
-            sequence.endUpdate();
-        }
+        sequence.removeROIs(getROIs(), false);
     }
 
 }
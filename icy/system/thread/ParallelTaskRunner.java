@@ -0,0 +1,240 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.system.thread;
+
+import icy.system.SystemUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs batches of independent computation tasks (array math, data reductions, ROI masks...) on a
+ * single shared processor sized to the number of CPU.<br>
+ * The calling thread always takes part in the processing: tasks are claimed one by one by the
+ * calling thread and the processor threads so nested batches (a task starting itself a parallel
+ * batch) never dead lock and the total number of computing threads stays bounded whatever the
+ * number of callers.<br>
+ * A batch only returns when all its tasks are done, tasks of a failing batch which are not yet
+ * started are skipped.
+ */
+public class ParallelTaskRunner
+{
+    /**
+     * Task identified by its index in the batch
+     */
+    public static interface IndexedTask
+    {
+        public void run(int index) throws Exception;
+    }
+
+    /**
+     * Shared processor (the calling thread is the last worker)
+     */
+    private static Processor processor = null;
+
+    /**
+     * Returns the shared processor used to run parallel batches.
+     */
+    public static synchronized Processor getProcessor()
+    {
+        if (processor == null)
+        {
+            processor = new Processor(-1, getParallelism() - 1);
+            processor.setThreadName("Parallel task runner");
+            processor.setPriority(Processor.NORM_PRIORITY - 1);
+        }
+
+        return processor;
+    }
+
+    /**
+     * Returns the maximum number of threads (calling thread included) processing a batch.
+     */
+    public static int getParallelism()
+    {
+        return Math.max(2, SystemUtil.getNumberOfCPUs());
+    }
+
+    /**
+     * Run <code>task</code> for all indexes in <code>[0, numTask[</code> using the calling thread
+     * and the shared processor threads.
+     * 
+     * @throws ExecutionException
+     *         if a task failed (first failure is the cause)
+     */
+    public static void execute(final int numTask, final IndexedTask task) throws ExecutionException
+    {
+        if (numTask <= 0)
+            return;
+
+        if (numTask == 1)
+        {
+            try
+            {
+                task.run(0);
+            }
+            catch (Throwable t)
+            {
+                throw new ExecutionException(t);
+            }
+
+            return;
+        }
+
+        final AtomicInteger nextTask = new AtomicInteger(0);
+        // counted down once per task (processed or skipped), whatever the thread which claimed it
+        final CountDownLatch remaining = new CountDownLatch(numTask);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Runnable worker = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                int index;
+
+                while ((index = nextTask.getAndIncrement()) < numTask)
+                {
+                    try
+                    {
+                        // skip remaining tasks on failure
+                        if (failure.get() == null)
+                            task.run(index);
+                    }
+                    catch (Throwable t)
+                    {
+                        failure.compareAndSet(null, t);
+                    }
+                    finally
+                    {
+                        remaining.countDown();
+                    }
+                }
+            }
+        };
+
+        final Processor proc = getProcessor();
+        final int numHelper = Math.min(numTask, getParallelism()) - 1;
+        final List<Future<?>> futures = new ArrayList<Future<?>>(numHelper);
+
+        for (int i = 0; i < numHelper; i++)
+            futures.add(proc.submit(worker));
+
+        // calling thread process tasks too (until all tasks are claimed)
+        worker.run();
+
+        // helpers not yet started (pool can be busy) are not needed anymore
+        for (Future<?> future : futures)
+            future.cancel(false);
+
+        // wait for tasks still processed by helpers (cancel does not stop a running helper)
+        boolean interrupted = false;
+
+        while (true)
+        {
+            try
+            {
+                remaining.await();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        // preserve interrupted state
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (failure.get() != null)
+            throw new ExecutionException(failure.get());
+    }
+
+    /**
+     * Same as {@link #execute(int, IndexedTask)} except that the first {@link RuntimeException} or
+     * {@link Error} thrown by a task is rethrown as is (other exceptions are wrapped in a
+     * {@link RuntimeException}).
+     */
+    public static void runAll(int numTask, IndexedTask task)
+    {
+        try
+        {
+            execute(numTask, task);
+        }
+        catch (ExecutionException e)
+        {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Run all the specified tasks using the calling thread and the shared processor threads.<br>
+     * The first {@link RuntimeException} or {@link Error} thrown by a task is rethrown as is.
+     */
+    public static void runAll(final List<? extends Runnable> tasks)
+    {
+        runAll(tasks.size(), new IndexedTask()
+        {
+            @Override
+            public void run(int index)
+            {
+                tasks.get(index).run();
+            }
+        });
+    }
+
+    /**
+     * Execute all the specified tasks using the calling thread and the shared processor threads and
+     * returns their results (in tasks order).
+     * 
+     * @throws ExecutionException
+     *         if a task failed (first failure is the cause)
+     */
+    public static <T> List<T> invokeAll(final List<? extends Callable<T>> tasks) throws ExecutionException
+    {
+        final Object[] results = new Object[tasks.size()];
+
+        execute(tasks.size(), new IndexedTask()
+        {
+            @Override
+            public void run(int index) throws Exception
+            {
+                results[index] = tasks.get(index).call();
+            }
+        });
+
+        @SuppressWarnings("unchecked")
+        final List<T> result = (List<T>) Arrays.asList(results);
+
+        return result;
+    }
+}
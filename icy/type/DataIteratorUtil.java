@@ -10,11 +10,64 @@ package icy.type;
  */
 public class DataIteratorUtil
 {
+    /**
+     * Counts values by spans (no need to iterate each value).
+     */
+    private static class SpanCounter implements DataSpanVisitor
+    {
+        long count = 0L;
+
+        @Override
+        public void visitByte(byte[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+        {
+            count += length;
+        }
+
+        @Override
+        public void visitShort(short[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+        {
+            count += length;
+        }
+
+        @Override
+        public void visitInt(int[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+        {
+            count += length;
+        }
+
+        @Override
+        public void visitLong(long[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c)
+        {
+            count += length;
+        }
+
+        @Override
+        public void visitFloat(float[] data, int offset, int length, int x, int y, int z, int t, int c)
+        {
+            count += length;
+        }
+
+        @Override
+        public void visitDouble(double[] data, int offset, int length, int x, int y, int z, int t, int c)
+        {
+            count += length;
+        }
+    }
+
     /**
      * Returns the number of element contained in the specified {@link DataIterator}.
      */
     public static long count(DataIterator it)
     {
+        if (it instanceof DataSpanIterator)
+        {
+            final SpanCounter counter = new SpanCounter();
+
+            ((DataSpanIterator) it).forEachSpan(counter);
+
+            return counter.count;
+        }
+
         long result = 0;
 
         it.reset();
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.type;
+
+/**
+ * {@link DataIterator} which can also give its data by spans of contiguous values (bulk iteration).
+ */
+public interface DataSpanIterator extends DataIterator
+{
+    /**
+     * Give all data of the iterator to the visitor by spans of contiguous values (in iteration order).<br>
+     * The current position is ignored (all data is given) and the iterator is reset to its initial
+     * position after the operation.
+     */
+    public void forEachSpan(DataSpanVisitor visitor);
+
+    /**
+     * Split the iterated data in two parts (following the <code>Spliterator</code> semantic) so they can be
+     * processed in parallel: the returned iterator covers the first part while this iterator is reduced to
+     * the remaining part.<br>
+     * Both iterators are reset to their initial position.
+     * 
+     * @return an iterator covering the first part of the data or <code>null</code> if the data cannot be split
+     */
+    public DataSpanIterator trySplit();
+}
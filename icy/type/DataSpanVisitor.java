@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.type;
+
+/**
+ * Data span visitor interface.<br>
+ * A span is a run of contiguous values of a single image row (same Y, Z, T and C position) given as
+ * the internal primitive array of the image so values can be processed without any per value type
+ * conversion or virtual call.<br>
+ * Each method receives the data array, the offset of the first value in the array, the number of values
+ * and the position of the first value (following values are at <code>x + 1</code>, <code>x + 2</code>...).
+ * 
+ * @see DataSpanIterator
+ */
+public interface DataSpanVisitor
+{
+    /**
+     * Visit a span of byte data.
+     * 
+     * @param signed
+     *        false if values should be interpreted as unsigned values
+     */
+    public void visitByte(byte[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c);
+
+    /**
+     * Visit a span of short data.
+     * 
+     * @param signed
+     *        false if values should be interpreted as unsigned values
+     */
+    public void visitShort(short[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c);
+
+    /**
+     * Visit a span of int data.
+     * 
+     * @param signed
+     *        false if values should be interpreted as unsigned values
+     */
+    public void visitInt(int[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c);
+
+    /**
+     * Visit a span of long data.
+     * 
+     * @param signed
+     *        false if values should be interpreted as unsigned values
+     */
+    public void visitLong(long[] data, int offset, int length, boolean signed, int x, int y, int z, int t, int c);
+
+    /**
+     * Visit a span of float data.
+     */
+    public void visitFloat(float[] data, int offset, int length, int x, int y, int z, int t, int c);
+
+    /**
+     * Visit a span of double data.
+     */
+    public void visitDouble(double[] data, int offset, int length, int x, int y, int z, int t, int c);
+}
@@ -24,6 +24,13 @@ import icy.type.TypeUtil;
 import icy.util.StringUtil;
 
 import java.lang.reflect.Array;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 import java.util.Arrays;
 
 /**
@@ -286,6 +293,68 @@ public class Array1DUtil
         return out;
     }
 
+    /**
+     * Copy <code>len</code> elements of the specified 1D array (starting at <code>off</code>) into
+     * the given NIO buffer at its current position (the position is advanced by <code>len</code>).<br>
+     * The buffer should match the array java type (<code>ByteBuffer</code> for <code>byte[]</code>,
+     * <code>ShortBuffer</code> for <code>short[]</code>...).
+     * 
+     * @return the <code>out</code> buffer
+     * @throws IllegalArgumentException
+     *         if buffer type does not match the array type
+     */
+    public static Buffer copyToBuffer(Object array, int off, int len, Buffer out)
+    {
+        switch (ArrayUtil.getDataType(array))
+        {
+            case BYTE:
+                if (out instanceof ByteBuffer)
+                {
+                    ((ByteBuffer) out).put((byte[]) array, off, len);
+                    return out;
+                }
+                break;
+            case SHORT:
+                if (out instanceof ShortBuffer)
+                {
+                    ((ShortBuffer) out).put((short[]) array, off, len);
+                    return out;
+                }
+                break;
+            case INT:
+                if (out instanceof IntBuffer)
+                {
+                    ((IntBuffer) out).put((int[]) array, off, len);
+                    return out;
+                }
+                break;
+            case LONG:
+                if (out instanceof LongBuffer)
+                {
+                    ((LongBuffer) out).put((long[]) array, off, len);
+                    return out;
+                }
+                break;
+            case FLOAT:
+                if (out instanceof FloatBuffer)
+                {
+                    ((FloatBuffer) out).put((float[]) array, off, len);
+                    return out;
+                }
+                break;
+            case DOUBLE:
+                if (out instanceof DoubleBuffer)
+                {
+                    ((DoubleBuffer) out).put((double[]) array, off, len);
+                    return out;
+                }
+                break;
+        }
+
+        throw new IllegalArgumentException("Buffer type " + out.getClass().getSimpleName()
+                + " does not match array type " + ArrayUtil.getDataType(array));
+    }
+
     /**
      * Do a copy of the specified array
      */
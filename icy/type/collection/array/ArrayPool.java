@@ -0,0 +1,287 @@
+/*
+ * Copyright 2010-2015 Institut Pasteur.
+ * 
+ * This file is part of Icy.
+ * 
+ * Icy is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Icy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Icy. If not, see <http://www.gnu.org/licenses/>.
+ */
+package icy.type.collection.array;
+
+import icy.type.DataType;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pool of reusable 1D primitive arrays, indexed by java data type and length.<br>
+ * It can be used to avoid reallocating large temporary arrays (as the ones returned by the
+ * <code>Sequence.getDataCopyXXX(...)</code> methods) on each call:<br>
+ * 
+ * <pre>
+ * final Object data = pool.acquire(sequence.getDataType_(), len);
+ * try
+ * {
+ *     sequence.getDataCopyXYZ(t, c, data, 0);
+ *     ...
+ * }
+ * finally
+ * {
+ *     pool.release(data);
+ * }
+ * </pre>
+ * 
+ * Released arrays are kept through soft references so the pool never prevents the GC from
+ * reclaiming memory, and the total size of pooled arrays is bounded by {@link #getMaxSize()}.<br>
+ * Note that acquired arrays are <b>not</b> cleared, their content is undefined.<br>
+ * This class is thread safe.
+ */
+public class ArrayPool
+{
+    /**
+     * Default maximum size (in bytes) of arrays retained by the shared pool
+     */
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024L * 1024L;
+    /**
+     * Maximum number of array retained for a given type and length
+     */
+    public static final int MAX_ARRAY_PER_KEY = 4;
+
+    private static ArrayPool sharedPool = null;
+
+    /**
+     * Returns the application shared array pool
+     */
+    public static synchronized ArrayPool getSharedPool()
+    {
+        if (sharedPool == null)
+            sharedPool = new ArrayPool(DEFAULT_MAX_SIZE);
+
+        return sharedPool;
+    }
+
+    private static class PoolKey
+    {
+        final DataType dataType;
+        final int length;
+
+        PoolKey(DataType dataType, int length)
+        {
+            super();
+
+            this.dataType = dataType;
+            this.length = length;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (dataType.hashCode() * 31) + length;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof PoolKey)
+            {
+                final PoolKey key = (PoolKey) obj;
+                return (key.dataType == dataType) && (key.length == length);
+            }
+
+            return false;
+        }
+    }
+
+    private final Map<PoolKey, List<SoftReference<Object>>> arrays;
+    private final long maxSize;
+    // estimated size (in bytes) of pooled arrays
+    private long size;
+
+    /**
+     * Create a new array pool.
+     * 
+     * @param maxSize
+     *        maximum size (in bytes) of arrays retained by the pool
+     */
+    public ArrayPool(long maxSize)
+    {
+        super();
+
+        arrays = new HashMap<PoolKey, List<SoftReference<Object>>>();
+        this.maxSize = maxSize;
+        size = 0L;
+    }
+
+    /**
+     * Returns the maximum size (in bytes) of arrays retained by the pool
+     */
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Returns the estimated size (in bytes) of arrays currently retained by the pool
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    private static long getByteSize(DataType dataType, int length)
+    {
+        return (long) dataType.getSize() * (long) length;
+    }
+
+    /**
+     * Returns an 1D array of specified java data type and length.<br>
+     * A pooled array is returned if available, otherwise a new one is allocated.<br>
+     * Note that returned array content is undefined.
+     */
+    public Object acquire(DataType dataType, int length)
+    {
+        final DataType javaType = dataType.getJavaType();
+        final PoolKey key = new PoolKey(javaType, length);
+
+        synchronized (this)
+        {
+            final List<SoftReference<Object>> list = arrays.get(key);
+
+            if (list != null)
+            {
+                while (!list.isEmpty())
+                {
+                    final Object result = list.remove(list.size() - 1).get();
+
+                    // soft reference cleared or not, it doesn't count anymore
+                    size -= getByteSize(javaType, length);
+
+                    if (result != null)
+                    {
+                        if (list.isEmpty())
+                            arrays.remove(key);
+                        return result;
+                    }
+                }
+
+                arrays.remove(key);
+            }
+        }
+
+        return Array1DUtil.createArray(javaType, length);
+    }
+
+    /**
+     * Same as {@link #acquire(DataType, int)} but the returned array is filled with 0.
+     */
+    public Object acquireCleared(DataType dataType, int length)
+    {
+        final Object result = acquire(dataType, length);
+
+        Array1DUtil.fill(result, 0, length, 0d);
+
+        return result;
+    }
+
+    /**
+     * Give back the specified 1D array to the pool so it can be reused later.<br>
+     * The array should not be used anymore by the caller after this call.<br>
+     * <code>null</code> or non primitive arrays are just ignored.
+     */
+    public void release(Object array)
+    {
+        if ((array == null) || !array.getClass().isArray() || !array.getClass().getComponentType().isPrimitive())
+            return;
+
+        final DataType javaType = ArrayUtil.getDataType(array);
+        // boolean or char array
+        if (javaType == null)
+            return;
+
+        final int length = ArrayUtil.getLength(array);
+        final long arraySize = getByteSize(javaType, length);
+
+        synchronized (this)
+        {
+            // too large for the pool
+            if ((size + arraySize) > maxSize)
+            {
+                purge();
+                if ((size + arraySize) > maxSize)
+                    return;
+            }
+
+            final PoolKey key = new PoolKey(javaType, length);
+            List<SoftReference<Object>> list = arrays.get(key);
+
+            if (list == null)
+            {
+                list = new ArrayList<SoftReference<Object>>(MAX_ARRAY_PER_KEY);
+                arrays.put(key, list);
+            }
+            else
+            {
+                // already pooled ? (don't want to give it twice)
+                for (SoftReference<Object> ref : list)
+                    if (ref.get() == array)
+                        return;
+            }
+
+            if (list.size() < MAX_ARRAY_PER_KEY)
+            {
+                list.add(new SoftReference<Object>(array));
+                size += arraySize;
+            }
+        }
+    }
+
+    /**
+     * Remove entries which have been reclaimed by the GC
+     */
+    private void purge()
+    {
+        final Iterator<Map.Entry<PoolKey, List<SoftReference<Object>>>> it = arrays.entrySet().iterator();
+
+        while (it.hasNext())
+        {
+            final Map.Entry<PoolKey, List<SoftReference<Object>>> entry = it.next();
+            final PoolKey key = entry.getKey();
+            final Iterator<SoftReference<Object>> refIt = entry.getValue().iterator();
+
+            while (refIt.hasNext())
+            {
+                if (refIt.next().get() == null)
+                {
+                    refIt.remove();
+                    size -= getByteSize(key.dataType, key.length);
+                }
+            }
+
+            if (entry.getValue().isEmpty())
+                it.remove();
+        }
+    }
+
+    /**
+     * Release all arrays retained by the pool
+     */
+    public synchronized void clear()
+    {
+        arrays.clear();
+        size = 0L;
+    }
+}
@@ -23,7 +23,9 @@ import icy.sequence.Sequence;
 import icy.sequence.SequenceEvent.SequenceEventType;
 import icy.system.IcyExceptionHandler;
 import icy.system.thread.ThreadUtil;
+import icy.type.DataType;
 import icy.type.collection.array.Array1DUtil;
+import icy.type.collection.array.ArrayPool;
 import icy.type.point.Point5D;
 import icy.util.ColorUtil;
 import icy.util.EventUtil;
@@ -1247,8 +1249,10 @@ public class VtkCanvas extends Canvas3D implements Runnable, ActionListener, Set
 
         final int posT = getPositionT();
         final int posC = getPositionC();
-
-        final Object data;
+        final DataType dataType = sequence.getDataType_();
+        // temporary data buffer taken from the shared pool (VTK copies it so we give it back just after)
+        final ArrayPool pool = ArrayPool.getSharedPool();
+        Object data = null;
         long size;
 
         try
@@ -1264,8 +1268,8 @@ public class VtkCanvas extends Canvas3D implements Runnable, ActionListener, Set
                 if (size > Integer.MAX_VALUE)
                     return null;
 
-                data = sequence.getDataCopyCXYZ(posT);
-                result = VtkUtil.getImageData(data, sequence.getDataType_(), sequence.getSizeX(), sequence.getSizeY(),
+                data = sequence.getDataCopyCXYZ(posT, pool.acquire(dataType, (int) size), 0);
+                result = VtkUtil.getImageData(data, dataType, sequence.getSizeX(), sequence.getSizeY(),
                         sequence.getSizeZ(), sequence.getSizeC());
             }
             else
@@ -1278,8 +1282,8 @@ public class VtkCanvas extends Canvas3D implements Runnable, ActionListener, Set
                 if (size > Integer.MAX_VALUE)
                     return null;
 
-                data = sequence.getDataCopyXYZ(posT, posC);
-                result = VtkUtil.getImageData(data, sequence.getDataType_(), sequence.getSizeX(), sequence.getSizeY(),
+                data = sequence.getDataCopyXYZ(posT, posC, pool.acquire(dataType, (int) size), 0);
+                result = VtkUtil.getImageData(data, dataType, sequence.getSizeX(), sequence.getSizeY(),
                         sequence.getSizeZ(), 1);
             }
         }
@@ -1288,6 +1292,11 @@ public class VtkCanvas extends Canvas3D implements Runnable, ActionListener, Set
             // just not enough memory
             return null;
         }
+        finally
+        {
+            // don't keep the volume copy, it is retained (softly) by the pool for next build
+            pool.release(data);
+        }
 
         return result;
     }
@@ -296,6 +296,24 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
         return Math.pow(2d, resolution - res);
     }
 
+    /**
+     * Convert a region expressed at the wanted resolution level to the resolution level set in the reader
+     * (they differ when the wanted level is not available in the file).
+     * 
+     * @param scale
+     *        down scale factor returned by {@link #prepareReader(int, int)}
+     */
+    protected Rectangle getReaderRectangle(Rectangle rectangle, double scale)
+    {
+        if ((rectangle == null) || (scale == 1d))
+            return rectangle;
+
+        final Rectangle result = new Rectangle((int) (rectangle.x * scale), (int) (rectangle.y * scale),
+                (int) Math.ceil(rectangle.width * scale), (int) Math.ceil(rectangle.height * scale));
+
+        return result.intersection(new Rectangle(0, 0, reader.getSizeX(), reader.getSizeY()));
+    }
+
     @Override
     public OMEXMLMetadataImpl getMetaData() throws UnsupportedFormatException, IOException
     {
@@ -369,7 +387,7 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
                 return getPixels(reader, rectangle, z, t, c);
 
             // get the image
-            IcyBufferedImage result = getImage(reader, rectangle, z, t, c);
+            IcyBufferedImage result = getImage(reader, getReaderRectangle(rectangle, scale), z, t, c);
             // down scale it
             result = downScale(result, scale);
 
@@ -395,7 +413,7 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
             // prepare reader and get down scale factor
             final double scale = prepareReader(serie, resolution);
             // get image
-            IcyBufferedImage result = getImage(reader, rectangle, z, t, c);
+            IcyBufferedImage result = getImage(reader, getReaderRectangle(rectangle, scale), z, t, c);
             // return down scaled version if needed
             return downScale(result, scale);
         }
@@ -418,7 +436,7 @@ public class LociImporterPlugin extends PluginSequenceFileImporter
             // prepare reader and get down scale factor
             final double scale = prepareReader(serie, resolution);
             // get image
-            IcyBufferedImage result = getImage(reader, rectangle, z, t);
+            IcyBufferedImage result = getImage(reader, getReaderRectangle(rectangle, scale), z, t);
             // return down scaled version if needed
             return downScale(result, scale);
         }
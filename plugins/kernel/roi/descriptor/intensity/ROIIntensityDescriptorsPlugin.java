@@ -3,17 +3,24 @@
  */
 package plugins.kernel.roi.descriptor.intensity;
 
+import icy.math.DataIteratorMath;
+import icy.math.DataIteratorMath.SpanStatistics;
 import icy.plugin.abstract_.Plugin;
 import icy.plugin.interface_.PluginROIDescriptor;
 import icy.roi.ROI;
+import icy.roi.ROIBatchMeasure;
+import icy.roi.ROIBatchMeasure.Measure;
 import icy.roi.ROIDescriptor;
 import icy.sequence.Sequence;
 import icy.sequence.SequenceDataIterator;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 /**
  * This {@link PluginROIDescriptor} implements the following "intensity" ROI descriptors:<br/>
@@ -73,45 +80,62 @@ public class ROIIntensityDescriptorsPlugin extends Plugin implements PluginROIDe
             throw new UnsupportedOperationException(
                     "Not allowed to cannot compute intensity descriptor on a multi channel ROI (sizeC > 1).");
 
-        final IntensityDescriptorInfos result = new IntensityDescriptorInfos();
-
-        long numPixels = 0;
-        double min = Double.MAX_VALUE;
-        double max = -Double.MAX_VALUE;
-        double sum = 0;
-        double sum2 = 0;
-
         // TODO: we were using interior pixels only, now we also use edge pixels so we can have intensities info
         // for intersection only ROI --> see if that is a good idea...
         final SequenceDataIterator it = new SequenceDataIterator(sequence, roi, true);
+        // planes (or bands of rows) are processed in parallel
 
-        while (!it.done())
-        {
-            final double value = it.get();
+        return getIntensityDescriptors(DataIteratorMath.computeStatistics(it, true));
+    }
 
-            if (min > value)
-                min = value;
-            if (max < value)
-                max = value;
-            sum += value;
-            sum2 += value * value;
-            numPixels++;
+    /**
+     * Returns the pixel intensity information for all the specified ROIs on the Sequence.<br>
+     * Each plane of the sequence is read only once for all the ROIs it contains (see {@link ROIBatchMeasure}) which
+     * is much faster than computing ROIs one by one when there are many ROIs.<br>
+     * Be careful: the returned result may be incorrect or exception may be thrown if the ROIs change while the
+     * descriptors are being computed.
+     * 
+     * @param rois
+     *        the ROIs on which we want to compute the intensity descriptors
+     * @param sequence
+     *        the Sequence used to compute the intensity descriptors
+     * @param allowMultiChannel
+     *        Allow multi channel intensity computation. If this parameter is set to <code>false</code> then ROIs
+     *        with a number of channel > 1 are ignored (not present in the result).
+     * @throws Exception
+     *         If the computation failed or has been interrupted.
+     */
+    public static Map<ROI, IntensityDescriptorInfos> computeIntensityDescriptors(Collection<? extends ROI> rois,
+            Sequence sequence, boolean allowMultiChannel) throws Exception
+    {
+        final List<ROI> validRois = new ArrayList<ROI>(rois.size());
 
-            it.next();
-        }
+        for (ROI roi : rois)
+            if (allowMultiChannel || (roi.getBounds5D().getSizeC() <= 1d))
+                validRois.add(roi);
 
-        if (numPixels > 0)
-        {
-            result.min = min;
-            result.max = max;
-            result.sum = sum;
+        final Map<ROI, IntensityDescriptorInfos> result = new LinkedHashMap<ROI, IntensityDescriptorInfos>();
 
-            final double mean = sum / numPixels;
-            final double x1 = (sum2 / numPixels);
-            final double x2 = mean * mean;
+        for (Entry<ROI, Measure> entry : ROIBatchMeasure.compute(validRois, sequence).entrySet())
+            result.put(entry.getKey(), getIntensityDescriptors(entry.getValue().getIntensity()));
 
-            result.mean = mean;
-            result.deviation = Math.sqrt(x1 - x2);
+        return result;
+    }
+
+    /**
+     * Returns the intensity information from the specified intensity statistics.
+     */
+    public static IntensityDescriptorInfos getIntensityDescriptors(SpanStatistics stats)
+    {
+        final IntensityDescriptorInfos result = new IntensityDescriptorInfos();
+
+        if (stats.getCount() > 0)
+        {
+            result.min = stats.getMin();
+            result.max = stats.getMax();
+            result.sum = stats.getSum();
+            result.mean = stats.getMean();
+            result.deviation = stats.getStandardDeviation();
         }
         else
         {
@@ -125,6 +149,22 @@ public class ROIIntensityDescriptorsPlugin extends Plugin implements PluginROIDe
         return result;
     }
 
+    /**
+     * Returns the descriptors values for the specified intensity information.
+     */
+    public static Map<ROIDescriptor, Object> getDescriptorValues(IntensityDescriptorInfos intensityInfos)
+    {
+        final Map<ROIDescriptor, Object> result = new HashMap<ROIDescriptor, Object>();
+
+        result.put(minIntensityDescriptor, Double.valueOf(intensityInfos.min));
+        result.put(meanIntensityDescriptor, Double.valueOf(intensityInfos.mean));
+        result.put(maxIntensityDescriptor, Double.valueOf(intensityInfos.max));
+        result.put(sumIntensityDescriptor, Double.valueOf(intensityInfos.sum));
+        result.put(standardDeviationDescriptor, Double.valueOf(intensityInfos.deviation));
+
+        return result;
+    }
+
     @Override
     public List<ROIDescriptor> getDescriptors()
     {
@@ -142,24 +182,15 @@ public class ROIIntensityDescriptorsPlugin extends Plugin implements PluginROIDe
     @Override
     public Map<ROIDescriptor, Object> compute(ROI roi, Sequence sequence) throws UnsupportedOperationException
     {
-        final Map<ROIDescriptor, Object> result = new HashMap<ROIDescriptor, Object>();
         try
         {
             // compute intensity descriptors
-            final IntensityDescriptorInfos intensityInfos = computeIntensityDescriptors(roi, sequence, false);
-
-            result.put(minIntensityDescriptor, Double.valueOf(intensityInfos.min));
-            result.put(meanIntensityDescriptor, Double.valueOf(intensityInfos.mean));
-            result.put(maxIntensityDescriptor, Double.valueOf(intensityInfos.max));
-            result.put(sumIntensityDescriptor, Double.valueOf(intensityInfos.sum));
-            result.put(standardDeviationDescriptor, Double.valueOf(intensityInfos.deviation));
+            return getDescriptorValues(computeIntensityDescriptors(roi, sequence, false));
         }
         catch (Exception e)
         {
             throw new UnsupportedOperationException(getClass().getSimpleName() + ": cannot compute descriptors for '"
                     + roi.getName() + "'", e);
         }
-
-        return result;
     }
 }
@@ -0,0 +1,72 @@
+/**
+ * 
+ */
+package plugins.kernel.roi.descriptor.intensity;
+
+import icy.roi.ROI;
+import icy.roi.ROIDescriptor;
+import icy.sequence.Sequence;
+import icy.sequence.SequenceEvent;
+import icy.sequence.SequenceEvent.SequenceEventSourceType;
+
+/**
+ * Interquartile range of intensity ROI descriptor class (see {@link ROIDescriptor})
+ */
+public class ROIInterquartileRangeDescriptor extends ROIDescriptor
+{
+    public static final String ID = "InterquartileRange";
+
+    public ROIInterquartileRangeDescriptor()
+    {
+        super(ID, "Interquartile Range", Double.class);
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "Interquartile range of intensity";
+    }
+
+    @Override
+    public boolean separateChannel()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean needRecompute(SequenceEvent change)
+    {
+        return (change.getSourceType() == SequenceEventSourceType.SEQUENCE_DATA);
+    }
+
+    @Override
+    public Object compute(ROI roi, Sequence sequence) throws UnsupportedOperationException
+    {
+        return Double.valueOf(computeInterquartileRange(roi, sequence));
+    }
+
+    /**
+     * Computes and returns the interquartile range of intensity for the specified ROI on given sequence.<br>
+     * It may returns <code>Double.Nan</code> if the operation is not supported for that ROI.
+     * 
+     * @param roi
+     *        the ROI on which we want to compute the interquartile range of intensity
+     * @param sequence
+     *        the sequence used to compute the pixel intensity
+     * @throws UnsupportedOperationException
+     *         if the operation is not supported for this ROI
+     */
+    public static double computeInterquartileRange(ROI roi, Sequence sequence) throws UnsupportedOperationException
+    {
+        try
+        {
+            return ROIQuantileIntensityDescriptorsPlugin.computeQuantileDescriptors(roi, sequence,
+                    false).interquartileRange;
+        }
+        catch (Exception e)
+        {
+            throw new UnsupportedOperationException(ROIInterquartileRangeDescriptor.class.getSimpleName()
+                    + ": cannot compute descriptors for '" + roi.getName() + "'", e);
+        }
+    }
+}
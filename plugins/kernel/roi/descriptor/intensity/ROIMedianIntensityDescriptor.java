@@ -0,0 +1,71 @@
+/**
+ * 
+ */
+package plugins.kernel.roi.descriptor.intensity;
+
+import icy.roi.ROI;
+import icy.roi.ROIDescriptor;
+import icy.sequence.Sequence;
+import icy.sequence.SequenceEvent;
+import icy.sequence.SequenceEvent.SequenceEventSourceType;
+
+/**
+ * Median intensity ROI descriptor class (see {@link ROIDescriptor})
+ */
+public class ROIMedianIntensityDescriptor extends ROIDescriptor
+{
+    public static final String ID = "MedianIntensity";
+
+    public ROIMedianIntensityDescriptor()
+    {
+        super(ID, "Median Intensity", Double.class);
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "Median intensity";
+    }
+
+    @Override
+    public boolean separateChannel()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean needRecompute(SequenceEvent change)
+    {
+        return (change.getSourceType() == SequenceEventSourceType.SEQUENCE_DATA);
+    }
+
+    @Override
+    public Object compute(ROI roi, Sequence sequence) throws UnsupportedOperationException
+    {
+        return Double.valueOf(computeMedianIntensity(roi, sequence));
+    }
+
+    /**
+     * Computes and returns the median intensity for the specified ROI on given sequence.<br>
+     * It may returns <code>Double.Nan</code> if the operation is not supported for that ROI.
+     * 
+     * @param roi
+     *        the ROI on which we want to compute the median intensity
+     * @param sequence
+     *        the sequence used to compute the pixel intensity
+     * @throws UnsupportedOperationException
+     *         if the operation is not supported for this ROI
+     */
+    public static double computeMedianIntensity(ROI roi, Sequence sequence) throws UnsupportedOperationException
+    {
+        try
+        {
+            return ROIQuantileIntensityDescriptorsPlugin.computeQuantileDescriptors(roi, sequence, false).median;
+        }
+        catch (Exception e)
+        {
+            throw new UnsupportedOperationException(ROIMedianIntensityDescriptor.class.getSimpleName()
+                    + ": cannot compute descriptors for '" + roi.getName() + "'", e);
+        }
+    }
+}
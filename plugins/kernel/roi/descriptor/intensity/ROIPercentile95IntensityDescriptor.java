@@ -0,0 +1,71 @@
+/**
+ * 
+ */
+package plugins.kernel.roi.descriptor.intensity;
+
+import icy.roi.ROI;
+import icy.roi.ROIDescriptor;
+import icy.sequence.Sequence;
+import icy.sequence.SequenceEvent;
+import icy.sequence.SequenceEvent.SequenceEventSourceType;
+
+/**
+ * 95th percentile intensity ROI descriptor class (see {@link ROIDescriptor})
+ */
+public class ROIPercentile95IntensityDescriptor extends ROIDescriptor
+{
+    public static final String ID = "Percentile95Intensity";
+
+    public ROIPercentile95IntensityDescriptor()
+    {
+        super(ID, "95th Percentile Intensity", Double.class);
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "95th percentile intensity";
+    }
+
+    @Override
+    public boolean separateChannel()
+    {
+        return true;
+    }
+
+    @Override
+    public boolean needRecompute(SequenceEvent change)
+    {
+        return (change.getSourceType() == SequenceEventSourceType.SEQUENCE_DATA);
+    }
+
+    @Override
+    public Object compute(ROI roi, Sequence sequence) throws UnsupportedOperationException
+    {
+        return Double.valueOf(computePercentile95Intensity(roi, sequence));
+    }
+
+    /**
+     * Computes and returns the 95th percentile intensity for the specified ROI on given sequence.<br>
+     * It may returns <code>Double.Nan</code> if the operation is not supported for that ROI.
+     * 
+     * @param roi
+     *        the ROI on which we want to compute the 95th percentile intensity
+     * @param sequence
+     *        the sequence used to compute the pixel intensity
+     * @throws UnsupportedOperationException
+     *         if the operation is not supported for this ROI
+     */
+    public static double computePercentile95Intensity(ROI roi, Sequence sequence) throws UnsupportedOperationException
+    {
+        try
+        {
+            return ROIQuantileIntensityDescriptorsPlugin.computeQuantileDescriptors(roi, sequence, false).percentile95;
+        }
+        catch (Exception e)
+        {
+            throw new UnsupportedOperationException(ROIPercentile95IntensityDescriptor.class.getSimpleName()
+                    + ": cannot compute descriptors for '" + roi.getName() + "'", e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * 
+ */
+package plugins.kernel.roi.descriptor.intensity;
+
+import icy.math.DataIteratorMath;
+import icy.math.QuantileEstimator;
+import icy.plugin.abstract_.Plugin;
+import icy.plugin.interface_.PluginROIDescriptor;
+import icy.roi.ROI;
+import icy.roi.ROIDescriptor;
+import icy.sequence.Sequence;
+import icy.sequence.SequenceDataIterator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This {@link PluginROIDescriptor} implements the following "quantile intensity" ROI descriptors:<br/>
+ * <li>Median intensity</li><br/>
+ * <li>5th percentile intensity</li><br/>
+ * <li>95th percentile intensity</li><br/>
+ * <li>Interquartile range</li><br/>
+ * All quantiles are computed in a single streaming pass without sorting pixel values (see
+ * {@link QuantileEstimator}): they are exact for integer data and have a bounded relative error for float data.
+ */
+public class ROIQuantileIntensityDescriptorsPlugin extends Plugin implements PluginROIDescriptor
+{
+    public static final String ID_MEDIAN_INTENSITY = ROIMedianIntensityDescriptor.ID;
+    public static final String ID_PERCENTILE5_INTENSITY = ROIPercentile5IntensityDescriptor.ID;
+    public static final String ID_PERCENTILE95_INTENSITY = ROIPercentile95IntensityDescriptor.ID;
+    public static final String ID_INTERQUARTILE_RANGE = ROIInterquartileRangeDescriptor.ID;
+
+    public static final ROIMedianIntensityDescriptor medianIntensityDescriptor = new ROIMedianIntensityDescriptor();
+    public static final ROIPercentile5IntensityDescriptor percentile5IntensityDescriptor = new ROIPercentile5IntensityDescriptor();
+    public static final ROIPercentile95IntensityDescriptor percentile95IntensityDescriptor = new ROIPercentile95IntensityDescriptor();
+    public static final ROIInterquartileRangeDescriptor interquartileRangeDescriptor = new ROIInterquartileRangeDescriptor();
+
+    public static class QuantileDescriptorInfos
+    {
+        double median;
+        double percentile5;
+        double percentile95;
+        double interquartileRange;
+    };
+
+    /**
+     * Returns the pixel intensity quantiles for the specified ROI and Sequence.<br>
+     * Be careful: the returned result may be incorrect or exception may be thrown if the ROI change while the
+     * descriptor is being computed.
+     * 
+     * @param roi
+     *        the ROI on which we want to compute the quantile descriptors
+     * @param sequence
+     *        the Sequence used to compute the quantile descriptors
+     * @param allowMultiChannel
+     *        Allow multi channel intensity computation. If this parameter is set to <code>false</code> and the ROI
+     *        number of channel is > 1 then a {@link UnsupportedOperationException} is launch.
+     * @throws Exception
+     *         If the ROI dimension changed during the descriptor computation.
+     * @throws UnsupportedOperationException
+     *         If the C dimension of the ROI is > 1 while allowMultiChannel parameter is set to <code>false</code>
+     */
+    public static QuantileDescriptorInfos computeQuantileDescriptors(ROI roi, Sequence sequence,
+            boolean allowMultiChannel) throws Exception, UnsupportedOperationException
+    {
+        if (!allowMultiChannel && (roi.getBounds5D().getSizeC() > 1d))
+            throw new UnsupportedOperationException(
+                    "Not allowed to cannot compute intensity descriptor on a multi channel ROI (sizeC > 1).");
+
+        final SequenceDataIterator it = new SequenceDataIterator(sequence, roi, true);
+        // planes (or bands of rows) are processed in parallel
+
+        return getQuantileDescriptors(DataIteratorMath.computeQuantiles(it, true));
+    }
+
+    /**
+     * Returns the quantile descriptors information from the specified quantile estimator.
+     */
+    public static QuantileDescriptorInfos getQuantileDescriptors(QuantileEstimator estimator)
+    {
+        final QuantileDescriptorInfos result = new QuantileDescriptorInfos();
+
+        if (estimator.getCount() > 0)
+        {
+            final double[] q = estimator.getQuantiles(new double[] {0.05d, 0.25d, 0.5d, 0.75d, 0.95d});
+
+            result.percentile5 = q[0];
+            result.median = q[2];
+            result.percentile95 = q[4];
+            result.interquartileRange = q[3] - q[1];
+        }
+        else
+        {
+            result.median = 0d;
+            result.percentile5 = 0d;
+            result.percentile95 = 0d;
+            result.interquartileRange = 0d;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the descriptors values for the specified quantile information.
+     */
+    public static Map<ROIDescriptor, Object> getDescriptorValues(QuantileDescriptorInfos quantileInfos)
+    {
+        final Map<ROIDescriptor, Object> result = new HashMap<ROIDescriptor, Object>();
+
+        result.put(medianIntensityDescriptor, Double.valueOf(quantileInfos.median));
+        result.put(percentile5IntensityDescriptor, Double.valueOf(quantileInfos.percentile5));
+        result.put(percentile95IntensityDescriptor, Double.valueOf(quantileInfos.percentile95));
+        result.put(interquartileRangeDescriptor, Double.valueOf(quantileInfos.interquartileRange));
+
+        return result;
+    }
+
+    @Override
+    public List<ROIDescriptor> getDescriptors()
+    {
+        final List<ROIDescriptor> result = new ArrayList<ROIDescriptor>();
+
+        result.add(medianIntensityDescriptor);
+        result.add(percentile5IntensityDescriptor);
+        result.add(percentile95IntensityDescriptor);
+        result.add(interquartileRangeDescriptor);
+
+        return result;
+    }
+
+    @Override
+    public Map<ROIDescriptor, Object> compute(ROI roi, Sequence sequence) throws UnsupportedOperationException
+    {
+        try
+        {
+            // compute quantile descriptors
+            return getDescriptorValues(computeQuantileDescriptors(roi, sequence, false));
+        }
+        catch (Exception e)
+        {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + ": cannot compute descriptors for '"
+                    + roi.getName() + "'", e);
+        }
+    }
+}
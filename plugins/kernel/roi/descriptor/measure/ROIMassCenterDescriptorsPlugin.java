@@ -3,15 +3,21 @@ package plugins.kernel.roi.descriptor.measure;
 import icy.plugin.abstract_.Plugin;
 import icy.plugin.interface_.PluginROIDescriptor;
 import icy.roi.ROI;
+import icy.roi.ROIBatchMeasure;
+import icy.roi.ROIBatchMeasure.Measure;
 import icy.roi.ROIDescriptor;
 import icy.roi.ROIIterator;
 import icy.sequence.Sequence;
 import icy.type.point.Point5D;
+import icy.type.rectangle.Rectangle5D;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 /**
  * This {@link PluginROIDescriptor} implements the mass center ROI descriptors:<br/>
@@ -70,6 +76,74 @@ public class ROIMassCenterDescriptorsPlugin extends Plugin implements PluginROID
         return new Point5D.Double(x / numPts, y / numPts, z / numPts, t / numPts, c / numPts);
     }
 
+    /**
+     * Compute and returns the mass center of all specified ROIs.<br>
+     * ROIs fully contained in the sequence are computed in a single pass over their masks (see
+     * {@link ROIBatchMeasure}, no image is read), the other ones are computed separately.
+     * 
+     * @throws Exception
+     *         If the computation failed or has been interrupted.
+     */
+    public static Map<ROI, Point5D> computeMassCenters(Collection<? extends ROI> rois, Sequence sequence)
+            throws Exception
+    {
+        final Map<ROI, Point5D> result = new LinkedHashMap<ROI, Point5D>();
+        final List<ROI> batchRois = new ArrayList<ROI>(rois.size());
+        final Rectangle5D.Integer seqBounds = sequence.getBounds5D();
+
+        for (ROI roi : rois)
+        {
+            // keep ROI order
+            result.put(roi, null);
+
+            if (isInside(roi.getBounds5D(), seqBounds))
+                batchRois.add(roi);
+            else
+                result.put(roi, computeMassCenter(roi));
+        }
+
+        for (Entry<ROI, Measure> entry : ROIBatchMeasure.compute(batchRois, sequence, false).entrySet())
+            result.put(entry.getKey(), entry.getValue().getMassCenter());
+
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if the ROI bounds are inside the sequence bounds (infinite Z, T and C dimensions are
+     * accepted).
+     */
+    private static boolean isInside(Rectangle5D bounds, Rectangle5D.Integer seqBounds)
+    {
+        if ((bounds.getX() < seqBounds.getX()) || (bounds.getMaxX() > seqBounds.getMaxX()))
+            return false;
+        if ((bounds.getY() < seqBounds.getY()) || (bounds.getMaxY() > seqBounds.getMaxY()))
+            return false;
+        if (!bounds.isInfiniteZ() && ((bounds.getZ() < seqBounds.getZ()) || (bounds.getMaxZ() > seqBounds.getMaxZ())))
+            return false;
+        if (!bounds.isInfiniteT() && ((bounds.getT() < seqBounds.getT()) || (bounds.getMaxT() > seqBounds.getMaxT())))
+            return false;
+        if (!bounds.isInfiniteC() && ((bounds.getC() < seqBounds.getC()) || (bounds.getMaxC() > seqBounds.getMaxC())))
+            return false;
+
+        return true;
+    }
+
+    /**
+     * Returns the descriptors values for the specified mass center.
+     */
+    public static Map<ROIDescriptor, Object> getDescriptorValues(Point5D massCenter)
+    {
+        final Map<ROIDescriptor, Object> result = new HashMap<ROIDescriptor, Object>();
+
+        result.put(massCenterXDescriptor, Double.valueOf(ROIMassCenterXDescriptor.getMassCenterX(massCenter)));
+        result.put(massCenterYDescriptor, Double.valueOf(ROIMassCenterYDescriptor.getMassCenterY(massCenter)));
+        result.put(massCenterZDescriptor, Double.valueOf(ROIMassCenterZDescriptor.getMassCenterZ(massCenter)));
+        result.put(massCenterTDescriptor, Double.valueOf(ROIMassCenterTDescriptor.getMassCenterT(massCenter)));
+        result.put(massCenterCDescriptor, Double.valueOf(ROIMassCenterCDescriptor.getMassCenterC(massCenter)));
+
+        return result;
+    }
+
     @Override
     public List<ROIDescriptor> getDescriptors()
     {
@@ -87,25 +161,15 @@ public class ROIMassCenterDescriptorsPlugin extends Plugin implements PluginROID
     @Override
     public Map<ROIDescriptor, Object> compute(ROI roi, Sequence sequence) throws UnsupportedOperationException
     {
-        final Map<ROIDescriptor, Object> result = new HashMap<ROIDescriptor, Object>();
-
         try
         {
             // compute mass center descriptors
-            final Point5D massCenter = computeMassCenter(roi);
-
-            result.put(massCenterXDescriptor, Double.valueOf(ROIMassCenterXDescriptor.getMassCenterX(massCenter)));
-            result.put(massCenterYDescriptor, Double.valueOf(ROIMassCenterYDescriptor.getMassCenterY(massCenter)));
-            result.put(massCenterZDescriptor, Double.valueOf(ROIMassCenterZDescriptor.getMassCenterZ(massCenter)));
-            result.put(massCenterTDescriptor, Double.valueOf(ROIMassCenterTDescriptor.getMassCenterT(massCenter)));
-            result.put(massCenterCDescriptor, Double.valueOf(ROIMassCenterCDescriptor.getMassCenterC(massCenter)));
+            return getDescriptorValues(computeMassCenter(roi));
         }
         catch (Exception e)
         {
             final String mess = getClass().getSimpleName() + ": cannot compute descriptors for '" + roi.getName() + "'";
             throw new UnsupportedOperationException(mess, e);
         }
-
-        return result;
     }
 }
@@ -28,6 +28,7 @@ import icy.roi.BooleanMask2D;
 import icy.roi.ROI;
 import icy.roi.ROI2D;
 import icy.roi.ROIEvent;
+import icy.roi.RunLengthBooleanMask2D;
 import icy.roi.edit.Area2DChangeROIEdit;
 import icy.sequence.Sequence;
 import icy.system.thread.ThreadUtil;
@@ -2371,6 +2372,68 @@ public class ROI2DArea extends ROI2D
         setAsBooleanMask(new Rectangle(x, y, w, h), booleanMask);
     }
 
+    /**
+     * Returns the run length encoded version of the mask (built directly from the internal mask data).
+     */
+    public RunLengthBooleanMask2D getRunLengthMask()
+    {
+        final byte[] data;
+        final Rectangle bnds;
+
+        synchronized (this)
+        {
+            data = maskData;
+            bnds = bounds;
+        }
+
+        return new RunLengthBooleanMask2D(bnds, data);
+    }
+
+    /**
+     * Set the mask from a run length encoded mask (decoded directly in the internal mask data).<br>
+     * If specified mask is <i>null</i> then ROI is cleared.
+     */
+    public void setAsRunLengthMask(RunLengthBooleanMask2D mask)
+    {
+        // mask empty ? --> just clear the ROI
+        if ((mask == null) || mask.isEmpty())
+        {
+            clear();
+            return;
+        }
+
+        final Rectangle r = mask.getBounds();
+
+        // reset image with new rectangle
+        updateImage(r);
+
+        final byte[] data;
+
+        synchronized (this)
+        {
+            // image is not reset if size didn't changed
+            bounds = r;
+            data = maskData;
+        }
+
+        Arrays.fill(data, (byte) 0);
+
+        int offset = -r.x;
+
+        for (int y = r.y; y < (r.y + r.height); y++)
+        {
+            final int[] runs = mask.getRuns(y);
+
+            for (int i = 0; i < runs.length; i += 2)
+                Arrays.fill(data, offset + runs[i], offset + runs[i + 1], (byte) 1);
+
+            offset += r.width;
+        }
+
+        optimizeBounds();
+        roiChanged(true);
+    }
+
     @Override
     public void onChanged(CollapsibleEvent object)
     {
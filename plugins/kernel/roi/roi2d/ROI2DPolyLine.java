@@ -27,13 +27,10 @@ import icy.type.point.Point5D;
 import icy.util.XMLUtil;
 
 import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.Polygon;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -439,35 +436,6 @@ public class ROI2DPolyLine extends ROI2DShape
         super.updateShape();
     }
 
-    @Override
-    public boolean[] getBooleanMask(int x, int y, int w, int h, boolean inclusive)
-    {
-        if ((w <= 0) || (h <= 0))
-            return new boolean[0];
-
-        // this ROI doesn't contains area
-        if (!inclusive)
-            return new boolean[w * h];
-
-        final BufferedImage maskImg = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
-        final Graphics2D g = maskImg.createGraphics();
-
-        // draw shape in image
-        g.setColor(Color.white);
-        g.translate(-x, -y);
-        g.draw(shape);
-        g.dispose();
-
-        // use the image to define the mask
-        final byte[] maskData = ((DataBufferByte) maskImg.getRaster().getDataBuffer()).getData();
-        final boolean[] result = new boolean[w * h];
-
-        for (int i = 0; i < result.length; i++)
-            result[i] = (maskData[i] != 0);
-
-        return result;
-    }
-
     @Override
     public boolean loadFromXML(Node node)
     {
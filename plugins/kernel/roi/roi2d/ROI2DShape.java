@@ -32,6 +32,8 @@ import icy.painter.VtkPainter;
 import icy.roi.ROI;
 import icy.roi.ROI2D;
 import icy.roi.ROIEvent;
+import icy.roi.RunLengthBooleanMask2D;
+import icy.roi.ShapeRasterizer;
 import icy.roi.edit.Point2DAddedROIEdit;
 import icy.roi.edit.Point2DMovedROIEdit;
 import icy.roi.edit.Point2DRemovedROIEdit;
@@ -49,7 +51,6 @@ import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
@@ -58,9 +59,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
-import java.awt.image.DataBufferByte;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -1069,6 +1068,12 @@ public abstract class ROI2DShape extends ROI2D implements Shape
     protected final Anchor2DPositionListener anchor2DPositionListener;
     protected final OverlayListener anchor2DOverlayListener;
     protected boolean firstMove;
+    /**
+     * cached masks (cleared on ROI change)
+     */
+    protected volatile RunLengthBooleanMask2D cachedMask;
+    protected volatile RunLengthBooleanMask2D cachedInclusiveMask;
+    protected volatile int maskVersion;
 
     public ROI2DShape(Shape shape)
     {
@@ -1152,6 +1157,7 @@ public abstract class ROI2DShape extends ROI2D implements Shape
     {
         // the shape should have been rebuilt here
         ((ROI2DShapePainter) painter).needRebuild = true;
+        invalidateMaskCache();
     }
 
     protected Anchor2D getSelectedPoint()
@@ -1634,61 +1640,80 @@ public abstract class ROI2DShape extends ROI2D implements Shape
         return shape.getPathIterator(at, flatness);
     }
 
-    @Override
-    public boolean[] getBooleanMask(int x, int y, int width, int height, boolean inclusive)
+    /**
+     * Returns the run length encoded mask of the ROI (computed with a scanline rasterizer and
+     * cached until the ROI changes).
+     * 
+     * @param inclusive
+     *        If true then all partially contained (intersected) pixels are included in the mask.
+     */
+    public RunLengthBooleanMask2D getRunLengthMask(boolean inclusive)
     {
-        if ((width <= 0) || (height <= 0))
-            return new boolean[0];
+        RunLengthBooleanMask2D result = inclusive ? cachedInclusiveMask : cachedMask;
 
-        final BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
-        final Graphics2D g = img.createGraphics();
+        if (result == null)
+        {
+            final int version = maskVersion;
 
-        // we want accurate rendering as we use the image for the mask
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
-        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            result = computeRunLengthMask(inclusive);
 
-        // translate back to origin and pixel center
-        g.translate(-x, -y);
+            // ROI didn't changed in between ? --> cache result
+            if (version == maskVersion)
+            {
+                if (inclusive)
+                    cachedInclusiveMask = result;
+                else
+                    cachedMask = result;
 
-        // fill content
-        g.setColor(Color.white);
+                // ROI changed while we were storing it ? --> discard it
+                if (version != maskVersion)
+                {
+                    cachedMask = null;
+                    cachedInclusiveMask = null;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Compute the run length encoded mask of the ROI:<br>
+     * pixels with center inside the closed parts of the shape, plus pixels touched by the shape path
+     * if <code>inclusive</code> is true, minus pixels crossed by the shape path otherwise.
+     */
+    protected RunLengthBooleanMask2D computeRunLengthMask(boolean inclusive)
+    {
         // only fill closed shapes
-        g.fill(ShapeUtil.getClosedPath(shape));
+        final RunLengthBooleanMask2D fill = ShapeRasterizer.rasterize(ShapeUtil.getClosedPath(shape));
+        final RunLengthBooleanMask2D edge = ShapeRasterizer.rasterizeOutline(shape, inclusive);
+
         // we want edge as well
         if (inclusive)
-            g.draw(shape);
-        // TODO: do we really need that ??
-        else
-        {
-            // remove edge from content as fill operation may be a bit off
-            g.setColor(Color.black);
-            g.draw(shape);
-        }
+            return RunLengthBooleanMask2D.getUnion(fill, edge);
 
-        g.dispose();
-
-        final byte[] buffer = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
-        final boolean[] result = new boolean[width * height];
-
-        // compute mask from image
-        for (int i = 0; i < result.length; i++)
-            result[i] = (buffer[i] != 0);
-
-        // // simple and basic implementation, override it to have better performance
-        // int offset = 0;
-        // for (int j = 0; j < height; j++)
-        // {
-        // for (int i = 0; i < width; i++)
-        // {
-        // if (inclusive)
-        // result[offset] = intersects(x + i, y + j, 1d, 1d);
-        // else
-        // result[offset] = contains(x + i, y + j, 1d, 1d);
-        // offset++;
-        // }
-        // }
+        // remove partially contained pixels
+        return RunLengthBooleanMask2D.getSubtraction(fill, edge);
+    }
 
-        return result;
+    /**
+     * Clear the cached masks (should be called when shape changed)
+     */
+    protected void invalidateMaskCache()
+    {
+        // version first so concurrent computation won't store an obsolete mask
+        maskVersion++;
+        cachedMask = null;
+        cachedInclusiveMask = null;
+    }
+
+    @Override
+    public boolean[] getBooleanMask(int x, int y, int width, int height, boolean inclusive)
+    {
+        if ((width <= 0) || (height <= 0))
+            return new boolean[0];
+
+        return getRunLengthMask(inclusive).getBooleanArray(x, y, width, height);
     }
 
     @Override
@@ -1889,6 +1914,15 @@ public abstract class ROI2DShape extends ROI2D implements Shape
         // ignore it now
     }
 
+    @Override
+    public void roiChanged(boolean contentChanged)
+    {
+        // shape may have changed
+        invalidateMaskCache();
+
+        super.roiChanged(contentChanged);
+    }
+
     /**
      * roi changed
      */
@@ -25,7 +25,10 @@ import icy.roi.BooleanMask2D;
 import icy.roi.BooleanMask3D;
 import icy.roi.ROI;
 import icy.roi.ROI2D;
+import icy.roi.ROI3D;
 import icy.roi.ROIEvent;
+import icy.roi.RunLengthBooleanMask2D;
+import icy.roi.RunLengthBooleanMask3D;
 import icy.sequence.Sequence;
 import icy.system.thread.ThreadUtil;
 import icy.type.point.Point3D;
@@ -41,8 +44,10 @@ import java.awt.Graphics2D;
 import java.awt.event.InputEvent;
 import java.awt.geom.Point2D;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
 import plugins.kernel.canvas.VtkCanvas;
 import plugins.kernel.roi.roi2d.ROI2DArea;
@@ -481,6 +486,16 @@ public class ROI3DArea extends ROI3DStack<ROI2DArea>
         setAsBooleanMask(mask);
     }
 
+    /**
+     * Create a 3D Area ROI type from the specified {@link RunLengthBooleanMask3D}.
+     */
+    public ROI3DArea(RunLengthBooleanMask3D mask)
+    {
+        this();
+
+        setAsRunLengthMask(mask);
+    }
+
     /**
      * Create a copy of the specified 3D Area ROI.
      */
@@ -704,6 +719,303 @@ public class ROI3DArea extends ROI3DStack<ROI2DArea>
         }
     }
 
+    /**
+     * Returns the run length encoded version of the ROI mask.<br>
+     * Memory used by the returned mask depends on the object surface (not on its bounding box
+     * volume) so it's well suited to store or combine large and sparse 3D area.<br>
+     * Slices are encoded directly from their internal mask data (no dense boolean mask is built).
+     */
+    public RunLengthBooleanMask3D getRunLengthMask()
+    {
+        final TreeMap<Integer, RunLengthBooleanMask2D> masks = new TreeMap<Integer, RunLengthBooleanMask2D>();
+
+        for (Entry<Integer, ROI2DArea> entry : slices.entrySet())
+            masks.put(entry.getKey(), entry.getValue().getRunLengthMask());
+
+        return new RunLengthBooleanMask3D(masks);
+    }
+
+    /**
+     * Set the mask from a run length encoded mask.<br>
+     * Slices are decoded one at a time so we never need the whole dense 3D mask in memory.<br>
+     * If specified mask is <i>null</i> then ROI is cleared.
+     */
+    public void setAsRunLengthMask(RunLengthBooleanMask3D mask)
+    {
+        beginUpdate();
+        try
+        {
+            clear();
+
+            if (mask != null)
+            {
+                for (Entry<Integer, RunLengthBooleanMask2D> entry : mask.getMasks2D().entrySet())
+                    setSliceMask(entry.getKey().intValue(), entry.getValue());
+            }
+        }
+        finally
+        {
+            endUpdate();
+        }
+    }
+
+    /**
+     * Returns the run length encoded mask of the specified 3D ROI at the given Z position.
+     */
+    protected static RunLengthBooleanMask2D getRunLengthMask2D(ROI3D roi, int z)
+    {
+        if (roi instanceof ROI3DArea)
+        {
+            final ROI2DArea slice = ((ROI3DArea) roi).getSlice(z);
+
+            if (slice == null)
+                return new RunLengthBooleanMask2D();
+
+            return slice.getRunLengthMask();
+        }
+
+        final Rectangle3D bounds = roi.getBounds3D();
+
+        // fast discard
+        if (!bounds.isInfiniteZ() && ((z < bounds.getMinZ()) || (z >= bounds.getMaxZ())))
+            return new RunLengthBooleanMask2D();
+
+        return new RunLengthBooleanMask2D(roi.getBooleanMask2D(z, true));
+    }
+
+    /**
+     * Set the mask of the slice at given Z position, the slice is removed if the mask is empty.
+     */
+    protected void setSliceMask(int z, RunLengthBooleanMask2D mask)
+    {
+        if (mask.isEmpty())
+        {
+            if (getSlice(z) != null)
+                removeSlice(z);
+        }
+        else
+        {
+            final ROI2DArea slice = getSlice(z);
+
+            if (slice != null)
+                slice.setAsRunLengthMask(mask);
+            else
+            {
+                final ROI2DArea newSlice = new ROI2DArea();
+
+                newSlice.setAsRunLengthMask(mask);
+                setSlice(z, newSlice);
+            }
+        }
+    }
+
+    /*
+     * Computed slice by slice on runs.
+     */
+    @Override
+    public boolean contains(ROI roi)
+    {
+        if (roi instanceof ROI3D)
+        {
+            final ROI3D roi3d = (ROI3D) roi;
+
+            // special case of ROI Point and infinite Z dimension are done by default implementation
+            if (onSamePos(roi3d, true) && !roi3d.isEmpty() && !roi3d.getBounds3D().isInfiniteZ())
+            {
+                final Rectangle3D.Integer bounds = roi3d.getBounds();
+
+                for (int z = bounds.z; z < (bounds.z + bounds.sizeZ); z++)
+                {
+                    final RunLengthBooleanMask2D mask = getRunLengthMask2D(roi3d, z);
+
+                    if (!mask.isEmpty() && !getRunLengthMask2D(this, z).contains(mask))
+                        return false;
+                }
+
+                return true;
+            }
+        }
+
+        return super.contains(roi);
+    }
+
+    /*
+     * Computed slice by slice on runs.
+     */
+    @Override
+    public boolean intersects(ROI roi)
+    {
+        if (roi instanceof ROI3D)
+        {
+            final ROI3D roi3d = (ROI3D) roi;
+
+            if (onSamePos(roi3d, false))
+            {
+                for (Entry<Integer, ROI2DArea> entry : new ArrayList<Entry<Integer, ROI2DArea>>(slices.entrySet()))
+                {
+                    final RunLengthBooleanMask2D mask = getRunLengthMask2D(roi3d, entry.getKey().intValue());
+
+                    if (!mask.isEmpty() && entry.getValue().getRunLengthMask().intersects(mask))
+                        return true;
+                }
+
+                return false;
+            }
+        }
+
+        return super.intersects(roi);
+    }
+
+    /*
+     * Computed slice by slice on runs so only one slice is decoded at a time.
+     */
+    @Override
+    public ROI add(ROI roi, boolean allowCreate) throws UnsupportedOperationException
+    {
+        if (roi instanceof ROI3D)
+        {
+            final ROI3D roi3d = (ROI3D) roi;
+
+            // only if on same position
+            if ((getT() == roi3d.getT()) && (getC() == roi3d.getC()) && !roi3d.getBounds3D().isInfiniteZ())
+            {
+                final Rectangle3D.Integer bounds = roi3d.getBounds();
+
+                beginUpdate();
+                try
+                {
+                    for (int z = bounds.z; z < (bounds.z + bounds.sizeZ); z++)
+                    {
+                        final RunLengthBooleanMask2D mask = getRunLengthMask2D(roi3d, z);
+
+                        if (!mask.isEmpty())
+                            setSliceMask(z, RunLengthBooleanMask2D.getUnion(getRunLengthMask2D(this, z), mask));
+                    }
+                }
+                finally
+                {
+                    endUpdate();
+                }
+
+                return this;
+            }
+        }
+
+        return super.add(roi, allowCreate);
+    }
+
+    /*
+     * Computed slice by slice on runs so only one slice is decoded at a time.
+     */
+    @Override
+    public ROI intersect(ROI roi, boolean allowCreate) throws UnsupportedOperationException
+    {
+        if (roi instanceof ROI3D)
+        {
+            final ROI3D roi3d = (ROI3D) roi;
+
+            // only if on same position
+            if ((getT() == roi3d.getT()) && (getC() == roi3d.getC()))
+            {
+                beginUpdate();
+                try
+                {
+                    for (Integer key : new ArrayList<Integer>(slices.keySet()))
+                    {
+                        final int z = key.intValue();
+
+                        setSliceMask(z, RunLengthBooleanMask2D.getIntersection(getRunLengthMask2D(this, z),
+                                getRunLengthMask2D(roi3d, z)));
+                    }
+                }
+                finally
+                {
+                    endUpdate();
+                }
+
+                return this;
+            }
+        }
+
+        return super.intersect(roi, allowCreate);
+    }
+
+    /*
+     * Computed slice by slice on runs so only one slice is decoded at a time.
+     */
+    @Override
+    public ROI exclusiveAdd(ROI roi, boolean allowCreate) throws UnsupportedOperationException
+    {
+        if (roi instanceof ROI3D)
+        {
+            final ROI3D roi3d = (ROI3D) roi;
+
+            // only if on same position
+            if ((getT() == roi3d.getT()) && (getC() == roi3d.getC()) && !roi3d.getBounds3D().isInfiniteZ())
+            {
+                final Rectangle3D.Integer bounds = roi3d.getBounds();
+
+                beginUpdate();
+                try
+                {
+                    for (int z = bounds.z; z < (bounds.z + bounds.sizeZ); z++)
+                    {
+                        final RunLengthBooleanMask2D mask = getRunLengthMask2D(roi3d, z);
+
+                        if (!mask.isEmpty())
+                            setSliceMask(z,
+                                    RunLengthBooleanMask2D.getExclusiveUnion(getRunLengthMask2D(this, z), mask));
+                    }
+                }
+                finally
+                {
+                    endUpdate();
+                }
+
+                return this;
+            }
+        }
+
+        return super.exclusiveAdd(roi, allowCreate);
+    }
+
+    /*
+     * Computed slice by slice on runs so only one slice is decoded at a time.
+     */
+    @Override
+    public ROI subtract(ROI roi, boolean allowCreate) throws UnsupportedOperationException
+    {
+        if (roi instanceof ROI3D)
+        {
+            final ROI3D roi3d = (ROI3D) roi;
+
+            // only if on same position
+            if ((getT() == roi3d.getT()) && (getC() == roi3d.getC()))
+            {
+                beginUpdate();
+                try
+                {
+                    for (Integer key : new ArrayList<Integer>(slices.keySet()))
+                    {
+                        final int z = key.intValue();
+                        final RunLengthBooleanMask2D mask = getRunLengthMask2D(roi3d, z);
+
+                        if (!mask.isEmpty())
+                            setSliceMask(z, RunLengthBooleanMask2D.getSubtraction(getRunLengthMask2D(this, z), mask));
+                    }
+                }
+                finally
+                {
+                    endUpdate();
+                }
+
+                return this;
+            }
+        }
+
+        return super.subtract(roi, allowCreate);
+    }
+
     /**
      * Optimize the bounds size to the minimum surface which still include all mask.<br>
      * You should call it after consecutive remove operations.